@@ -37,7 +37,7 @@ logical_value: CFG_NAME? ;
 attribute_value: (CFG_NAME (COLON CFG_NAME?)*)? ;
 
 module: MODULE name=STRING anchor=STRING (COMMA cfg)? SEMICOLON
-	port* inst* net* ENDMODULE close_name=STRING;
+	port* inst* net* ENDMODULE close_name=STRING SEMICOLON? ;
 port: PORT name=STRING inst_name=STRING inst_pin=STRING SEMICOLON ;
 
 inst: INST name=STRING type=STRING
@@ -23,6 +23,8 @@ package edu.byu.ece.rapidSmith.design.subsite;
 import edu.byu.ece.rapidSmith.design.AbstractDesign;
 import edu.byu.ece.rapidSmith.device.Bel;
 import edu.byu.ece.rapidSmith.device.Site;
+import edu.byu.ece.rapidSmith.device.SiteType;
+import edu.byu.ece.rapidSmith.device.SiteTypeOverlay;
 import edu.byu.ece.rapidSmith.device.Wire;
 import edu.byu.ece.rapidSmith.interfaces.vivado.XdcConstraint;
 import edu.byu.ece.rapidSmith.util.Exceptions;
@@ -30,8 +32,6 @@ import edu.byu.ece.rapidSmith.util.Exceptions;
 import java.util.*;
 import java.util.stream.Stream;
 
-import static java.util.Collections.emptyMap;
-
 /**
  *  This class represents a logical netlist consisting of cells interconnected by
  *  nets along with cell placement information.  This class supports constant time
@@ -51,8 +51,8 @@ public class CellDesign extends AbstractDesign {
 	private Map<String, Cell> cellMap;
 	/** This is a list of all internal cell in the design*/
 	private Map<String, Cell> internalCellMap;
-	/** A map used to keep track of all used primitive sites used by the design */
-	private Map<Site, Map<Bel, Cell>> placementMap;
+	/** Keeps track of the cells placed on each BEL used by the design */
+	private PlacementOccupancy placementMap;
 	/** This is a list of all the nets in the design */
 	private Map<String, CellNet> netMap;
 	/** The properties of this design. */
@@ -79,6 +79,12 @@ public class CellDesign extends AbstractDesign {
 	private Map<String, String> rmStaticNetMap;
 	/** Map from the static net name to the route string tree */
 	private Map<String, RouteStringTree> staticRouteStringMap;
+	/** Number of nets in the design with each {@link RouteStatus}, indexed by ordinal */
+	private int[] routeStatusCounts;
+	/** Types of the sites used by this design, kept separate from the shared device */
+	private SiteTypeOverlay siteTypes;
+	/** Nets whose routing was invalidated by placement changes, null when not tracked */
+	private Set<CellNet> invalidatedNets;
 
 	/**
 	 * Constructor which initializes all member data structures. Sets name and
@@ -106,13 +112,15 @@ public class CellDesign extends AbstractDesign {
 	private void _init() {
 		cellMap = new HashMap<>();
 		internalCellMap = new HashMap<>();
-		placementMap = new HashMap<>();
+		placementMap = new PlacementOccupancy();
 		netMap = new HashMap<>();
 		usedSitePipsMap = new HashMap<>();
 		mode = ImplementationMode.REGULAR;
 		pipInValues = new HashMap<>();
 		reservedWires = new HashMap<>();
 		reservedSites = new HashSet<>();
+		routeStatusCounts = new int[RouteStatus.values().length];
+		siteTypes = new SiteTypeOverlay();
 	}
 
 	/**
@@ -445,6 +453,7 @@ public class CellDesign extends AbstractDesign {
 		
 		netMap.put(net.getName(), net);
 		net.setDesign(this);
+		routeStatusChanged(null, net.getRouteStatus());
 		
 		return net;
 	}
@@ -468,6 +477,9 @@ public class CellDesign extends AbstractDesign {
 
 	private void _removeNet(CellNet net) {
 		net.setDesign(null);
+		routeStatusChanged(net.getRouteStatus(), null);
+		if (invalidatedNets != null)
+			invalidatedNets.remove(net);
 		
 		if (net.isVCCNet()) {
 			vccNet = null;
@@ -504,6 +516,108 @@ public class CellDesign extends AbstractDesign {
 		net.unrouteFull();
 	}
 
+	/**
+	 * Returns the number of nets in the design that currently have the specified
+	 * {@link RouteStatus}. The counts are updated as the routing of each net changes,
+	 * so this method is O(1).
+	 *
+	 * @param status the route status to count
+	 * @return the number of nets in the design with the route status
+	 */
+	public int getNetCount(RouteStatus status) {
+		Objects.requireNonNull(status);
+		return routeStatusCounts[status.ordinal()];
+	}
+
+	/**
+	 * Returns the number of nets in the design with no routed sinks.
+	 */
+	public int getUnroutedNetCount() {
+		return getNetCount(RouteStatus.UNROUTED);
+	}
+
+	/**
+	 * Returns the number of nets in the design with some, but not all, sinks routed.
+	 */
+	public int getPartiallyRoutedNetCount() {
+		return getNetCount(RouteStatus.PARTIALLY_ROUTED);
+	}
+
+	/**
+	 * Returns the number of nets in the design with all sinks routed.
+	 */
+	public int getFullyRoutedNetCount() {
+		return getNetCount(RouteStatus.FULLY_ROUTED);
+	}
+
+	/**
+	 * Updates the route status counts of the design. Called by {@link CellNet}
+	 * whenever its route status changes. A {@code null} status means the net
+	 * is entering or leaving the design.
+	 */
+	void routeStatusChanged(RouteStatus oldStatus, RouteStatus newStatus) {
+		if (oldStatus != null)
+			routeStatusCounts[oldStatus.ordinal()]--;
+		if (newStatus != null)
+			routeStatusCounts[newStatus.ordinal()]++;
+	}
+
+	/**
+	 * Starts or stops tracking the nets whose routing is invalidated by placement
+	 * changes.  While tracking, placing or unplacing a cell and changing the pin
+	 * mappings of a cell pin mark the nets connected to the affected pins.  ECO
+	 * routers can then reroute only the marked nets.  Stopping the tracking
+	 * discards the marked nets.
+	 *
+	 * @param track {@code true} to start tracking, {@code false} to stop
+	 */
+	public void setTrackInvalidatedNets(boolean track) {
+		if (!track)
+			invalidatedNets = null;
+		else if (invalidatedNets == null)
+			invalidatedNets = new LinkedHashSet<>();
+	}
+
+	/**
+	 * Returns {@code true} if the nets invalidated by placement changes are tracked.
+	 */
+	public boolean isTrackingInvalidatedNets() {
+		return invalidatedNets != null;
+	}
+
+	/**
+	 * Returns the nets invalidated by placement changes since tracking started or
+	 * the last call to {@link #clearInvalidatedNets()}, in the order they were
+	 * invalidated.  The returned set should not be modified by the user.
+	 */
+	public Set<CellNet> getInvalidatedNets() {
+		return invalidatedNets == null ? Collections.emptySet() : invalidatedNets;
+	}
+
+	/**
+	 * Clears the set of invalidated nets, typically after they have been rerouted.
+	 */
+	public void clearInvalidatedNets() {
+		if (invalidatedNets != null)
+			invalidatedNets.clear();
+	}
+
+	/**
+	 * Marks the net as invalidated if invalidated nets are being tracked.  Called by
+	 * {@link CellPin} when its pin mappings change.
+	 */
+	void netInvalidated(CellNet net) {
+		if (invalidatedNets != null && net != null && net.getDesign() == this)
+			invalidatedNets.add(net);
+	}
+
+	private void _invalidateNets(Cell cell) {
+		if (invalidatedNets == null)
+			return;
+		for (CellPin pin : cell.getPins())
+			netInvalidated(pin.getNet());
+	}
+
 	/**
 	 * Returns the power(VCC) net of the design
 	 */
@@ -529,10 +643,7 @@ public class CellDesign extends AbstractDesign {
 	public Cell getCellAtBel(Bel bel) {
 		Objects.requireNonNull(bel);
 
-		Map<Bel, Cell> sitePlacementMap = placementMap.get(bel.getSite());
-		if (sitePlacementMap == null)
-			return null;
-		return sitePlacementMap.get(bel);
+		return placementMap.get(bel);
 	}
 
 	/**
@@ -546,10 +657,7 @@ public class CellDesign extends AbstractDesign {
 	public Collection<Cell> getCellsAtSite(Site site) {
 		Objects.requireNonNull(site);
 
-		Map<Bel, Cell> sitePlacementMap = placementMap.get(site);
-		if (sitePlacementMap == null)
-			return null;
-		return sitePlacementMap.values();
+		return placementMap.getCells(site);
 	}
 
 	/**
@@ -561,8 +669,7 @@ public class CellDesign extends AbstractDesign {
 	public boolean isBelUsed(Bel bel) {
 		Objects.requireNonNull(bel);
 
-		Map<Bel, Cell> sitePlacementMap = placementMap.get(bel.getSite());
-		return sitePlacementMap != null && sitePlacementMap.containsKey(bel);
+		return placementMap.get(bel) != null;
 	}
 
 	/**
@@ -575,8 +682,7 @@ public class CellDesign extends AbstractDesign {
 	public boolean isSiteUsed(Site site) {
 		Objects.requireNonNull(site);
 
-		Map<Bel, Cell> sitePlacementMap = placementMap.get(site);
-		return sitePlacementMap != null && !sitePlacementMap.isEmpty();
+		return placementMap.isSiteUsed(site);
 	}
 	
 	/**
@@ -584,7 +690,7 @@ public class CellDesign extends AbstractDesign {
 	 * one or more {@link Cell} objects placed there.
 	 */
 	public Collection<Site> getUsedSites() {
-		return placementMap.keySet();
+		return placementMap.getUsedSites();
 	}
 
 	/**
@@ -594,7 +700,8 @@ public class CellDesign extends AbstractDesign {
 	public Collection<Bel> getUsedBels() {
 		Collection<Bel> usedBels = new ArrayList<>();
 		for (Site site : getUsedSites()) {
-			usedBels.addAll(placementMap.get(site).keySet());
+			for (Cell cell : placementMap.getCells(site))
+				usedBels.add(cell.getBel());
 		}
 		return usedBels;
 	}
@@ -608,7 +715,7 @@ public class CellDesign extends AbstractDesign {
 	 */
 	public boolean canPlaceCellAt(Cell cell, Bel bel) {
 		return bel != null && !isBelUsed(bel) &&
-			cell.getLibCell().getPossibleAnchors().contains(bel.getId());
+			cell.getLibCell().canAnchorAt(bel.getId());
 	}
 
 	/**
@@ -662,34 +769,74 @@ public class CellDesign extends AbstractDesign {
 			throw new Exceptions.DesignAssemblyException("Cell already placed at location.");
 
 		_validateCellPlacement(bel);
-		bel.getSite().setType(bel.getId().getSiteType());
+		setSiteType(bel.getSite(), bel.getId().getSiteType());
 
 		_placeCell(cell, bel);
 	}
 
+	/**
+	 * Returns the {@link SiteTypeOverlay} holding the types of the sites configured
+	 * by this design.
+	 */
+	public SiteTypeOverlay getSiteTypes() {
+		return siteTypes;
+	}
+
+	/**
+	 * Binds the site types of this design to the current thread.  While bound,
+	 * {@link Site}s of the device report the types configured by this design and
+	 * changes to site types are kept in this design rather than in the device.
+	 * Bind the design on each thread when multiple designs share a {@link
+	 * edu.byu.ece.rapidSmith.device.Device} concurrently.
+	 *
+	 * @return the binding to close when done with this design
+	 */
+	public SiteTypeOverlay.Binding bindSiteTypes() {
+		return siteTypes.bind();
+	}
+
+	/**
+	 * Returns the type of the site in this design.  If the type of the site has not
+	 * been set by this design, the current type of the site is returned.
+	 *
+	 * @param site the site to get the type of
+	 */
+	public SiteType getSiteType(Site site) {
+		SiteType type = siteTypes.getType(site);
+		return type != null ? type : site.getType();
+	}
+
+	/**
+	 * Sets the type of the site in this design.  When this design's site types are
+	 * not bound to the current thread (see {@link #bindSiteTypes()}), the type is
+	 * also applied to the site itself (or to the overlay bound to the current thread,
+	 * if any) so code that queries the site directly sees the update.
+	 *
+	 * @param site the site to update
+	 * @param type the new type of the site
+	 * @throws IllegalArgumentException if the type is not a possible type of the site
+	 */
+	public void setSiteType(Site site, SiteType type) {
+		siteTypes.setType(site, type);
+		if (SiteTypeOverlay.current() != siteTypes)
+			site.setType(type);
+	}
+
 	// Checks that the BEL to be occupied is compatible with other used BELs in the site.
 	private void _validateCellPlacement(Bel bel) {
-		Map<Bel, Cell> existingBels = placementMap.getOrDefault(bel.getSite(), emptyMap());
-		Optional<Bel> existingType = existingBels.keySet().stream().findAny();
-		existingType.ifPresent(t -> {
-			if (t.getId().getSiteType() != bel.getId().getSiteType())
-				throw new Exceptions.DesignAssemblyException("Site types of BELs in site differ from existing");
-		});
+		SiteType existingType = placementMap.getUsedSiteType(bel.getSite());
+		if (existingType != null && existingType != bel.getId().getSiteType())
+			throw new Exceptions.DesignAssemblyException("Site types of BELs in site differ from existing");
 	}
 
 	private void _placeCell(Cell cell, Bel bel) {
 		// update the placement map
-		Map<Bel, Cell> sitePlacementMap = placementMap.get(bel.getSite());
-		if (sitePlacementMap == null) {
-			sitePlacementMap = new HashMap<>();
-			placementMap.put(bel.getSite(), sitePlacementMap);
-		} else {
-			assert sitePlacementMap.get(bel) == null;
-		}
-		sitePlacementMap.put(bel, cell);
+		assert placementMap.get(bel) == null;
+		placementMap.place(bel, cell);
 
 		// set the location in the cell
 		cell.place(bel);
+		_invalidateNets(cell);
 	}
 
 	/**
@@ -728,14 +875,11 @@ public class CellDesign extends AbstractDesign {
 			return;
 
 		// remove the location from the placement map
-		Site site = cell.getSite();
-		Map<Bel, Cell> sitePlacementMap = placementMap.get(site);
-		sitePlacementMap.remove(cell.getBel());
-		if (sitePlacementMap.size() == 0)
-			placementMap.remove(site);
+		placementMap.remove(cell.getBel());
 
 		// clear the location from the cell
 		cell.unplace();
+		_invalidateNets(cell);
 	}
 
 	/**
@@ -857,6 +1001,15 @@ public class CellDesign extends AbstractDesign {
 		return this.pipInValues.getOrDefault(ps, null);
 	}
 	
+	/**
+	 * Removes the used site PIPs and the PIP input values of the specified site.
+	 * @param site {@link Site} object
+	 */
+	public void clearSitePipsAtSite(Site site) {
+		this.usedSitePipsMap.remove(site);
+		this.pipInValues.remove(site);
+	}
+
 	public void setPipInValues(Map<Site, Map<String, String>> newVals){
 		this.pipInValues = newVals;
 	}
@@ -921,6 +1074,7 @@ public class CellDesign extends AbstractDesign {
 		CellDesign designCopy = new CellDesign();
 		designCopy.setName(getName());
 		designCopy.setPartName(getPartName());
+		designCopy.siteTypes = new SiteTypeOverlay(siteTypes);
 
 		for (Cell cell : getCells()) {
 			Cell cellCopy = cell.deepCopy();
@@ -22,11 +22,9 @@ package edu.byu.ece.rapidSmith.design.subsite;
 
 import edu.byu.ece.rapidSmith.device.BelId;
 import edu.byu.ece.rapidSmith.device.FamilyType;
-import edu.byu.ece.rapidSmith.device.PinDirection;
 import edu.byu.ece.rapidSmith.device.SiteType;
 import edu.byu.ece.rapidSmith.util.Exceptions;
 import org.jdom2.Document;
-import org.jdom2.Element;
 import org.jdom2.JDOMException;
 import org.jdom2.input.SAXBuilder;
 
@@ -36,7 +34,6 @@ import java.nio.file.Path;
 import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 /**
  *  Contains a set of cells for a design.
@@ -56,57 +53,54 @@ public class CellLibrary implements Iterable<LibraryCell> {
 
 	/**
 	 * Creates a new cell library object, and populates it with the
-	 * XML cell library found at the specified path.
+	 * XML cell library found at the specified path.  The library is read from
+	 * the compiled binary form of the file if it is up to date, and the binary
+	 * form is created otherwise (see {@link #getCachePath(Path)}).
 	 * 
 	 * @param filePath Path to the cell library XML file.
 	 * @throws IOException
 	 */
 	public CellLibrary(Path filePath) throws IOException {
 		this.library = new HashMap<>();
-		
-		try {
-			loadFromFile(filePath);
-		} catch (JDOMException e) {
-			// wrap the JDOMException in a generic parse exception
-			throw new Exceptions.ParseException(e);
-		}
+		loadLibrary(CellLibraryCache.load(filePath));
 	}
 
 	/**
 	 * Creates a new cell library object, and populates it with the
-	 * XML cell library contents found in istream.
+	 * XML cell library contents found in istream.  The binary cache is not
+	 * used when reading from a stream.
 	 *
 	 * @param istream {@link InputStream} containing the library XML contents.
 	 * @throws IOException
 	 */
 	public CellLibrary(InputStream istream) throws IOException {
 		this.library = new HashMap<>();
+		loadLibrary(CellLibraryCache.compile(buildDocument(istream)));
+	}
 
-		try {
-			loadFromStream(istream);
-		} catch (JDOMException e) {
-			// wrap the JDOMException in a generic parse exception
-			throw new Exceptions.ParseException(e);
-		}
+	/**
+	 * Returns the path of the compiled binary form of a cell library or macro
+	 * XML file.  The binary form is created next to the XML file the first time
+	 * the file is loaded from a path, and is recreated whenever the contents of
+	 * the XML file change.
+	 *
+	 * @param xmlPath {@link Path} to the XML file
+	 */
+	public static Path getCachePath(Path xmlPath) {
+		return CellLibraryCache.getCachePath(xmlPath);
 	}
 
 	/**
 	 * Parses an XML file which represents MACRO cell objects, creates corresponding
 	 * {@link LibraryMacro} library cells in RapidSmith, and adds them the current
 	 * cell library. This function can be used to augment the default {@link CellLibrary}
-	 * with additional cells.
+	 * with additional cells.  Like the cell library itself, the macros are read
+	 * from the compiled binary form of the file when it is up to date.
 	 * 
 	 * @param macroXmlPath {@link Path} to the XML file
 	 */
 	public void loadMacroXML(Path macroXmlPath) throws IOException {
-		SAXBuilder builder = new SAXBuilder();
-		Document doc;
-		try {
-			doc = builder.build(macroXmlPath.toFile());
-		} catch (JDOMException e) {
-			throw new Exceptions.ParseException(e);
-		}
-		loadMacros(doc);
+		loadMacros(CellLibraryCache.load(macroXmlPath));
 	}
 
 	/**
@@ -118,93 +112,64 @@ public class CellLibrary implements Iterable<LibraryCell> {
 	 * @param macroXmlStream {@link InputStream} to the XML file
 	 */
 	public void loadMacroXML(InputStream macroXmlStream) throws IOException {
-		SAXBuilder builder = new SAXBuilder();
-		Document doc;
+		loadMacros(CellLibraryCache.compile(buildDocument(macroXmlStream)));
+	}
+
+	private static Document buildDocument(InputStream is) throws IOException {
 		try {
-			doc = builder.build(macroXmlStream);
+			return new SAXBuilder().build(is);
 		} catch (JDOMException e) {
+			// wrap the JDOMException in a generic parse exception
 			throw new Exceptions.ParseException(e);
 		}
-		loadMacros(doc);
-	}
-
-	private void loadMacros(Document doc) {
-		// Load all macro library cells into the cell library
-		Element macrosEl = doc.getRootElement().getChild("macros");
-
-		List<Element> childrenMacros = macrosEl.getChildren("macro");
-
-		if (childrenMacros != null) {
-			for (Element macroEl : childrenMacros) {
-				loadMacroFromXml(macroEl);
-			}
-		}
 	}
 
-	private void loadFromFile(Path filePath) throws IOException, JDOMException {
-		SAXBuilder builder = new SAXBuilder();
-		Document doc = builder.build(filePath.toFile());
-		loadFromDoc(doc);
-	}
-
-	private void loadFromStream(InputStream is) throws JDOMException, IOException {
-		SAXBuilder builder = new SAXBuilder();
-		Document doc = builder.build(is);
-		loadFromDoc(doc);
-	}
-
-	private void loadFromDoc(Document doc) {
+	private void loadLibrary(CellLibraryCache.Contents contents) {
 		// get the family of the cell library.
-		readFamilyType(doc.getRootElement().getChild("family"));
+		readFamilyType(contents.family);
 
-		Element cellsEl = doc.getRootElement().getChild("cells");
 		Map<SiteType, Map<String, SiteProperty>> sitePropertiesMap = new HashMap<>();
 		// first load the leaf cells
-		for (Element cellEl : cellsEl.getChildren("cell")) {
-			loadCellFromXml(cellEl, sitePropertiesMap);
+		for (CellLibraryCache.CellSpec cellSpec : contents.cells) {
+			loadCell(cellSpec, sitePropertiesMap);
 		}
 		// then load the macro cells if any exist
-		Element macrosEl = doc.getRootElement().getChild("macros");
+		loadMacros(contents);
+	}
 
-		if (macrosEl != null) {
-			List<Element> childrenMacros = macrosEl.getChildren("macro");
-			if (childrenMacros != null) {
-				for (Element macroEl : childrenMacros) {
-					loadMacroFromXml(macroEl);
-				}
-			}
+	private void loadMacros(CellLibraryCache.Contents contents) {
+		// Load all macro library cells into the cell library
+		for (CellLibraryCache.MacroSpec macroSpec : contents.macros) {
+			loadMacro(macroSpec);
 		}
 	}
 
 	/**
-	 * Reads the "family" tag from the cellLibrary.xml file and stores its value.
+	 * Stores the family type from the "family" tag of the cellLibrary.xml file.
 	 * This tag is necessary to get handles to the proper site type later on in the parsing
 	 * process.
-	 * @param familyEl family element in the cellLibray.xml
+	 * @param family value of the family element in the cellLibray.xml
 	 */
-	private void readFamilyType(Element familyEl) {
+	private void readFamilyType(String family) {
 		
-		if (familyEl == null) {
+		if (family == null) {
 			// TODO: replace this exception with the proper exception. 
 			throw new Exceptions.FileFormatException("<family> tag not found in cellLibrary.xml file");
 		}
 		
-		this.familyType = FamilyType.valueOf(familyEl.getValue()); 
+		this.familyType = FamilyType.valueOf(family); 
 	}
 	
 
-	private void loadCellFromXml(
-			Element cellEl, Map<SiteType, Map<String, SiteProperty>> sitePropertiesMap
+	private void loadCell(
+			CellLibraryCache.CellSpec cellSpec, Map<SiteType, Map<String, SiteProperty>> sitePropertiesMap
 	) {
-		String type = cellEl.getChildText("type");
-		SimpleLibraryCell libCell = new SimpleLibraryCell(type);
-		libCell.setVccSource(cellEl.getChild("vcc_source") != null);
-		libCell.setGndSource(cellEl.getChild("gnd_source") != null);
-		libCell.setIsPort(cellEl.getChild("is_port") != null); 
-		Element lutType = cellEl.getChild("is_lut");
-		if (lutType != null) {
-			String strInputs = lutType.getChildText("num_inputs");
-			libCell.setNumLutInputs(Integer.parseInt(strInputs));
+		SimpleLibraryCell libCell = new SimpleLibraryCell(cellSpec.type);
+		libCell.setVccSource(cellSpec.vccSource);
+		libCell.setGndSource(cellSpec.gndSource);
+		libCell.setIsPort(cellSpec.port); 
+		if (cellSpec.numLutInputs != null) {
+			libCell.setNumLutInputs(cellSpec.numLutInputs);
 		}
 
 		if (libCell.isVccSource())
@@ -212,15 +177,15 @@ public class CellLibrary implements Iterable<LibraryCell> {
 		if (libCell.isGndSource())
 			gndSource = libCell;
 
-		loadConfigurationPropertiesFromXml(cellEl, libCell);
-		loadPinsFromXml(cellEl, libCell);
-		loadPossibleBelsFromXml(libCell, cellEl, sitePropertiesMap);
+		loadConfigurationProperties(cellSpec, libCell);
+		loadPins(cellSpec.pins, libCell);
+		loadPossibleBels(libCell, cellSpec, sitePropertiesMap);
 		add(libCell);
 	}
 
 	/*
-	 * Loads the configuration properties found in the cell library XML and 
-	 * applies them to the library cell. The properties look like the following: 
+	 * Applies the configuration properties found in the cell library XML to the
+	 * library cell. The properties look like the following: 
 	 * 
 	 * <libcellproperties>
 	 *   <libcellproperty>
@@ -232,66 +197,40 @@ public class CellLibrary implements Iterable<LibraryCell> {
 	 *	   <values>min=Ox8'h00, max=Ox8'hFF</values>
 	 *   </libcellproperty>
 	 * <libcellproperties>
+	 *
+	 * Read only properties are skipped when the XML is compiled.
 	 */
-	private void loadConfigurationPropertiesFromXml(Element cellEl, LibraryCell libCell) { 
-		Element properties = cellEl.getChild("libcellproperties");
-		
-		if (properties != null) {
-			for (Element propertyEl : properties.getChildren("libcellproperty")) {
-
-				boolean isReadonly = propertyEl.getChild("readonly") != null;
-				// for now, skip read only properties
-				// TODO: revisit this
-				if (isReadonly) {
-					continue;
-				}
-				
-				String name = propertyEl.getChildText("name");
-				String deflt = propertyEl.getChildText("default");
-				// TODO: integrate the min and max properties
-				// String max = propertyEl.getChildText("max");
-				// String min = propertyEl.getChildText("min");
-				String type = propertyEl.getChildText("type");
-				String valueString = propertyEl.getChildText("values");
-				String[] values = valueString.isEmpty() ? new String[0] : valueString.split(", ");
-				
-				// add the configuration to the library cell
-				libCell.addDefaultProperty(new Property(name, PropertyType.EDIF, deflt, isReadonly, true));
-				libCell.addConfigurableProperty(new LibraryCellProperty(name, type, values, isReadonly));
-			}
+	private void loadConfigurationProperties(CellLibraryCache.CellSpec cellSpec, LibraryCell libCell) { 
+		for (CellLibraryCache.PropertySpec property : cellSpec.properties) {
+			// add the configuration to the library cell
+			libCell.addDefaultProperty(new Property(property.name, PropertyType.EDIF, property.defaultValue, false, true));
+			libCell.addConfigurableProperty(new LibraryCellProperty(property.name, property.type, property.values, false));
 		}
 	}
 	
-	private void loadMacroFromXml(Element macroEl) {
+	private void loadMacro(CellLibraryCache.MacroSpec macroSpec) {
 		
-		String type = macroEl.getChildText("type");
-		LibraryMacro macroCell = new LibraryMacro(type);
+		LibraryMacro macroCell = new LibraryMacro(macroSpec.type);
 
-		loadInternalCellsFromXml(macroEl, macroCell);
-		loadPinsFromXml(macroEl, macroCell);
-		loadInternalNetsFromXml(macroEl, macroCell);
+		loadInternalCells(macroSpec, macroCell);
+		loadPins(macroSpec.pins, macroCell);
+		for (CellLibraryCache.InternalNetSpec net : macroSpec.internalNets) {
+			macroCell.addInternalNet(net.name, net.type, net.pinNames);
+		}
 		add(macroCell);
 	}
 	
-	private void loadPinsFromXml(Element cellEl, LibraryCell libCell) {
+	private void loadPins(List<CellLibraryCache.PinSpec> pinSpecs, LibraryCell libCell) {
 		List<LibraryPin> pins = new ArrayList<>();
-		Element pinsEl = cellEl.getChild("pins");
 		
 		Pattern pinNamePattern = Pattern.compile("(.*)\\[(.*)\\]");
 		
-		for (Element pinEl : pinsEl.getChildren("pin")) {
+		for (CellLibraryCache.PinSpec pinSpec : pinSpecs) {
 			LibraryPin pin = new LibraryPin();
 			pin.setLibraryCell(libCell);
-			pin.setName(pinEl.getChildText("name"));
-			String pinDirection = pinEl.getChildText("direction");
-			switch (pinDirection) {
-				case "input": pin.setDirection(PinDirection.IN); break;
-				case "output": pin.setDirection(PinDirection.OUT); break;
-				case "inout": pin.setDirection(PinDirection.INOUT); break;
-				default: throw new Exceptions.ParseException("Unrecognized pin direction while parsing the CellLibrary.xml file: " + pinDirection);
-			}
-			String pinType = pinEl.getChildText("type");
-			pin.setPinType(pinType == null ? CellPinType.DATA : CellPinType.valueOf(pinType));
+			pin.setName(pinSpec.name);
+			pin.setDirection(pinSpec.direction);
+			pin.setPinType(pinSpec.type);
 			pins.add(pin);
 			
 			// for macro cells, add the internal connection information
@@ -302,102 +241,65 @@ public class CellLibrary implements Iterable<LibraryCell> {
 					((LibraryMacro)libCell).addPinOffset(m.group(1), Integer.parseInt(m.group(2)));
 				}
 				
-				List<String> internalPinNames = pinEl.getChild("internalConnections")
-													.getChildren("pinname")
-													.stream().map(el -> el.getText())
-													.collect(Collectors.toList());
-				((LibraryMacro)libCell).addInternalPinConnections(pin, internalPinNames);
+				((LibraryMacro)libCell).addInternalPinConnections(pin, pinSpec.internalConnections);
 			}
 		}
 		libCell.setLibraryPins(pins);
 	}
 
-	private void loadInternalCellsFromXml(Element macroEl, LibraryMacro macroCell) {
-		
-		Element cellsEl = macroEl.getChild("cells");
+	private void loadInternalCells(CellLibraryCache.MacroSpec macroSpec, LibraryMacro macroCell) {
 		
-		for (Element internalEl : cellsEl.getChildren("internal")) {
-			LibraryCell libCell = library.get(internalEl.getChildText("type"));
+		for (String[] internal : macroSpec.internalCells) {
+			String name = internal[0];
+			String type = internal[1];
+			LibraryCell libCell = library.get(type);
 			
 			if (libCell == null) {
-				throw new Exceptions.ParseException("Unable to find leaf library cell \"" + internalEl.getChildText("type") + 
-												 "\" in macro cell: \"" + macroEl.getChildText("type") + "\"");
+				throw new Exceptions.ParseException("Unable to find leaf library cell \"" + type + 
+												 "\" in macro cell: \"" + macroSpec.type + "\"");
 			}
 			else if (libCell.isMacro()) {
-				throw new Exceptions.ParseException("Nested hierarchy is not supported. Cell: \"" + macroEl.getChildText("type") + "\"");
+				throw new Exceptions.ParseException("Nested hierarchy is not supported. Cell: \"" + macroSpec.type + "\"");
 			}
 			
-			macroCell.addInternalCell(internalEl.getChildText("name"), (SimpleLibraryCell)libCell);
-		}
-	}
-	
-	private void loadInternalNetsFromXml(Element macroEl, LibraryMacro macroCell) {
-		Element internalNetsEl = macroEl.getChild("internalNets");
-		
-		// only add internal nets to the macro if they exist
-		if (internalNetsEl != null) {
-			
-			for (Element internalNetEl : internalNetsEl.getChildren("internalNet")) {
-				String name = internalNetEl.getChildText("name");
-				List<String> pinNames = internalNetEl.getChild("pins")
-													.getChildren("pinname")
-													.stream().map(el -> el.getText())
-													.collect(Collectors.toList());
-				String type = internalNetEl.getChildText("type");
-				if (type == null) {
-					type = "WIRE";
-				}
-				
-				macroCell.addInternalNet(name, type, pinNames);
-			}
+			macroCell.addInternalCell(name, (SimpleLibraryCell)libCell);
 		}
 	}
 
-	private void loadPossibleBelsFromXml(
-			SimpleLibraryCell libCell, Element cellEl,
+	private void loadPossibleBels(
+			SimpleLibraryCell libCell, CellLibraryCache.CellSpec cellSpec,
 			Map<SiteType, Map<String, SiteProperty>> sitePropertiesMap
 	) {
 		List<BelId> compatibleBels = new ArrayList<>();
 		Map<BelId, Map<String, SiteProperty>> sharedSitePropertiesMap = new HashMap<>();
-		Element belsEl = cellEl.getChild("bels");
-		for (Element belEl : belsEl.getChildren("bel")) {
-			Element id = belEl.getChild("id");
-			
-			String site_type = id.getChildText("site_type");
+		for (CellLibraryCache.BelSpec belSpec : cellSpec.bels) {
 			BelId belId = new BelId(
-					SiteType.valueOf(familyType, site_type),
-					id.getChildText("name")
+					SiteType.valueOf(familyType, belSpec.siteType),
+					belSpec.name
 			);
 			compatibleBels.add(belId);
 
-			loadPinMapFromXml(libCell, belEl, belId);
+			loadPinMap(libCell, belSpec, belId);
 
 			Map<String, SiteProperty> siteProperties = sitePropertiesMap.computeIfAbsent(
 					belId.getSiteType(), k -> new HashMap<>());
 			Map<String, SiteProperty> sharedSiteProperties = new HashMap<>();
 			sharedSitePropertiesMap.put(belId, sharedSiteProperties);
-			Element attrsEl = belEl.getChild("attributes");
-			if (attrsEl != null) {
-				for (Element attrEl : attrsEl.getChildren("attribute")) {
-					if (attrEl.getChild("is_site_property") != null) {
-						String attrName = attrEl.getChildText("name");
-						String rename = attrEl.getChildText("rename");
-						if (rename == null)
-							rename = attrName;
-						SiteProperty siteProperty = siteProperties.computeIfAbsent(
-								rename, k -> new SiteProperty(belId.getSiteType(), k));
-						sharedSiteProperties.put(attrName, siteProperty);
-					}
-				}
+			// stored as pairs of attribute name and site property name
+			for (int i = 0; i < belSpec.siteProperties.size(); i += 2) {
+				String attrName = belSpec.siteProperties.get(i);
+				String rename = belSpec.siteProperties.get(i + 1);
+				SiteProperty siteProperty = siteProperties.computeIfAbsent(
+						rename, k -> new SiteProperty(belId.getSiteType(), k));
+				sharedSiteProperties.put(attrName, siteProperty);
 			}
 		}
 		libCell.setPossibleBels(compatibleBels);
 		libCell.setSharedSiteProperties(sharedSitePropertiesMap);
 	}
 
-	private void loadPinMapFromXml(SimpleLibraryCell libCell, Element belEl, BelId belId) {
-		Element belPinsEl = belEl.getChild("pins");
-		if (belPinsEl == null) {
+	private void loadPinMap(SimpleLibraryCell libCell, CellLibraryCache.BelSpec belSpec, BelId belId) {
+		if (belSpec.pinMap == null) {
 			for (LibraryPin pin : libCell.getLibraryPins()) {
 				ArrayList<String> possPins = new ArrayList<>(1);
 				possPins.add(pin.getName());
@@ -407,22 +309,17 @@ public class CellLibrary implements Iterable<LibraryCell> {
 			Set<LibraryPin> unmappedPins = new HashSet<>();
 			
 			// Create the bel pin mappings for each cell pin
-			for (Element belPinEl : belPinsEl.getChildren("pin")) {
+			for (CellLibraryCache.BelPinSpec belPinSpec : belSpec.pinMap) {
 				
-				String pinName = belPinEl.getChildText("name");
-				LibraryPin pin = libCell.getLibraryPin(pinName);
+				LibraryPin pin = libCell.getLibraryPin(belPinSpec.pinName);
 				
 				// skip pins that have no default mapping
-				if (belPinEl.getChild("no_map") != null) {
+				if (belPinSpec.possibles == null) {
 					unmappedPins.add(pin);
 					continue;
 				}
 				
-				ArrayList<String> possibles = new ArrayList<>();
-				for (Element possibleEl : belPinEl.getChildren("possible")) {
-					possibles.add(possibleEl.getText());
-				}
-				possibles.trimToSize();
+				ArrayList<String> possibles = new ArrayList<>(belPinSpec.possibles);
 				pin.getPossibleBelPins().put(belId, possibles);
 			}
 			
@@ -0,0 +1,638 @@
+/*
+ * Copyright (c) 2016 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * BYU RapidSmith Tools is free software: you may redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * BYU RapidSmith Tools is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * A copy of the GNU General Public License is included with the BYU
+ * RapidSmith Tools. It can be found at doc/LICENSE.GPL3.TXT. You may
+ * also get a copy of the license at <http://www.gnu.org/licenses/>.
+ */
+
+package edu.byu.ece.rapidSmith.design.subsite;
+
+import edu.byu.ece.rapidSmith.device.PinDirection;
+import edu.byu.ece.rapidSmith.util.Exceptions;
+import org.jdom2.Document;
+import org.jdom2.Element;
+import org.jdom2.JDOMException;
+import org.jdom2.input.SAXBuilder;
+
+import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Compiled form of a cell library or macro XML file.
+ * <p>
+ * {@link #compile(Document)} extracts the contents of the XML that
+ * {@link CellLibrary} builds its library cells from.  The contents are saved in a
+ * binary file next to the XML file (with the extension replaced by
+ * {@value #CACHE_EXTENSION}) the first time the XML file is loaded.  Later loads of
+ * the XML file read the binary file instead of parsing the XML, as long as the
+ * SHA-256 hash of the XML file matches the hash stored in the binary file.
+ * <p>
+ * The binary file holds a string table and a table of the BEL ids used by the cells,
+ * followed by the cells and macros encoded as indices into these tables.  The header
+ * stores the length and CRC-32 checksum of these contents, so a truncated or
+ * corrupted file is detected and replaced.  The file is written to a temporary file
+ * that is then moved into place, so concurrent loads never read a partial file.
+ */
+final class CellLibraryCache {
+	static final String CACHE_EXTENSION = ".bin";
+	private static final int MAGIC = 0x5253434C; // RSCL
+	private static final int VERSION = 2;
+	private static final String HASH_ALGORITHM = "SHA-256";
+
+	private CellLibraryCache() { }
+
+	/**
+	 * Returns the contents of the XML file, reading them from the binary cache if it
+	 * is up to date and otherwise parsing the XML and updating the cache.
+	 */
+	static Contents load(Path xmlPath) throws IOException {
+		byte[] xml = Files.readAllBytes(xmlPath);
+		byte[] hash = hash(xml);
+		Path cachePath = getCachePath(xmlPath);
+
+		if (Files.exists(cachePath)) {
+			try {
+				Contents contents = read(cachePath, hash);
+				if (contents != null)
+					return contents;
+			} catch (IOException e) {
+				System.err.println("Warning: ignoring unreadable cell library cache " + cachePath + ": " + e.getMessage());
+			}
+		}
+
+		Contents contents;
+		try {
+			contents = compile(new SAXBuilder().build(new ByteArrayInputStream(xml)));
+		} catch (JDOMException e) {
+			throw new Exceptions.ParseException(e);
+		}
+
+		try {
+			write(cachePath, hash, contents);
+		} catch (IOException e) {
+			System.err.println("Warning: unable to write cell library cache " + cachePath + ": " + e.getMessage());
+		}
+		return contents;
+	}
+
+	/**
+	 * Returns the path of the binary cache of the XML file.
+	 */
+	static Path getCachePath(Path xmlPath) {
+		String name = xmlPath.getFileName().toString();
+		if (name.endsWith(".xml"))
+			name = name.substring(0, name.length() - 4);
+		return xmlPath.resolveSibling(name + CACHE_EXTENSION);
+	}
+
+	private static byte[] hash(byte[] data) {
+		try {
+			return MessageDigest.getInstance(HASH_ALGORITHM).digest(data);
+		} catch (NoSuchAlgorithmException e) {
+			throw new AssertionError(HASH_ALGORITHM + " is a required algorithm", e);
+		}
+	}
+
+	/* ****************
+	 *  Compiling
+	 * ****************/
+
+	/**
+	 * Extracts the cells and macros of a cell library or macro XML document.
+	 */
+	static Contents compile(Document doc) {
+		Element root = doc.getRootElement();
+		Element familyEl = root.getChild("family");
+		Contents contents = new Contents(familyEl == null ? null : familyEl.getValue());
+
+		Element cellsEl = root.getChild("cells");
+		if (cellsEl != null) {
+			for (Element cellEl : cellsEl.getChildren("cell"))
+				contents.cells.add(compileCell(cellEl));
+		}
+
+		Element macrosEl = root.getChild("macros");
+		if (macrosEl != null) {
+			for (Element macroEl : macrosEl.getChildren("macro"))
+				contents.macros.add(compileMacro(macroEl));
+		}
+		return contents;
+	}
+
+	private static CellSpec compileCell(Element cellEl) {
+		CellSpec cell = new CellSpec(cellEl.getChildText("type"));
+		cell.vccSource = cellEl.getChild("vcc_source") != null;
+		cell.gndSource = cellEl.getChild("gnd_source") != null;
+		cell.port = cellEl.getChild("is_port") != null;
+		Element lutType = cellEl.getChild("is_lut");
+		if (lutType != null)
+			cell.numLutInputs = Integer.parseInt(lutType.getChildText("num_inputs"));
+
+		Element properties = cellEl.getChild("libcellproperties");
+		if (properties != null) {
+			for (Element propertyEl : properties.getChildren("libcellproperty")) {
+				// for now, skip read only properties
+				// TODO: revisit this
+				if (propertyEl.getChild("readonly") != null)
+					continue;
+
+				String valueString = propertyEl.getChildText("values");
+				cell.properties.add(new PropertySpec(
+						propertyEl.getChildText("name"),
+						propertyEl.getChildText("default"),
+						propertyEl.getChildText("type"),
+						valueString.isEmpty() ? new String[0] : valueString.split(", ")));
+			}
+		}
+
+		compilePins(cellEl, cell.pins, false);
+
+		for (Element belEl : cellEl.getChild("bels").getChildren("bel")) {
+			Element id = belEl.getChild("id");
+			BelSpec bel = new BelSpec(id.getChildText("site_type"), id.getChildText("name"));
+
+			Element belPinsEl = belEl.getChild("pins");
+			if (belPinsEl != null) {
+				bel.pinMap = new ArrayList<>();
+				for (Element belPinEl : belPinsEl.getChildren("pin")) {
+					List<String> possibles = null;
+					if (belPinEl.getChild("no_map") == null) {
+						possibles = new ArrayList<>();
+						for (Element possibleEl : belPinEl.getChildren("possible"))
+							possibles.add(possibleEl.getText());
+					}
+					bel.pinMap.add(new BelPinSpec(belPinEl.getChildText("name"), possibles));
+				}
+			}
+
+			Element attrsEl = belEl.getChild("attributes");
+			if (attrsEl != null) {
+				for (Element attrEl : attrsEl.getChildren("attribute")) {
+					if (attrEl.getChild("is_site_property") != null) {
+						String attrName = attrEl.getChildText("name");
+						String rename = attrEl.getChildText("rename");
+						bel.siteProperties.add(attrName);
+						bel.siteProperties.add(rename == null ? attrName : rename);
+					}
+				}
+			}
+			cell.bels.add(bel);
+		}
+		return cell;
+	}
+
+	private static MacroSpec compileMacro(Element macroEl) {
+		MacroSpec macro = new MacroSpec(macroEl.getChildText("type"));
+
+		for (Element internalEl : macroEl.getChild("cells").getChildren("internal"))
+			macro.internalCells.add(new String[] { internalEl.getChildText("name"), internalEl.getChildText("type") });
+
+		compilePins(macroEl, macro.pins, true);
+
+		Element internalNetsEl = macroEl.getChild("internalNets");
+		if (internalNetsEl != null) {
+			for (Element internalNetEl : internalNetsEl.getChildren("internalNet")) {
+				String type = internalNetEl.getChildText("type");
+				macro.internalNets.add(new InternalNetSpec(
+						internalNetEl.getChildText("name"),
+						type == null ? "WIRE" : type,
+						childTexts(internalNetEl.getChild("pins"), "pinname")));
+			}
+		}
+		return macro;
+	}
+
+	private static void compilePins(Element cellEl, List<PinSpec> pins, boolean isMacro) {
+		for (Element pinEl : cellEl.getChild("pins").getChildren("pin")) {
+			String pinDirection = pinEl.getChildText("direction");
+			PinDirection direction;
+			switch (pinDirection) {
+				case "input": direction = PinDirection.IN; break;
+				case "output": direction = PinDirection.OUT; break;
+				case "inout": direction = PinDirection.INOUT; break;
+				default: throw new Exceptions.ParseException("Unrecognized pin direction while parsing the CellLibrary.xml file: " + pinDirection);
+			}
+			String pinType = pinEl.getChildText("type");
+			PinSpec pin = new PinSpec(pinEl.getChildText("name"), direction,
+					pinType == null ? CellPinType.DATA : CellPinType.valueOf(pinType));
+			if (isMacro)
+				pin.internalConnections = childTexts(pinEl.getChild("internalConnections"), "pinname");
+			pins.add(pin);
+		}
+	}
+
+	private static List<String> childTexts(Element parent, String childName) {
+		List<String> texts = new ArrayList<>();
+		for (Element child : parent.getChildren(childName))
+			texts.add(child.getText());
+		return texts;
+	}
+
+	/* ****************
+	 *  Binary format
+	 * ****************/
+
+	// Format: header with the XML hash and the length and checksum of the contents,
+	// followed by the contents: string table, BEL id table, leaf cells, macros
+	private static void write(Path cachePath, byte[] hash, Contents contents) throws IOException {
+		StringTable strings = new StringTable();
+		Map<List<String>, Integer> belIds = new LinkedHashMap<>();
+		for (CellSpec cell : contents.cells) {
+			for (BelSpec bel : cell.bels)
+				belIds.putIfAbsent(Arrays.asList(bel.siteType, bel.name), belIds.size());
+		}
+		for (List<String> belId : belIds.keySet())
+			belId.forEach(strings::index);
+
+		// the body is written first to collect the strings it uses
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(body)) {
+			writeBody(out, strings, belIds, contents);
+		}
+		ByteArrayOutputStream payload = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(payload)) {
+			out.writeInt(strings.size());
+			for (String s : strings.values())
+				out.writeUTF(s);
+			out.writeInt(belIds.size());
+			for (List<String> belId : belIds.keySet()) {
+				out.writeInt(strings.index(belId.get(0)));
+				out.writeInt(strings.index(belId.get(1)));
+			}
+			body.writeTo(out);
+		}
+		CRC32 checksum = new CRC32();
+		checksum.update(payload.toByteArray());
+
+		// write to a unique file in the same directory and move it into place so
+		// concurrent loads never see a partially written cache
+		Path dir = cachePath.toAbsolutePath().getParent();
+		Path tmp = Files.createTempFile(dir, cachePath.getFileName().toString(), ".tmp");
+		try {
+			try (DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.write(hash);
+				out.writeInt(payload.size());
+				out.writeLong(checksum.getValue());
+				payload.writeTo(out);
+			}
+			try {
+				Files.move(tmp, cachePath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tmp, cachePath, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+
+	private static void writeBody(
+			DataOutputStream out, StringTable strings, Map<List<String>, Integer> belIds, Contents contents
+	) throws IOException {
+		out.writeInt(strings.index(contents.family));
+
+		out.writeInt(contents.cells.size());
+		for (CellSpec cell : contents.cells) {
+			out.writeInt(strings.index(cell.type));
+			out.writeBoolean(cell.vccSource);
+			out.writeBoolean(cell.gndSource);
+			out.writeBoolean(cell.port);
+			out.writeInt(cell.numLutInputs == null ? -1 : cell.numLutInputs);
+
+			out.writeInt(cell.properties.size());
+			for (PropertySpec property : cell.properties) {
+				out.writeInt(strings.index(property.name));
+				out.writeInt(strings.index(property.defaultValue));
+				out.writeInt(strings.index(property.type));
+				writeStrings(out, strings, Arrays.asList(property.values));
+			}
+
+			writePins(out, strings, cell.pins);
+
+			out.writeInt(cell.bels.size());
+			for (BelSpec bel : cell.bels) {
+				out.writeInt(belIds.get(Arrays.asList(bel.siteType, bel.name)));
+				if (bel.pinMap == null) {
+					out.writeInt(-1);
+				} else {
+					out.writeInt(bel.pinMap.size());
+					for (BelPinSpec belPin : bel.pinMap) {
+						out.writeInt(strings.index(belPin.pinName));
+						out.writeBoolean(belPin.possibles != null);
+						if (belPin.possibles != null)
+							writeStrings(out, strings, belPin.possibles);
+					}
+				}
+				writeStrings(out, strings, bel.siteProperties);
+			}
+		}
+
+		out.writeInt(contents.macros.size());
+		for (MacroSpec macro : contents.macros) {
+			out.writeInt(strings.index(macro.type));
+			out.writeInt(macro.internalCells.size());
+			for (String[] internal : macro.internalCells) {
+				out.writeInt(strings.index(internal[0]));
+				out.writeInt(strings.index(internal[1]));
+			}
+			writePins(out, strings, macro.pins);
+			out.writeInt(macro.internalNets.size());
+			for (InternalNetSpec net : macro.internalNets) {
+				out.writeInt(strings.index(net.name));
+				out.writeInt(strings.index(net.type));
+				writeStrings(out, strings, net.pinNames);
+			}
+		}
+	}
+
+	private static void writePins(DataOutputStream out, StringTable strings, List<PinSpec> pins) throws IOException {
+		out.writeInt(pins.size());
+		for (PinSpec pin : pins) {
+			out.writeInt(strings.index(pin.name));
+			out.writeByte(pin.direction.ordinal());
+			out.writeByte(pin.type.ordinal());
+			out.writeBoolean(pin.internalConnections != null);
+			if (pin.internalConnections != null)
+				writeStrings(out, strings, pin.internalConnections);
+		}
+	}
+
+	private static void writeStrings(DataOutputStream out, StringTable strings, List<String> list) throws IOException {
+		out.writeInt(list.size());
+		for (String s : list)
+			out.writeInt(strings.index(s));
+	}
+
+	// Returns null if the file is for a different version or XML file
+	private static Contents read(Path cachePath, byte[] hash) throws IOException {
+		byte[] payload;
+		long checksum;
+		try (DataInputStream in = new DataInputStream(
+				new BufferedInputStream(Files.newInputStream(cachePath)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION)
+				return null;
+			byte[] storedHash = new byte[hash.length];
+			in.readFully(storedHash);
+			if (!Arrays.equals(hash, storedHash))
+				return null;
+
+			int length = in.readInt();
+			checksum = in.readLong();
+			if (length < 0 || length > Files.size(cachePath))
+				throw new IOException("invalid length " + length);
+			payload = new byte[length];
+			in.readFully(payload);
+			if (in.read() != -1)
+				throw new IOException("unexpected data after the contents");
+		}
+
+		CRC32 actual = new CRC32();
+		actual.update(payload);
+		if (actual.getValue() != checksum)
+			throw new IOException("checksum mismatch");
+		return readPayload(new DataInputStream(new ByteArrayInputStream(payload)));
+	}
+
+	private static Contents readPayload(DataInputStream in) throws IOException {
+		String[] strings = new String[in.readInt()];
+		for (int i = 0; i < strings.length; i++)
+			strings[i] = in.readUTF();
+		String[][] belIds = new String[in.readInt()][];
+		for (int i = 0; i < belIds.length; i++)
+			belIds[i] = new String[] { readString(in, strings), readString(in, strings) };
+
+		Contents contents = new Contents(readString(in, strings));
+
+		int numCells = in.readInt();
+		for (int i = 0; i < numCells; i++) {
+			CellSpec cell = new CellSpec(readString(in, strings));
+			cell.vccSource = in.readBoolean();
+			cell.gndSource = in.readBoolean();
+			cell.port = in.readBoolean();
+			int numLutInputs = in.readInt();
+			cell.numLutInputs = numLutInputs < 0 ? null : numLutInputs;
+
+			int numProperties = in.readInt();
+			for (int j = 0; j < numProperties; j++) {
+				String name = readString(in, strings);
+				String defaultValue = readString(in, strings);
+				String type = readString(in, strings);
+				List<String> values = readStrings(in, strings);
+				cell.properties.add(new PropertySpec(name, defaultValue, type, values.toArray(new String[values.size()])));
+			}
+
+			readPins(in, strings, cell.pins);
+
+			int numBels = in.readInt();
+			for (int j = 0; j < numBels; j++) {
+				String[] belId = belIds[in.readInt()];
+				BelSpec bel = new BelSpec(belId[0], belId[1]);
+				int numBelPins = in.readInt();
+				if (numBelPins >= 0) {
+					bel.pinMap = new ArrayList<>(numBelPins);
+					for (int k = 0; k < numBelPins; k++) {
+						String pinName = readString(in, strings);
+						List<String> possibles = in.readBoolean() ? readStrings(in, strings) : null;
+						bel.pinMap.add(new BelPinSpec(pinName, possibles));
+					}
+				}
+				bel.siteProperties.addAll(readStrings(in, strings));
+				cell.bels.add(bel);
+			}
+			contents.cells.add(cell);
+		}
+
+		int numMacros = in.readInt();
+		for (int i = 0; i < numMacros; i++) {
+			MacroSpec macro = new MacroSpec(readString(in, strings));
+			int numInternal = in.readInt();
+			for (int j = 0; j < numInternal; j++)
+				macro.internalCells.add(new String[] { readString(in, strings), readString(in, strings) });
+			readPins(in, strings, macro.pins);
+			int numNets = in.readInt();
+			for (int j = 0; j < numNets; j++) {
+				String name = readString(in, strings);
+				String type = readString(in, strings);
+				macro.internalNets.add(new InternalNetSpec(name, type, readStrings(in, strings)));
+			}
+			contents.macros.add(macro);
+		}
+		return contents;
+	}
+
+	private static void readPins(DataInputStream in, String[] strings, List<PinSpec> pins) throws IOException {
+		PinDirection[] directions = PinDirection.values();
+		CellPinType[] types = CellPinType.values();
+		int numPins = in.readInt();
+		for (int i = 0; i < numPins; i++) {
+			PinSpec pin = new PinSpec(readString(in, strings),
+					directions[in.readUnsignedByte()], types[in.readUnsignedByte()]);
+			if (in.readBoolean())
+				pin.internalConnections = readStrings(in, strings);
+			pins.add(pin);
+		}
+	}
+
+	private static String readString(DataInputStream in, String[] strings) throws IOException {
+		int index = in.readInt();
+		return index < 0 ? null : strings[index];
+	}
+
+	private static List<String> readStrings(DataInputStream in, String[] strings) throws IOException {
+		String[] list = new String[in.readInt()];
+		for (int i = 0; i < list.length; i++)
+			list[i] = readString(in, strings);
+		return new ArrayList<>(Arrays.asList(list));
+	}
+
+	/** Assigns indices to strings in the order they are first seen.  Null is -1. */
+	private static final class StringTable {
+		private final Map<String, Integer> indices = new LinkedHashMap<>();
+
+		int index(String s) {
+			if (s == null)
+				return -1;
+			return indices.computeIfAbsent(s, k -> indices.size());
+		}
+
+		int size() {
+			return indices.size();
+		}
+
+		Collection<String> values() {
+			return indices.keySet();
+		}
+	}
+
+	/* ****************
+	 *  Contents
+	 * ****************/
+
+	/**
+	 * The cells and macros of a cell library or macro file.
+	 */
+	static final class Contents {
+		/** Name of the family of the library, or null if the file does not specify one */
+		final String family;
+		final List<CellSpec> cells = new ArrayList<>();
+		final List<MacroSpec> macros = new ArrayList<>();
+
+		Contents(String family) {
+			this.family = family;
+		}
+	}
+
+	static final class CellSpec {
+		final String type;
+		boolean vccSource;
+		boolean gndSource;
+		boolean port;
+		Integer numLutInputs;
+		final List<PropertySpec> properties = new ArrayList<>();
+		final List<PinSpec> pins = new ArrayList<>();
+		final List<BelSpec> bels = new ArrayList<>();
+
+		CellSpec(String type) {
+			this.type = type;
+		}
+	}
+
+	static final class PropertySpec {
+		final String name;
+		final String defaultValue;
+		final String type;
+		final String[] values;
+
+		PropertySpec(String name, String defaultValue, String type, String[] values) {
+			this.name = name;
+			this.defaultValue = defaultValue;
+			this.type = type;
+			this.values = values;
+		}
+	}
+
+	static final class PinSpec {
+		final String name;
+		final PinDirection direction;
+		final CellPinType type;
+		/** Names of the internal pins connected to a macro pin, null for leaf cells */
+		List<String> internalConnections;
+
+		PinSpec(String name, PinDirection direction, CellPinType type) {
+			this.name = name;
+			this.direction = direction;
+			this.type = type;
+		}
+	}
+
+	static final class BelSpec {
+		final String siteType;
+		final String name;
+		/** Explicit pin mappings on this BEL, or null to map each pin to the BEL pin of the same name */
+		List<BelPinSpec> pinMap;
+		/** Alternating attribute names and the site properties they are renamed to */
+		final List<String> siteProperties = new ArrayList<>();
+
+		BelSpec(String siteType, String name) {
+			this.siteType = siteType;
+			this.name = name;
+		}
+	}
+
+	static final class BelPinSpec {
+		final String pinName;
+		/** The possible BEL pins of the cell pin, or null if the pin is not mapped */
+		final List<String> possibles;
+
+		BelPinSpec(String pinName, List<String> possibles) {
+			this.pinName = pinName;
+			this.possibles = possibles;
+		}
+	}
+
+	static final class MacroSpec {
+		final String type;
+		/** Name and leaf cell type of each internal cell */
+		final List<String[]> internalCells = new ArrayList<>();
+		final List<PinSpec> pins = new ArrayList<>();
+		final List<InternalNetSpec> internalNets = new ArrayList<>();
+
+		MacroSpec(String type) {
+			this.type = type;
+		}
+	}
+
+	static final class InternalNetSpec {
+		final String name;
+		final String type;
+		final List<String> pinNames;
+
+		InternalNetSpec(String name, String type, List<String> pinNames) {
+			this.name = name;
+			this.type = type;
+			this.pinNames = pinNames;
+		}
+	}
+}
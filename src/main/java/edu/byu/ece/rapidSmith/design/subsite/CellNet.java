@@ -62,6 +62,8 @@ public class CellNet implements Serializable {
 	private boolean isInternal;
 	/** Route status of the net*/
 	private RouteStatus routeStatus;
+	/** Number of CARRY cells with both their CI and CYINIT pins attached to the net */
+	private int carryInitPairCount;
 	/** Aliases for this cell net */
 	private Set<CellNet> aliases;
 	
@@ -94,6 +96,7 @@ public class CellNet implements Serializable {
 		this.isIntrasite = false;
 		this.properties = new PropertyList();
 		init();
+		this.routeStatus = evaluateRouteStatus();
 	}
 
 	private void init() {
@@ -126,6 +129,7 @@ public class CellNet implements Serializable {
 	 */
 	public void setType(NetType type) {
 		this.type = type;
+		updateRouteStatus();
 	}
 	
 	/**
@@ -319,6 +323,9 @@ public class CellNet implements Serializable {
 		if (pin.getNet() != null)
 			throw new Exceptions.DesignAssemblyException("Pin " + pin.getFullName() + " already connected to net: " + pin.getNet().getName());
 		
+		if (isCarryInitPin(pin) && pins.contains(getCarryInitPartner(pin)))
+			carryInitPairCount++;
+
 		pins.add(pin);
 		pin.setNet(this);
 		
@@ -334,6 +341,7 @@ public class CellNet implements Serializable {
 				throw new Exceptions.DesignAssemblyException("Cannot create multiply-sourced net.");
 			sourcePin = pin;
 		}
+		updateRouteStatus();
 	}
 	
 	/**
@@ -373,6 +381,8 @@ public class CellNet implements Serializable {
 		}
 		
 		pins.clear();
+		carryInitPairCount = 0;
+		updateRouteStatus();
 	}
 	
 	/**
@@ -416,6 +426,9 @@ public class CellNet implements Serializable {
 		if (!used)
 			throw new Exceptions.DesignAssemblyException("Pin not found in net");
 
+		if (isCarryInitPin(pin) && pins.contains(getCarryInitPartner(pin)))
+			carryInitPairCount--;
+
 		if(pin.isOutpin()){
 			sourcePins.remove(pin);
 		}
@@ -432,6 +445,24 @@ public class CellNet implements Serializable {
 		}
 
 		pin.clearNet();
+		updateRouteStatus();
+	}
+
+	/**
+	 * Returns {@code true} if the pin is the CI or CYINIT pin of a CARRY cell.
+	 */
+	private static boolean isCarryInitPin(CellPin pin) {
+		Cell cell = pin.getCell();
+		if (cell == null || !cell.getType().contains("CARRY"))
+			return false;
+		return pin.getName().equals("CI") || pin.getName().equals("CYINIT");
+	}
+
+	/**
+	 * Returns the CYINIT pin for a CI pin, or the CI pin for a CYINIT pin.
+	 */
+	private static CellPin getCarryInitPartner(CellPin pin) {
+		return pin.getCell().getPin(pin.getName().equals("CI") ? "CYINIT" : "CI");
 	}
 
 	/**
@@ -768,7 +799,8 @@ public class CellNet implements Serializable {
 		if(routedSinks == null) {
 			routedSinks = new HashSet<>();
 		}
-		routedSinks.add(cellPin);
+		if (routedSinks.add(cellPin))
+			updateRouteStatus();
 	}
 	
 	/**
@@ -779,11 +811,18 @@ public class CellNet implements Serializable {
 	 * 		<code>false</code> if the cellPin is not marked as a routed pin of the net.  
 	 */
 	public boolean removeRoutedSink(CellPin cellPin) {
-		return routedSinks.remove(cellPin);
+		if (routedSinks == null || !routedSinks.remove(cellPin))
+			return false;
+		updateRouteStatus();
+		return true;
 	}
 
+	/**
+	 * Marks all sinks of the net as unrouted.
+	 */
 	public void removeRoutedSinks() {
 		routedSinks = null;
+		updateRouteStatus();
 	}
 	
 	/**
@@ -798,7 +837,7 @@ public class CellNet implements Serializable {
 		sitePinToRTMap = null;
 		routedSinks = null;
 		isIntrasite = false;
-		routeStatus = RouteStatus.UNROUTED;
+		setRouteStatus(RouteStatus.UNROUTED);
 	}
 
 	/**
@@ -842,6 +881,7 @@ public class CellNet implements Serializable {
 			intersiteRoutes = new ArrayList<>();
 		}
 		this.intersiteRoutes.add(intersite);
+		updateRouteStatus();
 	}
 	
 	/**
@@ -850,6 +890,7 @@ public class CellNet implements Serializable {
 	 */
 	public void setIntersiteRouteTrees(List<RouteTree> routes) {
 		this.intersiteRoutes = routes;
+		updateRouteStatus();
 	}
 	
 	/**
@@ -1138,8 +1179,9 @@ public class CellNet implements Serializable {
 	}
 		
 	/**
-	 * Returns the current route status of net without recomputing the status. If the routing has changed,
-	 * to recompute the route status first use {@link CellNet:computeRouteStatus}.
+	 * Returns the current route status of the net. The status is maintained
+	 * incrementally as pins are connected, sinks are marked as routed, and route
+	 * trees are attached, so this call is O(1).
 	 * Possible statuses in include: <br>
 	 * 1.) UNROUTED - no sink cell pins have been routed <br>
 	 * 2.) PARTIALLY_ROUTED - some, but not all, sink cell pins that have been mapped to bel pins have been routed<br>
@@ -1154,62 +1196,68 @@ public class CellNet implements Serializable {
 	}
 
 	/**
-	 * Manually set the route status of the net. Not for normal use.
+	 * Manually set the route status of the net. Not for normal use. The status
+	 * will be overwritten the next time the routing of the net changes.
 	 * @param routeStatus the route status of the net
 	 */
 	public void setRouteStatus(RouteStatus routeStatus) {
+		RouteStatus oldStatus = this.routeStatus;
 		this.routeStatus = routeStatus;
+		if (design != null && oldStatus != routeStatus)
+			design.routeStatusChanged(oldStatus, routeStatus);
 	}
 	
 	/**
-	 * Computes and stores the route status of the net. This function should be called to recompute the status
-	 * of the route if the routing structure has been modified. If the routing structure has not been modified,
-	 * then {@link CellNet:getRouteStatus} should be used instead. Possible statuses include: <br>
+	 * Computes and stores the route status of the net. The status is already kept
+	 * up-to-date as the routing of the net changes, so this function only needs to be
+	 * called after {@link #setRouteStatus} has been used to override it. Possible statuses include: <br>
 	 * <br>
 	 * 1.) <b>UNROUTED</b> - no sink cell pins have been routed <br>
 	 * 2.) <b>PARTIALLY_ROUTED</b> - some, but not all, sink cell pins <b>that have been mapped to bel pins</b> have been routed<br>
 	 * 3.) <b>FULLY_ROUTED</b> - all sink cell pins <b>that are mapped to bel pins</b> have been routed <br> 
 	 * <br>
-	 * The complexity of this method is O(n) where n is the number of pins connected to the net.
+	 * The complexity of this method is O(1).
 	 * 
 	 * @return The current RouteStatus of the net
 	 * */
 	public RouteStatus computeRouteStatus() {
+		setRouteStatus(evaluateRouteStatus());
+		return routeStatus;
+	}
+
+	/**
+	 * Recomputes the route status after a change to the pins or routing of the net.
+	 * Called by {@link CellPin} when the BEL pin mapping of the source pin changes.
+	 */
+	void updateRouteStatus() {
+		setRouteStatus(evaluateRouteStatus());
+	}
+
+	private RouteStatus evaluateRouteStatus() {
+		if (sourcePin == null) {
+			return RouteStatus.FULLY_ROUTED;
+		}
+
 		int subtractCount = (isStaticNet() || sourcePin.isPartitionPin() || isSourcePinMapped()) ? 1 : 0;
-		int cyInitCiCount = 0;
 		// Nets from Vivado route to CI and CYINIT pins of CARRY cells in the netlist, even though only one of these pins is ever
 		// physically routed to at a time. The other pin will belong to the GND net, but it won't ever be routed to.
 		// Because of this, the extra CI/CYINIT pin should not contribute to the route status of the GND net.
-		// However, we must be aware that the extra pins may have been removed from the net within RS2.
+		// The number of such CARRY cells is tracked as pins are connected and disconnected, since the extra pins
+		// may have been removed from the net within RS2.
 		// TODO: Does this apply to VCC as well?
-		if (isGNDNet()) {
-			// Count one per cell in order to get the number to remove
-			cyInitCiCount = pins.stream().filter(cellPin -> cellPin.getCell().getType().contains("CARRY"))
-					.filter(cellPin -> (cellPin.getName().equals("CI") && pins.contains(cellPin.getCell().getPin("CYINIT")))
-							|| cellPin.getName().equals("CYINIT") && pins.contains(cellPin.getCell().getPin("CI")))
-					.map(CellPin::getCell)
-					.collect(Collectors.toSet())
-					.size();
-		}
+		int cyInitCiCount = isGNDNet() ? carryInitPairCount : 0;
+		int routedSinkCount = routedSinks == null ? 0 : routedSinks.size();
 
-		if(sourcePin == null){
-			routeStatus = RouteStatus.FULLY_ROUTED;
-			return routeStatus;
-		}
 		// A net is considered unrouted if there are no routed sinks, and no route trees connected to it
-		if (routeTreeCount() == 0 && getRoutedSinks().isEmpty()) {
-			routeStatus = RouteStatus.UNROUTED;
+		if (routeTreeCount() == 0 && routedSinkCount == 0) {
+			return RouteStatus.UNROUTED;
 		}
 		// A net is considered fully routed in all sink cell pins have been routed to
-		else if (getRoutedSinks().size() == pins.size() - subtractCount
-				|| getRoutedSinks().size() == pins.size() - subtractCount - cyInitCiCount) {
-			routeStatus = RouteStatus.FULLY_ROUTED;
+		else if (routedSinkCount == pins.size() - subtractCount
+				|| routedSinkCount == pins.size() - subtractCount - cyInitCiCount) {
+			return RouteStatus.FULLY_ROUTED;
 		}
 		// A net is otherwise considered partially routed
-		else {
-			routeStatus = RouteStatus.PARTIALLY_ROUTED;
-		}
-		
-		return routeStatus;
+		return RouteStatus.PARTIALLY_ROUTED;
 	}
 }
@@ -207,7 +207,9 @@ public abstract class CellPin implements Serializable {
 			}
 		}
 		
-		return belPinMappingSet.add(pin);
+		boolean added = belPinMappingSet.add(pin);
+		mappingChanged();
+		return added;
 	}
 	
 	/**
@@ -289,6 +291,7 @@ public abstract class CellPin implements Serializable {
 	 */
 	public void clearPinMappings() {
 		this.belPinMappingSet = null;
+		mappingChanged();
 	}
 	
 	/**
@@ -299,8 +302,24 @@ public abstract class CellPin implements Serializable {
 	public void clearPinMapping(BelPin belPin) {
 		if (belPinMappingSet != null) {
 			belPinMappingSet.remove(belPin);
+			mappingChanged();
 		}
 	}
+
+	/**
+	 * The route status of a net depends on whether its source pin is mapped,
+	 * so notify the net when the mapping of its source pin changes.  The design
+	 * is also notified since the routing of the net may no longer reach the pin.
+	 */
+	private void mappingChanged() {
+		if (net == null)
+			return;
+		if (net.getSourcePin() == this)
+			net.updateRouteStatus();
+		CellDesign design = cell.getDesign();
+		if (design != null)
+			design.netInvalidated(net);
+	}
 	
 	/**
 	 * Prints the CellPin object in the form: 
@@ -0,0 +1,404 @@
+/*
+ * Copyright (c) 2016 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * BYU RapidSmith Tools is free software: you may redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * BYU RapidSmith Tools is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * A copy of the GNU General Public License is included with the BYU
+ * RapidSmith Tools. It can be found at doc/LICENSE.GPL3.TXT. You may
+ * also get a copy of the license at <http://www.gnu.org/licenses/>.
+ */
+package edu.byu.ece.rapidSmith.design.subsite;
+
+import edu.byu.ece.rapidSmith.device.Device;
+import edu.byu.ece.rapidSmith.device.Site;
+import edu.byu.ece.rapidSmith.device.Tile;
+import edu.byu.ece.rapidSmith.device.WireConnection;
+import edu.byu.ece.rapidSmith.device.WireDirection;
+import edu.byu.ece.rapidSmith.device.WireEnumerator;
+import edu.byu.ece.rapidSmith.device.WireHashMap;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Estimates the routing congestion of a placement over the tile grid of a {@link Device}.
+ * <p>
+ * The routing supply of each tile is the number of wires in the tile that can be
+ * driven through a PIP, split into horizontal and vertical supply by the
+ * {@link WireDirection} of the wire.  Wires traveling diagonally count half in
+ * each direction.  If the device has no direction information, every PIP driven
+ * wire counts in both directions.
+ * <p>
+ * The routing demand is estimated with RUDY (Rectangular Uniform wire DensitY):
+ * each net spreads its expected wire length uniformly over its bounding box, adding
+ * {@code q/height} horizontal and {@code q/width} vertical demand to each tile of
+ * the box, where {@code q} is a correction for the number of pins on the net.
+ * <p>
+ * Nets are identified by an arbitrary key so placers with their own net
+ * representation can report bounding boxes directly with {@link #setNetBounds}.
+ * Nets of a {@link CellDesign} can be added with {@link #addDesign(CellDesign)} and
+ * updated with {@link #cellMoved(Cell)}.  Updating a net and querying the demand
+ * of a tile or rectangular region both take O(log(rows) * log(columns)) time.
+ */
+public class CongestionMap {
+	private final Device device;
+	private final int rows;
+	private final int columns;
+	/** Prefix sums of the horizontal and vertical supply, (rows+1) x (columns+1) */
+	private final double[][] hSupplySums;
+	private final double[][] vSupplySums;
+	private final DemandTree hDemand;
+	private final DemandTree vDemand;
+	private final Map<Object, NetBounds> nets = new HashMap<>();
+
+	public CongestionMap(Device device) {
+		this.device = device;
+		this.rows = device.getRows();
+		this.columns = device.getColumns();
+		this.hSupplySums = new double[rows + 1][columns + 1];
+		this.vSupplySums = new double[rows + 1][columns + 1];
+		this.hDemand = new DemandTree(rows, columns);
+		this.vDemand = new DemandTree(rows, columns);
+		computeSupply();
+	}
+
+	private void computeSupply() {
+		WireEnumerator we = device.getWireEnumerator();
+		WireDirection[] directions = we.getWireDirections();
+		boolean hasDirections = false;
+		if (directions != null) {
+			for (WireDirection direction : directions)
+				hasDirections |= getHorizontalShare(direction) > 0 || getVerticalShare(direction) > 0;
+		}
+
+		// wire hash maps are shared between tiles of the same type
+		Map<WireHashMap, double[]> supplyCache = new IdentityHashMap<>();
+		for (int row = 0; row < rows; row++) {
+			for (int col = 0; col < columns; col++) {
+				Tile tile = device.getTile(row, col);
+				double[] supply = new double[2];
+				if (tile != null && tile.getWireHashMap() != null) {
+					final boolean useDirections = hasDirections;
+					supply = supplyCache.computeIfAbsent(tile.getWireHashMap(),
+							k -> computeTileSupply(k, useDirections ? directions : null));
+				}
+				hSupplySums[row + 1][col + 1] = supply[0] + hSupplySums[row][col + 1] +
+						hSupplySums[row + 1][col] - hSupplySums[row][col];
+				vSupplySums[row + 1][col + 1] = supply[1] + vSupplySums[row][col + 1] +
+						vSupplySums[row + 1][col] - vSupplySums[row][col];
+			}
+		}
+	}
+
+	private static double[] computeTileSupply(WireHashMap wireMap, WireDirection[] directions) {
+		// count each PIP driven wire once, even if several PIPs drive it
+		Map<Integer, Boolean> driven = new HashMap<>();
+		for (WireConnection[] connections : wireMap.values()) {
+			if (connections == null)
+				continue;
+			for (WireConnection wc : connections) {
+				if (wc.isPIP() && wc.getRowOffset() == 0 && wc.getColumnOffset() == 0)
+					driven.put(wc.getWire(), Boolean.TRUE);
+			}
+		}
+
+		double[] supply = new double[2];
+		for (int wire : driven.keySet()) {
+			if (directions == null) {
+				supply[0] += 1.0;
+				supply[1] += 1.0;
+			} else {
+				supply[0] += getHorizontalShare(directions[wire]);
+				supply[1] += getVerticalShare(directions[wire]);
+			}
+		}
+		return supply;
+	}
+
+	private static double getHorizontalShare(WireDirection direction) {
+		if (direction == null)
+			return 0.0;
+		switch (direction) {
+			case EAST: case WEST: case HORIZONTAL:
+				return 1.0;
+			case EASTSOUTH: case EASTNORTH: case NORTHEAST: case NORTHWEST:
+			case SOUTHEAST: case SOUTHWEST: case WESTNORTH: case WESTSOUTH:
+				return 0.5;
+			default:
+				return 0.0;
+		}
+	}
+
+	private static double getVerticalShare(WireDirection direction) {
+		if (direction == null)
+			return 0.0;
+		switch (direction) {
+			case NORTH: case SOUTH: case VERTICAL:
+				return 1.0;
+			case EASTSOUTH: case EASTNORTH: case NORTHEAST: case NORTHWEST:
+			case SOUTHEAST: case SOUTHWEST: case WESTNORTH: case WESTSOUTH:
+				return 0.5;
+			default:
+				return 0.0;
+		}
+	}
+
+	/* ****************
+	 *  Net Demand
+	 * ****************/
+
+	/**
+	 * Sets the bounding box of a net, replacing its previous bounding box.
+	 *
+	 * @param net key identifying the net
+	 * @param minRow top row of the bounding box
+	 * @param minColumn left column of the bounding box
+	 * @param maxRow bottom row of the bounding box
+	 * @param maxColumn right column of the bounding box
+	 * @param numPins number of pins on the net
+	 */
+	public void setNetBounds(Object net, int minRow, int minColumn, int maxRow, int maxColumn, int numPins) {
+		removeNet(net);
+		NetBounds bounds = new NetBounds(clampRow(minRow), clampColumn(minColumn),
+				clampRow(maxRow), clampColumn(maxColumn), numPins);
+		nets.put(net, bounds);
+		addDemand(bounds, 1.0);
+	}
+
+	/**
+	 * Removes the demand of a net from the map.
+	 */
+	public void removeNet(Object net) {
+		NetBounds bounds = nets.remove(net);
+		if (bounds != null)
+			addDemand(bounds, -1.0);
+	}
+
+	private void addDemand(NetBounds b, double sign) {
+		int width = b.maxColumn - b.minColumn + 1;
+		int height = b.maxRow - b.minRow + 1;
+		double q = getPinCorrection(b.numPins);
+		hDemand.add(b.minRow, b.minColumn, b.maxRow, b.maxColumn, sign * q / height);
+		vDemand.add(b.minRow, b.minColumn, b.maxRow, b.maxColumn, sign * q / width);
+	}
+
+	// Approximates the wire length correction for multi-pin nets from Cheng's RISA model
+	private static double getPinCorrection(int numPins) {
+		if (numPins <= 3)
+			return 1.0;
+		return Math.min(2.79, 1.0 + 0.038 * (numPins - 3));
+	}
+
+	/**
+	 * Adds the nets of the design to the map.
+	 */
+	public void addDesign(CellDesign design) {
+		for (CellNet net : design.getNets())
+			updateNet(net);
+	}
+
+	/**
+	 * Updates the nets connected to the cell after it has been placed, moved or unplaced.
+	 */
+	public void cellMoved(Cell cell) {
+		for (CellPin pin : cell.getPins()) {
+			CellNet net = pin.getNet();
+			if (net != null)
+				updateNet(net);
+		}
+	}
+
+	/**
+	 * Recomputes the bounding box of the net from the current placement of its cells.
+	 * Static and clock nets, which use dedicated routing, and nets without placed
+	 * cells are not included.
+	 */
+	public void updateNet(CellNet net) {
+		if (net.isStaticNet() || net.isClkNet()) {
+			removeNet(net);
+			return;
+		}
+
+		int minRow = Integer.MAX_VALUE, minCol = Integer.MAX_VALUE;
+		int maxRow = -1, maxCol = -1;
+		int numPins = 0;
+		for (CellPin pin : net.getPins()) {
+			Site site = pin.getCell().getSite();
+			if (site == null)
+				continue;
+			Tile tile = site.getTile();
+			minRow = Math.min(minRow, tile.getRow());
+			maxRow = Math.max(maxRow, tile.getRow());
+			minCol = Math.min(minCol, tile.getColumn());
+			maxCol = Math.max(maxCol, tile.getColumn());
+			numPins++;
+		}
+
+		if (numPins < 2)
+			removeNet(net);
+		else
+			setNetBounds(net, minRow, minCol, maxRow, maxCol, numPins);
+	}
+
+	/* ****************
+	 *  Queries
+	 * ****************/
+
+	public double getHorizontalSupply(Tile tile) {
+		return regionSum(hSupplySums, tile.getRow(), tile.getColumn(), tile.getRow(), tile.getColumn());
+	}
+
+	public double getVerticalSupply(Tile tile) {
+		return regionSum(vSupplySums, tile.getRow(), tile.getColumn(), tile.getRow(), tile.getColumn());
+	}
+
+	public double getHorizontalDemand(Tile tile) {
+		return hDemand.sum(tile.getRow(), tile.getColumn(), tile.getRow(), tile.getColumn());
+	}
+
+	public double getVerticalDemand(Tile tile) {
+		return vDemand.sum(tile.getRow(), tile.getColumn(), tile.getRow(), tile.getColumn());
+	}
+
+	/**
+	 * Returns the ratio of demand to supply of the more congested direction of the tile.
+	 * Values above 1 indicate the tile is likely to be unroutable.
+	 */
+	public double getUtilization(Tile tile) {
+		return getRegionUtilization(tile.getRow(), tile.getColumn(), tile.getRow(), tile.getColumn());
+	}
+
+	/**
+	 * Returns the ratio of demand to supply of the more congested direction summed over
+	 * a rectangular region of tiles.  Regions without supply in a direction but with
+	 * demand in that direction return positive infinity.
+	 */
+	public double getRegionUtilization(int minRow, int minColumn, int maxRow, int maxColumn) {
+		minRow = clampRow(minRow);
+		maxRow = clampRow(maxRow);
+		minColumn = clampColumn(minColumn);
+		maxColumn = clampColumn(maxColumn);
+		double h = ratio(hDemand.sum(minRow, minColumn, maxRow, maxColumn),
+				regionSum(hSupplySums, minRow, minColumn, maxRow, maxColumn));
+		double v = ratio(vDemand.sum(minRow, minColumn, maxRow, maxColumn),
+				regionSum(vSupplySums, minRow, minColumn, maxRow, maxColumn));
+		return Math.max(h, v);
+	}
+
+	/**
+	 * Returns the total demand exceeding the supply of each tile, summed over all tiles
+	 * and both directions.  This visits every tile of the device.
+	 */
+	public double getTotalOverflow() {
+		double overflow = 0.0;
+		for (int row = 0; row < rows; row++) {
+			for (int col = 0; col < columns; col++) {
+				overflow += Math.max(0.0, hDemand.sum(row, col, row, col) - regionSum(hSupplySums, row, col, row, col));
+				overflow += Math.max(0.0, vDemand.sum(row, col, row, col) - regionSum(vSupplySums, row, col, row, col));
+			}
+		}
+		return overflow;
+	}
+
+	private static double ratio(double demand, double supply) {
+		if (supply > 0)
+			return demand / supply;
+		return demand > 1e-9 ? Double.POSITIVE_INFINITY : 0.0;
+	}
+
+	private static double regionSum(double[][] sums, int minRow, int minCol, int maxRow, int maxCol) {
+		return sums[maxRow + 1][maxCol + 1] - sums[minRow][maxCol + 1] - sums[maxRow + 1][minCol] + sums[minRow][minCol];
+	}
+
+	private int clampRow(int row) {
+		return Math.max(0, Math.min(rows - 1, row));
+	}
+
+	private int clampColumn(int column) {
+		return Math.max(0, Math.min(columns - 1, column));
+	}
+
+	private static final class NetBounds {
+		final int minRow, minColumn, maxRow, maxColumn;
+		final int numPins;
+
+		NetBounds(int minRow, int minColumn, int maxRow, int maxColumn, int numPins) {
+			this.minRow = Math.min(minRow, maxRow);
+			this.maxRow = Math.max(minRow, maxRow);
+			this.minColumn = Math.min(minColumn, maxColumn);
+			this.maxColumn = Math.max(minColumn, maxColumn);
+			this.numPins = numPins;
+		}
+	}
+
+	/**
+	 * Two dimensional Fenwick tree supporting adding a value to every cell of a
+	 * rectangle and summing the cells of a rectangle.
+	 */
+	private static final class DemandTree {
+		private final int rows;
+		private final int columns;
+		private final double[][] t1, t2, t3, t4;
+
+		DemandTree(int rows, int columns) {
+			this.rows = rows;
+			this.columns = columns;
+			t1 = new double[rows + 1][columns + 1];
+			t2 = new double[rows + 1][columns + 1];
+			t3 = new double[rows + 1][columns + 1];
+			t4 = new double[rows + 1][columns + 1];
+		}
+
+		void add(int minRow, int minCol, int maxRow, int maxCol, double value) {
+			update(minRow, minCol, value);
+			update(minRow, maxCol + 1, -value);
+			update(maxRow + 1, minCol, -value);
+			update(maxRow + 1, maxCol + 1, value);
+		}
+
+		private void update(int row, int col, double value) {
+			if (row >= rows || col >= columns)
+				return;
+			for (int i = row + 1; i <= rows; i += i & -i) {
+				for (int j = col + 1; j <= columns; j += j & -j) {
+					t1[i][j] += value;
+					t2[i][j] += value * row;
+					t3[i][j] += value * col;
+					t4[i][j] += value * row * col;
+				}
+			}
+		}
+
+		// sum of the cells (0..row, 0..col)
+		private double prefix(int row, int col) {
+			if (row < 0 || col < 0)
+				return 0.0;
+			double s1 = 0, s2 = 0, s3 = 0, s4 = 0;
+			for (int i = row + 1; i > 0; i -= i & -i) {
+				for (int j = col + 1; j > 0; j -= j & -j) {
+					s1 += t1[i][j];
+					s2 += t2[i][j];
+					s3 += t3[i][j];
+					s4 += t4[i][j];
+				}
+			}
+			return s1 * (row + 1) * (col + 1) - s2 * (col + 1) - s3 * (row + 1) + s4;
+		}
+
+		double sum(int minRow, int minCol, int maxRow, int maxCol) {
+			return prefix(maxRow, maxCol) - prefix(minRow - 1, maxCol) -
+					prefix(maxRow, minCol - 1) + prefix(minRow - 1, minCol - 1);
+		}
+	}
+}
@@ -0,0 +1,348 @@
+/*
+ * Copyright (c) 2016 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * BYU RapidSmith Tools is free software: you may redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * BYU RapidSmith Tools is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * A copy of the GNU General Public License is included with the BYU
+ * RapidSmith Tools. It can be found at doc/LICENSE.GPL3.TXT. You may
+ * also get a copy of the license at <http://www.gnu.org/licenses/>.
+ */
+
+package edu.byu.ece.rapidSmith.design.subsite;
+
+import edu.byu.ece.rapidSmith.device.Bel;
+import edu.byu.ece.rapidSmith.device.BelPin;
+import edu.byu.ece.rapidSmith.device.SitePin;
+import edu.byu.ece.rapidSmith.device.SiteType;
+import edu.byu.ece.rapidSmith.device.SiteTypeOverlay;
+import edu.byu.ece.rapidSmith.device.TileWire;
+import edu.byu.ece.rapidSmith.device.Wire;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Checks a {@link CellDesign} for placement and routing errors.  The checker
+ * verifies that:
+ * <ul>
+ *     <li>every routed sink of a net is connected back to the source of the net
+ *     through the route trees of the net,</li>
+ *     <li>no tile wire is used by the intersite routing of more than one net, and</li>
+ *     <li>every placed cell sits on a BEL that its {@link LibraryCell} can be
+ *     anchored at, in a site whose type matches the BEL.</li>
+ * </ul>
+ * Nets are checked in parallel, as are the used sites of the design.  The site
+ * types of the design are bound to each worker thread, so the design is checked
+ * with its own site types whether or not they are bound by the caller.  The design
+ * must not be modified while it is being checked.
+ * <p>
+ * In fail-fast mode, the checks stop once the first violation is found and only
+ * that violation is returned.  This is useful to verify a design after each
+ * step of an optimization where any violation is an error.
+ */
+public class DesignRuleChecker {
+	private boolean failFast = false;
+
+	/**
+	 * Sets whether the checks stop once the first violation is found.  Only that
+	 * violation is reported.
+	 */
+	public void setFailFast(boolean failFast) {
+		this.failFast = failFast;
+	}
+
+	public boolean isFailFast() {
+		return failFast;
+	}
+
+	/**
+	 * Runs all checks on the design.
+	 *
+	 * @param design the design to check
+	 * @return the violations found, sorted by rule and description.  The list is
+	 *   empty if the design passes all checks.
+	 */
+	public List<Violation> check(CellDesign design) {
+		Run run = new Run();
+		checkPlacement(design, run);
+		checkRouting(design, run);
+		return run.getViolations();
+	}
+
+	/**
+	 * Checks only the placement of the cells in the design.
+	 */
+	public List<Violation> checkPlacement(CellDesign design) {
+		Run run = new Run();
+		checkPlacement(design, run);
+		return run.getViolations();
+	}
+
+	/**
+	 * Checks only the routing of the nets in the design.
+	 */
+	public List<Violation> checkRouting(CellDesign design) {
+		Run run = new Run();
+		checkRouting(design, run);
+		return run.getViolations();
+	}
+
+	/* ****************
+	 *  Placement
+	 * ****************/
+
+	private void checkPlacement(CellDesign design, Run run) {
+		SiteTypeOverlay siteTypes = design.getSiteTypes();
+		new ArrayList<>(design.getUsedSites()).parallelStream().forEach(site -> {
+			if (run.isStopped())
+				return;
+			// the worker threads must see the site types of the design
+			try (SiteTypeOverlay.Binding ignored = siteTypes.bind()) {
+				SiteType siteType = design.getSiteType(site);
+				for (Cell cell : design.getCellsAtSite(site))
+					checkCellPlacement(cell, siteType, run);
+			}
+		});
+	}
+
+	private void checkCellPlacement(Cell cell, SiteType siteType, Run run) {
+		Bel bel = cell.getBel();
+		if (bel == null)
+			return;
+
+		if (bel.getId().getSiteType() != siteType) {
+			run.report(new Violation(Rule.SITE_TYPE_MISMATCH, cell, null, null,
+					"Cell " + cell.getName() + " is placed on " + bel.getFullName() +
+					" of type " + bel.getId().getSiteType() + " but the site is of type " + siteType));
+		}
+
+		// cells without any listed anchors (e.g. ports) are not checked
+		LibraryCell libCell = cell.getLibCell();
+		List<?> anchors = libCell.getPossibleAnchors();
+		if (anchors != null && !anchors.isEmpty() && !libCell.canAnchorAt(bel.getId())) {
+			run.report(new Violation(Rule.INVALID_ANCHOR, cell, null, null,
+					"Cell " + cell.getName() + " of type " + libCell.getName() +
+					" cannot be placed on " + bel.getFullName()));
+		}
+	}
+
+	/* ****************
+	 *  Routing
+	 * ****************/
+
+	private void checkRouting(CellDesign design, Run run) {
+		// the first net found using each tile wire
+		Map<Wire, CellNet> wireUsers = new ConcurrentHashMap<>();
+		SiteTypeOverlay siteTypes = design.getSiteTypes();
+		new ArrayList<>(design.getNets()).parallelStream().forEach(net -> {
+			if (run.isStopped())
+				return;
+			// the site pins reached by the routing depend on the site types of the design
+			try (SiteTypeOverlay.Binding ignored = siteTypes.bind()) {
+				checkConnectivity(net, run);
+				checkWireConflicts(net, wireUsers, run);
+			}
+		});
+	}
+
+	/**
+	 * Checks that each BEL pin of each routed sink of the net is reached by a route
+	 * tree of the net that is connected to the source of the net.
+	 */
+	private void checkConnectivity(CellNet net, Run run) {
+		Set<CellPin> routedSinks = net.getRoutedSinks();
+		if (routedSinks == null || routedSinks.isEmpty())
+			return;
+
+		RouteTree source = net.getSourceRouteTree();
+		Set<SitePin> exitPins = new HashSet<>();
+		if (source != null) {
+			for (RouteTree node : source) {
+				SitePin pin = node.getConnectedSitePin();
+				if (pin != null)
+					exitPins.add(pin);
+			}
+		}
+
+		// sink site pins reached by the intersite routing.  Intersite routes of
+		// static nets and nets without a placed source are sourced by the device.
+		boolean checkSourced = source != null && !net.isStaticNet();
+		Set<SitePin> reachedPins = new HashSet<>();
+		for (RouteTree intersite : net.getIntersiteRouteTreeList()) {
+			if (checkSourced && !isSourcedBy(intersite, exitPins)) {
+				run.report(new Violation(Rule.UNSOURCED_ROUTE, null, net, intersite.getWire(),
+						"Route of net " + net.getName() + " starting at " + wireName(intersite.getWire()) +
+						" is not driven by the source of the net"));
+			}
+			for (RouteTree node : intersite) {
+				SitePin pin = node.getConnectedSitePin();
+				if (pin != null)
+					reachedPins.add(pin);
+			}
+		}
+
+		for (CellPin sink : routedSinks) {
+			for (BelPin belPin : sink.getMappedBelPins()) {
+				RouteTree leaf = net.getSinkRouteTree(belPin);
+				if (leaf == null) {
+					run.report(new Violation(Rule.UNROUTED_SINK, sink.getCell(), net, null,
+							"Sink " + sink.getFullName() + " of net " + net.getName() +
+							" is marked routed but has no route to BEL pin " + belPin));
+					continue;
+				}
+				RouteTree root = leaf.getRoot();
+				if (root == source)
+					continue;
+				SitePin sitePin = root.getWire().getReverseConnectedPin();
+				if (sitePin == null || !reachedPins.contains(sitePin)) {
+					run.report(new Violation(Rule.DISCONNECTED_SINK, sink.getCell(), net, root.getWire(),
+							"Route to sink " + sink.getFullName() + " of net " + net.getName() +
+							" starts at " + wireName(root.getWire()) + " which is not reached from the source"));
+				}
+			}
+		}
+	}
+
+	private static boolean isSourcedBy(RouteTree intersite, Set<SitePin> exitPins) {
+		for (SitePin pin : exitPins) {
+			if (pin.getExternalWire().equals(intersite.getWire()))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Claims the tile wires of the intersite routing of the net, reporting the wires
+	 * already claimed by another net.
+	 */
+	private void checkWireConflicts(CellNet net, Map<Wire, CellNet> wireUsers, Run run) {
+		Collection<CellNet> aliases = net.getAliases();
+		for (RouteTree intersite : net.getIntersiteRouteTreeList()) {
+			for (RouteTree node : intersite) {
+				Wire wire = node.getWire();
+				if (!(wire instanceof TileWire))
+					continue;
+				CellNet other = wireUsers.putIfAbsent(wire, net);
+				if (other == null || other == net || (aliases != null && aliases.contains(other)))
+					continue;
+				run.report(new Violation(Rule.WIRE_CONFLICT, null, net, wire,
+						"Wire " + wireName(wire) + " is used by nets " + other.getName() +
+						" and " + net.getName()));
+				if (run.isStopped())
+					return;
+			}
+		}
+	}
+
+	private static String wireName(Wire wire) {
+		return wire.getTile().getName() + "/" + wire.getName();
+	}
+
+	/**
+	 * The violations found by a single call to the checker.
+	 */
+	private final class Run {
+		private final Collection<Violation> violations = new ConcurrentLinkedQueue<>();
+		private final AtomicBoolean stopped = new AtomicBoolean(false);
+
+		void report(Violation violation) {
+			// in fail-fast mode, only the first of the concurrently found violations is kept
+			if (failFast && !stopped.compareAndSet(false, true))
+				return;
+			violations.add(violation);
+		}
+
+		boolean isStopped() {
+			return stopped.get();
+		}
+
+		List<Violation> getViolations() {
+			List<Violation> list = new ArrayList<>(violations);
+			list.sort(Comparator.comparing(Violation::getRule)
+					.thenComparing(Violation::getDescription));
+			return list;
+		}
+	}
+
+	/**
+	 * The rules checked by the {@link DesignRuleChecker}.
+	 */
+	public enum Rule {
+		/** A placed cell's site is not of the type of the BEL the cell is placed on */
+		SITE_TYPE_MISMATCH,
+		/** A cell is placed on a BEL that its library cell cannot be anchored at */
+		INVALID_ANCHOR,
+		/** An intersite route of a net is not driven by the source of the net */
+		UNSOURCED_ROUTE,
+		/** A sink marked as routed has no route tree to its BEL pin */
+		UNROUTED_SINK,
+		/** A sink's route tree is not reached by the routing from the source */
+		DISCONNECTED_SINK,
+		/** A wire is used by more than one net */
+		WIRE_CONFLICT
+	}
+
+	/**
+	 * A single violation of a design rule.  Depending on the rule, the violation
+	 * refers to the offending cell, net and wire; the ones that do not apply are
+	 * null.
+	 */
+	public static final class Violation {
+		private final Rule rule;
+		private final Cell cell;
+		private final CellNet net;
+		private final Wire wire;
+		private final String description;
+
+		Violation(Rule rule, Cell cell, CellNet net, Wire wire, String description) {
+			this.rule = rule;
+			this.cell = cell;
+			this.net = net;
+			this.wire = wire;
+			this.description = description;
+		}
+
+		public Rule getRule() {
+			return rule;
+		}
+
+		public Cell getCell() {
+			return cell;
+		}
+
+		public CellNet getNet() {
+			return net;
+		}
+
+		public Wire getWire() {
+			return wire;
+		}
+
+		public String getDescription() {
+			return description;
+		}
+
+		@Override
+		public String toString() {
+			return rule + ": " + description;
+		}
+	}
+}
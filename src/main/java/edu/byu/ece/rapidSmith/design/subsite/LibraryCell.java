@@ -24,6 +24,7 @@ import edu.byu.ece.rapidSmith.device.Bel;
 import edu.byu.ece.rapidSmith.device.BelId;
 
 import java.io.Serializable;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -43,6 +44,8 @@ public abstract class LibraryCell implements Serializable {
 	private Map<String, Property> defaultProperties;
 	/** Cell configuration properties */
 	private final Map<String, LibraryCellProperty> configurableProperties;
+	/** Ordinals of the BEL ids in {@link #getPossibleAnchors()} */
+	private transient volatile BitSet anchorSet;
 
 	/**
 	 * Library Cell constructor
@@ -242,6 +245,36 @@ public abstract class LibraryCell implements Serializable {
 	 */
 	abstract public List<BelId> getPossibleAnchors();
 
+	/**
+	 * Tests if cells of this type can be placed on BELs with the specified id.
+	 * Unlike searching {@link #getPossibleAnchors()}, this check runs in constant
+	 * time.  Macro cells cannot be placed on any BEL.
+	 *
+	 * @param belId id of the BEL to test
+	 * @return true if the BEL id is a possible anchor of this cell type
+	 */
+	public boolean canAnchorAt(BelId belId) {
+		BitSet anchors = anchorSet;
+		if (anchors == null)
+			anchors = updateAnchorSet();
+		return anchors.get(belId.ordinal());
+	}
+
+	/**
+	 * Rebuilds the possible anchor set from {@link #getPossibleAnchors()}.  Should
+	 * be called whenever the possible anchors of this cell change.
+	 */
+	protected BitSet updateAnchorSet() {
+		BitSet anchors = new BitSet();
+		List<BelId> possibleAnchors = getPossibleAnchors();
+		if (possibleAnchors != null) {
+			for (BelId anchor : possibleAnchors)
+				anchors.set(anchor.ordinal());
+		}
+		anchorSet = anchors;
+		return anchors;
+	}
+
 	/**
 	 * Returns a list of site properties that are shared across a {@link Bel} Type.
 	 * For example, all Flip Flop Bels in a Site, must all be either rising edge or
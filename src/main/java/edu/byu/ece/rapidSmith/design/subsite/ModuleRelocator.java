@@ -0,0 +1,662 @@
+/*
+ * Copyright (c) 2016 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * BYU RapidSmith Tools is free software: you may redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * BYU RapidSmith Tools is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * A copy of the GNU General Public License is included with the BYU
+ * RapidSmith Tools. It can be found at doc/LICENSE.GPL3.TXT. You may
+ * also get a copy of the license at <http://www.gnu.org/licenses/>.
+ */
+package edu.byu.ece.rapidSmith.design.subsite;
+
+import edu.byu.ece.rapidSmith.device.*;
+import edu.byu.ece.rapidSmith.util.Exceptions;
+
+import java.util.*;
+
+/**
+ * Moves a placed and routed group of cells and nets of a {@link CellDesign} to
+ * another location of the device without re-placing or re-routing it.
+ * <p>
+ * A {@link Module} is created from the cells and nets to move.  Its footprint is
+ * the set of tiles its sites and routing occupy.  A module can be moved by a row
+ * and column offset if every tile of the footprint has a tile of the same type at
+ * the offset.  Because tiles of the same type share their wire enumerations and
+ * connection maps, the placement and routing of the module are translated by
+ * mapping each tile to its counterpart: BELs, BEL pins and site pins are looked up
+ * by name in the corresponding site, and every connection of a {@link RouteTree}
+ * is looked up in the connections of the translated wire.  The translation is
+ * computed completely before the design is modified and the types of the target
+ * sites are set last.  If applying the relocation fails, the placement, routing and
+ * site types of the module are restored, so a failed relocation leaves the design
+ * unchanged.
+ * <p>
+ * Nets that connect module cells to cells outside of the module are not part of
+ * the module.  They are reported by {@link Module#getExternalNets()} and need to
+ * be rerouted after the module has been moved.
+ * <p>
+ * Relocations are also checked against the intersite routing of the rest of the
+ * design.  The wires used by the design are indexed on the first check and the
+ * index is kept up to date by {@link #relocate(Module, int, int)}.  Call
+ * {@link #invalidateRouting()} after the routing of the design is modified by
+ * other means.
+ */
+public class ModuleRelocator {
+	private final CellDesign design;
+	private final Device device;
+	private Map<Wire, CellNet> usedWires;
+
+	/**
+	 * Creates a new relocator for the design.
+	 *
+	 * @param design the design containing the modules to move
+	 * @param device the device the design is implemented on
+	 */
+	public ModuleRelocator(CellDesign design, Device device) {
+		this.design = Objects.requireNonNull(design);
+		this.device = Objects.requireNonNull(device);
+	}
+
+	/**
+	 * Creates a module from the specified cells and nets.  Macro cells are replaced
+	 * by their internal cells.  All cells must be placed, every pin of the nets must
+	 * be on a cell of the module and the sites used by the module cannot contain cells
+	 * outside of the module.
+	 *
+	 * @param cells the cells of the module
+	 * @param nets the nets of the module
+	 * @return the new module
+	 * @throws IllegalArgumentException if the cells and nets do not form a module
+	 */
+	public Module createModule(Collection<Cell> cells, Collection<CellNet> nets) {
+		Set<Cell> moduleCells = new LinkedHashSet<>();
+		for (Cell cell : cells) {
+			if (cell.getDesign() != design)
+				throw new IllegalArgumentException("Cell not in the design: " + cell.getName());
+			if (cell.isMacro())
+				moduleCells.addAll(cell.getInternalCells());
+			else
+				moduleCells.add(cell);
+		}
+
+		Set<Site> sites = new LinkedHashSet<>();
+		for (Cell cell : moduleCells) {
+			if (!cell.isPlaced())
+				throw new IllegalArgumentException("Cell is not placed: " + cell.getName());
+			sites.add(cell.getSite());
+		}
+		for (Site site : sites) {
+			for (Cell other : design.getCellsAtSite(site)) {
+				if (!moduleCells.contains(other))
+					throw new IllegalArgumentException("Site " + site.getName() +
+						" is shared with cell " + other.getName() + " outside of the module");
+			}
+		}
+
+		Set<CellNet> moduleNets = new LinkedHashSet<>(nets);
+		for (CellNet net : moduleNets) {
+			for (CellPin pin : net.getPins()) {
+				if (pin.getCell() == null || !moduleCells.contains(pin.getCell()))
+					throw new IllegalArgumentException("Net " + net.getName() +
+						" connects to pin " + pin.getFullName() + " outside of the module");
+			}
+		}
+
+		Set<CellNet> externalNets = new LinkedHashSet<>();
+		for (Cell cell : moduleCells) {
+			for (CellPin pin : cell.getPins()) {
+				CellNet net = pin.getNet();
+				if (net != null && !moduleNets.contains(net))
+					externalNets.add(net);
+			}
+		}
+
+		Set<Tile> footprint = new LinkedHashSet<>();
+		for (Site site : sites)
+			footprint.add(site.getTile());
+		for (CellNet net : moduleNets) {
+			for (RouteTree tree : routeTrees(net)) {
+				for (RouteTree node : tree)
+					footprint.add(node.getWire().getTile());
+			}
+		}
+
+		return new Module(moduleCells, moduleNets, externalNets, sites, footprint);
+	}
+
+	/**
+	 * Checks if the module can be moved by the specified offset.
+	 *
+	 * @param module the module to move
+	 * @param rowOffset the number of tile rows to move the module by
+	 * @param colOffset the number of tile columns to move the module by
+	 * @return {@code null} if the module can be moved, otherwise the reason it cannot
+	 */
+	public String checkRelocation(Module module, int rowOffset, int colOffset) {
+		for (Tile tile : module.footprint) {
+			Tile target = device.getTile(tile.getRow() + rowOffset, tile.getColumn() + colOffset);
+			if (target == null)
+				return "tile " + tile.getName() + " moves off of the device";
+			if (target.getType() != tile.getType())
+				return "tile " + tile.getName() + " of type " + tile.getType() +
+					" maps to tile " + target.getName() + " of type " + target.getType();
+		}
+
+		Set<Site> reserved = design.getReservedSites();
+		for (Site site : module.sites) {
+			Site target = translateSite(site, rowOffset, colOffset);
+			if (reserved != null && reserved.contains(target))
+				return "site " + target.getName() + " is reserved";
+			Collection<Cell> others = design.getCellsAtSite(target);
+			if (others == null)
+				continue;
+			for (Cell other : others) {
+				if (!module.cells.contains(other))
+					return "site " + target.getName() + " is used by cell " + other.getName();
+			}
+		}
+
+		Map<Wire, CellNet> used = getUsedWires();
+		for (CellNet net : module.nets) {
+			for (RouteTree tree : net.getIntersiteRouteTreeList()) {
+				for (RouteTree node : tree) {
+					Wire wire = node.getWire();
+					Tile target = device.getTile(wire.getTile().getRow() + rowOffset,
+						wire.getTile().getColumn() + colOffset);
+					CellNet owner = used.get(new TileWire(target, wire.getWireEnum()));
+					if (owner != null && !module.nets.contains(owner))
+						return "wire " + target.getName() + "/" + wire.getWireName() +
+							" is used by net " + owner.getName();
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns all offsets the module can be moved by, ordered by their distance from
+	 * the current location of the module.  The offset of the current location is not
+	 * included.
+	 *
+	 * @param module the module to move
+	 * @return the compatible offsets as {@code {rowOffset, colOffset}} pairs
+	 */
+	public List<int[]> findCompatibleOffsets(Module module) {
+		int minRow = Integer.MAX_VALUE, maxRow = Integer.MIN_VALUE;
+		int minCol = Integer.MAX_VALUE, maxCol = Integer.MIN_VALUE;
+		for (Tile tile : module.footprint) {
+			minRow = Math.min(minRow, tile.getRow());
+			maxRow = Math.max(maxRow, tile.getRow());
+			minCol = Math.min(minCol, tile.getColumn());
+			maxCol = Math.max(maxCol, tile.getColumn());
+		}
+
+		List<int[]> offsets = new ArrayList<>();
+		if (module.footprint.isEmpty())
+			return offsets;
+
+		// only try offsets where the first tile of the footprint lands on a tile of its type
+		Tile anchor = module.footprint.iterator().next();
+		for (int dr = -minRow; dr < device.getRows() - maxRow; dr++) {
+			for (int dc = -minCol; dc < device.getColumns() - maxCol; dc++) {
+				if (dr == 0 && dc == 0)
+					continue;
+				Tile target = device.getTile(anchor.getRow() + dr, anchor.getColumn() + dc);
+				if (target == null || target.getType() != anchor.getType())
+					continue;
+				if (checkRelocation(module, dr, dc) == null)
+					offsets.add(new int[] {dr, dc});
+			}
+		}
+		offsets.sort(Comparator.comparingInt(o -> Math.abs(o[0]) + Math.abs(o[1])));
+		return offsets;
+	}
+
+	/**
+	 * Moves the module by the specified offset.  The placement, pin mappings, site
+	 * PIPs and routing of the module are moved with it.  The nets returned by
+	 * {@link Module#getExternalNets()} are left unchanged and need to be rerouted.
+	 *
+	 * @param module the module to move
+	 * @param rowOffset the number of tile rows to move the module by
+	 * @param colOffset the number of tile columns to move the module by
+	 * @throws Exceptions.DesignAssemblyException if the module cannot be moved by the offset
+	 */
+	public void relocate(Module module, int rowOffset, int colOffset) {
+		String reason = checkRelocation(module, rowOffset, colOffset);
+		if (reason != null)
+			throw new Exceptions.DesignAssemblyException("Cannot relocate module: " + reason);
+
+		// compute the complete translation before modifying the design.  BELs are looked
+		// up with the type of the source site so the target site types are not needed.
+		Translation t = new Translation(rowOffset, colOffset);
+		Map<Site, Site> siteMap = new LinkedHashMap<>();
+		Map<Site, SiteType> siteTypes = new HashMap<>();
+		for (Site site : module.sites) {
+			Site target = t.site(site);
+			SiteType type = design.getSiteType(site);
+			if (!Arrays.asList(target.getPossibleTypes()).contains(type))
+				throw new Exceptions.DesignAssemblyException("Cannot relocate module: site " +
+					target.getName() + " cannot be of type " + type);
+			siteMap.put(site, target);
+			siteTypes.put(site, type);
+		}
+
+		List<NetState> netStates = new ArrayList<>(module.nets.size());
+		for (CellNet net : module.nets)
+			netStates.add(NetState.translated(net, t));
+
+		Map<Cell, Bel> placements = new LinkedHashMap<>();
+		Map<CellPin, List<BelPin>> pinMappings = new HashMap<>();
+		for (Cell cell : module.cells) {
+			Bel bel = t.bel(cell.getBel());
+			placements.put(cell, bel);
+			for (CellPin pin : cell.getPins()) {
+				if (pin.getMappedBelPinCount() == 0)
+					continue;
+				List<BelPin> mapped = new ArrayList<>(pin.getMappedBelPinCount());
+				for (BelPin belPin : pin.getMappedBelPins())
+					mapped.add(t.belPin(belPin));
+				pinMappings.put(pin, mapped);
+			}
+		}
+
+		// the current state of the module, restored if the relocation fails
+		Snapshot snapshot = new Snapshot(module, siteMap.values());
+
+		try {
+			removeFromUsedWires(module);
+			for (Cell cell : module.cells)
+				design.unplaceCell(cell);
+			for (Site site : module.sites)
+				design.clearSitePipsAtSite(site);
+
+			for (Map.Entry<Cell, Bel> e : placements.entrySet())
+				design.placeCell(e.getKey(), e.getValue());
+			for (Map.Entry<CellPin, List<BelPin>> e : pinMappings.entrySet())
+				e.getKey().mapToBelPins(e.getValue());
+			for (Map.Entry<Site, Set<Integer>> e : snapshot.sitePips.entrySet())
+				design.setUsedSitePipsAtSite(siteMap.get(e.getKey()), new HashSet<>(e.getValue()));
+			for (Map.Entry<Site, Map<String, String>> e : snapshot.pipInputVals.entrySet())
+				design.addPIPInputValsAtSite(siteMap.get(e.getKey()), new HashMap<>(e.getValue()));
+
+			for (NetState state : netStates)
+				state.apply();
+
+			for (Map.Entry<Site, Site> e : siteMap.entrySet())
+				design.setSiteType(e.getValue(), siteTypes.get(e.getKey()));
+		} catch (RuntimeException e) {
+			snapshot.restore(module);
+			throw e;
+		}
+
+		// the vacated sites are no longer configured by the design
+		for (Site site : module.sites) {
+			if (!siteMap.containsValue(site))
+				design.getSiteTypes().clearType(site);
+		}
+
+		Set<Tile> footprint = new LinkedHashSet<>();
+		for (Tile tile : module.footprint)
+			footprint.add(t.tile(tile));
+		module.sites.clear();
+		module.sites.addAll(siteMap.values());
+		module.footprint.clear();
+		module.footprint.addAll(footprint);
+		addToUsedWires(module);
+	}
+
+	/**
+	 * Discards the index of the wires used by the design.  The index is rebuilt on the
+	 * next check.
+	 */
+	public void invalidateRouting() {
+		usedWires = null;
+	}
+
+	private Map<Wire, CellNet> getUsedWires() {
+		if (usedWires == null) {
+			usedWires = new HashMap<>();
+			for (CellNet net : design.getNets()) {
+				for (RouteTree tree : net.getIntersiteRouteTreeList()) {
+					for (RouteTree node : tree)
+						usedWires.put(node.getWire(), net);
+				}
+			}
+		}
+		return usedWires;
+	}
+
+	private void removeFromUsedWires(Module module) {
+		if (usedWires == null)
+			return;
+		for (CellNet net : module.nets) {
+			for (RouteTree tree : net.getIntersiteRouteTreeList()) {
+				for (RouteTree node : tree)
+					usedWires.remove(node.getWire(), net);
+			}
+		}
+	}
+
+	private void addToUsedWires(Module module) {
+		if (usedWires == null)
+			return;
+		for (CellNet net : module.nets) {
+			for (RouteTree tree : net.getIntersiteRouteTreeList()) {
+				for (RouteTree node : tree)
+					usedWires.put(node.getWire(), net);
+			}
+		}
+	}
+
+	private Site translateSite(Site site, int rowOffset, int colOffset) {
+		Tile tile = site.getTile();
+		return Device.getCorrespondingSite(site,
+			device.getTile(tile.getRow() + rowOffset, tile.getColumn() + colOffset));
+	}
+
+	private static List<RouteTree> routeTrees(CellNet net) {
+		List<RouteTree> trees = new ArrayList<>();
+		if (net.getSourceRouteTree() != null)
+			trees.add(net.getSourceRouteTree());
+		trees.addAll(net.getIntersiteRouteTreeList());
+		if (net.getSitePinRouteTrees() != null)
+			trees.addAll(net.getSitePinRouteTrees().values());
+		return trees;
+	}
+
+	/**
+	 * A placed and routed group of cells and nets that can be moved as a unit.
+	 */
+	public static final class Module {
+		private final Set<Cell> cells;
+		private final Set<CellNet> nets;
+		private final Set<CellNet> externalNets;
+		private final Set<Site> sites;
+		private final Set<Tile> footprint;
+
+		private Module(Set<Cell> cells, Set<CellNet> nets, Set<CellNet> externalNets,
+				Set<Site> sites, Set<Tile> footprint) {
+			this.cells = cells;
+			this.nets = nets;
+			this.externalNets = externalNets;
+			this.sites = sites;
+			this.footprint = footprint;
+		}
+
+		/**
+		 * Returns the leaf cells of the module.
+		 */
+		public Set<Cell> getCells() {
+			return Collections.unmodifiableSet(cells);
+		}
+
+		/**
+		 * Returns the nets moved with the module.
+		 */
+		public Set<CellNet> getNets() {
+			return Collections.unmodifiableSet(nets);
+		}
+
+		/**
+		 * Returns the nets connecting the module to cells outside of the module.  These
+		 * nets are not moved and need to be rerouted after the module is relocated.
+		 */
+		public Set<CellNet> getExternalNets() {
+			return Collections.unmodifiableSet(externalNets);
+		}
+
+		/**
+		 * Returns the sites currently used by the module.
+		 */
+		public Set<Site> getSites() {
+			return Collections.unmodifiableSet(sites);
+		}
+
+		/**
+		 * Returns the tiles currently occupied by the sites and routing of the module.
+		 */
+		public Set<Tile> getFootprint() {
+			return Collections.unmodifiableSet(footprint);
+		}
+	}
+
+	/**
+	 * The placement, pin mappings, site PIPs, site types and routing of a module
+	 * before it is relocated.  Restoring the snapshot undoes a partially applied
+	 * relocation, including the types of the target sites.
+	 */
+	private final class Snapshot {
+		private final Map<Cell, Bel> placements = new LinkedHashMap<>();
+		private final Map<CellPin, List<BelPin>> pinMappings = new HashMap<>();
+		private final Map<Site, Set<Integer>> sitePips = new HashMap<>();
+		private final Map<Site, Map<String, String>> pipInputVals = new HashMap<>();
+		private final Map<Site, SiteType> siteTypes = new LinkedHashMap<>();
+		private final List<NetState> netStates = new ArrayList<>();
+
+		Snapshot(Module module, Collection<Site> targets) {
+			for (Cell cell : module.cells) {
+				placements.put(cell, cell.getBel());
+				for (CellPin pin : cell.getPins()) {
+					if (pin.getMappedBelPinCount() > 0)
+						pinMappings.put(pin, new ArrayList<>(pin.getMappedBelPins()));
+				}
+			}
+			for (Site site : module.sites) {
+				Set<Integer> used = design.getUsedSitePipsAtSite(site);
+				if (!used.isEmpty())
+					sitePips.put(site, new HashSet<>(used));
+				Map<String, String> inputVals = design.getPIPInputValsAtSite(site);
+				if (inputVals != null)
+					pipInputVals.put(site, new HashMap<>(inputVals));
+				siteTypes.put(site, design.getSiteType(site));
+			}
+			for (Site site : targets)
+				siteTypes.put(site, design.getSiteType(site));
+			for (CellNet net : module.nets)
+				netStates.add(NetState.saved(net));
+		}
+
+		void restore(Module module) {
+			for (Cell cell : module.cells) {
+				if (cell.isPlaced())
+					design.unplaceCell(cell);
+			}
+			for (Site site : siteTypes.keySet())
+				design.clearSitePipsAtSite(site);
+			siteTypes.forEach(design::setSiteType);
+
+			placements.forEach(design::placeCell);
+			pinMappings.forEach(CellPin::mapToBelPins);
+			sitePips.forEach(design::setUsedSitePipsAtSite);
+			pipInputVals.forEach(design::addPIPInputValsAtSite);
+			for (NetState state : netStates)
+				state.apply();
+
+			// the index may hold wires of the partially applied relocation
+			invalidateRouting();
+		}
+	}
+
+	/**
+	 * Maps the tiles, sites and wires of the module to their counterparts at an offset.
+	 * Translated tiles are cached by their index in the device.
+	 */
+	private final class Translation {
+		private final int rowOffset;
+		private final int colOffset;
+		private final Tile[] tiles;
+
+		Translation(int rowOffset, int colOffset) {
+			this.rowOffset = rowOffset;
+			this.colOffset = colOffset;
+			this.tiles = new Tile[device.getRows() * device.getColumns()];
+		}
+
+		Tile tile(Tile tile) {
+			int index = tile.getRow() * device.getColumns() + tile.getColumn();
+			Tile target = tiles[index];
+			if (target == null) {
+				target = device.getTile(tile.getRow() + rowOffset, tile.getColumn() + colOffset);
+				assert target != null && target.getType() == tile.getType();
+				tiles[index] = target;
+			}
+			return target;
+		}
+
+		Site site(Site site) {
+			return Device.getCorrespondingSite(site, tile(site.getTile()));
+		}
+
+		Bel bel(Bel bel) {
+			Bel target = site(bel.getSite()).getBel(bel.getId().getSiteType(), bel.getName());
+			if (target == null)
+				throw new Exceptions.DesignAssemblyException("No BEL " + bel.getName() +
+					" in site " + site(bel.getSite()).getName());
+			return target;
+		}
+
+		BelPin belPin(BelPin belPin) {
+			return bel(belPin.getBel()).getBelPin(belPin.getName());
+		}
+
+		SitePin sitePin(SitePin sitePin) {
+			return site(sitePin.getSite()).getPin(sitePin.getSiteType(), sitePin.getName());
+		}
+
+		Wire wire(Wire wire) {
+			if (wire instanceof SiteWire) {
+				SiteWire siteWire = (SiteWire) wire;
+				return new SiteWire(site(siteWire.getSite()), siteWire.getSiteType(), siteWire.getWireEnum());
+			}
+			return new TileWire(tile(wire.getTile()), wire.getWireEnum());
+		}
+
+		/**
+		 * Copies the tree rooted at {@code root} to the translated location, recording
+		 * the copy of each node in {@code nodes}.
+		 */
+		RouteTree routeTree(RouteTree root, Map<RouteTree, RouteTree> nodes) {
+			RouteTree copy = new RouteTree(wire(root.getWire()));
+			nodes.put(root, copy);
+
+			ArrayDeque<RouteTree> queue = new ArrayDeque<>();
+			queue.add(root);
+			while (!queue.isEmpty()) {
+				RouteTree node = queue.poll();
+				RouteTree nodeCopy = nodes.get(node);
+				for (RouteTree child : node.getChildren()) {
+					Wire sink = wire(child.getWire());
+					Connection connection = findConnection(nodeCopy.getWire(), sink);
+					if (connection == null)
+						throw new Exceptions.DesignAssemblyException("No connection from " +
+							nodeCopy.getWire().getFullName() + " to " + sink.getFullName());
+					nodes.put(child, nodeCopy.connect(connection));
+					queue.add(child);
+				}
+			}
+			return copy;
+		}
+
+		private Connection findConnection(Wire source, Wire sink) {
+			for (Connection c : source.getWireConnections()) {
+				if (c.getSinkWire().equals(sink))
+					return c;
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * The routing of a net, either saved as is or translated to the new location of
+	 * the module.  Route trees in the BEL pin map are usually nodes of the other trees
+	 * of the net, so the copies of all nodes are tracked to preserve the sharing.
+	 */
+	private static final class NetState {
+		private final CellNet net;
+		private final Map<RouteTree, RouteTree> nodes = new IdentityHashMap<>();
+		private final List<SitePin> sourceSitePins = new ArrayList<>();
+		private RouteTree source;
+		private final List<RouteTree> intersite = new ArrayList<>();
+		private final Map<SitePin, RouteTree> sitePinTrees = new LinkedHashMap<>();
+		private final Map<BelPin, RouteTree> belPinTrees = new LinkedHashMap<>();
+		private final Set<CellPin> routedSinks;
+		private final boolean isIntrasite;
+		private final RouteStatus routeStatus;
+
+		private NetState(CellNet net) {
+			this.net = net;
+			routedSinks = new HashSet<>(net.getRoutedSinks());
+			isIntrasite = net.isIntrasite();
+			routeStatus = net.getRouteStatus();
+		}
+
+		/**
+		 * Saves the current routing of the net.  The route trees are not copied.
+		 */
+		static NetState saved(CellNet net) {
+			NetState state = new NetState(net);
+			state.sourceSitePins.addAll(net.getSourceSitePins());
+			state.source = net.getSourceRouteTree();
+			state.intersite.addAll(net.getIntersiteRouteTreeList());
+			if (net.getSitePinRouteTrees() != null)
+				state.sitePinTrees.putAll(net.getSitePinRouteTrees());
+			if (net.getBelPinRouteTrees() != null)
+				state.belPinTrees.putAll(net.getBelPinRouteTrees());
+			return state;
+		}
+
+		/**
+		 * Copies the routing of the net to its translated location.
+		 */
+		static NetState translated(CellNet net, Translation t) {
+			NetState state = new NetState(net);
+			for (SitePin sitePin : net.getSourceSitePins())
+				state.sourceSitePins.add(t.sitePin(sitePin));
+			state.source = net.getSourceRouteTree() == null ? null : state.copy(net.getSourceRouteTree(), t);
+			for (RouteTree tree : net.getIntersiteRouteTreeList())
+				state.intersite.add(state.copy(tree, t));
+			if (net.getSitePinRouteTrees() != null) {
+				for (Map.Entry<SitePin, RouteTree> e : net.getSitePinRouteTrees().entrySet())
+					state.sitePinTrees.put(t.sitePin(e.getKey()), state.copy(e.getValue(), t));
+			}
+			if (net.getBelPinRouteTrees() != null) {
+				for (Map.Entry<BelPin, RouteTree> e : net.getBelPinRouteTrees().entrySet())
+					state.belPinTrees.put(t.belPin(e.getKey()), state.copy(e.getValue(), t));
+			}
+			return state;
+		}
+
+		private RouteTree copy(RouteTree tree, Translation t) {
+			RouteTree copy = nodes.get(tree);
+			if (copy == null) {
+				t.routeTree(tree.getRoot(), nodes);
+				copy = nodes.get(tree);
+			}
+			return copy;
+		}
+
+		void apply() {
+			net.unrouteFull();
+			sourceSitePins.forEach(net::addSourceSitePin);
+			net.setSourceRouteTree(source);
+			if (!intersite.isEmpty())
+				net.setIntersiteRouteTrees(new ArrayList<>(intersite));
+			sitePinTrees.forEach(net::addSinkRouteTree);
+			belPinTrees.forEach(net::addSinkRouteTree);
+			net.addRoutedSinks(routedSinks);
+			net.setIsIntrasite(isIntrasite);
+			net.setRouteStatus(routeStatus);
+		}
+	}
+}
@@ -96,9 +96,18 @@ public class PinMapping {
 	 * @return A map of the pin mappings
 	 */
 	public static Map<String, PinMapping> loadPinMappings(FamilyType family) {
+		return loadPinMappings(RSEnvironment.defaultEnv().getPartFolderPath(family));
+	}
+
+	/**
+	 * Load the pinmappings from the specified device folder.
+	 * @param folder The device folder of the family
+	 * @return A map of the pin mappings
+	 */
+	public static Map<String, PinMapping> loadPinMappings(Path folder) {
 		  Element pm = null;
 	  	try {
-	  		Path path = RSEnvironment.defaultEnv().getPartFolderPath(family).resolve(PIN_MAPPINGS_FILENAME);
+	  		Path path = folder.resolve(PIN_MAPPINGS_FILENAME);
 	  		File tmp = new File(path.toString());
 	  		if (!tmp.exists()) {
 	  			System.out.println("Pin mappings file doesn't exist, creating: " + path.toString());
@@ -129,9 +138,18 @@ public class PinMapping {
 	 * @return A map of the pin map properties.
 	 */
    public static Map<String, List<String>> loadPinMapProperties(FamilyType family) {
+	   return loadPinMapProperties(RSEnvironment.defaultEnv().getPartFolderPath(family));
+   }
+
+	/**
+	 * Load the pinmap properties from the specified device folder.
+	 * @param folder The device folder of the family
+	 * @return A map of the pin map properties.
+	 */
+   public static Map<String, List<String>> loadPinMapProperties(Path folder) {
 	   Element pm = null;
 	   try {	
-		   Path path = RSEnvironment.defaultEnv().getPartFolderPath(family).resolve(PIN_MAP_PROPERTIES_FILENAME);
+		   Path path = folder.resolve(PIN_MAP_PROPERTIES_FILENAME);
 		   SAXBuilder builder = new SAXBuilder();
 		   pm = builder.build(path.toFile()).getRootElement();
 	   } catch (JDOMException | IOException e) {
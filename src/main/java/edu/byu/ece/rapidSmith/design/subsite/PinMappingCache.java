@@ -0,0 +1,471 @@
+/*
+ * Copyright (c) 2016 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * BYU RapidSmith Tools is free software: you may redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * BYU RapidSmith Tools is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * A copy of the GNU General Public License is included with the BYU
+ * RapidSmith Tools. It can be found at doc/LICENSE.GPL3.TXT. You may
+ * also get a copy of the license at <http://www.gnu.org/licenses/>.
+ */
+package edu.byu.ece.rapidSmith.design.subsite;
+
+import edu.byu.ece.rapidSmith.RSEnvironment;
+import edu.byu.ece.rapidSmith.device.Bel;
+import edu.byu.ece.rapidSmith.device.BelPin;
+import edu.byu.ece.rapidSmith.device.FamilyType;
+import edu.byu.ece.rapidSmith.util.Exceptions;
+
+import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Persistent cache of cell pin to BEL pin mappings for a device family.
+ * <p>
+ * Each entry is keyed by a library cell, the name of the BEL it is placed on, and
+ * the values of the cell properties that affect the pin mapping of that cell/BEL
+ * combination (as listed in {@link PinMapping#PIN_MAP_PROPERTIES_FILENAME}).  If no
+ * properties are listed for a combination, the combination is keyed by the cell and
+ * BEL alone.  When two placements with the same key are observed with different pin
+ * mappings, the key is marked as ambiguous and lookups of it return null.
+ * <p>
+ * The cache is filled from the mappings in {@link PinMapping#PIN_MAPPINGS_FILENAME}
+ * the first time it is created and from the PINMAP lines of every RSCP imported
+ * while the cache of its family is open (see {@link #forFamily(FamilyType)}).
+ * It is stored in a compact binary file in the family's device folder.  One cache
+ * is opened per device folder, so environments sharing a family do not share a
+ * cache.  Lookups and recording are safe to perform from multiple threads.
+ */
+public final class PinMappingCache {
+	public static final String CACHE_FILENAME = "pinMappings.bin";
+	private static final int MAGIC = 0x52535043; // RSPC
+	private static final int VERSION = 1;
+	private static final String AMBIGUOUS = "?";
+	private static final Map<String, List<String>> AMBIGUOUS_PINS =
+			Collections.singletonMap(AMBIGUOUS, Collections.emptyList());
+
+	/** Device folder of the family -> open cache of the family */
+	private static final Map<Path, PinMappingCache> openCaches = new ConcurrentHashMap<>();
+
+	private final FamilyType family;
+	private final Path file;
+	/** Cell type -> BEL name -> mappings of the combination */
+	private final Map<String, Map<String, BelEntry>> entries = new ConcurrentHashMap<>();
+	/** "cellType belName" -> names of the properties affecting the mapping */
+	private final Map<String, List<String>> relevantProperties;
+	/**
+	 * Recording holds the read lock so threads can record concurrently.  Saving
+	 * holds the write lock while it takes a snapshot of the entries.
+	 */
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private volatile boolean modified = false;
+
+	private PinMappingCache(FamilyType family, Path file, Map<String, List<String>> relevantProperties) {
+		this.family = family;
+		this.file = file;
+		this.relevantProperties = relevantProperties;
+	}
+
+	/**
+	 * Returns the cache for the family in the default environment, loading it from
+	 * disk (or creating it from the XML pin mappings) the first time it is requested.
+	 * Once open, RSCPs of the family imported through
+	 * {@link edu.byu.ece.rapidSmith.interfaces.vivado.VivadoInterface} add their pin
+	 * mappings to it.
+	 */
+	public static PinMappingCache forFamily(FamilyType family) {
+		return forFamily(RSEnvironment.defaultEnv(), family);
+	}
+
+	/**
+	 * Returns the cache for the family in the specified environment.
+	 *
+	 * @see #forFamily(FamilyType)
+	 */
+	public static PinMappingCache forFamily(RSEnvironment env, FamilyType family) {
+		return openCaches.computeIfAbsent(folderOf(env, family), folder -> open(folder, family));
+	}
+
+	/**
+	 * Returns the cache for the family in the default environment if it has been
+	 * opened, else null.
+	 */
+	public static PinMappingCache getIfOpen(FamilyType family) {
+		return getIfOpen(RSEnvironment.defaultEnv(), family);
+	}
+
+	/**
+	 * Returns the cache for the family in the specified environment if it has been
+	 * opened, else null.
+	 */
+	public static PinMappingCache getIfOpen(RSEnvironment env, FamilyType family) {
+		return openCaches.get(folderOf(env, family));
+	}
+
+	private static Path folderOf(RSEnvironment env, FamilyType family) {
+		return env.getPartFolderPath(family).toAbsolutePath().normalize();
+	}
+
+	private static PinMappingCache open(Path folder, FamilyType family) {
+		Map<String, List<String>> properties = Collections.emptyMap();
+		if (Files.exists(folder.resolve(PinMapping.PIN_MAP_PROPERTIES_FILENAME)))
+			properties = PinMapping.loadPinMapProperties(folder);
+
+		PinMappingCache cache = new PinMappingCache(family, folder.resolve(CACHE_FILENAME),
+				properties == null ? Collections.emptyMap() : properties);
+		if (Files.exists(cache.file)) {
+			try {
+				if (cache.read())
+					return cache;
+			} catch (IOException e) {
+				System.err.println("Warning: ignoring unreadable pin mapping cache " + cache.file + ": " + e.getMessage());
+			}
+			cache.entries.clear();
+		}
+
+		if (Files.exists(folder.resolve(PinMapping.PIN_MAPPINGS_FILENAME)))
+			cache.importXml(PinMapping.loadPinMappings(folder));
+		return cache;
+	}
+
+	public FamilyType getFamily() {
+		return family;
+	}
+
+	/* ****************
+	 *  Lookup
+	 * ****************/
+
+	/**
+	 * Returns the cached mapping of the cell when placed on the BEL, as a map from
+	 * cell pin name to BEL pin names, or null if the mapping is not known.
+	 */
+	public Map<String, List<String>> getPinMapping(Cell cell, Bel bel) {
+		Map<String, BelEntry> byBel = entries.get(cell.getType());
+		if (byBel == null)
+			return null;
+		BelEntry entry = byBel.get(bel.getName());
+		if (entry == null)
+			return null;
+		Map<String, List<String>> pins = entry.mappings.get(entry.key(cell));
+		return pins == null || pins.containsKey(AMBIGUOUS) ? null : pins;
+	}
+
+	/**
+	 * Maps the pins of a cell placed on {@code bel} using the cached mapping.  The
+	 * existing pin mappings of the cell are not cleared.
+	 *
+	 * @return true if a mapping was cached and applied, false otherwise
+	 */
+	public boolean applyPinMapping(Cell cell, Bel bel) {
+		Map<String, List<String>> pins = getPinMapping(cell, bel);
+		if (pins == null)
+			return false;
+		for (Map.Entry<String, List<String>> e : pins.entrySet()) {
+			CellPin cellPin = cell.getPin(e.getKey());
+			if (cellPin == null)
+				return false;
+			for (String belPinName : e.getValue()) {
+				BelPin belPin = bel.getBelPin(belPinName);
+				if (belPin == null)
+					return false;
+				cellPin.mapToBelPin(belPin);
+			}
+		}
+		return true;
+	}
+
+	/* ****************
+	 *  Recording
+	 * ****************/
+
+	/**
+	 * Records the current pin mapping of a placed cell.  Pseudo pins are ignored.
+	 */
+	public void record(Cell cell) {
+		Bel bel = cell.getBel();
+		if (bel == null)
+			throw new IllegalArgumentException("Cell " + cell.getName() + " is not placed");
+
+		Map<String, List<String>> pins = new TreeMap<>();
+		for (CellPin cellPin : cell.getPins()) {
+			if (cellPin.isPseudoPin())
+				continue;
+			Set<BelPin> belPins = cellPin.getMappedBelPins();
+			if (belPins.isEmpty())
+				continue;
+			List<String> names = new ArrayList<>(belPins.size());
+			for (BelPin belPin : belPins)
+				names.add(belPin.getName());
+			Collections.sort(names);
+			pins.put(cellPin.getName(), Collections.unmodifiableList(names));
+		}
+
+		BelEntry entry = getEntry(cell.getType(), bel.getName());
+		put(entry, entry.key(cell), Collections.unmodifiableMap(pins));
+	}
+
+	private BelEntry getEntry(String cellType, String belName) {
+		return entries.computeIfAbsent(cellType, k -> new ConcurrentHashMap<>())
+				.computeIfAbsent(belName, k -> {
+					List<String> props = relevantProperties.get(cellType + " " + belName);
+					return new BelEntry(props == null ? Collections.emptyList() : props);
+				});
+	}
+
+	private void put(BelEntry entry, List<String> key, Map<String, List<String>> pins) {
+		// the key is updated atomically so a conflicting mapping recorded concurrently
+		// always marks it as ambiguous
+		boolean[] changed = new boolean[1];
+		lock.readLock().lock();
+		try {
+			entry.mappings.compute(key, (k, previous) -> {
+				if (previous == null) {
+					changed[0] = true;
+					return pins;
+				}
+				if (previous.equals(pins) || previous.containsKey(AMBIGUOUS))
+					return previous;
+				changed[0] = true;
+				return AMBIGUOUS_PINS;
+			});
+			if (changed[0])
+				modified = true;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private void importXml(Map<String, PinMapping> mappings) {
+		if (mappings == null)
+			return;
+		for (PinMapping pm : mappings.values()) {
+			Map<String, List<String>> pins = pm.hasDuplic() ?
+					(mappings.containsKey(pm.getDuplic()) ? mappings.get(pm.getDuplic()).getPins() : null) :
+					pm.getPins();
+			if (pins == null)
+				continue;
+			BelEntry entry = getEntry(pm.getCellName(), pm.getBelName());
+			List<String> key = new ArrayList<>(entry.properties.size());
+			for (String prop : entry.properties)
+				key.add(String.valueOf(pm.getProps().get(prop)));
+			Map<String, List<String>> sorted = new TreeMap<>();
+			pins.forEach((k, v) -> sorted.put(k, Collections.unmodifiableList(new ArrayList<>(v))));
+			put(entry, key, Collections.unmodifiableMap(sorted));
+		}
+	}
+
+	/**
+	 * Returns the number of cached cell/BEL/property combinations.
+	 */
+	public int size() {
+		int size = 0;
+		for (Map<String, BelEntry> byBel : entries.values())
+			for (BelEntry entry : byBel.values())
+				size += entry.mappings.size();
+		return size;
+	}
+
+	/* ****************
+	 *  Persistence
+	 * ****************/
+
+	/**
+	 * Writes the cache to the family's device folder if it has changed since it was
+	 * loaded.  The file is replaced atomically.  Mappings recorded while the cache is
+	 * being written are kept for the next save.
+	 */
+	public synchronized void save() {
+		Map<String, Map<String, BelEntry>> snapshot;
+		lock.writeLock().lock();
+		try {
+			if (!modified)
+				return;
+			snapshot = snapshot();
+			modified = false;
+		} finally {
+			lock.writeLock().unlock();
+		}
+
+		try {
+			// write to a unique file in the same directory and move it into place so
+			// concurrent saves and loads never see a partially written cache
+			Path tmp = Files.createTempFile(file.getParent(), CACHE_FILENAME, ".tmp");
+			try {
+				try (DataOutputStream out = new DataOutputStream(
+						new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+					write(out, snapshot);
+				}
+				try {
+					Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+				} catch (AtomicMoveNotSupportedException e) {
+					Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+				}
+			} finally {
+				Files.deleteIfExists(tmp);
+			}
+		} catch (IOException e) {
+			modified = true;
+			throw new Exceptions.EnvironmentException("Unable to write pin mapping cache " + file, e);
+		}
+	}
+
+	/**
+	 * Copies the entries so they can be written while other threads record.  Must
+	 * be called with the write lock held.
+	 */
+	private Map<String, Map<String, BelEntry>> snapshot() {
+		Map<String, Map<String, BelEntry>> snapshot = new HashMap<>();
+		entries.forEach((cellType, byBel) -> {
+			Map<String, BelEntry> copy = new HashMap<>();
+			byBel.forEach((belName, entry) -> copy.put(belName, new BelEntry(entry)));
+			snapshot.put(cellType, copy);
+		});
+		return snapshot;
+	}
+
+	// Format: header, string table, then for each cell type and BEL the relevant
+	// properties and the mappings as indices into the string table.
+	private void write(DataOutputStream out, Map<String, Map<String, BelEntry>> entries) throws IOException {
+		Map<String, Integer> strings = new LinkedHashMap<>();
+		entries.forEach((cellType, byBel) -> {
+			intern(strings, cellType);
+			byBel.forEach((belName, entry) -> {
+				intern(strings, belName);
+				entry.properties.forEach(p -> intern(strings, p));
+				entry.mappings.forEach((key, pins) -> {
+					key.forEach(v -> intern(strings, v));
+					pins.forEach((cp, bps) -> {
+						intern(strings, cp);
+						bps.forEach(bp -> intern(strings, bp));
+					});
+				});
+			});
+		});
+
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeUTF(family.name());
+		out.writeInt(strings.size());
+		for (String s : strings.keySet())
+			out.writeUTF(s);
+
+		out.writeInt(entries.size());
+		for (Map.Entry<String, Map<String, BelEntry>> byCell : entries.entrySet()) {
+			out.writeInt(strings.get(byCell.getKey()));
+			out.writeInt(byCell.getValue().size());
+			for (Map.Entry<String, BelEntry> byBel : byCell.getValue().entrySet()) {
+				BelEntry entry = byBel.getValue();
+				out.writeInt(strings.get(byBel.getKey()));
+				writeStrings(out, strings, entry.properties);
+				out.writeInt(entry.mappings.size());
+				for (Map.Entry<List<String>, Map<String, List<String>>> mapping : entry.mappings.entrySet()) {
+					writeStrings(out, strings, mapping.getKey());
+					out.writeInt(mapping.getValue().size());
+					for (Map.Entry<String, List<String>> pin : mapping.getValue().entrySet()) {
+						out.writeInt(strings.get(pin.getKey()));
+						writeStrings(out, strings, pin.getValue());
+					}
+				}
+			}
+		}
+	}
+
+	private static void intern(Map<String, Integer> strings, String s) {
+		strings.putIfAbsent(s, strings.size());
+	}
+
+	private static void writeStrings(DataOutputStream out, Map<String, Integer> strings, List<String> list) throws IOException {
+		out.writeShort(list.size());
+		for (String s : list)
+			out.writeInt(strings.get(s));
+	}
+
+	// Returns false if the file is for a different version or family
+	private boolean read() throws IOException {
+		try (DataInputStream in = new DataInputStream(
+				new BufferedInputStream(Files.newInputStream(file)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION || !in.readUTF().equals(family.name()))
+				return false;
+
+			String[] strings = new String[in.readInt()];
+			for (int i = 0; i < strings.length; i++)
+				strings[i] = in.readUTF().intern();
+
+			int numCells = in.readInt();
+			for (int i = 0; i < numCells; i++) {
+				Map<String, BelEntry> byBel = new ConcurrentHashMap<>();
+				entries.put(strings[in.readInt()], byBel);
+				int numBels = in.readInt();
+				for (int j = 0; j < numBels; j++) {
+					String belName = strings[in.readInt()];
+					BelEntry entry = new BelEntry(readStrings(in, strings));
+					byBel.put(belName, entry);
+					int numMappings = in.readInt();
+					for (int k = 0; k < numMappings; k++) {
+						List<String> key = readStrings(in, strings);
+						int numPins = in.readInt();
+						Map<String, List<String>> pins = new TreeMap<>();
+						for (int p = 0; p < numPins; p++) {
+							String cellPin = strings[in.readInt()];
+							pins.put(cellPin, readStrings(in, strings));
+						}
+						entry.mappings.put(key, Collections.unmodifiableMap(pins));
+					}
+				}
+			}
+		}
+		return true;
+	}
+
+	private static List<String> readStrings(DataInputStream in, String[] strings) throws IOException {
+		int size = in.readUnsignedShort();
+		String[] list = new String[size];
+		for (int i = 0; i < size; i++)
+			list[i] = strings[in.readInt()];
+		return Collections.unmodifiableList(Arrays.asList(list));
+	}
+
+	/**
+	 * The mappings of one cell type on one BEL, keyed by the values of the
+	 * properties that affect the mapping.
+	 */
+	private static final class BelEntry {
+		final List<String> properties;
+		final Map<List<String>, Map<String, List<String>>> mappings = new ConcurrentHashMap<>();
+
+		BelEntry(List<String> properties) {
+			this.properties = properties;
+		}
+
+		BelEntry(BelEntry other) {
+			this.properties = other.properties;
+			this.mappings.putAll(other.mappings);
+		}
+
+		List<String> key(Cell cell) {
+			if (properties.isEmpty())
+				return Collections.emptyList();
+			String[] values = new String[properties.size()];
+			for (int i = 0; i < values.length; i++)
+				values[i] = String.valueOf(cell.getProperties().getValue(properties.get(i)));
+			return Arrays.asList(values);
+		}
+	}
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright (c) 2016 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * BYU RapidSmith Tools is free software: you may redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * BYU RapidSmith Tools is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * A copy of the GNU General Public License is included with the BYU
+ * RapidSmith Tools. It can be found at doc/LICENSE.GPL3.TXT. You may
+ * also get a copy of the license at <http://www.gnu.org/licenses/>.
+ */
+package edu.byu.ece.rapidSmith.design.subsite;
+
+import edu.byu.ece.rapidSmith.device.Bel;
+import edu.byu.ece.rapidSmith.device.Device;
+import edu.byu.ece.rapidSmith.device.Site;
+import edu.byu.ece.rapidSmith.device.SiteType;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Tracks the cells placed on each BEL of a design.  Cells are stored in arrays
+ * indexed by the dense index of the site in the device ({@link Site#getDeviceIndex()})
+ * and the index of the BEL in its site template so that occupancy checks and updates
+ * are constant-time array operations.
+ * <p>
+ * The rows for each site are sized for the site type of the first BEL placed in the
+ * site.  Placements that don't fit the arrays (BELs of a different site type than
+ * the BELs already in the site or sites outside of the device of the first placed
+ * BEL) are kept in a secondary map.
+ * <p>
+ * Only the placements are serialized.  They are placed again when the object is
+ * read, so the arrays are rebuilt for the device of the deserialized sites rather
+ * than holding on to the device they were built for.
+ */
+final class PlacementOccupancy implements Serializable {
+	private static final long serialVersionUID = -1306513860962683702L;
+	/** Device of the first placed BEL.  The arrays are sized for this device. */
+	private transient Device device;
+	/** Cells placed in each site, indexed by site then by BEL index */
+	private transient Cell[][] cells;
+	/** Site type of the BELs in each row of cells */
+	private transient SiteType[] rowTypes;
+	/** Number of cells in each row of cells */
+	private transient int[] rowCounts;
+	/** Placements that do not fit in the arrays */
+	private transient Map<Site, Map<Bel, Cell>> overflow;
+	/** Sites with at least one placed cell */
+	private transient Set<Site> usedSites = new LinkedHashSet<>();
+
+	/**
+	 * Returns the cell placed on the BEL or null if the BEL is unoccupied.
+	 */
+	Cell get(Bel bel) {
+		Cell[] row = getRow(bel.getSite());
+		if (row != null) {
+			int siteIndex = bel.getSite().getDeviceIndex();
+			if (rowTypes[siteIndex] == bel.getId().getSiteType()) {
+				int belIndex = bel.getTemplate().getIndex();
+				if (belIndex < row.length) {
+					Cell cell = row[belIndex];
+					if (cell != null)
+						return cell;
+				}
+			}
+		}
+		if (overflow != null) {
+			Map<Bel, Cell> siteMap = overflow.get(bel.getSite());
+			if (siteMap != null)
+				return siteMap.get(bel);
+		}
+		return null;
+	}
+
+	/**
+	 * Returns true if any cells are placed in the site.
+	 */
+	boolean isSiteUsed(Site site) {
+		return usedSites.contains(site);
+	}
+
+	/**
+	 * Returns the cells placed in the site or null if the site is unoccupied.
+	 */
+	Collection<Cell> getCells(Site site) {
+		if (!usedSites.contains(site))
+			return null;
+		List<Cell> siteCells = new ArrayList<>();
+		Cell[] row = getRow(site);
+		if (row != null) {
+			for (Cell cell : row) {
+				if (cell != null)
+					siteCells.add(cell);
+			}
+		}
+		if (overflow != null) {
+			Map<Bel, Cell> siteMap = overflow.get(site);
+			if (siteMap != null)
+				siteCells.addAll(siteMap.values());
+		}
+		return siteCells;
+	}
+
+	/**
+	 * Returns the site type of any BEL in use in the site or null if the site
+	 * is unoccupied.
+	 */
+	SiteType getUsedSiteType(Site site) {
+		Cell[] row = getRow(site);
+		if (row != null && rowCounts[site.getDeviceIndex()] > 0)
+			return rowTypes[site.getDeviceIndex()];
+		if (overflow != null) {
+			Map<Bel, Cell> siteMap = overflow.get(site);
+			if (siteMap != null && !siteMap.isEmpty())
+				return siteMap.keySet().iterator().next().getId().getSiteType();
+		}
+		return null;
+	}
+
+	/**
+	 * Returns an unmodifiable view of the sites with placed cells.
+	 */
+	Collection<Site> getUsedSites() {
+		return Collections.unmodifiableSet(usedSites);
+	}
+
+	/**
+	 * Places the cell on the BEL.  The BEL must be unoccupied.
+	 */
+	void place(Bel bel, Cell cell) {
+		Site site = bel.getSite();
+		if (!placeInArray(bel, cell)) {
+			if (overflow == null)
+				overflow = new HashMap<>();
+			Map<Bel, Cell> siteMap = overflow.computeIfAbsent(site, k -> new HashMap<>());
+			assert !siteMap.containsKey(bel);
+			siteMap.put(bel, cell);
+		}
+		usedSites.add(site);
+	}
+
+	/**
+	 * Removes the cell placed on the BEL.
+	 */
+	void remove(Bel bel) {
+		Site site = bel.getSite();
+		boolean siteEmpty = true;
+		Cell[] row = getRow(site);
+		if (row != null) {
+			int siteIndex = site.getDeviceIndex();
+			int belIndex = bel.getTemplate().getIndex();
+			if (rowTypes[siteIndex] == bel.getId().getSiteType() &&
+					belIndex < row.length && row[belIndex] != null) {
+				row[belIndex] = null;
+				rowCounts[siteIndex]--;
+			}
+			if (rowCounts[siteIndex] > 0)
+				siteEmpty = false;
+			else
+				rowTypes[siteIndex] = null;
+		}
+		if (overflow != null) {
+			Map<Bel, Cell> siteMap = overflow.get(site);
+			if (siteMap != null) {
+				siteMap.remove(bel);
+				if (siteMap.isEmpty())
+					overflow.remove(site);
+				else
+					siteEmpty = false;
+			}
+		}
+		if (siteEmpty)
+			usedSites.remove(site);
+	}
+
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		List<Cell> placed = new ArrayList<>();
+		for (Site site : usedSites)
+			placed.addAll(getCells(site));
+		out.writeInt(placed.size());
+		for (Cell cell : placed) {
+			out.writeObject(cell.getBel());
+			out.writeObject(cell);
+		}
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		usedSites = new LinkedHashSet<>();
+		int numPlaced = in.readInt();
+		for (int i = 0; i < numPlaced; i++) {
+			Bel bel = (Bel) in.readObject();
+			Cell cell = (Cell) in.readObject();
+			place(bel, cell);
+		}
+	}
+
+	// Returns the row for the site or null if the site has no row
+	private Cell[] getRow(Site site) {
+		if (cells == null || site.getTile() == null || site.getTile().getDevice() != device)
+			return null;
+		int siteIndex = site.getDeviceIndex();
+		if (siteIndex < 0 || siteIndex >= cells.length)
+			return null;
+		return cells[siteIndex];
+	}
+
+	// Attempts to store the placement in the arrays
+	private boolean placeInArray(Bel bel, Cell cell) {
+		Site site = bel.getSite();
+		int siteIndex = site.getDeviceIndex();
+		if (siteIndex < 0 || site.getTile() == null)
+			return false;
+
+		Device siteDevice = site.getTile().getDevice();
+		if (cells == null) {
+			if (siteDevice == null)
+				return false;
+			device = siteDevice;
+			int numSites = device.getNumSites();
+			cells = new Cell[numSites][];
+			rowTypes = new SiteType[numSites];
+			rowCounts = new int[numSites];
+		} else if (siteDevice != device) {
+			return false;
+		}
+		if (siteIndex >= cells.length)
+			return false;
+
+		SiteType type = bel.getId().getSiteType();
+		int belIndex = bel.getTemplate().getIndex();
+		if (rowCounts[siteIndex] == 0) {
+			Cell[] row = cells[siteIndex];
+			int numBels = device.getSiteTemplate(type).getBelTemplates().size();
+			if (row == null || row.length < numBels)
+				cells[siteIndex] = new Cell[numBels];
+			rowTypes[siteIndex] = type;
+		} else if (rowTypes[siteIndex] != type) {
+			return false;
+		}
+
+		Cell[] row = cells[siteIndex];
+		if (belIndex >= row.length || row[belIndex] != null)
+			return false;
+		row[belIndex] = cell;
+		rowCounts[siteIndex]++;
+		return true;
+	}
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright (c) 2016 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * BYU RapidSmith Tools is free software: you may redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * BYU RapidSmith Tools is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * A copy of the GNU General Public License is included with the BYU
+ * RapidSmith Tools. It can be found at doc/LICENSE.GPL3.TXT. You may
+ * also get a copy of the license at <http://www.gnu.org/licenses/>.
+ */
+
+package edu.byu.ece.rapidSmith.design.subsite;
+
+import edu.byu.ece.rapidSmith.device.Connection;
+import edu.byu.ece.rapidSmith.device.Device;
+import edu.byu.ece.rapidSmith.device.Site;
+import edu.byu.ece.rapidSmith.device.Tile;
+import edu.byu.ece.rapidSmith.device.TileWire;
+import edu.byu.ece.rapidSmith.device.Wire;
+import edu.byu.ece.rapidSmith.device.WireConnection;
+import edu.byu.ece.rapidSmith.device.WireHashMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * A snapshot of the routing and site utilization of a placed and routed
+ * {@link CellDesign} over the tile grid of its device.
+ * <p>
+ * For each tile, the snapshot records the number of tile wires and PIPs used by
+ * the intersite route trees of all nets and the number of used sites, along with
+ * the capacity of the tile: the number of source wires and PIPs in its wire hash
+ * map and its number of sites.  Wires used by more than one net are counted once
+ * per net, so overused wires show up as utilization above 1.
+ * <p>
+ * The nets are split into one chunk per processor and the route trees of each
+ * chunk are walked in parallel into primitive per-tile counters, which are summed
+ * once all chunks complete.  The snapshot is not updated as the design changes;
+ * compute a new one instead.
+ */
+public class RoutingUtilization {
+	private final Device device;
+	private final int rows;
+	private final int columns;
+	private final int[] wiresUsed;
+	private final int[] pipsUsed;
+	private final int[] sitesUsed;
+	private final int[] wireCapacity;
+	private final int[] pipCapacity;
+	private final int[] siteCapacity;
+
+	private RoutingUtilization(Device device) {
+		this.device = device;
+		this.rows = device.getRows();
+		this.columns = device.getColumns();
+		int numTiles = rows * columns;
+		this.wiresUsed = new int[numTiles];
+		this.pipsUsed = new int[numTiles];
+		this.sitesUsed = new int[numTiles];
+		this.wireCapacity = new int[numTiles];
+		this.pipCapacity = new int[numTiles];
+		this.siteCapacity = new int[numTiles];
+	}
+
+	/**
+	 * Computes the utilization of the design.
+	 */
+	public static RoutingUtilization compute(CellDesign design) {
+		RoutingUtilization utilization = new RoutingUtilization(design.getDevice());
+		utilization.computeCapacity();
+		utilization.computeRouteUsage(new ArrayList<>(design.getNets()));
+		for (Site site : design.getUsedSites())
+			utilization.sitesUsed[utilization.index(site.getTile())]++;
+		return utilization;
+	}
+
+	private int index(Tile tile) {
+		return tile.getRow() * columns + tile.getColumn();
+	}
+
+	private void computeCapacity() {
+		// wire hash maps are shared between tiles of the same type
+		Map<WireHashMap, Integer> distinct = new IdentityHashMap<>();
+		List<WireHashMap> maps = new ArrayList<>();
+		for (Tile tile : device.getTiles()) {
+			WireHashMap map = tile.getWireHashMap();
+			if (map != null && !distinct.containsKey(map)) {
+				distinct.put(map, maps.size());
+				maps.add(map);
+			}
+		}
+		// the sizes and PIP counts of the distinct maps are computed in parallel
+		int[] sizes = new int[maps.size()];
+		int[] pips = new int[maps.size()];
+		IntStream.range(0, maps.size()).parallel().forEach(i -> {
+			WireHashMap map = maps.get(i);
+			sizes[i] = map.size();
+			int count = 0;
+			for (WireConnection[] connections : map.values()) {
+				if (connections == null)
+					continue;
+				for (WireConnection wc : connections) {
+					if (wc.isPIP())
+						count++;
+				}
+			}
+			pips[i] = count;
+		});
+
+		for (Tile tile : device.getTiles()) {
+			int index = index(tile);
+			WireHashMap map = tile.getWireHashMap();
+			if (map != null) {
+				int mapIndex = distinct.get(map);
+				wireCapacity[index] = sizes[mapIndex];
+				pipCapacity[index] = pips[mapIndex];
+			}
+			siteCapacity[index] = tile.getSites() == null ? 0 : tile.getSites().length;
+		}
+	}
+
+	private void computeRouteUsage(List<CellNet> nets) {
+		int numChunks = Math.max(1, Math.min(nets.size(), Runtime.getRuntime().availableProcessors()));
+		int chunkSize = (nets.size() + numChunks - 1) / Math.max(1, numChunks);
+		List<int[][]> partials = Collections.synchronizedList(new ArrayList<>());
+		IntStream.range(0, numChunks).parallel().forEach(chunk -> {
+			int[] wires = new int[wiresUsed.length];
+			int[] pips = new int[pipsUsed.length];
+			int end = Math.min(nets.size(), (chunk + 1) * chunkSize);
+			for (int i = chunk * chunkSize; i < end; i++) {
+				for (RouteTree tree : nets.get(i).getIntersiteRouteTreeList())
+					countRouteTree(tree, wires, pips);
+			}
+			partials.add(new int[][] { wires, pips });
+		});
+
+		for (int[][] partial : partials) {
+			for (int i = 0; i < wiresUsed.length; i++) {
+				wiresUsed[i] += partial[0][i];
+				pipsUsed[i] += partial[1][i];
+			}
+		}
+	}
+
+	private void countRouteTree(RouteTree tree, int[] wires, int[] pips) {
+		for (RouteTree node : tree) {
+			Wire wire = node.getWire();
+			if (!(wire instanceof TileWire))
+				continue;
+			int index = index(wire.getTile());
+			wires[index]++;
+			Connection connection = node.getConnection();
+			if (connection != null && connection.isPip())
+				pips[index]++;
+		}
+	}
+
+	/* ****************
+	 *  Queries
+	 * ****************/
+
+	public Device getDevice() {
+		return device;
+	}
+
+	public int getWiresUsed(Tile tile) {
+		return wiresUsed[index(tile)];
+	}
+
+	public int getPipsUsed(Tile tile) {
+		return pipsUsed[index(tile)];
+	}
+
+	public int getSitesUsed(Tile tile) {
+		return sitesUsed[index(tile)];
+	}
+
+	public int getWireCapacity(Tile tile) {
+		return wireCapacity[index(tile)];
+	}
+
+	public int getPipCapacity(Tile tile) {
+		return pipCapacity[index(tile)];
+	}
+
+	public int getSiteCapacity(Tile tile) {
+		return siteCapacity[index(tile)];
+	}
+
+	/**
+	 * Returns the fraction of the source wires of the tile used by routing, or 0 if
+	 * the tile has no wires.
+	 */
+	public double getWireUtilization(Tile tile) {
+		int index = index(tile);
+		return ratio(wiresUsed[index], wireCapacity[index]);
+	}
+
+	/**
+	 * Returns the fraction of the PIPs of the tile used by routing, or 0 if the tile
+	 * has no PIPs.
+	 */
+	public double getPipUtilization(Tile tile) {
+		int index = index(tile);
+		return ratio(pipsUsed[index], pipCapacity[index]);
+	}
+
+	/**
+	 * Returns the fraction of the sites of the tile that are used, or 0 if the tile
+	 * has no sites.
+	 */
+	public double getSiteUtilization(Tile tile) {
+		int index = index(tile);
+		return ratio(sitesUsed[index], siteCapacity[index]);
+	}
+
+	/**
+	 * Returns the wire utilization of every tile indexed by {@code [row][column]},
+	 * suitable as a heat map for {@code TileScene.setHeatMap}.
+	 */
+	public double[][] getWireUtilizationGrid() {
+		double[][] grid = new double[rows][columns];
+		for (int row = 0; row < rows; row++) {
+			for (int col = 0; col < columns; col++) {
+				int index = row * columns + col;
+				grid[row][col] = ratio(wiresUsed[index], wireCapacity[index]);
+			}
+		}
+		return grid;
+	}
+
+	public long getTotalWiresUsed() {
+		return sum(wiresUsed);
+	}
+
+	public long getTotalPipsUsed() {
+		return sum(pipsUsed);
+	}
+
+	public long getTotalSitesUsed() {
+		return sum(sitesUsed);
+	}
+
+	/**
+	 * Returns the tiles with the highest wire utilization, most utilized first.
+	 * Tiles without used wires are not included.
+	 *
+	 * @param count the maximum number of tiles to return
+	 */
+	public List<Tile> getMostUtilizedTiles(int count) {
+		List<Tile> tiles = new ArrayList<>();
+		for (Tile tile : device.getTiles()) {
+			if (wiresUsed[index(tile)] > 0)
+				tiles.add(tile);
+		}
+		tiles.sort((t1, t2) -> Double.compare(getWireUtilization(t2), getWireUtilization(t1)));
+		return tiles.subList(0, Math.min(count, tiles.size()));
+	}
+
+	/**
+	 * Returns a text report of the total usage of the design followed by the
+	 * {@code count} tiles with the highest wire utilization.
+	 */
+	public String getReport(int count) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("Wires used: %d of %d%n", getTotalWiresUsed(), sum(wireCapacity)));
+		sb.append(String.format("PIPs used:  %d of %d%n", getTotalPipsUsed(), sum(pipCapacity)));
+		sb.append(String.format("Sites used: %d of %d%n", getTotalSitesUsed(), sum(siteCapacity)));
+		List<Tile> tiles = getMostUtilizedTiles(count);
+		if (!tiles.isEmpty()) {
+			sb.append(String.format("%nMost utilized tiles:%n"));
+			sb.append(String.format("%-24s %14s %14s %8s%n", "Tile", "Wires", "PIPs", "Sites"));
+			for (Tile tile : tiles) {
+				int index = index(tile);
+				sb.append(String.format("%-24s %5d/%-5d %3.0f%% %5d/%-5d %3.0f%% %3d/%-3d%n",
+						tile.getName(),
+						wiresUsed[index], wireCapacity[index], 100 * getWireUtilization(tile),
+						pipsUsed[index], pipCapacity[index], 100 * getPipUtilization(tile),
+						sitesUsed[index], siteCapacity[index]));
+			}
+		}
+		return sb.toString();
+	}
+
+	private static double ratio(int used, int capacity) {
+		return capacity == 0 ? 0.0 : (double) used / capacity;
+	}
+
+	private static long sum(int[] values) {
+		return Arrays.stream(values).asLongStream().sum();
+	}
+}
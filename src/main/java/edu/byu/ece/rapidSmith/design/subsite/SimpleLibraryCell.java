@@ -162,6 +162,7 @@ public class SimpleLibraryCell extends LibraryCell {
 	 */
 	public void setPossibleBels(List<BelId> possibleBels) {
 		this.compatibleBels = possibleBels;
+		updateAnchorSet();
 	}
 
 	@Override
@@ -0,0 +1,564 @@
+/*
+ * Copyright (c) 2016 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * BYU RapidSmith Tools is free software: you may redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * BYU RapidSmith Tools is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * A copy of the GNU General Public License is included with the BYU
+ * RapidSmith Tools. It can be found at doc/LICENSE.GPL3.TXT. You may
+ * also get a copy of the license at <http://www.gnu.org/licenses/>.
+ */
+package edu.byu.ece.rapidSmith.design.subsite;
+
+import edu.byu.ece.rapidSmith.device.Site;
+import edu.byu.ece.rapidSmith.device.Tile;
+
+import java.util.*;
+
+/**
+ * Incrementally maintained wirelength of the placement of a {@link CellDesign}.
+ * <p>
+ * Cell locations are the row and column of the tile of their site.  Each net is
+ * assigned a dense id, and all per-net state (bounding box, the number of pins on
+ * each edge of the box, weight and cost) is kept in primitive arrays indexed by that
+ * id.  Moving a cell only updates the nets connected to it.  For the
+ * {@link Model#HPWL} model a net's bounding box is updated in constant time
+ * unless the moved cell was the only pin on an edge of the box, in which case the
+ * box of that net is recomputed.
+ * <p>
+ * {@link #evaluateMoves(Cell[], Site[])} computes the change in cost of a batch of
+ * moves (for example a swap) without committing them, so optimizers can evaluate
+ * candidate moves against the same state.
+ * <p>
+ * Static and clock nets use dedicated routing and are not included.  Pins of
+ * unplaced cells are ignored.  The netlist must not change while the engine is in use.
+ */
+public class WirelengthEngine {
+	/** Wirelength models supported by the engine */
+	public enum Model {
+		/** Half perimeter of the bounding box of the net */
+		HPWL,
+		/** Sum of the Manhattan distances from the source of the net to each sink */
+		STAR,
+		/** Sum of the Manhattan distances between all pairs of pins divided by (pins - 1) */
+		CLIQUE
+	}
+
+	private static final int UNPLACED = -1;
+
+	private final Model model;
+	private final Map<CellNet, Integer> netIds = new HashMap<>();
+	private final Map<Cell, Integer> cellIds = new HashMap<>();
+	private final CellNet[] nets;
+
+	// cell state
+	private final int[] cellX;
+	private final int[] cellY;
+	/** Ids of the nets connected to each cell */
+	private final int[][] cellNets;
+	/** Number of pins the cell has on each of its nets */
+	private final int[][] cellNetPins;
+
+	// net state
+	/** Cell ids of the pins of each net.  The source pin is first if the net has one. */
+	private final int[][] netPins;
+	private final boolean[] hasSource;
+	private final int[] minX, maxX, minY, maxY;
+	private final int[] minXCount, maxXCount, minYCount, maxYCount;
+	private final double[] weight;
+	private final double[] netCost;
+	private double totalCost;
+
+	// journal used to undo evaluated moves
+	private final int[] netStamp;
+	private final int[] cellStamp;
+	private int stamp = 0;
+	private int[] journalNets = new int[16];
+	private int[] journalNetState = new int[16 * 8];
+	private double[] journalNetCost = new double[16];
+	private int journalNetSize = 0;
+	private int[] journalCells = new int[16 * 3];
+	private int journalCellSize = 0;
+	private boolean journaling = false;
+
+	/**
+	 * Creates a wirelength engine for the current placement of the design using
+	 * the {@link Model#HPWL} model.
+	 */
+	public WirelengthEngine(CellDesign design) {
+		this(design, Model.HPWL);
+	}
+
+	/**
+	 * Creates a wirelength engine for the current placement of the design.
+	 */
+	public WirelengthEngine(CellDesign design, Model model) {
+		this.model = Objects.requireNonNull(model);
+
+		List<CellNet> netList = new ArrayList<>();
+		for (CellNet net : design.getNets()) {
+			if (net.isStaticNet() || net.isClkNet())
+				continue;
+			netIds.put(net, netList.size());
+			netList.add(net);
+		}
+		nets = netList.toArray(new CellNet[0]);
+
+		List<Cell> cellList = new ArrayList<>();
+		design.getLeafCells().forEach(c -> {
+			cellIds.put(c, cellList.size());
+			cellList.add(c);
+		});
+
+		int numNets = nets.length;
+		int numCells = cellList.size();
+		cellX = new int[numCells];
+		cellY = new int[numCells];
+		cellNets = new int[numCells][];
+		cellNetPins = new int[numCells][];
+		netPins = new int[numNets][];
+		hasSource = new boolean[numNets];
+		minX = new int[numNets];
+		maxX = new int[numNets];
+		minY = new int[numNets];
+		maxY = new int[numNets];
+		minXCount = new int[numNets];
+		maxXCount = new int[numNets];
+		minYCount = new int[numNets];
+		maxYCount = new int[numNets];
+		weight = new double[numNets];
+		netCost = new double[numNets];
+		netStamp = new int[numNets];
+		cellStamp = new int[numCells];
+
+		for (int c = 0; c < numCells; c++)
+			setLocation(c, cellList.get(c).getSite());
+
+		List<Map<Integer, Integer>> connected = new ArrayList<>(numCells);
+		for (int c = 0; c < numCells; c++)
+			connected.add(new LinkedHashMap<>());
+		for (int n = 0; n < numNets; n++) {
+			CellNet net = nets[n];
+			CellPin source = net.getSourcePin();
+			int[] pins = new int[net.getPins().size()];
+			int size = 0;
+			if (source != null && cellIds.containsKey(source.getCell())) {
+				pins[size++] = cellIds.get(source.getCell());
+				hasSource[n] = true;
+			}
+			for (CellPin pin : net.getPins()) {
+				Integer c = cellIds.get(pin.getCell());
+				if (pin == source || c == null)
+					continue;
+				pins[size++] = c;
+			}
+			netPins[n] = Arrays.copyOf(pins, size);
+			for (int c : netPins[n])
+				connected.get(c).merge(n, 1, Integer::sum);
+			weight[n] = 1.0;
+		}
+		for (int c = 0; c < numCells; c++) {
+			Map<Integer, Integer> counts = connected.get(c);
+			cellNets[c] = new int[counts.size()];
+			cellNetPins[c] = new int[counts.size()];
+			int i = 0;
+			for (Map.Entry<Integer, Integer> e : counts.entrySet()) {
+				cellNets[c][i] = e.getKey();
+				cellNetPins[c][i] = e.getValue();
+				i++;
+			}
+		}
+
+		for (int n = 0; n < numNets; n++) {
+			recomputeBounds(n);
+			netCost[n] = computeCost(n);
+			totalCost += netCost[n];
+		}
+	}
+
+	private void setLocation(int cell, Site site) {
+		if (site == null) {
+			cellX[cell] = UNPLACED;
+			cellY[cell] = UNPLACED;
+		} else {
+			Tile tile = site.getTile();
+			cellX[cell] = tile.getColumn();
+			cellY[cell] = tile.getRow();
+		}
+	}
+
+	/* ****************
+	 *  Queries
+	 * ****************/
+	public Model getModel() {
+		return model;
+	}
+
+	/**
+	 * Returns the weighted wirelength of all nets.
+	 */
+	public double getTotalCost() {
+		return totalCost;
+	}
+
+	/**
+	 * Returns the weighted wirelength of the net, or 0 if the net is not tracked.
+	 */
+	public double getNetCost(CellNet net) {
+		Integer id = netIds.get(net);
+		return id == null ? 0.0 : netCost[id];
+	}
+
+	/**
+	 * Returns the id of the net in the engine, or -1 if the net is not tracked.
+	 */
+	public int getNetId(CellNet net) {
+		return netIds.getOrDefault(net, -1);
+	}
+
+	public CellNet getNet(int netId) {
+		return nets[netId];
+	}
+
+	public int getNumNets() {
+		return nets.length;
+	}
+
+	/**
+	 * Returns the bounding box of the placed pins of the net as
+	 * {minColumn, minRow, maxColumn, maxRow}, or null if no pins are placed.
+	 */
+	public int[] getNetBounds(CellNet net) {
+		Integer id = netIds.get(net);
+		if (id == null || maxX[id] == UNPLACED)
+			return null;
+		return new int[] {minX[id], minY[id], maxX[id], maxY[id]};
+	}
+
+	/**
+	 * Sets the weight of the net.  Net costs are multiplied by their weight.
+	 */
+	public void setNetWeight(CellNet net, double netWeight) {
+		Integer id = netIds.get(net);
+		if (id == null)
+			throw new IllegalArgumentException("Net " + net.getName() + " is not tracked");
+		weight[id] = netWeight;
+		double cost = computeCost(id);
+		totalCost += cost - netCost[id];
+		netCost[id] = cost;
+	}
+
+	/* ****************
+	 *  Moves
+	 * ****************/
+
+	/**
+	 * Updates the engine after a cell has been placed on, moved to or removed from
+	 * a site.  The design itself is not modified.
+	 *
+	 * @param cell the moved cell
+	 * @param site the new site of the cell, or null if the cell is unplaced
+	 * @return the change in total cost
+	 */
+	public double moveCell(Cell cell, Site site) {
+		Integer id = cellIds.get(cell);
+		if (id == null)
+			throw new IllegalArgumentException("Cell " + cell.getName() + " is not a leaf cell of the design");
+		double before = totalCost;
+		applyMove(id, site);
+		return totalCost - before;
+	}
+
+	/**
+	 * Returns the change in total cost if each cell was moved to the site at the same
+	 * index.  The moves are applied in order, so a swap of two cells is
+	 * {@code evaluateMoves({a, b}, {siteB, siteA})}.  The state of the engine is
+	 * unchanged when this method returns.
+	 */
+	public double evaluateMoves(Cell[] cells, Site[] sites) {
+		if (cells.length != sites.length)
+			throw new IllegalArgumentException("cells and sites must be the same length");
+
+		double before = totalCost;
+		beginJournal();
+		try {
+			for (int i = 0; i < cells.length; i++) {
+				Integer id = cellIds.get(cells[i]);
+				if (id == null)
+					throw new IllegalArgumentException("Cell " + cells[i].getName() + " is not a leaf cell of the design");
+				applyMove(id, sites[i]);
+			}
+			return totalCost - before;
+		} finally {
+			rollback();
+			totalCost = before;
+		}
+	}
+
+	/**
+	 * Commits a batch of moves.
+	 *
+	 * @return the change in total cost
+	 * @see #evaluateMoves(Cell[], Site[])
+	 */
+	public double applyMoves(Cell[] cells, Site[] sites) {
+		if (cells.length != sites.length)
+			throw new IllegalArgumentException("cells and sites must be the same length");
+		double before = totalCost;
+		for (int i = 0; i < cells.length; i++)
+			moveCell(cells[i], sites[i]);
+		return totalCost - before;
+	}
+
+	private void applyMove(int cell, Site site) {
+		int oldX = cellX[cell];
+		int oldY = cellY[cell];
+		saveCell(cell);
+		setLocation(cell, site);
+		int newX = cellX[cell];
+		int newY = cellY[cell];
+		if (oldX == newX && oldY == newY)
+			return;
+
+		int[] nets = cellNets[cell];
+		for (int i = 0; i < nets.length; i++) {
+			int net = nets[i];
+			saveNet(net);
+			if (oldX == UNPLACED || newX == UNPLACED ||
+					!moveInBounds(net, cellNetPins[cell][i], oldX, oldY, newX, newY))
+				recomputeBounds(net);
+
+			double cost;
+			switch (model) {
+				case HPWL:
+					cost = computeCost(net);
+					break;
+				case STAR:
+					if (oldX == UNPLACED || newX == UNPLACED || (hasSource[net] && netPins[net][0] == cell))
+						cost = computeCost(net);
+					else
+						cost = netCost[net] + weight[net] * starDelta(net, cell, oldX, oldY, newX, newY);
+					break;
+				default:
+					if (oldX == UNPLACED || newX == UNPLACED)
+						cost = computeCost(net);
+					else
+						cost = netCost[net] + weight[net] * cliqueDelta(net, cell, oldX, oldY, newX, newY);
+					break;
+			}
+			totalCost += cost - netCost[net];
+			netCost[net] = cost;
+		}
+	}
+
+	/*
+	 * Updates the bounding box for the pins of a cell moving from (oldX, oldY) to
+	 * (newX, newY) using the edge counts.  Returns false if the cell held the only
+	 * pins on an edge it moved away from, in which case the box must be recomputed.
+	 */
+	private boolean moveInBounds(int net, int pins, int oldX, int oldY, int newX, int newY) {
+		if (oldX != newX) {
+			int lo = minX[net], hi = maxX[net], loCount = minXCount[net], hiCount = maxXCount[net];
+			if (oldX == lo && (loCount -= pins) == 0)
+				return false;
+			if (oldX == hi && (hiCount -= pins) == 0)
+				return false;
+			if (newX < lo) { lo = newX; loCount = pins; } else if (newX == lo) { loCount += pins; }
+			if (newX > hi) { hi = newX; hiCount = pins; } else if (newX == hi) { hiCount += pins; }
+			minX[net] = lo;
+			maxX[net] = hi;
+			minXCount[net] = loCount;
+			maxXCount[net] = hiCount;
+		}
+		if (oldY != newY) {
+			int lo = minY[net], hi = maxY[net], loCount = minYCount[net], hiCount = maxYCount[net];
+			if (oldY == lo && (loCount -= pins) == 0)
+				return false;
+			if (oldY == hi && (hiCount -= pins) == 0)
+				return false;
+			if (newY < lo) { lo = newY; loCount = pins; } else if (newY == lo) { loCount += pins; }
+			if (newY > hi) { hi = newY; hiCount = pins; } else if (newY == hi) { hiCount += pins; }
+			minY[net] = lo;
+			maxY[net] = hi;
+			minYCount[net] = loCount;
+			maxYCount[net] = hiCount;
+		}
+		return true;
+	}
+
+	private void recomputeBounds(int net) {
+		int lx = Integer.MAX_VALUE, hx = UNPLACED, ly = Integer.MAX_VALUE, hy = UNPLACED;
+		int lxc = 0, hxc = 0, lyc = 0, hyc = 0;
+		for (int c : netPins[net]) {
+			int x = cellX[c];
+			int y = cellY[c];
+			if (x == UNPLACED)
+				continue;
+			if (x < lx) { lx = x; lxc = 1; } else if (x == lx) { lxc++; }
+			if (x > hx) { hx = x; hxc = 1; } else if (x == hx) { hxc++; }
+			if (y < ly) { ly = y; lyc = 1; } else if (y == ly) { lyc++; }
+			if (y > hy) { hy = y; hyc = 1; } else if (y == hy) { hyc++; }
+		}
+		minX[net] = lx;
+		maxX[net] = hx;
+		minY[net] = ly;
+		maxY[net] = hy;
+		minXCount[net] = lxc;
+		maxXCount[net] = hxc;
+		minYCount[net] = lyc;
+		maxYCount[net] = hyc;
+	}
+
+	private double computeCost(int net) {
+		if (maxX[net] == UNPLACED)
+			return 0.0;
+		int[] pins = netPins[net];
+		switch (model) {
+			case HPWL:
+				return weight[net] * ((maxX[net] - minX[net]) + (maxY[net] - minY[net]));
+			case STAR: {
+				if (!hasSource[net] || cellX[pins[0]] == UNPLACED)
+					return 0.0;
+				int sx = cellX[pins[0]], sy = cellY[pins[0]];
+				long sum = 0;
+				for (int i = 1; i < pins.length; i++) {
+					if (cellX[pins[i]] != UNPLACED)
+						sum += Math.abs(cellX[pins[i]] - sx) + Math.abs(cellY[pins[i]] - sy);
+				}
+				return weight[net] * sum;
+			}
+			default: {
+				int placed = 0;
+				long sum = 0;
+				for (int i = 0; i < pins.length; i++) {
+					if (cellX[pins[i]] == UNPLACED)
+						continue;
+					placed++;
+					for (int j = i + 1; j < pins.length; j++) {
+						if (cellX[pins[j]] != UNPLACED)
+							sum += Math.abs(cellX[pins[i]] - cellX[pins[j]]) + Math.abs(cellY[pins[i]] - cellY[pins[j]]);
+					}
+				}
+				return placed < 2 ? 0.0 : weight[net] * sum / (placed - 1);
+			}
+		}
+	}
+
+	// change in the star length of a net when a sink cell moves
+	private double starDelta(int net, int cell, int oldX, int oldY, int newX, int newY) {
+		int[] pins = netPins[net];
+		if (!hasSource[net] || cellX[pins[0]] == UNPLACED)
+			return 0.0;
+		int sx = cellX[pins[0]], sy = cellY[pins[0]];
+		int occurrences = 0;
+		for (int i = 1; i < pins.length; i++) {
+			if (pins[i] == cell)
+				occurrences++;
+		}
+		int before = Math.abs(oldX - sx) + Math.abs(oldY - sy);
+		int after = Math.abs(newX - sx) + Math.abs(newY - sy);
+		return occurrences * (after - before);
+	}
+
+	// change in the clique length of a net when a cell moves
+	private double cliqueDelta(int net, int cell, int oldX, int oldY, int newX, int newY) {
+		int[] pins = netPins[net];
+		int occurrences = 0;
+		int placed = 0;
+		long delta = 0;
+		for (int c : pins) {
+			if (c == cell) {
+				occurrences++;
+				placed++;
+				continue;
+			}
+			if (cellX[c] == UNPLACED)
+				continue;
+			placed++;
+			delta += Math.abs(newX - cellX[c]) + Math.abs(newY - cellY[c]);
+			delta -= Math.abs(oldX - cellX[c]) + Math.abs(oldY - cellY[c]);
+		}
+		return placed < 2 ? 0.0 : (double) occurrences * delta / (placed - 1);
+	}
+
+	/* ****************
+	 *  Journal
+	 * ****************/
+	private void beginJournal() {
+		journaling = true;
+		journalNetSize = 0;
+		journalCellSize = 0;
+		if (++stamp == Integer.MAX_VALUE) {
+			Arrays.fill(netStamp, 0);
+			Arrays.fill(cellStamp, 0);
+			stamp = 1;
+		}
+	}
+
+	private void saveNet(int net) {
+		if (!journaling || netStamp[net] == stamp)
+			return;
+		netStamp[net] = stamp;
+		if (journalNetSize == journalNets.length) {
+			journalNets = Arrays.copyOf(journalNets, journalNetSize * 2);
+			journalNetState = Arrays.copyOf(journalNetState, journalNetSize * 16);
+			journalNetCost = Arrays.copyOf(journalNetCost, journalNetSize * 2);
+		}
+		int base = journalNetSize * 8;
+		journalNets[journalNetSize] = net;
+		journalNetState[base] = minX[net];
+		journalNetState[base + 1] = maxX[net];
+		journalNetState[base + 2] = minY[net];
+		journalNetState[base + 3] = maxY[net];
+		journalNetState[base + 4] = minXCount[net];
+		journalNetState[base + 5] = maxXCount[net];
+		journalNetState[base + 6] = minYCount[net];
+		journalNetState[base + 7] = maxYCount[net];
+		journalNetCost[journalNetSize] = netCost[net];
+		journalNetSize++;
+	}
+
+	private void saveCell(int cell) {
+		if (!journaling || cellStamp[cell] == stamp)
+			return;
+		cellStamp[cell] = stamp;
+		if (journalCellSize * 3 == journalCells.length)
+			journalCells = Arrays.copyOf(journalCells, journalCells.length * 2);
+		int base = journalCellSize * 3;
+		journalCells[base] = cell;
+		journalCells[base + 1] = cellX[cell];
+		journalCells[base + 2] = cellY[cell];
+		journalCellSize++;
+	}
+
+	private void rollback() {
+		for (int i = 0; i < journalNetSize; i++) {
+			int net = journalNets[i];
+			int base = i * 8;
+			minX[net] = journalNetState[base];
+			maxX[net] = journalNetState[base + 1];
+			minY[net] = journalNetState[base + 2];
+			maxY[net] = journalNetState[base + 3];
+			minXCount[net] = journalNetState[base + 4];
+			maxXCount[net] = journalNetState[base + 5];
+			minYCount[net] = journalNetState[base + 6];
+			maxYCount[net] = journalNetState[base + 7];
+			netCost[net] = journalNetCost[i];
+		}
+		for (int i = 0; i < journalCellSize; i++) {
+			int base = i * 3;
+			cellX[journalCells[base]] = journalCells[base + 1];
+			cellY[journalCells[base]] = journalCells[base + 2];
+		}
+		journaling = false;
+	}
+}
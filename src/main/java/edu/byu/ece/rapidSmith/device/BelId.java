@@ -21,6 +21,8 @@
 package edu.byu.ece.rapidSmith.device;
 
 import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Objects;
 
 /**
@@ -31,8 +33,18 @@ import java.util.Objects;
  */
 public final class BelId implements Serializable {
 	private static final long serialVersionUID = -4845391283243751324L;
+	/**
+	 * Ordinals assigned to each distinct BEL id.  Like the registry of
+	 * {@link SiteType}s, the map is shared by all devices and only grows: it holds
+	 * one entry per BEL of each site type whose ordinal has been requested, a few
+	 * thousand per family, and entries are never removed so that ordinals stay
+	 * valid for as long as the bit sets indexed by them.
+	 */
+	private static final Map<BelId, Integer> ordinals = new HashMap<>();
 	private final SiteType siteType;
 	private final String name;
+	/** Cached ordinal of this id plus one, 0 until the ordinal is first requested */
+	private transient int ordinal;
 
 	/**
 	 * Constructs a new BelId object.
@@ -63,6 +75,32 @@ public final class BelId implements Serializable {
 		return name;
 	}
 
+	/**
+	 * Returns a unique, dense integer for this BEL id.  Equal BEL ids share the
+	 * same ordinal.  Ordinals are assigned on first request and are intended for
+	 * indexing arrays and bit sets of per-BEL id data.  Ordinals are global rather
+	 * than per device, so BEL ids of every family loaded share one range and an
+	 * ordinal is stable for the life of the JVM.  They are not serialized and may
+	 * differ between runs.
+	 *
+	 * @return the ordinal of this BEL id
+	 */
+	public int ordinal() {
+		int value = ordinal;
+		if (value == 0) {
+			synchronized (ordinals) {
+				Integer existing = ordinals.get(this);
+				if (existing == null) {
+					existing = ordinals.size();
+					ordinals.put(this, existing);
+				}
+				value = existing + 1;
+			}
+			ordinal = value;
+		}
+		return value - 1;
+	}
+
 	@Override
 	public int hashCode() {
 		return siteType.hashCode() * 31 + name.hashCode();
@@ -30,6 +30,8 @@ public final class BelTemplate implements Serializable {
 	private static final long serialVersionUID = 2908083429845269712L;
 	private int hashCode = 0;
 	private final BelId id;
+	/** Index of this BEL in its site template, assigned by the site template */
+	private transient int index;
 	// Type of the BEL, not a part of XDLRC
 	private final String type;
 	// BelPinTemplates for each pin on the BEL
@@ -45,6 +47,21 @@ public final class BelTemplate implements Serializable {
 		return id;
 	}
 
+	/**
+	 * Returns the index of this BEL within its site template.  Indices are dense,
+	 * ranging from 0 to the number of BELs in the site template - 1, and are intended
+	 * for indexing arrays of per-BEL data within a site.
+	 *
+	 * @return the index of this BEL in its site template
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	void setIndex(int index) {
+		this.index = index;
+	}
+
 	public String getType() {
 		return type;
 	}
@@ -42,7 +42,13 @@ public class Device implements Serializable {
 	// Versions
 	//========================================================================//
 	/** This is the current device file version (saved in file to ensure proper compatibility) */
-	public static final String LATEST_DEVICE_FILE_VERSION = "1.1";
+	public static final String LATEST_DEVICE_FILE_VERSION = "1.2";
+	/**
+	 * Device file versions that can still be read.  Version 1.1 files predate wire
+	 * map templates and load with every wire map stored in full.
+	 */
+	private static final List<String> READABLE_DEVICE_FILE_VERSIONS =
+			Arrays.asList("1.1", LATEST_DEVICE_FILE_VERSION);
 	/** The current release of the tools */
 	public static final String rapidSmithVersion = "2.0.0";
 	private static final long serialVersionUID = -5032202328911688776L;
@@ -66,6 +72,8 @@ public class Device implements Serializable {
 	private HashMap<String, Site> sites;
 	/** Keeps track of which Wire objects have a corresponding PIPRouteThrough */
 	private Map<Integer, Map<Integer, PIPRouteThrough>> routeThroughMap;
+	/** Primitive-keyed copy of routeThroughMap used for allocation-free lookups */
+	private transient volatile WirePairMap<PIPRouteThrough> routeThroughLookup;
 	/** Templates for each site type in the device */
 	private Map<SiteType, SiteTemplate> siteTemplates;
 	/** The wire enumerator for this device */
@@ -77,9 +85,11 @@ public class Device implements Serializable {
 	// Objects that are Populated After Parsing
 	//========================================================================//
 	/** Created on demand when user calls getSitesOfTypeMap() */
-	private Map<SiteType, ArrayList<Site>> sitesOfTypeMap;
+	private volatile Map<SiteType, ArrayList<Site>> sitesOfTypeMap;
 	/** Maps the pad bel name to the corresponding package pin */
 	private Map<String, PackagePin> packagePinMap;
+	/** Created on demand when user calls getNameResolver() */
+	private transient volatile WireNameResolver nameResolver;
 	
 	/**
 	 * Constructor, initializes all objects to null
@@ -253,6 +263,16 @@ public class Device implements Serializable {
 		return getTile(row, col);
 	}
 
+	/**
+	 * Returns the number of sites in this device.  Each site has a unique index in
+	 * the range [0, getNumSites()) obtainable through {@link Site#getDeviceIndex()}.
+	 *
+	 * @return the number of sites in this device
+	 */
+	public int getNumSites() {
+		return sites.size();
+	}
+
 	/**
 	 * Returns the map of site names to sites for this device.
 	 *
@@ -273,6 +293,27 @@ public class Device implements Serializable {
 		return this.sites.get(name);
 	}
 
+	/**
+	 * Returns the name resolver for this device.  The resolver parses tile,
+	 * wire and full wire names directly from character sequences without
+	 * allocating substrings, and is built the first time it is requested.
+	 *
+	 * @return the name resolver for this device
+	 */
+	public WireNameResolver getNameResolver() {
+		WireNameResolver resolver = nameResolver;
+		if (resolver == null) {
+			synchronized (this) {
+				resolver = nameResolver;
+				if (resolver == null) {
+					resolver = new WireNameResolver(this);
+					nameResolver = resolver;
+				}
+			}
+		}
+		return resolver;
+	}
+
 	/**
 	 * Checks if this PIP is RouteThrough.
 	 *
@@ -294,7 +335,16 @@ public class Device implements Serializable {
 		return getRouteThrough(startWire, endWire) != null;
 	}
 
-	boolean isRouteThrough(Integer startWire, Integer endWire) {
+	/**
+	 * Checks if the two wire enumerations are connected through a RouteThrough.
+	 * This lookup does not box the wire enums and is suitable for use in hot
+	 * routing loops.
+	 *
+	 * @param startWire the enum of the startWire to test
+	 * @param endWire the enum of the endWire to test
+	 * @return true if the PIP is a routeThrough
+	 */
+	public boolean isRouteThrough(int startWire, int endWire) {
 		return getRouteThrough(startWire, endWire) != null;
 	}
 
@@ -329,11 +379,10 @@ public class Device implements Serializable {
 	 * @return the PIPRouteThrough object or null if the pip is not a
 	 *   route through
 	 */
-	PIPRouteThrough getRouteThrough(Integer startWire, Integer endWire) {
-		Map<Integer, PIPRouteThrough> sourceMap = routeThroughMap.get(endWire);
-		if (sourceMap == null)
-			return null;
-		return sourceMap.get(startWire);
+	public PIPRouteThrough getRouteThrough(int startWire, int endWire) {
+		if (routeThroughLookup == null)
+			constructRouteThroughLookup();
+		return routeThroughLookup.get(startWire, endWire);
 	}
 
 	/**
@@ -356,6 +405,34 @@ public class Device implements Serializable {
 			System.out.println("Warning: overriding routethrough is used" + rt);
 
 		sourceMap.put(startWire, rt);
+		if (routeThroughLookup != null)
+			routeThroughLookup.put(startWire, endWire, rt);
+	}
+
+	/**
+	 * Builds the primitive-keyed route through lookup table from the route
+	 * through map.  The table is sized for the number of route throughs so it
+	 * never needs to grow after the device is loaded.
+	 */
+	private synchronized void constructRouteThroughLookup() {
+		if (routeThroughLookup != null)
+			return;
+
+		int count = 0;
+		if (routeThroughMap != null) {
+			for (Map<Integer, PIPRouteThrough> sourceMap : routeThroughMap.values())
+				count += sourceMap.size();
+		}
+
+		WirePairMap<PIPRouteThrough> lookup = new WirePairMap<>(count);
+		if (routeThroughMap != null) {
+			for (Map.Entry<Integer, Map<Integer, PIPRouteThrough>> e : routeThroughMap.entrySet()) {
+				int endWire = e.getKey();
+				for (Map.Entry<Integer, PIPRouteThrough> source : e.getValue().entrySet())
+					lookup.put(source.getKey(), endWire, source.getValue());
+			}
+		}
+		routeThroughLookup = lookup;
 	}
 
 	/**
@@ -372,6 +449,7 @@ public class Device implements Serializable {
 	 */
 	public void setWireEnumerator(WireEnumerator we) {
 		this.we = we;
+		this.nameResolver = null;
 	}
 
 	/**
@@ -626,6 +704,7 @@ public class Device implements Serializable {
 	 * Used only in creating and loading devices.
 	 */
 	public void constructTileMap() {
+		nameResolver = null;
 		tileMap = new HashMap<>(getRows() * getColumns());
 		sites = new HashMap<>();
 		for (Tile[] tileArray : tiles) {
@@ -633,8 +712,10 @@ public class Device implements Serializable {
 				tileMap.put(tile.getName(), tile);
 				if (tile.getSites() == null)
 					continue;
-				for (Site ps : tile.getSites())
+				for (Site ps : tile.getSites()) {
+					ps.setDeviceIndex(sites.size());
 					sites.put(ps.getName(), ps);
+				}
 			}
 		}
 	}
@@ -654,10 +735,13 @@ public class Device implements Serializable {
 	 * <p>
 	 * Specifically, this method does three things:
 	 *   initializes the site types to their default types
+	 *   builds the route through lookup table
 	 *
 	 */
 	public void constructDependentResources() {
 		setSiteTypes();
+		routeThroughLookup = null;
+		constructRouteThroughLookup();
 		for (SiteTemplate siteTemplate : siteTemplates.values())
 			siteTemplate.constructDependentResources();
 		constructSiteExternalConnections();
@@ -669,7 +753,7 @@ public class Device implements Serializable {
 	 */
 	private void setSiteTypes() {
 		for (Site site : sites.values()) {
-			site.setTypeUnchecked(site.getPossibleTypes()[0]);
+			site.resetType();
 		}
 	}
 
@@ -737,6 +821,7 @@ public class Device implements Serializable {
 
 	public void setRouteThroughMap(Map<Integer, Map<Integer, PIPRouteThrough>> routeThroughMap) {
 		this.routeThroughMap = routeThroughMap;
+		this.routeThroughLookup = null;
 	}
 
 	/*
@@ -782,8 +867,13 @@ public class Device implements Serializable {
 
 		@SuppressWarnings("unused")
 		private Device readResolve() {
-			if (!version.equals(LATEST_DEVICE_FILE_VERSION))
+			// files written before wire map templates have no template references,
+			// so their wire maps deserialize as plain maps
+			if (!READABLE_DEVICE_FILE_VERSIONS.contains(version)) {
+				System.err.println("Device file version " + version + " is not supported, expected one of " +
+						READABLE_DEVICE_FILE_VERSIONS + ".  Regenerate the device file for " + partName + ".");
 				return null;
+			}
 			Device device = new Device();
 			readResolve(device);
 			return device;
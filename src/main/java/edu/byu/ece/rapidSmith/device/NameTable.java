@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2016 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * BYU RapidSmith Tools is free software: you may redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * BYU RapidSmith Tools is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * A copy of the GNU General Public License is included with the BYU
+ * RapidSmith Tools. It can be found at doc/LICENSE.GPL3.TXT. You may
+ * also get a copy of the license at <http://www.gnu.org/licenses/>.
+ */
+package edu.byu.ece.rapidSmith.device;
+
+/**
+ * Immutable table mapping names to their index in a name array.  Names are
+ * looked up from a range of a {@link CharSequence} so callers can resolve
+ * tokens of a larger string without allocating substrings.
+ */
+final class NameTable {
+	/** The names in the table, indexed by id */
+	private final String[] names;
+	/** Open-addressing table of name ids plus one.  Zero marks an empty slot. */
+	private final int[] slots;
+
+	/**
+	 * Builds a table for the specified names.  A name's id is its index in
+	 * the array.  Null entries are skipped.
+	 *
+	 * @param names the names to index
+	 */
+	NameTable(String[] names) {
+		this.names = names;
+
+		// Find a power of 2 at least twice the number of names
+		int capacity = 4;
+		while (capacity < names.length * 2)
+			capacity <<= 1;
+		slots = new int[capacity];
+
+		int mask = capacity - 1;
+		for (int id = 0; id < names.length; id++) {
+			String name = names[id];
+			if (name == null)
+				continue;
+			int i = name.hashCode() & mask;
+			while (slots[i] != 0) {
+				if (names[slots[i] - 1].equals(name))
+					break;
+				i = (i + 1) & mask;
+			}
+			if (slots[i] == 0)
+				slots[i] = id + 1;
+		}
+	}
+
+	/**
+	 * Returns the id of the name in the range [start, end) of the sequence,
+	 * or -1 if the name is not in the table.
+	 */
+	int lookup(CharSequence seq, int start, int end) {
+		// Same hash as String.hashCode so the table can be built from the names directly
+		int hash = 0;
+		for (int i = start; i < end; i++)
+			hash = 31 * hash + seq.charAt(i);
+
+		int mask = slots.length - 1;
+		int i = hash & mask;
+		while (slots[i] != 0) {
+			int id = slots[i] - 1;
+			if (matches(names[id], seq, start, end))
+				return id;
+			i = (i + 1) & mask;
+		}
+		return -1;
+	}
+
+	private static boolean matches(String name, CharSequence seq, int start, int end) {
+		if (name.length() != end - start)
+			return false;
+		for (int i = 0; i < name.length(); i++) {
+			if (name.charAt(i) != seq.charAt(start + i))
+				return false;
+		}
+		return true;
+	}
+}
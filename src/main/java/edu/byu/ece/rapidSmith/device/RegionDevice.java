@@ -0,0 +1,353 @@
+/*
+ * Copyright (c) 2016 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * BYU RapidSmith Tools is free software: you may redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * BYU RapidSmith Tools is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * A copy of the GNU General Public License is included with the BYU
+ * RapidSmith Tools. It can be found at doc/LICENSE.GPL3.TXT. You may
+ * also get a copy of the license at <http://www.gnu.org/licenses/>.
+ */
+package edu.byu.ece.rapidSmith.device;
+
+import java.util.*;
+
+/**
+ * A view of a rectangular region of a device that can be used anywhere a
+ * {@link Device} is accepted.
+ * <p>
+ * Unlike the devices created by
+ * {@link edu.byu.ece.rapidSmith.device.creation.PartialDeviceGenerator}, a region
+ * view does not copy the connections of its tiles.  Each tile of the region is a
+ * light-weight tile that shares the wire maps, site pin maps and site data of the
+ * corresponding tile of the parent device, with its row and column translated to
+ * the region.  Only the wires with connections that leave the region get a wire map
+ * of their own, which stores just those wires (see
+ * {@link WireHashMap#withChanges(WireHashMap, Map)}).
+ * <p>
+ * Connections that leave the region are redirected to virtual boundary wires in an
+ * {@code OOC_WIRE_X0Y0} tile in an extra column on the right of the region, exactly
+ * as in the devices created by {@code PartialDeviceGenerator}.  Each boundary wire is
+ * named after the wire outside the region it represents ("tile/wire").  The remaining
+ * tiles of the extra column are of type NULL.
+ * <p>
+ * The view shares the site templates, route-throughs and primitive defs of its
+ * parent.  Site types set on the sites of the view do not affect the parent.
+ */
+public final class RegionDevice extends Device {
+	private static final long serialVersionUID = 2785106539219571374L;
+
+	private final Device parent;
+	private final int firstRow;
+	private final int firstColumn;
+	private final int regionRows;
+	private final int regionColumns;
+
+	/**
+	 * Creates a view of the rectangular region of {@code parent} with the
+	 * specified tiles in opposite corners.
+	 *
+	 * @param parent the device to create a view of
+	 * @param tileAName the name of a corner tile of the region
+	 * @param tileBName the name of the opposite corner tile of the region
+	 * @throws IllegalArgumentException if either tile is not in the device
+	 */
+	public RegionDevice(Device parent, String tileAName, String tileBName) {
+		this(parent, parent.getTile(tileAName), parent.getTile(tileBName));
+	}
+
+	/**
+	 * Creates a view of the rectangular region of {@code parent} with the
+	 * specified tiles in opposite corners.
+	 *
+	 * @param parent the device to create a view of
+	 * @param tileA a corner tile of the region
+	 * @param tileB the opposite corner tile of the region
+	 * @throws IllegalArgumentException if either tile is not in the device
+	 */
+	public RegionDevice(Device parent, Tile tileA, Tile tileB) {
+		if (tileA == null || tileB == null || tileA.getDevice() != parent || tileB.getDevice() != parent)
+			throw new IllegalArgumentException("Invalid tile locations specified " + tileA + " " + tileB);
+
+		this.parent = parent;
+		this.firstRow = Math.min(tileA.getRow(), tileB.getRow());
+		this.firstColumn = Math.min(tileA.getColumn(), tileB.getColumn());
+		this.regionRows = Math.abs(tileA.getRow() - tileB.getRow()) + 1;
+		this.regionColumns = Math.abs(tileA.getColumn() - tileB.getColumn()) + 1;
+
+		setPartName(parent.getPartName());
+		setFamily(parent.getFamily());
+		setSiteTemplates(parent.getSiteTemplates());
+		setRouteThroughMap(parent.getRouteThroughMap());
+		setPrimitiveDefs(parent.getPrimitiveDefs());
+
+		// one extra column for the OOC_WIRE tile
+		Tile[][] tiles = new Tile[regionRows][regionColumns + 1];
+		for (int row = 0; row < regionRows; row++) {
+			for (int col = 0; col < regionColumns; col++)
+				tiles[row][col] = createRegionTile(parent.getTile(firstRow + row, firstColumn + col), row, col);
+		}
+		Tile oocTile = createTile("OOC_WIRE_X0Y0", TileType.valueOf(getFamily(), "OOC_WIRE"), 0, regionColumns);
+		tiles[0][regionColumns] = oocTile;
+		TileType nullType = TileType.valueOf(getFamily(), "NULL");
+		for (int row = 1; row < regionRows; row++)
+			tiles[row][regionColumns] = createTile("NULL_X0Y" + (row - 1), nullType, row, regionColumns);
+		setTileArray(tiles);
+
+		createBoundaryWires(tiles, oocTile);
+		constructTileMap();
+		for (Site site : getSites().values())
+			site.resetType();
+
+		for (PackagePin pin : parent.getPackagePins()) {
+			if (getSite(pin.getSite()) != null)
+				addPackagePin(pin);
+		}
+	}
+
+	private Tile createTile(String name, TileType type, int row, int column) {
+		Tile tile = new Tile();
+		tile.setName(name);
+		tile.setType(type);
+		tile.setDevice(this);
+		tile.setRow(row);
+		tile.setColumn(column);
+		return tile;
+	}
+
+	private Tile createRegionTile(Tile parentTile, int row, int column) {
+		Tile tile = createTile(parentTile.getName(), parentTile.getType(), row, column);
+		tile.setWireHashMap(parentTile.getWireHashMap());
+		tile.setReverseWireConnections(parentTile.getReverseWireHashMap());
+		tile.setWireSites(parentTile.getWireSites());
+		Site[] parentSites = parentTile.getSites();
+		if (parentSites != null) {
+			Site[] sites = new Site[parentSites.length];
+			for (int i = 0; i < sites.length; i++)
+				sites[i] = parentSites[i].copyForTile(tile);
+			tile.setSites(sites);
+		}
+		return tile;
+	}
+
+	/**
+	 * Finds the connections leaving the region, creates a boundary wire for the wire
+	 * outside the region of each and redirects the connection to the boundary wire.
+	 */
+	private void createBoundaryWires(Tile[][] tiles, Tile oocTile) {
+		WireEnumerator parentWe = parent.getWireEnumerator();
+		// boundary wire name -> region wires driving it / driven by it
+		Map<String, List<TileWire>> toOutput = new LinkedHashMap<>();
+		Map<String, List<TileWire>> toInput = new LinkedHashMap<>();
+		// boundary wire name -> the parent wire it represents
+		Map<String, Integer> boundaryWireEnums = new HashMap<>();
+
+		// tile -> wire -> connections that stay in the region, for the wires
+		// with connections that leave it
+		Map<Tile, Map<Integer, List<WireConnection>>> forwardChanges = new HashMap<>();
+		Map<Tile, Map<Integer, List<WireConnection>>> reverseChanges = new HashMap<>();
+
+		for (int row = 0; row < regionRows; row++) {
+			for (int col = 0; col < regionColumns; col++) {
+				Tile tile = tiles[row][col];
+				Tile parentTile = parent.getTile(firstRow + row, firstColumn + col);
+				findLeavingConnections(tile, parentTile, parentTile.getWireHashMap(), parentWe,
+						toOutput, boundaryWireEnums, forwardChanges);
+				findLeavingConnections(tile, parentTile, parentTile.getReverseWireHashMap(), parentWe,
+						toInput, boundaryWireEnums, reverseChanges);
+			}
+		}
+
+		// the wire enumerator of the view contains the wires of the parent plus the
+		// boundary wires
+		String[] parentWires = parentWe.getWires();
+		List<String> boundaryWires = new ArrayList<>(boundaryWireEnums.keySet());
+		String[] wires = Arrays.copyOf(parentWires, parentWires.length + boundaryWires.size());
+		Map<String, Integer> wireMap = new HashMap<>(parentWe.getWireMap());
+		WireType[] types = parentWe.getWireTypes() == null ? null :
+				Arrays.copyOf(parentWe.getWireTypes(), wires.length);
+		WireDirection[] directions = parentWe.getWireDirections() == null ? null :
+				Arrays.copyOf(parentWe.getWireDirections(), wires.length);
+		for (int i = 0; i < boundaryWires.size(); i++) {
+			int wireEnum = parentWires.length + i;
+			String name = boundaryWires.get(i);
+			int parentEnum = boundaryWireEnums.get(name);
+			wires[wireEnum] = name;
+			wireMap.put(name, wireEnum);
+			if (types != null && parentEnum < parentWires.length)
+				types[wireEnum] = types[parentEnum];
+			if (directions != null && parentEnum < parentWires.length)
+				directions[wireEnum] = directions[parentEnum];
+		}
+		WireEnumerator we = new WireEnumerator();
+		we.setWires(wires);
+		we.setWireMap(wireMap);
+		we.setWireTypes(types);
+		we.setWireDirections(directions);
+		setWireEnumerator(we);
+
+		// redirect the leaving connections of the region tiles to the boundary wires
+		addBoundaryConnections(toOutput, oocTile, wireMap, forwardChanges);
+		addBoundaryConnections(toInput, oocTile, wireMap, reverseChanges);
+		applyChanges(forwardChanges, true);
+		applyChanges(reverseChanges, false);
+
+		// and connect the boundary wires back to the region
+		oocTile.setWireHashMap(createOocWireMap(toInput, oocTile, wireMap));
+		oocTile.setReverseWireConnections(createOocWireMap(toOutput, oocTile, wireMap));
+	}
+
+	private void findLeavingConnections(
+			Tile tile, Tile parentTile, WireHashMap wireMap, WireEnumerator parentWe,
+			Map<String, List<TileWire>> boundary, Map<String, Integer> boundaryWireEnums,
+			Map<Tile, Map<Integer, List<WireConnection>>> changes
+	) {
+		if (wireMap == null)
+			return;
+		for (Integer wire : wireMap.keySet()) {
+			WireConnection[] connections = wireMap.get(wire);
+			if (connections == null || !leavesRegion(parentTile, connections))
+				continue;
+
+			List<WireConnection> bounded = new ArrayList<>(connections.length);
+			for (WireConnection wc : connections) {
+				Tile sinkTile = wc.getTile(parentTile);
+				if (sinkTile == null)
+					continue;
+				if (inRegion(sinkTile)) {
+					bounded.add(wc);
+				} else {
+					String name = sinkTile.getName() + "/" + parentWe.getWireName(wc.getWire());
+					boundaryWireEnums.putIfAbsent(name, wc.getWire());
+					boundary.computeIfAbsent(name, k -> new ArrayList<>()).add(new TileWire(tile, wire));
+				}
+			}
+			changes.computeIfAbsent(tile, k -> new HashMap<>()).put(wire, bounded);
+		}
+	}
+
+	private boolean leavesRegion(Tile parentTile, WireConnection[] connections) {
+		for (WireConnection wc : connections) {
+			int row = parentTile.getRow() - wc.getRowOffset();
+			int col = parentTile.getColumn() - wc.getColumnOffset();
+			if (row < firstRow || row >= firstRow + regionRows || col < firstColumn || col >= firstColumn + regionColumns)
+				return true;
+		}
+		return false;
+	}
+
+	private static void addBoundaryConnections(
+			Map<String, List<TileWire>> boundary, Tile oocTile, Map<String, Integer> wireMap,
+			Map<Tile, Map<Integer, List<WireConnection>>> changes
+	) {
+		for (Map.Entry<String, List<TileWire>> e : boundary.entrySet()) {
+			int boundaryWire = wireMap.get(e.getKey());
+			for (TileWire tw : e.getValue()) {
+				Tile tile = tw.getTile();
+				WireConnection wc = new WireConnection(boundaryWire,
+						tile.getRow() - oocTile.getRow(), tile.getColumn() - oocTile.getColumn(), false);
+				List<WireConnection> connections = changes.get(tile).get(tw.getWireEnum());
+				if (!connections.contains(wc))
+					connections.add(wc);
+			}
+		}
+	}
+
+	private static void applyChanges(Map<Tile, Map<Integer, List<WireConnection>>> changes, boolean forward) {
+		for (Map.Entry<Tile, Map<Integer, List<WireConnection>>> e : changes.entrySet()) {
+			Tile tile = e.getKey();
+			Map<Integer, WireConnection[]> arrays = new HashMap<>();
+			e.getValue().forEach((wire, wcs) -> arrays.put(wire, wcs.toArray(new WireConnection[0])));
+			if (forward)
+				tile.setWireHashMap(WireHashMap.withChanges(tile.getWireHashMap(), arrays));
+			else
+				tile.setReverseWireConnections(WireHashMap.withChanges(tile.getReverseWireHashMap(), arrays));
+		}
+	}
+
+	private static WireHashMap createOocWireMap(
+			Map<String, List<TileWire>> boundary, Tile oocTile, Map<String, Integer> wireMap
+	) {
+		WireHashMap whm = new WireHashMap();
+		for (Map.Entry<String, List<TileWire>> e : boundary.entrySet()) {
+			Set<WireConnection> connections = new LinkedHashSet<>();
+			for (TileWire tw : e.getValue()) {
+				connections.add(new WireConnection(tw.getWireEnum(),
+						oocTile.getRow() - tw.getTile().getRow(),
+						oocTile.getColumn() - tw.getTile().getColumn(), false));
+			}
+			whm.put(wireMap.get(e.getKey()), connections.toArray(new WireConnection[0]));
+		}
+		return whm;
+	}
+
+	/* ****************
+	 *  Parent mapping
+	 * ****************/
+
+	/**
+	 * @return the device this is a view of
+	 */
+	public Device getParent() {
+		return parent;
+	}
+
+	/**
+	 * @return true if the tile of the parent device is in this region
+	 */
+	public boolean inRegion(Tile parentTile) {
+		int row = parentTile.getRow();
+		int col = parentTile.getColumn();
+		return parentTile.getDevice() == parent &&
+				row >= firstRow && row < firstRow + regionRows &&
+				col >= firstColumn && col < firstColumn + regionColumns;
+	}
+
+	/**
+	 * Returns the tile of the parent device that a tile of this view represents.
+	 *
+	 * @return the tile of the parent, or null for the tiles of the extra column
+	 */
+	public Tile getParentTile(Tile tile) {
+		if (tile.getDevice() != this || tile.getColumn() >= regionColumns)
+			return null;
+		return parent.getTile(firstRow + tile.getRow(), firstColumn + tile.getColumn());
+	}
+
+	/**
+	 * Returns the tile of this view representing a tile of the parent device.
+	 *
+	 * @return the tile of this view, or null if the tile is outside the region
+	 */
+	public Tile getRegionTile(Tile parentTile) {
+		if (!inRegion(parentTile))
+			return null;
+		return getTile(parentTile.getRow() - firstRow, parentTile.getColumn() - firstColumn);
+	}
+
+	/**
+	 * @return the site of the parent device that a site of this view represents
+	 */
+	public Site getParentSite(Site site) {
+		Tile parentTile = getParentTile(site.getTile());
+		return parentTile == null ? null : parentTile.getSite(site.getIndex());
+	}
+
+	/**
+	 * @return the site of this view representing a site of the parent device, or
+	 *   null if the site is outside the region
+	 */
+	public Site getRegionSite(Site parentSite) {
+		Tile tile = getRegionTile(parentSite.getTile());
+		return tile == null ? null : tile.getSite(parentSite.getIndex());
+	}
+}
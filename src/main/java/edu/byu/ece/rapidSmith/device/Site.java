@@ -38,6 +38,8 @@ public final class Site implements Serializable{
 	private int index;
 	/** The tile where this site resides */
 	private Tile tile;
+	/** Index of this site among all sites of its device, -1 if not in a device */
+	private transient int deviceIndex = -1;
 	/** The X coordinate of the instance (ex: SLICE_X#Y5) */
 	private Integer instanceX;
 	/** The Y coordinate of the instance (ex: SLICE_X5Y#) */
@@ -101,6 +103,40 @@ public final class Site implements Serializable{
 		this.index = index;
 	}
 
+	/**
+	 * Returns the index of this site among all of the sites in its device.
+	 * Indices are dense, ranging from 0 to {@link Device#getNumSites()} - 1, and
+	 * are intended for indexing arrays of per-site data.
+	 * @return the index of this site in its device, or -1 if the site has not
+	 *   been added to a device
+	 */
+	public int getDeviceIndex() {
+		return deviceIndex;
+	}
+
+	void setDeviceIndex(int deviceIndex) {
+		this.deviceIndex = deviceIndex;
+	}
+
+	/**
+	 * Creates a site with the same name, types and wires as this site in another
+	 * tile.  The maps describing the site's wires are shared with this site.  Used
+	 * to build region views of a device.
+	 */
+	Site copyForTile(Tile tile) {
+		Site copy = new Site();
+		copy.name = name;
+		copy.index = index;
+		copy.tile = tile;
+		copy.instanceX = instanceX;
+		copy.instanceY = instanceY;
+		copy.bondedType = bondedType;
+		copy.possibleTypes = possibleTypes;
+		copy.externalWires = externalWires;
+		copy.externalWireToPinMap = externalWireToPinMap;
+		return copy;
+	}
+
 	/**
 	 * Returns the tile in which this site exists.
 	 * @return the tile in which this site exists
@@ -169,11 +205,21 @@ public final class Site implements Serializable{
 	/**
 	 * Updates the type of this site to the specified type.
 	 * <p/>
+	 * If a {@link SiteTypeOverlay} is bound to the current thread, the type is
+	 * only updated in the overlay and the site itself is left unmodified.
+	 * Otherwise, the type is stored in the site and is seen by every design
+	 * using this device.
+	 * <p/>
 	 * This method obtains the site template from its device, therefore, the
 	 * site must already exist in a tile which exists in a device.
 	 * @param type the new type for this site
 	 */
 	public void setType(SiteType type) {
+		SiteTypeOverlay overlay = SiteTypeOverlay.current();
+		if (overlay != null) {
+			overlay.setType(this, type);
+			return;
+		}
 		if (!Arrays.asList(getPossibleTypes()).contains(type))
 			throw new IllegalArgumentException("Invalid type: site=" + name + ", type=" + type);
 		template = getTile().getDevice().getSiteTemplate(type);
@@ -185,9 +231,23 @@ public final class Site implements Serializable{
 	 * @param type the new type for this site
 	 */
 	public void setTypeUnchecked(SiteType type) {
+		SiteTypeOverlay overlay = SiteTypeOverlay.current();
+		if (overlay != null) {
+			overlay.setTypeUnchecked(this, type);
+			return;
+		}
 		template = getTile().getDevice().getSiteTemplate(type);
 	}
 
+	/**
+	 * Stores the default type in this site.  Unlike {@link #setTypeUnchecked(SiteType)},
+	 * any {@link SiteTypeOverlay} bound to the current thread is ignored.  Used when
+	 * loading and creating devices.
+	 */
+	void resetType() {
+		template = getTile().getDevice().getSiteTemplate(getPossibleTypes()[0]);
+	}
+
 	/**
 	 * Returns the default type of this site.
 	 * The default type is defined as getPossibleTypes[0].
@@ -222,10 +282,18 @@ public final class Site implements Serializable{
 
 	/**
 	 * Returns the current template backing this site.
-	 * The template will change when the site's type changes.
+	 * The template will change when the site's type changes.  The type in the
+	 * {@link SiteTypeOverlay} bound to the current thread takes precedence over
+	 * the type stored in this site.
 	 * @return the current template backing this site
 	 */
 	SiteTemplate getTemplate() {
+		SiteTypeOverlay overlay = SiteTypeOverlay.current();
+		if (overlay != null) {
+			SiteTemplate overlayTemplate = overlay.getTemplate(this);
+			if (overlayTemplate != null)
+				return overlayTemplate;
+		}
 		return template;
 	}
 
@@ -775,11 +843,11 @@ public final class Site implements Serializable{
 	 * @param endWire Sink wire enum
 	 * @return True if the wires form a routethrough
 	 */
-	boolean isRoutethrough(Integer startWire, Integer endWire) {
+	boolean isRoutethrough(int startWire, int endWire) {
 		return getTemplate().isRoutethrough(startWire, endWire);
 	}
 
-	boolean isRoutethrough(SiteType type, Integer startWire, Integer endWire) {
+	boolean isRoutethrough(SiteType type, int startWire, int endWire) {
 		return getTemplate(type).isRoutethrough(startWire, endWire);
 	}
 
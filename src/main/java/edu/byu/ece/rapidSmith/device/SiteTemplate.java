@@ -48,6 +48,8 @@ public final class SiteTemplate implements Serializable {
 	private transient Map<Integer, BelPinTemplate> belPins;
 	// Map containing the bel routethrough information of the site
 	private Map<Integer, Set<Integer>> belRoutethroughMap;
+	// Primitive-keyed copy of the bel routethroughs used for allocation-free lookups
+	private transient volatile WirePairMap<Boolean> belRoutethroughLookup;
 
 
 	public SiteType getType() {
@@ -64,6 +66,16 @@ public final class SiteTemplate implements Serializable {
 
 	public void setBelTemplates(Map<String, BelTemplate> belTemplates) {
 		this.belTemplates = belTemplates;
+		indexBelTemplates();
+	}
+
+	// Assigns each BEL template its index in this site
+	private void indexBelTemplates() {
+		if (belTemplates == null)
+			return;
+		int index = 0;
+		for (BelTemplate belTemplate : belTemplates.values())
+			belTemplate.setIndex(index++);
 	}
 
 	public SiteType[] getCompatibleTypes() {
@@ -140,16 +152,33 @@ public final class SiteTemplate implements Serializable {
 
 	public void setBelRoutethroughs(Map<Integer, Set<Integer>> belRoutethroughs) {
 		this.belRoutethroughMap = belRoutethroughs;
+		this.belRoutethroughLookup = null;
 	}
 
-	public boolean isRoutethrough(Integer startWire, Integer endWire) {
-
+	public boolean isRoutethrough(int startWire, int endWire) {
 		if (belRoutethroughMap == null) {
 			return false;
 		}
 
-		Set<Integer> sinks = belRoutethroughMap.get(startWire);
-		return sinks != null && sinks.contains(endWire);
+		WirePairMap<Boolean> lookup = belRoutethroughLookup;
+		if (lookup == null) {
+			lookup = constructBelRoutethroughLookup();
+		}
+		return lookup.containsKey(startWire, endWire);
+	}
+
+	private WirePairMap<Boolean> constructBelRoutethroughLookup() {
+		int count = 0;
+		for (Set<Integer> sinks : belRoutethroughMap.values())
+			count += sinks.size();
+
+		WirePairMap<Boolean> lookup = new WirePairMap<>(count);
+		for (Map.Entry<Integer, Set<Integer>> e : belRoutethroughMap.entrySet()) {
+			for (Integer sink : e.getValue())
+				lookup.put(e.getKey(), sink, Boolean.TRUE);
+		}
+		belRoutethroughLookup = lookup;
+		return lookup;
 	}
 
 	@Override
@@ -172,6 +201,8 @@ public final class SiteTemplate implements Serializable {
 			internalWireToSitePinMap.put(sitePin.getInternalWire(), sitePin);
 		}
 
+		indexBelTemplates();
+
 		// Create the wire to bel pin maps by inferringthe information from the
 		// bel pin templates
 		belPins = new HashMap<>();
@@ -183,6 +214,9 @@ public final class SiteTemplate implements Serializable {
 				belPins.put(belPin.getWire(), belPin);
 			}
 		}
+
+		if (belRoutethroughMap != null)
+			constructBelRoutethroughLookup();
 	}
 
 	// Convenience method to search both source and sink site pins
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2016 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * BYU RapidSmith Tools is free software: you may redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * BYU RapidSmith Tools is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * A copy of the GNU General Public License is included with the BYU
+ * RapidSmith Tools. It can be found at doc/LICENSE.GPL3.TXT. You may
+ * also get a copy of the license at <http://www.gnu.org/licenses/>.
+ */
+package edu.byu.ece.rapidSmith.device;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Holds the current types of sites for a single design so that the
+ * {@link Device} shared between designs does not need to be modified.
+ * <p/>
+ * An overlay is bound to a thread with {@link #bind()}.  While bound, the
+ * type-dependent methods of {@link Site} (and the {@link SiteWire}s,
+ * {@link SitePin}s and {@link Bel}s obtained through them) use the type
+ * stored in the overlay instead of the type stored in the site.  Sites not
+ * in the overlay keep the type stored in the site.  Different threads can
+ * therefore work on different designs of the same device concurrently as
+ * long as each thread binds the overlay of its design.
+ * <pre>
+ *   try (SiteTypeOverlay.Binding ignored = design.bindSiteTypes()) {
+ *       // place and route the design
+ *   }
+ * </pre>
+ * An overlay is not thread safe and should only be modified by one thread
+ * at a time.
+ */
+public final class SiteTypeOverlay implements Serializable {
+	private static final long serialVersionUID = 2829151407318722634L;
+	/** The overlay bound to each thread */
+	private static final ThreadLocal<SiteTypeOverlay> boundOverlay = new ThreadLocal<>();
+	/** The type of each site that has been configured in this overlay */
+	private final Map<Site, SiteType> siteTypes;
+
+	/**
+	 * Creates a new empty overlay.
+	 */
+	public SiteTypeOverlay() {
+		siteTypes = new HashMap<>();
+	}
+
+	/**
+	 * Creates a new overlay containing the site types of another overlay.
+	 *
+	 * @param other the overlay to copy
+	 */
+	public SiteTypeOverlay(SiteTypeOverlay other) {
+		siteTypes = new HashMap<>(other.siteTypes);
+	}
+
+	/**
+	 * Returns the overlay bound to the current thread, or null if no overlay
+	 * is bound.
+	 */
+	public static SiteTypeOverlay current() {
+		return boundOverlay.get();
+	}
+
+	/**
+	 * Binds this overlay to the current thread.  The previously bound overlay
+	 * is restored when the returned binding is closed.
+	 *
+	 * @return the binding to close when done with this overlay
+	 */
+	public Binding bind() {
+		SiteTypeOverlay previous = boundOverlay.get();
+		boundOverlay.set(this);
+		return new Binding(previous);
+	}
+
+	/**
+	 * @return true if this overlay is bound to the current thread
+	 */
+	public boolean isBound() {
+		return boundOverlay.get() == this;
+	}
+
+	/**
+	 * Returns the type of the site in this overlay or null if the type of the
+	 * site has not been set in this overlay.
+	 *
+	 * @param site the site to get the type of
+	 * @return the type of the site in this overlay
+	 */
+	public SiteType getType(Site site) {
+		return siteTypes.get(site);
+	}
+
+	/**
+	 * Sets the type of the site in this overlay.
+	 *
+	 * @param site the site to update
+	 * @param type the new type of the site
+	 * @throws IllegalArgumentException if the type is not a possible type of the site
+	 */
+	public void setType(Site site, SiteType type) {
+		if (!Arrays.asList(site.getPossibleTypes()).contains(type))
+			throw new IllegalArgumentException("Invalid type: site=" + site.getName() + ", type=" + type);
+		siteTypes.put(site, type);
+	}
+
+	/**
+	 * Same as {@link #setType(Site, SiteType)} except does not validate that the
+	 * type is a legal type.
+	 */
+	public void setTypeUnchecked(Site site, SiteType type) {
+		siteTypes.put(site, type);
+	}
+
+	/**
+	 * Removes the site from this overlay.  The site reverts to the type stored
+	 * in the site.
+	 *
+	 * @param site the site to remove
+	 */
+	public void clearType(Site site) {
+		siteTypes.remove(site);
+	}
+
+	/**
+	 * Removes all sites from this overlay.
+	 */
+	public void clear() {
+		siteTypes.clear();
+	}
+
+	/**
+	 * @return the number of sites whose type is set in this overlay
+	 */
+	public int size() {
+		return siteTypes.size();
+	}
+
+	/**
+	 * Returns the template of the site's type in this overlay or null if the
+	 * type of the site has not been set in this overlay.
+	 */
+	SiteTemplate getTemplate(Site site) {
+		SiteType type = siteTypes.get(site);
+		if (type == null)
+			return null;
+		return site.getTile().getDevice().getSiteTemplate(type);
+	}
+
+	/**
+	 * Restores the previously bound overlay of a thread when closed.
+	 */
+	public static final class Binding implements AutoCloseable {
+		private final SiteTypeOverlay previous;
+
+		private Binding(SiteTypeOverlay previous) {
+			this.previous = previous;
+		}
+
+		@Override
+		public void close() {
+			if (previous == null)
+				boundOverlay.remove();
+			else
+				boundOverlay.set(previous);
+		}
+	}
+}
@@ -24,11 +24,19 @@ import java.lang.ref.SoftReference;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
  * DO NOT USE THIS CLASS!  This class was specially developed for the Device 
  * wire connections hash map.  It is specifically optimized for that purpose.
+ * <p>
+ * A map may be built on a template map (see {@link #withTemplate}).  Such a map
+ * stores only the entries that differ from the template and the keys of the
+ * template that it does not contain, and resolves all other lookups through the
+ * template.  This allows the tiles of a type that differ only slightly, such as
+ * tiles on the edges of the device, to share one copy of the connections.
  * Created on: Mar 18, 2011
  */
 public class WireHashMap implements Serializable {
@@ -56,26 +64,30 @@ public class WireHashMap implements Serializable {
 	private int[] keys;
 	
 	/**
-	 * The corresponding values table.
+	 * The corresponding values table.  For a map with a template, this holds only
+	 * the entries that differ from the template; use {@link #get} or
+	 * {@link #values()} to read the entries of the map.
 	 */
-	public WireConnection[][] values;
+	private WireConnection[][] values;
 	
 	/**
 	 * The number of key-value mappings contained in this map.
 	 */
 	private int size;
 
-	// These variables are used to track the whether the caches are up to date.
-	// A cache is up to date if it is equivalent to the wireHashMapModification
-	// value.  Any put operation updates the wireHashMapModification value
+	// Any put operation updates the wireHashMapModification value.  A cache is up
+	// to date if the modification it was built at is equal to this value.
 	private transient int wireHashMapModification = 0;
-	private transient int keySetCacheModification = -1; // initialize as out of date
-	private transient int valuesCacheModification = -1; // initialize as out of date
 
 	// Caches are stored as soft references to avoid being a memory drain
-	// when not in use.
-	private transient SoftReference<Set<Integer>> keySetCache;
-	private transient SoftReference<ArrayList<WireConnection[]>> valuesCache;
+	// when not in use.  Each cache is published with the modification it was
+	// built at in a single volatile write, so a finished map may be read from
+	// multiple threads.
+	private transient volatile SoftReference<Cache<Set<Integer>>> keySetCache;
+	private transient volatile SoftReference<Cache<ArrayList<WireConnection[]>>> valuesCache;
+
+	/** The size of a map with a template, or -1 if not computed since the last change */
+	private transient volatile int templatedSize = -1;
 
 	/**
 	 * The next size value at which to resize (capacity * load factor).
@@ -92,6 +104,12 @@ public class WireHashMap implements Serializable {
 
 	private Integer hash;
 
+	/** The map this map is based on, or null if this map stores all of its entries */
+	private WireHashMap template;
+
+	/** Sorted keys of the template that are not in this map */
+	private int[] removedKeys;
+
 	/** This map requires an initial capacity.  This map will not grow.
 	 * @param capacity the set capacity for this hash map
 	 * @param loadFactor the load factor for this hash map before growing
@@ -131,12 +149,35 @@ public class WireHashMap implements Serializable {
 	 * @return the number of key-value mappings in this map
 	 */
 	public int size() {
-		return size;
+		if (template == null)
+			return size;
+		int total = templatedSize;
+		if (total < 0) {
+			// the keys of the template that are not removed, plus the keys of this map
+			// that are not in the template
+			total = template.size() - removedKeys.length;
+			for (int key : keys) {
+				if (key != -1 && !template.containsKey(key))
+					total++;
+			}
+			templatedSize = total;
+		}
+		return total;
+	}
+
+	/**
+	 * Returns true if the map contains the key.
+	 */
+	public boolean containsKey(int key) {
+		if (keys[indexFor(key)] != -1)
+			return true;
+		return template != null && Arrays.binarySearch(removedKeys, key) < 0 &&
+				template.containsKey(key);
 	}
 
 
 	public boolean isEmpty() {
-		return size == 0;
+		return size() == 0;
 	}
 
 	private int indexFor(int key) {
@@ -150,18 +191,31 @@ public class WireHashMap implements Serializable {
 	
 	public WireConnection[] get(int key){
 		int i = indexFor(key);
-		if (keys[i] == -1)
-			return null;
+		if (keys[i] == -1) {
+			if (template == null || Arrays.binarySearch(removedKeys, key) >= 0)
+				return null;
+			return template.get(key);
+		}
 		return values[i];
 	} 
 
 	public void put(int key, WireConnection[] value){
+		if (template != null && Arrays.binarySearch(removedKeys, key) >= 0) {
+			int[] remaining = new int[removedKeys.length - 1];
+			int j = 0;
+			for (int removed : removedKeys) {
+				if (removed != key)
+					remaining[j++] = removed;
+			}
+			removedKeys = remaining;
+		}
 		int i = indexFor(key);
 		if(keys[i] == -1)
 			size++;
 		keys[i] = key;
 		values[i] = value;
 		wireHashMapModification++;
+		templatedSize = -1;
 
 		if(size > threshold){
 			grow();
@@ -186,38 +240,166 @@ public class WireHashMap implements Serializable {
 	
 	public Set<Integer> keySet(){
 		// check if the cached keySets are current
-		Set<Integer> keySet = keySetCache == null ? null : keySetCache.get();
-		if (keySet != null && keySetCacheModification == wireHashMapModification)
+		int modification = wireHashMapModification;
+		Set<Integer> keySet = Cache.get(keySetCache, modification);
+		if (keySet != null)
 			return keySet;
-		keySetCacheModification = wireHashMapModification;
 
 		// build the keyset cache
 		keySet = new HashSet<>();
+		if (template != null) {
+			for (Integer key : template.keySet()) {
+				if (Arrays.binarySearch(removedKeys, key) < 0)
+					keySet.add(key);
+			}
+		}
 		for (int key : keys) {
 			if (key != -1)
 				keySet.add(key);
 		}
-		keySetCache = new SoftReference<>(keySet);
+		keySetCache = new SoftReference<>(new Cache<>(modification, keySet));
 		return keySet;
 	}
 	
 	public ArrayList<WireConnection[]> values(){
 		// check if the cached values are current;
-		ArrayList<WireConnection[]> valuesList = valuesCache == null ? null : valuesCache.get();
-		if (valuesList != null && valuesCacheModification == wireHashMapModification)
+		int modification = wireHashMapModification;
+		ArrayList<WireConnection[]> valuesList = Cache.get(valuesCache, modification);
+		if (valuesList != null)
 			return valuesList;
-		valuesCacheModification = wireHashMapModification;
 
 		// build the values cache
-		valuesList = new ArrayList<>(size);
-		for (int i = 0; i < keys.length; i++) {
-			if(keys[i] != -1)
-				valuesList.add(values[i]);
+		if (template != null) {
+			Set<Integer> keySet = keySet();
+			valuesList = new ArrayList<>(keySet.size());
+			for (Integer key : keySet)
+				valuesList.add(get(key));
+		} else {
+			valuesList = new ArrayList<>(size);
+			for (int i = 0; i < keys.length; i++) {
+				if(keys[i] != -1)
+					valuesList.add(values[i]);
+			}
 		}
-		valuesCache = new SoftReference<>(valuesList);
+		valuesCache = new SoftReference<>(new Cache<>(modification, valuesList));
 		return valuesList;
 	}
 
+	/**
+	 * A cached view of the map and the modification it was built at.
+	 */
+	private static final class Cache<T> {
+		private final int modification;
+		private final T value;
+
+		Cache(int modification, T value) {
+			this.modification = modification;
+			this.value = value;
+		}
+
+		/** Returns the cached value if it is still held and up to date, else null. */
+		static <T> T get(SoftReference<Cache<T>> ref, int modification) {
+			Cache<T> cache = ref == null ? null : ref.get();
+			return cache == null || cache.modification != modification ? null : cache.value;
+		}
+	}
+
+	/**
+	 * Creates a map with the same entries as {@code full} that stores only its
+	 * differences from {@code template}.  Connection arrays are compared by
+	 * content, so the maps should come from the same pools.
+	 *
+	 * @param template the map to base the new map on.  Must not itself have a template.
+	 * @param full the entries of the new map
+	 * @return the new map
+	 */
+	public static WireHashMap withTemplate(WireHashMap template, WireHashMap full) {
+		if (template.template != null)
+			throw new IllegalArgumentException("Templates cannot be nested");
+
+		WireHashMap map = new WireHashMap();
+		Set<Integer> fullKeys = full.keySet();
+		for (Integer key : fullKeys) {
+			WireConnection[] value = full.get(key);
+			if (!Arrays.equals(value, template.get(key)))
+				map.put(key, value);
+		}
+		map.removedKeys = template.keySet().stream()
+				.filter(k -> !fullKeys.contains(k))
+				.mapToInt(Integer::intValue)
+				.sorted()
+				.toArray();
+		map.template = template;
+		map.wireHashMapModification++;
+		map.templatedSize = -1;
+		return map;
+	}
+
+	/**
+	 * Creates a map with the entries of {@code base} except for the keys in
+	 * {@code changes}, which are mapped to the new values.  {@code base} itself is
+	 * not copied and may have a template of its own.
+	 *
+	 * @param base the map to base the new map on
+	 * @param changes the keys to replace and their new values
+	 * @return the new map
+	 */
+	public static WireHashMap withChanges(WireHashMap base, Map<Integer, WireConnection[]> changes) {
+		WireHashMap map = new WireHashMap();
+		for (Map.Entry<Integer, WireConnection[]> e : changes.entrySet())
+			map.put(e.getKey(), e.getValue());
+		map.removedKeys = new int[0];
+		map.template = base;
+		map.wireHashMapModification++;
+		map.templatedSize = -1;
+		return map;
+	}
+
+	/**
+	 * @return the map this map is based on, or null if this map stores all of its entries
+	 */
+	public WireHashMap getTemplate() {
+		return template;
+	}
+
+	/**
+	 * Returns the number of entries this map stores itself: for a map with a
+	 * template, the entries that differ from the template and the template keys
+	 * that are removed; otherwise the size of the map.
+	 */
+	public int getNumStoredEntries() {
+		return template == null ? size : size + removedKeys.length;
+	}
+
+	/**
+	 * Replaces each connection array stored in this map with the equal array in
+	 * {@code pool}, adding the arrays not yet in the pool.  Entries of the template
+	 * are not touched.
+	 *
+	 * @param pool the arrays to share, keyed by their contents
+	 */
+	public void internConnections(Map<List<WireConnection>, WireConnection[]> pool) {
+		for (int i = 0; i < values.length; i++) {
+			WireConnection[] wcs = values[i];
+			if (wcs != null)
+				values[i] = pool.computeIfAbsent(Arrays.asList(wcs), k -> wcs);
+		}
+	}
+
+	/**
+	 * Replaces the template of this map with an equal map.  Used by device readers to
+	 * restore the sharing of templates between maps that were stored separately.
+	 *
+	 * @param template the map to use as this map's template
+	 */
+	public void replaceTemplate(WireHashMap template) {
+		if (this.template == null)
+			throw new IllegalStateException("Map does not have a template");
+		this.template = template;
+		wireHashMapModification++;
+		templatedSize = -1;
+	}
+
 	@Override
 	public int hashCode() {
 		if (hash != null)
@@ -258,6 +440,8 @@ public class WireHashMap implements Serializable {
 		private int[] keys;
 		private int[] indices;
 		private WireConnection[][] values;
+		private WireHashMap template;
+		private int[] removedKeys;
 
 		@SuppressWarnings("unused")
 		private WireHashMap readResolve() {
@@ -273,6 +457,10 @@ public class WireHashMap implements Serializable {
 
 			whm.size = keys.length;
 			whm.threshold = (int) (arrSize * loadFactor);
+			if (template != null) {
+				whm.template = template;
+				whm.removedKeys = removedKeys == null ? new int[0] : removedKeys;
+			}
 			return whm;
 		}
 	}
@@ -296,6 +484,8 @@ public class WireHashMap implements Serializable {
 		}
 
 		repl.loadFactor = loadFactor;
+		repl.template = template;
+		repl.removedKeys = removedKeys;
 
 		return repl;
 	}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2016 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * BYU RapidSmith Tools is free software: you may redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * BYU RapidSmith Tools is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * A copy of the GNU General Public License is included with the BYU
+ * RapidSmith Tools. It can be found at doc/LICENSE.GPL3.TXT. You may
+ * also get a copy of the license at <http://www.gnu.org/licenses/>.
+ */
+package edu.byu.ece.rapidSmith.device;
+
+import java.util.Objects;
+
+/**
+ * Resolves tile names, wire names and full wire names of the form
+ * {@code TILE_NAME/WIRE_NAME} to the objects of a {@link Device}.  Names are
+ * parsed directly from {@link CharSequence}s, so resolving a name does not
+ * split the string or allocate substrings.  Instances are created by
+ * {@link Device#getNameResolver()}.
+ */
+public final class WireNameResolver {
+	/** Separator between the tile and wire portions of a full wire name */
+	public static final char SEPARATOR = '/';
+
+	/** Tiles of the device, indexed by their id in the tile name table */
+	private final Tile[] tiles;
+	private final NameTable tileNames;
+	private final NameTable wireNames;
+
+	WireNameResolver(Device device) {
+		Objects.requireNonNull(device);
+
+		tiles = new Tile[device.getRows() * device.getColumns()];
+		String[] tileNameArray = new String[tiles.length];
+		int i = 0;
+		for (int row = 0; row < device.getRows(); row++) {
+			for (int col = 0; col < device.getColumns(); col++) {
+				Tile tile = device.getTile(row, col);
+				tiles[i] = tile;
+				tileNameArray[i] = tile.getName();
+				i++;
+			}
+		}
+		tileNames = new NameTable(tileNameArray);
+		wireNames = new NameTable(device.getWireEnumerator().getWires());
+	}
+
+	/**
+	 * Returns the tile with the specified name, or null if it does not exist.
+	 */
+	public Tile getTile(CharSequence tileName) {
+		return getTile(tileName, 0, tileName.length());
+	}
+
+	/**
+	 * Returns the tile named by the range [start, end) of the sequence, or
+	 * null if no tile with the name exists.
+	 */
+	public Tile getTile(CharSequence seq, int start, int end) {
+		int id = tileNames.lookup(seq, start, end);
+		return id == -1 ? null : tiles[id];
+	}
+
+	/**
+	 * Returns the enumeration of the wire with the specified name, or -1 if
+	 * no wire with the name exists.
+	 */
+	public int getWireEnum(CharSequence wireName) {
+		return getWireEnum(wireName, 0, wireName.length());
+	}
+
+	/**
+	 * Returns the enumeration of the wire named by the range [start, end) of
+	 * the sequence, or -1 if no wire with the name exists.
+	 */
+	public int getWireEnum(CharSequence seq, int start, int end) {
+		return wireNames.lookup(seq, start, end);
+	}
+
+	/**
+	 * Returns the wire with the specified full name ({@code TILE_NAME/WIRE_NAME}),
+	 * or null if the name is malformed or either the tile or wire do not exist.
+	 */
+	public TileWire getWire(CharSequence fullWireName) {
+		int sep = indexOfSeparator(fullWireName);
+		if (sep == -1)
+			return null;
+		Tile tile = getTile(fullWireName, 0, sep);
+		if (tile == null)
+			return null;
+		int wireEnum = getWireEnum(fullWireName, sep + 1, fullWireName.length());
+		return wireEnum == -1 ? null : new TileWire(tile, wireEnum);
+	}
+
+	/**
+	 * Resolves an array of full wire names in bulk.  The tile and wire
+	 * enumeration of each name are written to the corresponding index of the
+	 * output arrays.  Names that cannot be resolved produce a null tile and a
+	 * wire enumeration of -1.  No objects are allocated.
+	 *
+	 * @param fullWireNames the full wire names to resolve
+	 * @param tilesOut array to store the tile of each name in
+	 * @param wireEnumsOut array to store the wire enumeration of each name in
+	 * @return the number of names that were successfully resolved
+	 */
+	public int resolveWires(CharSequence[] fullWireNames, Tile[] tilesOut, int[] wireEnumsOut) {
+		if (tilesOut.length < fullWireNames.length || wireEnumsOut.length < fullWireNames.length)
+			throw new IllegalArgumentException("Output arrays are smaller than the input");
+
+		int resolved = 0;
+		for (int i = 0; i < fullWireNames.length; i++) {
+			CharSequence name = fullWireNames[i];
+			int sep = indexOfSeparator(name);
+			Tile tile = sep == -1 ? null : getTile(name, 0, sep);
+			int wireEnum = tile == null ? -1 : getWireEnum(name, sep + 1, name.length());
+			if (wireEnum == -1)
+				tile = null;
+			else
+				resolved++;
+			tilesOut[i] = tile;
+			wireEnumsOut[i] = wireEnum;
+		}
+		return resolved;
+	}
+
+	/**
+	 * Returns the index of the separator between the tile and wire name in
+	 * the full wire name, or -1 if there is none.
+	 */
+	public static int indexOfSeparator(CharSequence fullWireName) {
+		for (int i = 0; i < fullWireName.length(); i++) {
+			if (fullWireName.charAt(i) == SEPARATOR)
+				return i;
+		}
+		return -1;
+	}
+}
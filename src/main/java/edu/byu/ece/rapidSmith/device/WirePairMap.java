@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2016 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * BYU RapidSmith Tools is free software: you may redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * BYU RapidSmith Tools is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * A copy of the GNU General Public License is included with the BYU
+ * RapidSmith Tools. It can be found at doc/LICENSE.GPL3.TXT. You may
+ * also get a copy of the license at <http://www.gnu.org/licenses/>.
+ */
+package edu.byu.ece.rapidSmith.device;
+
+import java.util.Objects;
+
+/**
+ * Open-addressing hash map keyed by a (start wire, end wire) pair of wire
+ * enumerations.  The pair is packed into a single long so lookups do not
+ * box the wire enums or allocate.  This map is built from the serialized
+ * route-through maps when a device is loaded and is not itself serialized.
+ *
+ * @param <V> the type of the mapped values.  Values may not be null.
+ */
+final class WirePairMap<V> {
+	/**
+	 * The default initial capacity - MUST be a power of two.
+	 */
+	private static final int DEFAULT_INITIAL_CAPACITY = 16;
+
+	/**
+	 * Load factor of the table.  Kept low so the average probe length stays
+	 * close to one for the small number of route-throughs in a device.
+	 */
+	private static final float LOAD_FACTOR = 0.5f;
+
+	/**
+	 * The keys table. Length MUST Always be a power of two.
+	 */
+	private long[] keys;
+
+	/**
+	 * The corresponding values table.  A null value marks an empty slot.
+	 */
+	private Object[] values;
+
+	/**
+	 * The number of key-value mappings contained in this map.
+	 */
+	private int size;
+
+	/**
+	 * The next size value at which to resize (capacity * load factor).
+	 */
+	private int threshold;
+
+	WirePairMap() {
+		this(DEFAULT_INITIAL_CAPACITY);
+	}
+
+	/**
+	 * Creates a map sized to hold the specified number of mappings
+	 * without growing.
+	 *
+	 * @param expectedSize the number of mappings the map will hold
+	 */
+	WirePairMap(int expectedSize) {
+		int capacity = DEFAULT_INITIAL_CAPACITY;
+		while (capacity * LOAD_FACTOR < expectedSize)
+			capacity <<= 1;
+		keys = new long[capacity];
+		values = new Object[capacity];
+		threshold = (int) (capacity * LOAD_FACTOR);
+	}
+
+	private static long pack(int startWire, int endWire) {
+		return ((long) startWire << 32) | (endWire & 0xFFFFFFFFL);
+	}
+
+	// finalizer of the 64-bit MurmurHash3 to spread the packed wire enums
+	private static int hash(long key) {
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		key *= 0xc4ceb9fe1a85ec53L;
+		key ^= key >>> 33;
+		return (int) key;
+	}
+
+	private int indexFor(long key) {
+		int mask = keys.length - 1;
+		int i = hash(key) & mask;
+		while (values[i] != null && keys[i] != key)
+			i = (i + 1) & mask;
+		return i;
+	}
+
+	/**
+	 * Returns the number of key-value mappings in this map.
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the value mapped to the wire pair, or null if no mapping exists.
+	 */
+	@SuppressWarnings("unchecked")
+	V get(int startWire, int endWire) {
+		return (V) values[indexFor(pack(startWire, endWire))];
+	}
+
+	/**
+	 * Returns true if the wire pair has a mapping in this map.
+	 */
+	boolean containsKey(int startWire, int endWire) {
+		return values[indexFor(pack(startWire, endWire))] != null;
+	}
+
+	/**
+	 * Maps the wire pair to the specified value, replacing any existing mapping.
+	 */
+	void put(int startWire, int endWire, V value) {
+		Objects.requireNonNull(value);
+		long key = pack(startWire, endWire);
+		int i = indexFor(key);
+		if (values[i] == null)
+			size++;
+		keys[i] = key;
+		values[i] = value;
+
+		if (size > threshold)
+			grow();
+	}
+
+	private void grow() {
+		long[] oldKeys = keys;
+		Object[] oldValues = values;
+		keys = new long[oldKeys.length * 2];
+		values = new Object[oldKeys.length * 2];
+		threshold = (int) (keys.length * LOAD_FACTOR);
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldValues[i] != null) {
+				int j = indexFor(oldKeys[i]);
+				keys[j] = oldKeys[i];
+				values[j] = oldValues[i];
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "WirePairMap{size=" + size + ", capacity=" + keys.length + "}";
+	}
+}
@@ -20,11 +20,14 @@
 package edu.byu.ece.rapidSmith.device.browser;
 
 
+import com.trolltech.qt.core.QPointF;
+import com.trolltech.qt.core.QRectF;
 import com.trolltech.qt.core.Qt.MouseButton;
 import com.trolltech.qt.core.Qt.PenStyle;
 import com.trolltech.qt.gui.*;
 import edu.byu.ece.rapidSmith.device.*;
 import edu.byu.ece.rapidSmith.gui.NumberedHighlightedTile;
+import edu.byu.ece.rapidSmith.gui.QuadTree;
 import edu.byu.ece.rapidSmith.gui.TileScene;
 
 import java.util.ArrayList;
@@ -35,14 +38,27 @@ import java.util.Queue;
 /**
  * This class was written specifically for the DeviceBrowser class.  It
  * provides the scene content of the 2D tile array.
+ * <p>
+ * Wire connections are kept in a quad-tree rather than as graphics items.  Only
+ * the connections in the exposed region are painted, and only once the view is
+ * zoomed in past {@link #WIRE_ZOOM_THRESHOLD}.  Hovering and clicking on
+ * connections is resolved through the quad-tree as well.
  */
 public class DeviceBrowserScene extends TileScene{
+	/** The view scale below which wire connections are not drawn */
+	static final double WIRE_ZOOM_THRESHOLD = 0.5;
+	/** The distance in pixels within which the mouse is over a wire connection */
+	private static final double HOVER_DISTANCE = 3;
 	/**	 */
 	Signal1<Tile> updateTile = new Signal1<>();
 	/**	 */
 	private QPen wirePen;
-	/**	 */
-	private ArrayList<QGraphicsLineItem> currLines;
+	/** Keeps a red pen handy for highlighting wire connections on mouse over */
+	private QPen highlightedPen;
+	/** The wire connections currently drawn, null if none */
+	private QuadTree<WireConnectionLine> currLines;
+	/** The wire connection under the mouse */
+	private WireConnectionLine highlightedLine;
 	/**	 */
 	private DeviceBrowser browser;
 	/**	 */
@@ -53,8 +69,8 @@ public class DeviceBrowserScene extends TileScene{
 
 	DeviceBrowserScene(Device device, boolean hideTiles, boolean drawSites, DeviceBrowser browser){
 		super(device, hideTiles, drawSites);
-		currLines = new ArrayList<>();
 		wirePen = new QPen(QColor.yellow, 0.25, PenStyle.SolidLine);
+		highlightedPen = new QPen(QColor.red, 0.25, PenStyle.SolidLine);
 		this.browser = browser;
 	}
 
@@ -69,11 +85,11 @@ public class DeviceBrowserScene extends TileScene{
 	}
 
 	void clearCurrentLines(){
-		for(QGraphicsLineItem line : currLines){
-			this.removeItem(line);
-			line.dispose();
+		if(currLines != null){
+			currLines = null;
+			highlightedLine = null;
+			update();
 		}
-		currLines.clear();
 	}
 
 	void drawWire(Tile src, int wireSrc, Tile dst, int wireDst){
@@ -82,13 +98,68 @@ public class DeviceBrowserScene extends TileScene{
 		double y1 = (double) tileYMap.get(src)*tileSize  + (wireSrc*tileSize)/enumSize;
 		double x2 = (double) tileXMap.get(dst)*tileSize  + (wireDst%tileSize);
 		double y2 = (double) tileYMap.get(dst)*tileSize  + (wireDst*tileSize)/enumSize;
-		WireConnectionLine line = new WireConnectionLine(x1,y1,x2,y2, this, dst, wireDst);
+		WireConnectionLine line = new WireConnectionLine(x1,y1,x2,y2, dst, wireDst);
 		line.setToolTip(src.getName() + " " + we.getWireName(wireSrc) + " -> " +
 				dst.getName() + " " + we.getWireName(wireDst));
-		line.setPen(wirePen);
-		line.setAcceptHoverEvents(true);
-		addItem(line);
-		currLines.add(line);
+		if(currLines == null){
+			QRectF bounds = sceneRect();
+			currLines = new QuadTree<>(bounds.left(), bounds.top(), bounds.right(), bounds.bottom());
+		}
+		currLines.insert(line, x1, y1, x2, y2);
+		update(bounds(line));
+	}
+
+	private static QRectF bounds(WireConnectionLine line){
+		double x = Math.min(line.x1, line.x2);
+		double y = Math.min(line.y1, line.y2);
+		// pad by the pen width
+		return new QRectF(x - 1, y - 1, Math.abs(line.x2 - line.x1) + 2, Math.abs(line.y2 - line.y1) + 2);
+	}
+
+	/**
+	 * Returns the scale of the view showing this scene.
+	 */
+	private double viewScale(){
+		if(views().isEmpty())
+			return 1.0;
+		return views().get(0).matrix().m11();
+	}
+
+	/**
+	 * Returns the drawn wire connection nearest to the point, or null if no
+	 * connection is within {@link #HOVER_DISTANCE} pixels of the point.
+	 */
+	private WireConnectionLine lineAt(QPointF pos){
+		double scale = viewScale();
+		if(currLines == null || scale < WIRE_ZOOM_THRESHOLD)
+			return null;
+		double tolerance = HOVER_DISTANCE / scale;
+		WireConnectionLine nearest = null;
+		double nearestDistance = tolerance;
+		for(WireConnectionLine line : currLines.query(pos.x() - tolerance, pos.y() - tolerance,
+				pos.x() + tolerance, pos.y() + tolerance)){
+			double distance = line.distanceTo(pos.x(), pos.y());
+			if(distance <= nearestDistance){
+				nearest = line;
+				nearestDistance = distance;
+			}
+		}
+		return nearest;
+	}
+
+	@Override
+	protected void drawForeground(QPainter painter, QRectF rect){
+		super.drawForeground(painter, rect);
+		if(currLines == null || painter.worldTransform().m11() < WIRE_ZOOM_THRESHOLD)
+			return;
+		painter.setPen(wirePen);
+		currLines.query(rect.left(), rect.top(), rect.right(), rect.bottom(),
+				line -> painter.drawLine(new QLineF(line.x1, line.y1, line.x2, line.y2)));
+		if(highlightedLine != null){
+			painter.setPen(highlightedPen);
+			painter.drawLine(new QLineF(highlightedLine.x1, highlightedLine.y1,
+					highlightedLine.x2, highlightedLine.y2));
+		}
 	}
 
 	void drawConnectingWires(Tile tile, int wire){
@@ -178,6 +249,34 @@ public class DeviceBrowserScene extends TileScene{
 	}
 
 
+	@Override
+	public void mouseMoveEvent(QGraphicsSceneMouseEvent event){
+		super.mouseMoveEvent(event);
+		WireConnectionLine line = lineAt(event.scenePos());
+		if(line != highlightedLine){
+			if(highlightedLine != null)
+				update(bounds(highlightedLine));
+			highlightedLine = line;
+			if(line != null){
+				update(bounds(line));
+				QToolTip.showText(event.screenPos(), line.getToolTip());
+			} else{
+				QToolTip.hideText();
+			}
+		}
+	}
+
+	@Override
+	public void mousePressEvent(QGraphicsSceneMouseEvent event){
+		if(event.button().equals(MouseButton.LeftButton)){
+			WireConnectionLine line = lineAt(event.scenePos());
+			if(line != null){
+				drawConnectingWires(line.getTile(), line.getWire());
+			}
+		}
+		super.mousePressEvent(event);
+	}
+
 	@Override
 	public void mouseDoubleClickEvent(QGraphicsSceneMouseEvent event){
 		Tile t = getTile(event);
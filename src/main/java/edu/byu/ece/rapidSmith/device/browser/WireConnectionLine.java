@@ -19,33 +19,30 @@
  */
 package edu.byu.ece.rapidSmith.device.browser;
 
-import com.trolltech.qt.core.Qt.PenStyle;
-import com.trolltech.qt.gui.QColor;
-import com.trolltech.qt.gui.QGraphicsLineItem;
-import com.trolltech.qt.gui.QGraphicsSceneHoverEvent;
-import com.trolltech.qt.gui.QGraphicsSceneMouseEvent;
-import com.trolltech.qt.gui.QPen;
-
 import edu.byu.ece.rapidSmith.device.Tile;
-import edu.byu.ece.rapidSmith.gui.TileScene;
 
 /**
  * This class is used with the DeviceBrowser to draw wire connections
- * on the array of tiles.
+ * on the array of tiles.  Lines are not graphics items; the scene keeps them
+ * in a quad-tree and paints the visible ones itself.
  * @author Chris Lavin
  * Created on: Nov 26, 2010
  */
-public class WireConnectionLine extends QGraphicsLineItem{
-	/** Keeps a red pen handy for highlighting wire connections on mouse over */
-	private static QPen highlighted  = new QPen(QColor.red, 0.25, PenStyle.SolidLine);
-	/** Keeps a yellow pen for drawing the wire connections */
-	private static QPen unHighlighted = new QPen(QColor.yellow, 0.25, PenStyle.SolidLine);
-	/** The current DeviceBrowser scene */
-	private TileScene scene;
+public class WireConnectionLine {
+	/** Starting X coordinate */
+	final double x1;
+	/** Starting Y coordinate */
+	final double y1;
+	/** Ending X coordinate */
+	final double x2;
+	/** Ending Y coordinate */
+	final double y2;
 	/** The current tile */
 	private Tile tile;
 	/** The current wire */
 	private int wire;
+	/** The text shown when hovering over the line */
+	private String toolTip;
 	
 	/** 
 	 * Creates a new wire connection line.
@@ -53,47 +50,56 @@ public class WireConnectionLine extends QGraphicsLineItem{
 	 * @param y1 Starting Y coordinate.
 	 * @param x2 Ending X coordinate.
 	 * @param y2 Ending Y coordinate.
-	 * @param scene The DeviceBrowser scene.
 	 * @param tile The tile.
 	 * @param wire The wire.
 	 */
-	WireConnectionLine(double x1, double y1, double x2, double y2,
-	                   TileScene scene, Tile tile, int wire){
-		super(x1, y1, x2, y2);
-		this.scene = scene;
+	WireConnectionLine(double x1, double y1, double x2, double y2, Tile tile, int wire){
+		this.x1 = x1;
+		this.y1 = y1;
+		this.x2 = x2;
+		this.y2 = y2;
 		this.tile = tile;
 		this.wire = wire;
-		highlighted = new QPen(QColor.red, 0.25, PenStyle.SolidLine);
 	}
-	
-	@Override
-	public void hoverEnterEvent(QGraphicsSceneHoverEvent event){
-		this.setPen(highlighted);
+
+	/**
+	 * Returns the distance from the point to this line.
+	 */
+	double distanceTo(double x, double y){
+		double dx = x2 - x1;
+		double dy = y2 - y1;
+		double lengthSquared = dx * dx + dy * dy;
+		double t = 0;
+		if(lengthSquared > 0)
+			t = Math.max(0, Math.min(1, ((x - x1) * dx + (y - y1) * dy) / lengthSquared));
+		return Math.hypot(x - (x1 + t * dx), y - (y1 + t * dy));
 	}
-	
-	@Override
-	public void hoverLeaveEvent(QGraphicsSceneHoverEvent event){
-		this.setPen(unHighlighted);
+
+	/**
+	 * @return the tile the line connects to
+	 */
+	public Tile getTile() {
+		return tile;
 	}
-	
-	@Override
-	public void mousePressEvent(QGraphicsSceneMouseEvent event){
-		if(scene.getClass().equals(DeviceBrowserScene.class)){
-			((DeviceBrowserScene)scene).drawConnectingWires(tile, wire);			
-		}
+
+	/**
+	 * @return the wire the line connects to
+	 */
+	public int getWire() {
+		return wire;
 	}
 
 	/**
-	 * @return the scene
+	 * @return the tool tip of the line
 	 */
-	public TileScene getScene() {
-		return scene;
+	public String getToolTip() {
+		return toolTip;
 	}
 
 	/**
-	 * @param scene the scene to set
+	 * @param toolTip the tool tip to set
 	 */
-	public void setScene(TileScene scene) {
-		this.scene = scene;
+	public void setToolTip(String toolTip) {
+		this.toolTip = toolTip;
 	}
 }
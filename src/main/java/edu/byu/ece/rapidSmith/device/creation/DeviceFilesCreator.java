@@ -24,6 +24,7 @@ import edu.byu.ece.rapidSmith.device.Device;
 import edu.byu.ece.rapidSmith.device.xdlrc.XDLRCSource;
 
 import java.io.IOException;
+import java.nio.file.Path;
 
 /**
  * This class provides the base class for generating a new device and its
@@ -39,11 +40,26 @@ import java.io.IOException;
  */
 public class DeviceFilesCreator {
 	private final XDLRCRetriever xdlrcRetriever;
+	private long memoryBudget = 0;
+	private Path spillDirectory = null;
 
 	public DeviceFilesCreator(XDLRCRetriever xdlrcRetriever) {
 		this.xdlrcRetriever = xdlrcRetriever;
 	}
 
+	/**
+	 * Bounds the memory used by intermediate tables during device generation.
+	 * See {@link DeviceGenerator#setMemoryBudget(long)}.
+	 *
+	 * @param bytes the memory budget in bytes, or 0 for no limit
+	 * @param spillDirectory the directory for temporary files, or null for the
+	 *   default temporary directory
+	 */
+	public void setMemoryBudget(long bytes, Path spillDirectory) {
+		this.memoryBudget = bytes;
+		this.spillDirectory = spillDirectory;
+	}
+
 	/**
 	 * Creates the specified device.
 	 * This method obtains the needed input files, parses them, writes the created
@@ -56,6 +72,8 @@ public class DeviceFilesCreator {
 
 		// Initialize Parser
 		DeviceGenerator generator = new DeviceGenerator();
+		generator.setMemoryBudget(memoryBudget);
+		generator.setSpillDirectory(spillDirectory);
 		Device device = generator.generate(source);
 
 		// Write the Device to File
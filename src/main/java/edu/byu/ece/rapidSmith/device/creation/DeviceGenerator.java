@@ -28,12 +28,14 @@ import edu.byu.ece.rapidSmith.device.xdlrc.XDLRCSource;
 import edu.byu.ece.rapidSmith.primitiveDefs.*;
 import edu.byu.ece.rapidSmith.util.Exceptions;
 import edu.byu.ece.rapidSmith.util.HashPool;
+import edu.byu.ece.rapidSmith.util.Metrics;
 import edu.byu.ece.rapidSmith.util.PartNameTools;
 import org.jdom2.Document;
 import org.jdom2.Element;
 import org.jdom2.JDOMException;
 
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -88,6 +90,35 @@ public final class DeviceGenerator {
 	private Set<Integer> siteWireSourceSet;
 	private Set<Integer> siteWireSinkSet;
 
+	/** Bytes of wire corrections to keep in memory before spilling to disk, 0 for no limit */
+	private long memoryBudget = 0;
+	/** Directory to spill wire corrections to, null for the default temporary directory */
+	private Path spillDirectory = null;
+
+	/**
+	 * Limits the memory used by the wire correction tables built while generating
+	 * the device.  When a budget is set, the corrections for each tile are spilled to
+	 * sorted runs in temporary files once the budget is exceeded and merged back in
+	 * tile order when the corrected wire maps are built.  The budget does not bound
+	 * the device itself.
+	 *
+	 * @param bytes the number of bytes of corrections to keep in memory, or 0 to keep
+	 *   all corrections in memory
+	 */
+	public void setMemoryBudget(long bytes) {
+		this.memoryBudget = bytes;
+	}
+
+	/**
+	 * Sets the directory to spill the wire corrections to when a memory budget is set.
+	 *
+	 * @param spillDirectory the directory for the temporary files, or null to use the
+	 *   default temporary directory
+	 */
+	public void setSpillDirectory(Path spillDirectory) {
+		this.spillDirectory = spillDirectory;
+	}
+
 	/**
 	 * Generates and returns the Device created from the XDLRC at the specified
 	 * source.
@@ -119,33 +150,30 @@ public final class DeviceGenerator {
 		xdlrcSource.registerListener(new TileAndSiteGeneratorListener());
 		xdlrcSource.registerListener(new PrimitiveDefsListener());
 		xdlrcSource.registerListener(new XDLRCParseProgressListener());
-		try {
+		try (Metrics.Phase ignored = Metrics.phase("device.generate.firstPass")) {
 			xdlrcSource.parse();
 		} catch (IOException e) {
 			throw new IOException("Error handling file " + xdlrcSource.getFilePath(), e);
 		}
 		xdlrcSource.clearListeners();
 
-		device.constructTileMap();
-		PrimitiveDefsCorrector.makeCorrections(device.getPrimitiveDefs(), familyInfo);
-		device.setSiteTemplates(createSiteTemplates());
+		try (Metrics.Phase ignored = Metrics.phase("device.generate.siteTemplates")) {
+			device.constructTileMap();
+			PrimitiveDefsCorrector.makeCorrections(device.getPrimitiveDefs(), familyInfo);
+			device.setSiteTemplates(createSiteTemplates());
+		}
 
 		System.out.println("Starting second pass");
 		xdlrcSource.registerListener(new WireConnectionGeneratorListener());
 		xdlrcSource.registerListener(new ReverseWireConnectionGeneratorListener());
 		xdlrcSource.registerListener(new SourceAndSinkListener());
 		xdlrcSource.registerListener(new XDLRCParseProgressListener());
-		try {
+		try (Metrics.Phase ignored = Metrics.phase("device.generate.secondPass")) {
 			xdlrcSource.parse();
 		} catch (IOException e) {
 			throw new IOException("Error handling file " + xdlrcSource.getFilePath(), e);
 		}
 
-		Map<Tile, Map<Integer, Set<WireConnection>>> wcsToAdd = getWCsToAdd(true);
-		Map<Tile, Map<Integer, Set<WireConnection>>> wcsToRemove = getWCsToRemove(true);
-		Map<Tile, Map<Integer, Set<WireConnection>>> revwcsToAdd = getWCsToAdd(false);
-		Map<Tile, Map<Integer, Set<WireConnection>>> revwcsToRemove = getWCsToRemove(false);
-
 		// These take up a lot of memory and we're going to regenerate each of these in the
 		// next step.  Clearing these will allow for better garbage collection
 		wirePool = new HashPool<>();
@@ -156,11 +184,27 @@ public final class DeviceGenerator {
 		if (!parseDeviceInfo(device)) {
 			System.err.println("[Warning]: The device info file for the part " + device.getPartName() + " cannot be found.");
 		}
-				
-		makeWireCorrections(wcsToAdd, wcsToRemove, true);
-		makeWireCorrections(revwcsToAdd, revwcsToRemove, false);
 
-		device.constructDependentResources();
+		// the forward and reverse corrections are independent, so only hold one set at a time
+		try (Metrics.Phase ignored = Metrics.phase("device.generate.wireCorrections")) {
+			if (memoryBudget > 0) {
+				makeSpilledWireCorrections(true);
+				makeSpilledWireCorrections(false);
+			} else {
+				makeWireCorrections(getWCsToAdd(true), getWCsToRemove(true), true);
+				makeWireCorrections(getWCsToAdd(false), getWCsToRemove(false), false);
+				wirePool = new HashPool<>();
+			}
+		}
+
+		try (Metrics.Phase ignored = Metrics.phase("device.generate.connectionTemplates")) {
+			applyConnectionTemplates(true);
+			applyConnectionTemplates(false);
+		}
+
+		try (Metrics.Phase ignored = Metrics.phase("device.generate.dependentResources")) {
+			device.constructDependentResources();
+		}
 		
 		// free unneeded pools for garbage collection when done with
 		routeThroughPool = null;
@@ -552,79 +596,84 @@ public final class DeviceGenerator {
 		Map<Tile, Map<Integer, Set<WireConnection>>> wcsToAdd = new HashMap<>();
 
 		for (Tile tile : device.getTileMap().values()) {
-			WireHashMap whm = (forward) ? tile.getWireHashMap() : tile.getReverseWireHashMap();
-			if (whm == null)
-				continue;
+			Map<Integer, Set<WireConnection>> tileWCsToAdd = getWCsToAdd(tile, forward);
+			if (!tileWCsToAdd.isEmpty())
+				wcsToAdd.put(tile, tileWCsToAdd);
+		}
+		return wcsToAdd;
+	}
 
-			Map<Integer, Set<WireConnection>> tileWCsToAdd = new HashMap<>();
-			Set<Integer> tileSources = getSourceWiresOfTile(whm, forward);
+	private Map<Integer, Set<WireConnection>> getWCsToAdd(Tile tile, boolean forward) {
+		Map<Integer, Set<WireConnection>> tileWCsToAdd = new HashMap<>();
+		WireHashMap whm = (forward) ? tile.getWireHashMap() : tile.getReverseWireHashMap();
+		if (whm == null)
+			return tileWCsToAdd;
 
-			// Traverse all non-PIP wire connections starting at this source wire.  If any
-			// such wire connections lead to a sink wire that is not already a connection of
-			// the source wire, mark it to be added as a connection
-			for (int wireEnum : whm.keySet()) {
-				// don't add any connections for unsourced wires
-				if (!tileSources.contains(wireEnum))
-					continue;
+		Set<Integer> tileSources = getSourceWiresOfTile(whm, forward);
 
-				Set<WireConnection> wcToAdd = new HashSet<>();
-				Set<WireConnection> checkedConnections = new HashSet<>();
-				Queue<WireConnection> connectionsToFollow = new LinkedList<>();
+		// Traverse all non-PIP wire connections starting at this source wire.  If any
+		// such wire connections lead to a sink wire that is not already a connection of
+		// the source wire, mark it to be added as a connection
+		for (int wireEnum : whm.keySet()) {
+			// don't add any connections for unsourced wires
+			if (!tileSources.contains(wireEnum))
+				continue;
 
-				// Add the wire to prevent building a connection back to itself
-				checkedConnections.add(new WireConnection(wireEnum, 0, 0, false));
-				for (WireConnection wc : whm.get(wireEnum)) {
-					if (!wc.isPIP()) {
-						checkedConnections.add(wc);
-						connectionsToFollow.add(wc);
-					}
+			Set<WireConnection> wcToAdd = new HashSet<>();
+			Set<WireConnection> checkedConnections = new HashSet<>();
+			Queue<WireConnection> connectionsToFollow = new LinkedList<>();
+
+			// Add the wire to prevent building a connection back to itself
+			checkedConnections.add(new WireConnection(wireEnum, 0, 0, false));
+			for (WireConnection wc : whm.get(wireEnum)) {
+				if (!wc.isPIP()) {
+					checkedConnections.add(wc);
+					connectionsToFollow.add(wc);
 				}
+			}
 
-				while (!connectionsToFollow.isEmpty()) {
-					WireConnection midwc = connectionsToFollow.remove();
-					Tile midTile = midwc.getTile(tile);
-					Integer midWire = midwc.getWire();
+			while (!connectionsToFollow.isEmpty()) {
+				WireConnection midwc = connectionsToFollow.remove();
+				Tile midTile = midwc.getTile(tile);
+				Integer midWire = midwc.getWire();
 
-					// Dead end checks
-					WireHashMap midWhm = (forward) ? midTile.getWireHashMap() : midTile.getReverseWireHashMap();
-					if (midWhm == null || midWhm.get(midWire) == null)
-						continue;
+				// Dead end checks
+				WireHashMap midWhm = (forward) ? midTile.getWireHashMap() : midTile.getReverseWireHashMap();
+				if (midWhm == null || midWhm.get(midWire) == null)
+					continue;
 
-					for (WireConnection sinkwc : midWhm.get(midWire)) {
-						if (sinkwc.isPIP()) continue;
+				for (WireConnection sinkwc : midWhm.get(midWire)) {
+					if (sinkwc.isPIP()) continue;
 
-						Integer sinkWire = sinkwc.getWire();
-						Tile sinkTile = sinkwc.getTile(midTile);
-						int colOffset = midwc.getColumnOffset() + sinkwc.getColumnOffset();
-						int rowOffset = midwc.getRowOffset() + sinkwc.getRowOffset();
+					Integer sinkWire = sinkwc.getWire();
+					Tile sinkTile = sinkwc.getTile(midTile);
+					int colOffset = midwc.getColumnOffset() + sinkwc.getColumnOffset();
+					int rowOffset = midwc.getRowOffset() + sinkwc.getRowOffset();
 
-						// This represents the wire connection from the original source to the sink wire
-						WireConnection source2sink = new WireConnection(sinkWire, rowOffset, colOffset, false);
-						boolean wirePreviouslyChecked = !checkedConnections.add(source2sink);
+					// This represents the wire connection from the original source to the sink wire
+					WireConnection source2sink = new WireConnection(sinkWire, rowOffset, colOffset, false);
+					boolean wirePreviouslyChecked = !checkedConnections.add(source2sink);
 
-						// Check if we've already processed this guy and process him if we haven't
-						if (wirePreviouslyChecked)
-							continue;
-						connectionsToFollow.add(source2sink);
+					// Check if we've already processed this guy and process him if we haven't
+					if (wirePreviouslyChecked)
+						continue;
+					connectionsToFollow.add(source2sink);
 
-						// Only add the connection if the wire is a sink.  Other connections are
-						// useless for wire traversing.
-						WireHashMap swhm = (forward) ? sinkTile.getWireHashMap() : sinkTile.getReverseWireHashMap();
-						if (wireIsSink(swhm, sinkWire, forward))
-							wcToAdd.add(wirePool.add(source2sink));
-					}
+					// Only add the connection if the wire is a sink.  Other connections are
+					// useless for wire traversing.
+					WireHashMap swhm = (forward) ? sinkTile.getWireHashMap() : sinkTile.getReverseWireHashMap();
+					if (wireIsSink(swhm, sinkWire, forward))
+						wcToAdd.add(wirePool == null ? source2sink : wirePool.add(source2sink));
 				}
+			}
 
-				// If there are wires to add, add them here by creating a new WireConnection array
-				// combining the old and new wires.
-				if (!wcToAdd.isEmpty()) {
-					tileWCsToAdd.put(wireEnum, wcToAdd);
-				}
+			// If there are wires to add, add them here by creating a new WireConnection array
+			// combining the old and new wires.
+			if (!wcToAdd.isEmpty()) {
+				tileWCsToAdd.put(wireEnum, wcToAdd);
 			}
-			if (!tileWCsToAdd.isEmpty())
-				wcsToAdd.put(tile, tileWCsToAdd);
 		}
-		return wcsToAdd;
+		return tileWCsToAdd;
 	}
 
 	private Map<Tile, Map<Integer, Set<WireConnection>>> getWCsToRemove(boolean forward) {
@@ -635,35 +684,38 @@ public final class DeviceGenerator {
 			WireHashMap whm = (forward) ? tile.getWireHashMap() : tile.getReverseWireHashMap();
 			if (whm == null)
 				continue;
+			wcsToRemove.put(tile, getWCsToRemove(tile, whm, forward));
+		}
+		return wcsToRemove;
+	}
 
-			Map<Integer, Set<WireConnection>> tileWCsToRemove = new HashMap<>();
+	private Map<Integer, Set<WireConnection>> getWCsToRemove(Tile tile, WireHashMap whm, boolean forward) {
+		Map<Integer, Set<WireConnection>> tileWCsToRemove = new HashMap<>();
 
-			// Create a set of wires that can be driven by other wires within the tile
-			// We need this to do a fast look up later on
-			Set<Integer> sourceWires = getSourceWiresOfTile(whm, forward);
+		// Create a set of wires that can be driven by other wires within the tile
+		// We need this to do a fast look up later on
+		Set<Integer> sourceWires = getSourceWiresOfTile(whm, forward);
 
-			// Identify any wire connections that are not a "source" wire to "sink" wire
-			// connection.
-			Set<Integer> wires = new HashSet<>(whm.keySet());
+		// Identify any wire connections that are not a "source" wire to "sink" wire
+		// connection.
+		Set<Integer> wires = new HashSet<>(whm.keySet());
 
-			for (Integer wireEnum : wires) {
-				Set<WireConnection> wcToRemove = new HashSet<>();
-				for (WireConnection wc : whm.get(wireEnum)) {
-					// never remove PIPs.  We only are searching for different names
-					// of the same wire.  A PIP connect unique wires.
-					if (wc.isPIP())
-						continue;
-					Tile stile = wc.getTile(tile);
-					WireHashMap swhm = (forward) ? stile.getWireHashMap() : stile.getReverseWireHashMap();
-					if (!sourceWires.contains(wireEnum) || !wireIsSink(swhm, wc.getWire(), forward)) {
-						wcToRemove.add(wc);
-					}
+		for (Integer wireEnum : wires) {
+			Set<WireConnection> wcToRemove = new HashSet<>();
+			for (WireConnection wc : whm.get(wireEnum)) {
+				// never remove PIPs.  We only are searching for different names
+				// of the same wire.  A PIP connect unique wires.
+				if (wc.isPIP())
+					continue;
+				Tile stile = wc.getTile(tile);
+				WireHashMap swhm = (forward) ? stile.getWireHashMap() : stile.getReverseWireHashMap();
+				if (!sourceWires.contains(wireEnum) || !wireIsSink(swhm, wc.getWire(), forward)) {
+					wcToRemove.add(wc);
 				}
-				tileWCsToRemove.put(wireEnum, wcToRemove);
 			}
-			wcsToRemove.put(tile, tileWCsToRemove);
+			tileWCsToRemove.put(wireEnum, wcToRemove);
 		}
-		return wcsToRemove;
+		return tileWCsToRemove;
 	}
 
 	private Set<Integer> getSourceWiresOfTile(WireHashMap whm, boolean forward) {
@@ -716,34 +768,158 @@ public final class DeviceGenerator {
 		HashPool<WireArray> wireArrayPool = new HashPool<>();
 
 		for (Tile tile : device.getTileMap().values()) {
-			WireHashMap orig = (forward) ? tile.getWireHashMap() : tile.getReverseWireHashMap();
-			if (orig == null)
+			correctWireMap(tile, wcsToAdd.getOrDefault(tile, Collections.emptyMap()),
+					wcsToRemove.getOrDefault(tile, Collections.emptyMap()),
+					forward, tileWiresPool, wireArrayPool);
+		}
+	}
+
+	/**
+	 * Same as {@link #makeWireCorrections(Map, Map, boolean)} but keeps at most
+	 * {@link #memoryBudget} bytes of corrections in memory.  The corrections of all
+	 * tiles are found first, since finding them reads the uncorrected maps of
+	 * neighboring tiles, and spilled to disk as needed.  The corrections are then
+	 * merged back in tile address order and applied one tile at a time.
+	 */
+	private void makeSpilledWireCorrections(boolean forward) throws IOException {
+		HashPool<WireConnection> wirePool = this.wirePool;
+		this.wirePool = null;
+
+		long budget = Math.max(1, memoryBudget / 2);
+		int numTiles = device.getRows() * device.getColumns();
+		try (WireCorrectionSpill toAdd = new WireCorrectionSpill(spillDirectory, budget);
+			 WireCorrectionSpill toRemove = new WireCorrectionSpill(spillDirectory, budget)) {
+			for (int address = 0; address < numTiles; address++) {
+				Tile tile = device.getTile(address);
+				WireHashMap whm = (tile == null) ? null :
+						(forward) ? tile.getWireHashMap() : tile.getReverseWireHashMap();
+				if (whm == null)
+					continue;
+				for (Map.Entry<Integer, Set<WireConnection>> e : getWCsToAdd(tile, forward).entrySet())
+					toAdd.add(address, e.getKey(), e.getValue());
+				for (Map.Entry<Integer, Set<WireConnection>> e : getWCsToRemove(tile, whm, forward).entrySet()) {
+					if (!e.getValue().isEmpty())
+						toRemove.add(address, e.getKey(), e.getValue());
+				}
+			}
+			System.out.println("Spilled " + (toAdd.getNumRuns() + toRemove.getNumRuns()) +
+					(forward ? " forward" : " reverse") + " wire correction runs to disk");
+
+			HashPool<WireHashMap> tileWiresPool = new HashPool<>();
+			HashPool<WireArray> wireArrayPool = new HashPool<>();
+			Iterator<WireCorrectionSpill.Entry> adds = toAdd.iterator();
+			Iterator<WireCorrectionSpill.Entry> removes = toRemove.iterator();
+			WireCorrectionSpill.Entry nextAdd = adds.hasNext() ? adds.next() : null;
+			WireCorrectionSpill.Entry nextRemove = removes.hasNext() ? removes.next() : null;
+			Map<Integer, Set<WireConnection>> tileAdds = new HashMap<>();
+			Map<Integer, Set<WireConnection>> tileRemoves = new HashMap<>();
+			for (int address = 0; address < numTiles; address++) {
+				tileAdds.clear();
+				tileRemoves.clear();
+				while (nextAdd != null && nextAdd.tileAddress == address) {
+					Set<WireConnection> wcs = tileAdds.computeIfAbsent(nextAdd.wire, k -> new HashSet<>());
+					for (WireConnection wc : nextAdd.connections)
+						wcs.add(wirePool.add(wc));
+					nextAdd = adds.hasNext() ? adds.next() : null;
+				}
+				while (nextRemove != null && nextRemove.tileAddress == address) {
+					tileRemoves.computeIfAbsent(nextRemove.wire, k -> new HashSet<>())
+							.addAll(Arrays.asList(nextRemove.connections));
+					nextRemove = removes.hasNext() ? removes.next() : null;
+				}
+
+				Tile tile = device.getTile(address);
+				if (tile != null)
+					correctWireMap(tile, tileAdds, tileRemoves, forward, tileWiresPool, wireArrayPool);
+			}
+		} finally {
+			this.wirePool = new HashPool<>();
+		}
+	}
+
+	private void correctWireMap(
+			Tile tile,
+			Map<Integer, Set<WireConnection>> wcsToAdd,
+			Map<Integer, Set<WireConnection>> wcsToRemove,
+			boolean forward,
+			HashPool<WireHashMap> tileWiresPool,
+			HashPool<WireArray> wireArrayPool
+	) {
+		WireHashMap orig = (forward) ? tile.getWireHashMap() : tile.getReverseWireHashMap();
+		if (orig == null)
+			return;
+
+		// create a safe wire map to modify
+		WireHashMap wireHashMap = new WireHashMap();
+
+		for (Integer wireEnum : orig.keySet()) {
+			Set<WireConnection> wcs =
+					new HashSet<>(Arrays.asList(orig.get(wireEnum)));
+			if (wcsToRemove.containsKey(wireEnum))
+				wcs.removeAll(wcsToRemove.get(wireEnum));
+			if (wcsToAdd.containsKey(wireEnum))
+				wcs.addAll(wcsToAdd.get(wireEnum));
+
+			if (wcs.size() > 0) {
+				WireConnection[] arrView = wcs.toArray(new WireConnection[wcs.size()]);
+				wireHashMap.put(wireEnum, wireArrayPool.add(new WireArray(arrView)).array);
+			}
+		}
+
+		// Update the tile with the new wire map.
+		WireHashMap reduced = tileWiresPool.add(wireHashMap);
+		if (forward)
+			tile.setWireHashMap(reduced);
+		else
+			tile.setReverseWireConnections(reduced);
+	}
+
+	/**
+	 * Stores the wire maps of the tiles of each type as differences from the map
+	 * most common for that type.  Tiles with exactly the same connections already
+	 * share a map; this additionally lets tiles that differ in only a few wires, such
+	 * as tiles on the edges of the device, share the bulk of their connections.  A map
+	 * is only replaced when its differences are less than half its size.
+	 */
+	private void applyConnectionTemplates(boolean forward) {
+		Map<TileType, Map<WireHashMap, List<Tile>>> mapsByType = new HashMap<>();
+		for (Tile tile : device.getTileMap().values()) {
+			WireHashMap whm = forward ? tile.getWireHashMap() : tile.getReverseWireHashMap();
+			if (whm == null || whm.isEmpty())
 				continue;
+			mapsByType.computeIfAbsent(tile.getType(), k -> new IdentityHashMap<>())
+					.computeIfAbsent(whm, k -> new ArrayList<>()).add(tile);
+		}
 
-			// create a safe wire map to modify
-			WireHashMap wireHashMap = new WireHashMap();
+		int replaced = 0;
+		for (Map<WireHashMap, List<Tile>> maps : mapsByType.values()) {
+			if (maps.size() < 2)
+				continue;
 
-			for (Integer wireEnum : orig.keySet()) {
-				Set<WireConnection> wcs =
-						new HashSet<>(Arrays.asList(orig.get(wireEnum)));
-				if (wcsToRemove.containsKey(tile) && wcsToRemove.get(tile).containsKey(wireEnum))
-					wcs.removeAll(wcsToRemove.get(tile).get(wireEnum));
-				if (wcsToAdd.containsKey(tile) && wcsToAdd.get(tile).containsKey(wireEnum))
-					wcs.addAll(wcsToAdd.get(tile).get(wireEnum));
+			WireHashMap template = null;
+			for (Map.Entry<WireHashMap, List<Tile>> e : maps.entrySet()) {
+				if (template == null || e.getValue().size() > maps.get(template).size())
+					template = e.getKey();
+			}
 
-				if (wcs.size() > 0) {
-					WireConnection[] arrView = wcs.toArray(new WireConnection[wcs.size()]);
-					wireHashMap.put(wireEnum, wireArrayPool.add(new WireArray(arrView)).array);
+			for (Map.Entry<WireHashMap, List<Tile>> e : maps.entrySet()) {
+				WireHashMap full = e.getKey();
+				if (full == template)
+					continue;
+				WireHashMap templated = WireHashMap.withTemplate(template, full);
+				if (templated.getNumStoredEntries() * 2 >= full.size())
+					continue;
+				for (Tile tile : e.getValue()) {
+					if (forward)
+						tile.setWireHashMap(templated);
+					else
+						tile.setReverseWireConnections(templated);
 				}
+				replaced++;
 			}
-
-			// Update the tile with the new wire map.
-			WireHashMap reduced = tileWiresPool.add(wireHashMap);
-			if (forward)
-				tile.setWireHashMap(reduced);
-			else
-				tile.setReverseWireConnections(reduced);
 		}
+		System.out.println("Replaced " + replaced + (forward ? " forward" : " reverse") +
+				" wire maps with connection templates");
 	}
 
 	/**
@@ -60,6 +60,11 @@ import java.util.Map.Entry;
  * <p>
  * Run the Java class {@link PartialDeviceInstaller} to create a new partial device and
  * install it to the corresponding family of the RapidSmith2 "device" folder.
+ * 
+ * <p>
+ * When the partial device does not need to be saved, use a
+ * {@link edu.byu.ece.rapidSmith.device.RegionDevice} instead.  It has the same layout
+ * but shares the tile data of the original device rather than copying it.
  *
  */
 public class PartialDeviceGenerator {
@@ -0,0 +1,306 @@
+/*
+ * Copyright (c) 2016 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * BYU RapidSmith Tools is free software: you may redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * BYU RapidSmith Tools is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * A copy of the GNU General Public License is included with the BYU
+ * RapidSmith Tools. It can be found at doc/LICENSE.GPL3.TXT. You may
+ * also get a copy of the license at <http://www.gnu.org/licenses/>.
+ */
+package edu.byu.ece.rapidSmith.device.creation;
+
+import edu.byu.ece.rapidSmith.device.WireConnection;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * A table of wire connections keyed by tile address and wire that is kept on disk
+ * once it outgrows its memory budget.  Used by {@link DeviceGenerator} to hold the
+ * wire corrections of large devices without keeping them all on the heap.
+ * <p>
+ * Entries are buffered in memory until the estimated size of the buffer exceeds
+ * the budget.  The buffer is then sorted and written to a temporary file as a run.
+ * Once all entries are added, {@link #iterator()} performs a k-way merge of the
+ * runs and the remaining buffer (merging runs in passes first if there are too
+ * many to open at once), returning the entries in ascending order of tile
+ * address and wire.  Entries with the same key are returned in the order they
+ * were added.  The temporary files are deleted when the table is closed.
+ */
+public final class WireCorrectionSpill implements Closeable, Iterable<WireCorrectionSpill.Entry> {
+	private static final int BUFFER_SIZE = 1 << 16;
+	// maximum number of runs merged at once, bounding the number of open files
+	private static final int MAX_FAN_IN = 64;
+	// rough per-entry and per-connection heap cost of the buffered entries
+	private static final long ENTRY_OVERHEAD = 64;
+	private static final long CONNECTION_SIZE = 40;
+
+	private final Path directory;
+	private final long memoryBudget;
+	private final List<Path> runs = new ArrayList<>();
+	private List<Entry> buffer = new ArrayList<>();
+	private long bufferedBytes = 0;
+	private int sequence = 0;
+
+	/**
+	 * @param directory the directory to write runs to, or null for the default
+	 *   temporary directory
+	 * @param memoryBudget the number of bytes of entries to buffer before spilling
+	 */
+	public WireCorrectionSpill(Path directory, long memoryBudget) {
+		this.directory = directory;
+		this.memoryBudget = memoryBudget;
+	}
+
+	/**
+	 * Adds the connections for the wire of the tile at the specified address.
+	 */
+	public void add(int tileAddress, int wire, Collection<WireConnection> connections) throws IOException {
+		WireConnection[] array = connections.toArray(new WireConnection[connections.size()]);
+		buffer.add(new Entry(tileAddress, wire, array, sequence++));
+		bufferedBytes += ENTRY_OVERHEAD + CONNECTION_SIZE * array.length;
+		if (bufferedBytes > memoryBudget)
+			spill();
+	}
+
+	/**
+	 * Returns the number of runs written to disk.
+	 */
+	public int getNumRuns() {
+		return runs.size();
+	}
+
+	private void spill() throws IOException {
+		buffer.sort(null);
+		runs.add(writeRun(buffer.iterator(), buffer.size()));
+		buffer = new ArrayList<>();
+		bufferedBytes = 0;
+	}
+
+	private Path writeRun(Iterator<Entry> entries, int size) throws IOException {
+		Path run = directory == null ?
+				Files.createTempFile("rs2-wires", ".run") :
+				Files.createTempFile(directory, "rs2-wires", ".run");
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(Files.newOutputStream(run), BUFFER_SIZE))) {
+			out.writeInt(size);
+			while (entries.hasNext())
+				entries.next().write(out);
+		}
+		return run;
+	}
+
+	/**
+	 * Merges runs in groups until at most {@link #MAX_FAN_IN} runs remain.
+	 */
+	private void mergeRuns() throws IOException {
+		while (runs.size() > MAX_FAN_IN) {
+			List<Path> merged = new ArrayList<>();
+			for (int i = 0; i < runs.size(); i += MAX_FAN_IN) {
+				List<Path> group = runs.subList(i, Math.min(i + MAX_FAN_IN, runs.size()));
+				if (group.size() == 1) {
+					merged.add(group.get(0));
+					continue;
+				}
+				List<Iterator<Entry>> sources = new ArrayList<>(group.size());
+				int size = 0;
+				for (Path run : group) {
+					RunIterator it = new RunIterator(run);
+					size += it.remaining;
+					sources.add(it);
+				}
+				merged.add(writeRun(new MergeIterator(sources), size));
+				for (Path run : group)
+					Files.deleteIfExists(run);
+			}
+			runs.clear();
+			runs.addAll(merged);
+		}
+	}
+
+	/**
+	 * Returns the entries of the table in ascending order of tile address and wire.
+	 * Only one iterator may be open at a time and the table should not be added to
+	 * while iterating.
+	 */
+	@Override
+	public Iterator<Entry> iterator() {
+		buffer.sort(null);
+		List<Iterator<Entry>> sources = new ArrayList<>(runs.size() + 1);
+		try {
+			mergeRuns();
+			for (Path run : runs)
+				sources.add(new RunIterator(run));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		sources.add(buffer.iterator());
+		return new MergeIterator(sources);
+	}
+
+	@Override
+	public void close() throws IOException {
+		buffer = new ArrayList<>();
+		IOException failure = null;
+		for (Path run : runs) {
+			try {
+				Files.deleteIfExists(run);
+			} catch (IOException e) {
+				failure = e;
+			}
+		}
+		runs.clear();
+		if (failure != null)
+			throw failure;
+	}
+
+	/**
+	 * The connections of a single wire.
+	 */
+	public static final class Entry implements Comparable<Entry> {
+		final int tileAddress;
+		final int wire;
+		final WireConnection[] connections;
+		private final int sequence;
+
+		Entry(int tileAddress, int wire, WireConnection[] connections, int sequence) {
+			this.tileAddress = tileAddress;
+			this.wire = wire;
+			this.connections = connections;
+			this.sequence = sequence;
+		}
+
+		public int getTileAddress() {
+			return tileAddress;
+		}
+
+		public int getWire() {
+			return wire;
+		}
+
+		public WireConnection[] getConnections() {
+			return connections;
+		}
+
+		private void write(DataOutputStream out) throws IOException {
+			out.writeInt(tileAddress);
+			out.writeInt(wire);
+			out.writeInt(sequence);
+			out.writeInt(connections.length);
+			for (WireConnection wc : connections) {
+				out.writeInt(wc.getWire());
+				out.writeInt(wc.getRowOffset());
+				out.writeInt(wc.getColumnOffset());
+				out.writeBoolean(wc.isPIP());
+			}
+		}
+
+		private static Entry read(DataInputStream in) throws IOException {
+			int tileAddress = in.readInt();
+			int wire = in.readInt();
+			int sequence = in.readInt();
+			WireConnection[] connections = new WireConnection[in.readInt()];
+			for (int i = 0; i < connections.length; i++) {
+				int sink = in.readInt();
+				int rowOffset = in.readInt();
+				int columnOffset = in.readInt();
+				connections[i] = new WireConnection(sink, rowOffset, columnOffset, in.readBoolean());
+			}
+			return new Entry(tileAddress, wire, connections, sequence);
+		}
+
+		@Override
+		public int compareTo(Entry o) {
+			if (tileAddress != o.tileAddress)
+				return Integer.compare(tileAddress, o.tileAddress);
+			if (wire != o.wire)
+				return Integer.compare(wire, o.wire);
+			return Integer.compare(sequence, o.sequence);
+		}
+	}
+
+	private static final class RunIterator implements Iterator<Entry> {
+		private final DataInputStream in;
+		private int remaining;
+
+		RunIterator(Path run) throws IOException {
+			in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), BUFFER_SIZE));
+			remaining = in.readInt();
+			if (remaining == 0)
+				in.close();
+		}
+
+		@Override
+		public boolean hasNext() {
+			return remaining > 0;
+		}
+
+		@Override
+		public Entry next() {
+			if (remaining == 0)
+				throw new NoSuchElementException();
+			try {
+				Entry entry = Entry.read(in);
+				if (--remaining == 0)
+					in.close();
+				return entry;
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	private static final class MergeIterator implements Iterator<Entry> {
+		private final PriorityQueue<Head> heads = new PriorityQueue<>();
+
+		MergeIterator(List<Iterator<Entry>> sources) {
+			for (Iterator<Entry> source : sources) {
+				if (source.hasNext())
+					heads.add(new Head(source.next(), source));
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return !heads.isEmpty();
+		}
+
+		@Override
+		public Entry next() {
+			Head head = heads.poll();
+			if (head == null)
+				throw new NoSuchElementException();
+			Entry entry = head.entry;
+			if (head.source.hasNext())
+				heads.add(new Head(head.source.next(), head.source));
+			return entry;
+		}
+	}
+
+	private static final class Head implements Comparable<Head> {
+		final Entry entry;
+		final Iterator<Entry> source;
+
+		Head(Entry entry, Iterator<Entry> source) {
+			this.entry = entry;
+			this.source = source;
+		}
+
+		@Override
+		public int compareTo(Head o) {
+			return entry.compareTo(o.entry);
+		}
+	}
+}
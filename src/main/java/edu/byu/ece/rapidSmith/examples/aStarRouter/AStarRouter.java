@@ -11,6 +11,7 @@ import java.util.stream.Stream;
 import edu.byu.ece.rapidSmith.design.subsite.CellNet;
 import edu.byu.ece.rapidSmith.design.subsite.RouteTree;
 import edu.byu.ece.rapidSmith.device.*;
+import edu.byu.ece.rapidSmith.util.Metrics;
 
 /**
  * Implements a very simple A* routing algorithm capable of routing a single {@link CellNet}
@@ -26,6 +27,9 @@ public class AStarRouter {
 	private Map<RouteTree, Set<Wire>> usedConnectionMap;
 	private Tile targetTile;
 	private Tile startTile;
+	
+	private static final Metrics.Counter NETS_ROUTED = Metrics.counter("router.astar.nets");
+	private static final Metrics.Counter EXPANSIONS = Metrics.counter("router.astar.expansions");
 	 
 	/**
 	 * Constructor. Initializes a new A* router object
@@ -51,6 +55,7 @@ public class AStarRouter {
 	 * @return The routed net in a {@link RouteTree} data structure
 	 */
 	public RouteTreeWithCost routeNet(CellNet net) {
+		NETS_ROUTED.increment();
 		
 		// Initialize the route
 		RouteTreeWithCost start = initializeRoute(net);
@@ -75,6 +80,7 @@ public class AStarRouter {
 				
 				// Grab the lowest cost route from the queue
 				RouteTreeWithCost current = priorityQueue.poll();
+				EXPANSIONS.increment();
 				
 				// Get a set of sink wires from the current RouteTree that already exist in the queue
 				// we don't need to add them again
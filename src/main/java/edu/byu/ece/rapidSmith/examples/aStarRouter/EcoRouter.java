@@ -0,0 +1,711 @@
+/*
+ * Copyright (c) 2016 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * BYU RapidSmith Tools is free software: you may redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * BYU RapidSmith Tools is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * A copy of the GNU General Public License is included with the BYU
+ * RapidSmith Tools. It can be found at doc/LICENSE.GPL3.TXT. You may
+ * also get a copy of the license at <http://www.gnu.org/licenses/>.
+ */
+package edu.byu.ece.rapidSmith.examples.aStarRouter;
+
+import edu.byu.ece.rapidSmith.design.subsite.CellDesign;
+import edu.byu.ece.rapidSmith.design.subsite.CellNet;
+import edu.byu.ece.rapidSmith.design.subsite.CellPin;
+import edu.byu.ece.rapidSmith.design.subsite.RouteTree;
+import edu.byu.ece.rapidSmith.device.*;
+import edu.byu.ece.rapidSmith.util.Metrics;
+
+import java.util.*;
+
+/**
+ * Incrementally reroutes the nets of a {@link CellDesign} after small placement
+ * changes (an engineering change order, or ECO).
+ * <p>
+ * Enable tracking with {@link CellDesign#setTrackInvalidatedNets(boolean)} before
+ * modifying the placement.  {@link #reroute()} then only visits the nets marked by
+ * placing or unplacing cells and by changing pin mappings.  For each of these nets
+ * the existing {@link RouteTree}s are kept and pruned to the branches that still
+ * lead to mapped sink BEL pins.  Only the sinks whose branches were lost are routed
+ * again: inside a site by walking back from the BEL pin to the existing routing or
+ * to a site pin, and between sites with an A* search that grows from the kept
+ * intersite tree.  The intersite trees leaving the source site through the same
+ * site pin are merged into this tree, and the trees leaving through the other
+ * output site pins of the source are kept as long as they still reach a sink.
+ * Wires used by other nets and wires reserved in the design are avoided, so the
+ * routing of untouched nets is never modified.
+ * <p>
+ * This router does not use site PIPs or BEL routethroughs.  Sinks that can only be
+ * reached through them, static nets and nets connected to partition pins are left
+ * for a full router and are listed in the {@link Report}.  Like {@link AStarRouter},
+ * this class requires the extended device information to be loaded.
+ */
+public class EcoRouter {
+	private static final Metrics.Counter NETS_REROUTED = Metrics.counter("router.eco.nets");
+	private static final Metrics.Counter EXPANSIONS = Metrics.counter("router.eco.expansions");
+
+	private final CellDesign design;
+	private Map<Wire, CellNet> usedWires;
+	private int maxExpansions = 1_000_000;
+
+	/**
+	 * Creates an ECO router for the design.
+	 *
+	 * @param design the design to reroute
+	 */
+	public EcoRouter(CellDesign design) {
+		this.design = Objects.requireNonNull(design);
+	}
+
+	/**
+	 * Sets the maximum number of wires the intersite search expands for a single
+	 * sink before giving up on it.
+	 */
+	public void setMaxExpansions(int maxExpansions) {
+		this.maxExpansions = maxExpansions;
+	}
+
+	/**
+	 * Reroutes the nets invalidated since the last call and clears the set of
+	 * invalidated nets of the design.
+	 *
+	 * @return a report of the preserved and rerouted routing
+	 */
+	public Report reroute() {
+		List<CellNet> nets = new ArrayList<>(design.getInvalidatedNets());
+		Report report = reroute(nets);
+		design.clearInvalidatedNets();
+		return report;
+	}
+
+	/**
+	 * Reroutes the specified nets, preserving as much of their routing as possible.
+	 *
+	 * @param nets the nets to reroute
+	 * @return a report of the preserved and rerouted routing
+	 */
+	public Report reroute(Collection<CellNet> nets) {
+		Report report = new Report();
+		try (Metrics.Phase ignored = Metrics.phase("router.eco")) {
+			for (CellNet net : nets) {
+				if (net.getDesign() != design)
+					continue;
+				if (net.isStaticNet() || !net.getPartitionPins().isEmpty() ||
+						net.getSourcePin() == null || !net.getSourcePin().isMapped()) {
+					report.skippedNets.add(net);
+					continue;
+				}
+				new NetRerouter(net, report).run();
+				report.netsRerouted++;
+				NETS_REROUTED.increment();
+			}
+		}
+		report.untouchedNets = design.getNets().size() - report.netsRerouted - report.skippedNets.size();
+		return report;
+	}
+
+	/**
+	 * Discards the index of wires used by the design.  Call this after the routing
+	 * of the design is modified by something other than this router.
+	 */
+	public void invalidateRouting() {
+		usedWires = null;
+	}
+
+	private Map<Wire, CellNet> getUsedWires() {
+		if (usedWires == null) {
+			usedWires = new HashMap<>();
+			for (CellNet net : design.getNets()) {
+				for (RouteTree tree : net.getIntersiteRouteTreeList()) {
+					for (RouteTree node : tree)
+						usedWires.put(node.getWire(), net);
+				}
+			}
+		}
+		return usedWires;
+	}
+
+	private boolean isAvailable(CellNet net, Wire wire) {
+		CellNet owner = getUsedWires().get(wire);
+		return (owner == null || owner == net) && design.isWireAvailable(net, wire);
+	}
+
+	private static Connection findConnection(Wire source, Wire sink) {
+		for (Connection c : source.getWireConnections()) {
+			if (c.getSinkWire().equals(sink))
+				return c;
+		}
+		return null;
+	}
+
+	/**
+	 * Reroutes a single net.  The new routing is assembled on the side and only
+	 * written back to the net once all sinks have been processed.
+	 */
+	private final class NetRerouter {
+		private final CellNet net;
+		private final Report report;
+		private final Set<RouteTree> oldNodes = Collections.newSetFromMap(new IdentityHashMap<>());
+		private final Map<SitePin, RouteTree> oldSitePinTrees = new HashMap<>();
+		private final Map<BelPin, RouteTree> belPinTrees = new LinkedHashMap<>();
+		private final Map<SitePin, RouteTree> sitePinTrees = new LinkedHashMap<>();
+		private final Set<BelPin> newBelPins = new HashSet<>();
+		private final Set<SitePin> newSitePins = new HashSet<>();
+		private RouteTree sourceTree;
+		private Site sourceSite;
+
+		NetRerouter(CellNet net, Report report) {
+			this.net = net;
+			this.report = report;
+		}
+
+		void run() {
+			RouteTree oldSource = net.getSourceRouteTree();
+			List<RouteTree> oldIntersite = new ArrayList<>(net.getIntersiteRouteTreeList());
+			if (oldSource != null)
+				collect(oldSource);
+			oldIntersite.forEach(this::collect);
+			if (net.getSitePinRouteTrees() != null) {
+				for (Map.Entry<SitePin, RouteTree> e : net.getSitePinRouteTrees().entrySet()) {
+					if (e.getKey().isInput())
+						oldSitePinTrees.put(e.getKey(), e.getValue());
+					collect(e.getValue());
+				}
+			}
+			Map<BelPin, RouteTree> oldBelPinTrees = net.getBelPinRouteTrees() == null ?
+				Collections.emptyMap() : net.getBelPinRouteTrees();
+
+			BelPin sourceBelPin = net.getSourcePin().getMappedBelPins().iterator().next();
+			sourceSite = sourceBelPin.getBel().getSite();
+			sourceTree = oldSource != null && oldSource.getWire().equals(sourceBelPin.getWire()) ?
+				oldSource : new RouteTree(sourceBelPin.getWire());
+
+			// keep the branches that still reach mapped BEL pins, route the rest inside the site
+			List<CellPin> sinks = new ArrayList<>();
+			for (CellPin sink : net.getSinkPins()) {
+				if (sink.isOutpin())
+					continue;
+				sinks.add(sink);
+				for (BelPin belPin : sink.getMappedBelPins()) {
+					RouteTree node = oldBelPinTrees.get(belPin);
+					if (node == null || !isValid(node)) {
+						node = routeInsideSite(belPin);
+						if (node == null)
+							continue;
+						newBelPins.add(belPin);
+					}
+					belPinTrees.put(belPin, node);
+				}
+			}
+
+			// site pin trees no longer leading to a BEL pin are not needed
+			Set<RouteTree> usedRoots = Collections.newSetFromMap(new IdentityHashMap<>());
+			belPinTrees.values().forEach(node -> usedRoots.add(node.getRoot()));
+			sitePinTrees.values().removeIf(root -> !usedRoots.contains(root));
+
+			// route the site pins not reached by the kept intersite routing
+			RouteTree intersite = null;
+			List<RouteTree> intersiteList = new ArrayList<>();
+			Set<RouteTree> exits = Collections.newSetFromMap(new IdentityHashMap<>());
+			List<SitePin> sourceSitePins = new ArrayList<>(2);
+			if (!sitePinTrees.isEmpty()) {
+				RouteTree exit = findSiteExit();
+				if (exit == null) {
+					dropSitePins(new ArrayList<>(sitePinTrees.keySet()));
+				}
+				else {
+					SitePin sourceSitePin = exit.getWire().getConnectedPin();
+					Wire start = sourceSitePin.getExternalWire();
+
+					// merge the trees starting at the exit, keep the ones still driven through
+					// another site pin of the source.  A net has at most two source site pins.
+					List<RouteTree> others = new ArrayList<>();
+					SitePin otherSitePin = null;
+					for (RouteTree tree : oldIntersite) {
+						if (tree.getWire().equals(start)) {
+							if (intersite == null)
+								intersite = tree;
+							else
+								merge(intersite, tree);
+							continue;
+						}
+						RouteTree driver = findDriver(tree);
+						if (driver == null)
+							continue;
+						SitePin sitePin = driver.getConnectedSitePin();
+						if (otherSitePin == null)
+							otherSitePin = sitePin;
+						if (sitePin.equals(otherSitePin))
+							others.add(tree);
+					}
+					if (intersite == null)
+						intersite = new RouteTree(start);
+					routeIntersite(intersite, others);
+
+					exits.add(exit);
+					sourceSitePins.add(sourceSitePin);
+					intersiteList.add(intersite);
+					for (RouteTree tree : others) {
+						RouteTree driver = findDriver(tree);
+						if (exits.add(driver))
+							sourceSitePins.add(driver.getConnectedSitePin());
+						intersiteList.add(tree);
+					}
+				}
+			}
+
+			// prune the trees to the branches leading to the BEL pins
+			Set<RouteTree> terminals = Collections.newSetFromMap(new IdentityHashMap<>());
+			terminals.addAll(belPinTrees.values());
+			terminals.addAll(exits);
+			sourceTree.prune(terminals);
+			sitePinTrees.values().forEach(rt -> rt.prune(terminals));
+
+			// update the wire index and write the new routing back to the net
+			if (usedWires != null) {
+				for (RouteTree node : oldNodes)
+					usedWires.remove(node.getWire(), net);
+			}
+			net.unrouteFull();
+			sourceSitePins.forEach(net::addSourceSitePin);
+			net.setSourceRouteTree(sourceTree);
+			if (intersite != null) {
+				net.setIntersiteRouteTrees(intersiteList);
+				if (usedWires != null) {
+					for (RouteTree tree : intersiteList) {
+						for (RouteTree node : tree)
+							usedWires.put(node.getWire(), net);
+					}
+				}
+			}
+			sitePinTrees.forEach(net::addSinkRouteTree);
+			belPinTrees.forEach(net::addSinkRouteTree);
+			net.setIsIntrasite(intersite == null && !belPinTrees.isEmpty());
+
+			List<CellPin> routed = new ArrayList<>();
+			for (CellPin sink : sinks) {
+				if (!sink.isMapped() || !belPinTrees.keySet().containsAll(sink.getMappedBelPins())) {
+					report.unroutedSinks.add(sink);
+					continue;
+				}
+				routed.add(sink);
+				boolean rerouted = false;
+				for (BelPin belPin : sink.getMappedBelPins())
+					rerouted |= newBelPins.contains(belPin) || newSitePins.contains(entryPin(belPinTrees.get(belPin)));
+				if (rerouted)
+					report.reroutedSinks++;
+				else
+					report.preservedSinks++;
+			}
+			net.addRoutedSinks(routed);
+
+			// count the wires kept from the previous routing
+			int total = 0, preserved = 0;
+			List<RouteTree> trees = new ArrayList<>(sitePinTrees.values());
+			trees.add(sourceTree);
+			trees.addAll(intersiteList);
+			for (RouteTree tree : trees) {
+				for (RouteTree node : tree) {
+					total++;
+					if (oldNodes.contains(node))
+						preserved++;
+				}
+			}
+			report.preservedWires += preserved;
+			report.addedWires += total - preserved;
+			report.removedWires += oldNodes.size() - preserved;
+		}
+
+		private void collect(RouteTree tree) {
+			for (RouteTree node : tree)
+				oldNodes.add(node);
+		}
+
+		/**
+		 * An existing BEL pin branch is still valid if it hangs off of the current
+		 * source tree or off of a site pin tree of the net.
+		 */
+		private boolean isValid(RouteTree node) {
+			RouteTree root = node.getRoot();
+			if (root == sourceTree)
+				return true;
+			SitePin sitePin = root.getWire().getReverseConnectedPin();
+			if (sitePin == null || oldSitePinTrees.get(sitePin) != root)
+				return false;
+			sitePinTrees.put(sitePin, root);
+			return true;
+		}
+
+		private SitePin entryPin(RouteTree node) {
+			return node.getRoot().getWire().getReverseConnectedPin();
+		}
+
+		/**
+		 * Walks back from the BEL pin through the wires of its site until reaching
+		 * the routing of the net or an input site pin, and connects the path found.
+		 */
+		private RouteTree routeInsideSite(BelPin belPin) {
+			Site site = belPin.getBel().getSite();
+			Map<Wire, RouteTree> existing = new HashMap<>();
+			List<RouteTree> roots = new ArrayList<>();
+			if (site.equals(sourceSite))
+				roots.add(sourceTree);
+			for (Map<SitePin, RouteTree> map : Arrays.asList(sitePinTrees, oldSitePinTrees)) {
+				for (Map.Entry<SitePin, RouteTree> e : map.entrySet()) {
+					if (e.getKey().getSite().equals(site))
+						roots.add(e.getValue());
+				}
+			}
+			for (RouteTree root : roots) {
+				for (RouteTree node : root)
+					existing.putIfAbsent(node.getWire(), node);
+			}
+
+			Wire target = belPin.getWire();
+			Map<Wire, Wire> next = new HashMap<>();
+			ArrayDeque<Wire> queue = new ArrayDeque<>();
+			next.put(target, null);
+			queue.add(target);
+			while (!queue.isEmpty()) {
+				Wire wire = queue.poll();
+				RouteTree node = existing.get(wire);
+				if (node != null) {
+					adoptSitePinTree(node);
+					return extend(node, next);
+				}
+				SitePin sitePin = wire.getReverseConnectedPin();
+				if (sitePin != null) {
+					RouteTree root = new RouteTree(wire);
+					sitePinTrees.put(sitePin, root);
+					return extend(root, next);
+				}
+				for (Connection c : wire.getReverseWireConnections()) {
+					if (c.isPip() || c.isRouteThrough())
+						continue;
+					Wire previous = c.getSinkWire();
+					if (!next.containsKey(previous)) {
+						next.put(previous, wire);
+						queue.add(previous);
+					}
+				}
+			}
+			return null;
+		}
+
+		private void adoptSitePinTree(RouteTree node) {
+			RouteTree root = node.getRoot();
+			if (root == sourceTree)
+				return;
+			SitePin sitePin = root.getWire().getReverseConnectedPin();
+			if (sitePin != null)
+				sitePinTrees.putIfAbsent(sitePin, root);
+		}
+
+		private RouteTree extend(RouteTree node, Map<Wire, Wire> next) {
+			Wire wire = node.getWire();
+			Wire sink;
+			while ((sink = next.get(wire)) != null) {
+				Connection c = findConnection(wire, sink);
+				if (c == null)
+					return null;
+				node = node.connect(c);
+				wire = sink;
+			}
+			return node;
+		}
+
+		/**
+		 * Returns the node of the source tree driving an output site pin, extending the
+		 * source tree to one if necessary.
+		 */
+		private RouteTree findSiteExit() {
+			SitePin previous = net.getSourceSitePin();
+			RouteTree exit = null;
+			for (RouteTree node : sourceTree) {
+				SitePin sitePin = node.getWire().getConnectedPin();
+				if (sitePin != null && (exit == null || sitePin.equals(previous)))
+					exit = node;
+			}
+			if (exit != null)
+				return exit;
+
+			Map<Wire, RouteTree> existing = new HashMap<>();
+			for (RouteTree node : sourceTree)
+				existing.putIfAbsent(node.getWire(), node);
+			Map<Wire, Connection> reachedBy = new HashMap<>();
+			ArrayDeque<Wire> queue = new ArrayDeque<>(existing.keySet());
+			while (!queue.isEmpty()) {
+				Wire wire = queue.poll();
+				if (wire.getConnectedPin() != null) {
+					Deque<Connection> path = new ArrayDeque<>();
+					while (!existing.containsKey(wire)) {
+						Connection c = reachedBy.get(wire);
+						path.push(c);
+						wire = c.getSourceWire();
+					}
+					RouteTree node = existing.get(wire);
+					for (Connection c : path)
+						node = node.connect(c);
+					return node;
+				}
+				for (Connection c : wire.getWireConnections()) {
+					if (c.isPip() || c.isRouteThrough())
+						continue;
+					Wire sink = c.getSinkWire();
+					if (!existing.containsKey(sink) && !reachedBy.containsKey(sink)) {
+						reachedBy.put(sink, c);
+						queue.add(sink);
+					}
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * Returns the node of the source tree driving the output site pin the intersite
+		 * tree starts at, or null if the tree is no longer driven by the source.
+		 */
+		private RouteTree findDriver(RouteTree intersite) {
+			SitePin sitePin = intersite.getWire().getReverseConnectedPin();
+			if (sitePin == null || !sitePin.getSite().equals(sourceSite))
+				return null;
+			for (RouteTree node : sourceTree) {
+				if (sitePin.equals(node.getConnectedSitePin()))
+					return node;
+			}
+			return null;
+		}
+
+		/**
+		 * Moves the branches of {@code from} to {@code into}, both nodes of the same
+		 * wire.  Branches through a wire already reached from {@code into} are merged.
+		 */
+		private void merge(RouteTree into, RouteTree from) {
+			for (RouteTree child : new ArrayList<>(from.getChildren())) {
+				Connection c = child.getConnection();
+				from.disconnect(child);
+				RouteTree existing = null;
+				for (RouteTree sink : into.getChildren()) {
+					if (sink.getWire().equals(child.getWire()))
+						existing = sink;
+				}
+				if (existing == null)
+					into.connect(c, child);
+				else
+					merge(existing, child);
+			}
+		}
+
+		/**
+		 * Prunes the intersite trees to the sink site pins still in use and routes the
+		 * remaining site pins with an A* search seeded with every node of the tree
+		 * starting at the source exit.  Trees of the other exits of the source that no
+		 * longer reach a site pin are removed from {@code others}.
+		 */
+		private void routeIntersite(RouteTree intersite, List<RouteTree> others) {
+			Set<SitePin> reached = new HashSet<>();
+			pruneToSitePins(intersite, reached);
+			others.removeIf(tree -> !pruneToSitePins(tree, reached));
+
+			// the wires of the other trees are not reused by the new branches
+			Set<Wire> blocked = new HashSet<>();
+			for (RouteTree tree : others) {
+				for (RouteTree node : tree)
+					blocked.add(node.getWire());
+			}
+
+			List<SitePin> failed = new ArrayList<>();
+			for (SitePin sitePin : sitePinTrees.keySet()) {
+				if (reached.contains(sitePin))
+					continue;
+				if (routeToSitePin(intersite, sitePin, blocked))
+					newSitePins.add(sitePin);
+				else
+					failed.add(sitePin);
+			}
+			dropSitePins(failed);
+		}
+
+		/**
+		 * Prunes the tree to the sink site pins still in use that are not yet reached
+		 * by another tree, adding them to {@code reached}.
+		 *
+		 * @return true if the tree still reaches a site pin
+		 */
+		private boolean pruneToSitePins(RouteTree tree, Set<SitePin> reached) {
+			Set<RouteTree> keep = Collections.newSetFromMap(new IdentityHashMap<>());
+			for (RouteTree node : tree) {
+				SitePin sitePin = node.getConnectedSitePin();
+				if (sitePin != null && sitePinTrees.containsKey(sitePin) && reached.add(sitePin))
+					keep.add(node);
+			}
+			return tree.prune(keep);
+		}
+
+		private boolean routeToSitePin(RouteTree intersite, SitePin sitePin, Set<Wire> blocked) {
+			Wire target = sitePin.getExternalWire();
+			Tile targetTile = target.getTile();
+			Map<Wire, RouteTree> treeNodes = new HashMap<>();
+			for (RouteTree node : intersite)
+				treeNodes.putIfAbsent(node.getWire(), node);
+			if (treeNodes.containsKey(target))
+				return true;
+
+			PriorityQueue<SearchNode> queue = new PriorityQueue<>();
+			for (Wire wire : treeNodes.keySet())
+				queue.add(new SearchNode(wire, null, null, 0, targetTile));
+			Set<Wire> visited = new HashSet<>();
+			int expansions = 0;
+			while (!queue.isEmpty() && expansions < maxExpansions) {
+				SearchNode current = queue.poll();
+				if (!visited.add(current.wire))
+					continue;
+				expansions++;
+				EXPANSIONS.increment();
+
+				if (current.wire.equals(target)) {
+					Deque<Connection> path = new ArrayDeque<>();
+					SearchNode node = current;
+					for (; node.previous != null; node = node.previous)
+						path.push(node.connection);
+					RouteTree tree = treeNodes.get(node.wire);
+					for (Connection c : path)
+						tree = tree.connect(c);
+					return true;
+				}
+
+				for (Connection c : current.wire.getWireConnections()) {
+					if (c.isRouteThrough())
+						continue;
+					Wire sink = c.getSinkWire();
+					if (visited.contains(sink) || treeNodes.containsKey(sink) || blocked.contains(sink))
+						continue;
+					if (!sink.equals(target) && (sink.getConnectedPin() != null || !isAvailable(net, sink)))
+						continue;
+					queue.add(new SearchNode(sink, current, c, current.cost + 1, targetTile));
+				}
+			}
+			return false;
+		}
+
+		private void dropSitePins(Collection<SitePin> sitePins) {
+			for (SitePin sitePin : sitePins) {
+				RouteTree root = sitePinTrees.remove(sitePin);
+				belPinTrees.values().removeIf(node -> node.getRoot() == root);
+			}
+		}
+	}
+
+	private static final class SearchNode implements Comparable<SearchNode> {
+		final Wire wire;
+		final SearchNode previous;
+		final Connection connection;
+		final int cost;
+		final int estimate;
+
+		SearchNode(Wire wire, SearchNode previous, Connection connection, int cost, Tile target) {
+			this.wire = wire;
+			this.previous = previous;
+			this.connection = connection;
+			this.cost = cost;
+			Tile tile = wire.getTile();
+			this.estimate = cost + Math.abs(tile.getRow() - target.getRow()) +
+				Math.abs(tile.getColumn() - target.getColumn());
+		}
+
+		@Override
+		public int compareTo(SearchNode o) {
+			return Integer.compare(estimate, o.estimate);
+		}
+	}
+
+	/**
+	 * Summary of an ECO reroute.  Wire counts include the site wires of the
+	 * intrasite routing.
+	 */
+	public static final class Report {
+		private int netsRerouted;
+		private int untouchedNets;
+		private final List<CellNet> skippedNets = new ArrayList<>();
+		private final List<CellPin> unroutedSinks = new ArrayList<>();
+		private int preservedSinks;
+		private int reroutedSinks;
+		private int preservedWires;
+		private int removedWires;
+		private int addedWires;
+
+		/** Returns the number of nets visited by the ECO router. */
+		public int getNetsRerouted() {
+			return netsRerouted;
+		}
+
+		/** Returns the number of nets in the design whose routing was not visited. */
+		public int getUntouchedNets() {
+			return untouchedNets;
+		}
+
+		/** Returns the invalidated nets this router does not handle. */
+		public List<CellNet> getSkippedNets() {
+			return skippedNets;
+		}
+
+		/** Returns the sinks of the rerouted nets that could not be routed. */
+		public List<CellPin> getUnroutedSinks() {
+			return unroutedSinks;
+		}
+
+		/** Returns the number of sinks whose routing was kept as is. */
+		public int getPreservedSinks() {
+			return preservedSinks;
+		}
+
+		/** Returns the number of sinks that were routed again. */
+		public int getReroutedSinks() {
+			return reroutedSinks;
+		}
+
+		/** Returns the number of wires of the rerouted nets that were kept. */
+		public int getPreservedWires() {
+			return preservedWires;
+		}
+
+		/** Returns the number of wires ripped up from the rerouted nets. */
+		public int getRemovedWires() {
+			return removedWires;
+		}
+
+		/** Returns the number of wires added to the rerouted nets. */
+		public int getAddedWires() {
+			return addedWires;
+		}
+
+		/**
+		 * Returns the fraction of the previous routing of the rerouted nets that was
+		 * kept, or 1 if the nets had no routing.
+		 */
+		public double getPreservedWireFraction() {
+			int total = preservedWires + removedWires;
+			return total == 0 ? 1.0 : (double) preservedWires / total;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("ECO: %d nets rerouted, %d untouched, %d skipped; " +
+					"sinks %d preserved, %d rerouted, %d unrouted; " +
+					"wires %d preserved (%.1f%%), %d removed, %d added",
+				netsRerouted, untouchedNets, skippedNets.size(),
+				preservedSinks, reroutedSinks, unroutedSinks.size(),
+				preservedWires, 100 * getPreservedWireFraction(), removedWires, addedWires);
+		}
+	}
+}
@@ -0,0 +1,708 @@
+/*
+ * Copyright (c) 2016 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * BYU RapidSmith Tools is free software: you may redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * BYU RapidSmith Tools is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * A copy of the GNU General Public License is included with the BYU
+ * RapidSmith Tools. It can be found at doc/LICENSE.GPL3.TXT. You may
+ * also get a copy of the license at <http://www.gnu.org/licenses/>.
+ */
+package edu.byu.ece.rapidSmith.examples.placerDemo;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import edu.byu.ece.rapidSmith.design.subsite.Cell;
+import edu.byu.ece.rapidSmith.design.subsite.CellDesign;
+import edu.byu.ece.rapidSmith.design.subsite.CellNet;
+import edu.byu.ece.rapidSmith.design.subsite.CellPin;
+import edu.byu.ece.rapidSmith.design.subsite.CellPinType;
+import edu.byu.ece.rapidSmith.design.subsite.SiteProperty;
+import edu.byu.ece.rapidSmith.device.BelId;
+import edu.byu.ece.rapidSmith.device.BelPinTemplate;
+import edu.byu.ece.rapidSmith.device.BelTemplate;
+import edu.byu.ece.rapidSmith.device.Device;
+import edu.byu.ece.rapidSmith.device.Site;
+import edu.byu.ece.rapidSmith.device.SitePinTemplate;
+import edu.byu.ece.rapidSmith.device.SiteTemplate;
+import edu.byu.ece.rapidSmith.device.SiteType;
+import edu.byu.ece.rapidSmith.device.WireConnection;
+import edu.byu.ece.rapidSmith.util.Exceptions;
+
+/**
+ * Packs the unplaced leaf cells of a {@link CellDesign} into site sized {@link PackedCluster}s.
+ * <p>
+ * Cells are packed in the following order:
+ * <ol>
+ *   <li>The internal cells of each macro (LUTRAMs for example) are packed into a single site.</li>
+ *   <li>Carry chains and DSP/BRAM cascades are packed into chains of clusters, one cluster
+ *   per element, that must be placed in vertically adjacent sites.</li>
+ *   <li>All other cells are packed greedily, first into clusters holding cells they share
+ *   a low fanout net with (so LUTs and the flip flops they drive end up together), then
+ *   into the most recently opened cluster of a compatible site type.</li>
+ * </ol>
+ * A cell can be assigned to a BEL of a cluster if the BEL is one of the cell's possible
+ * anchors ({@link edu.byu.ece.rapidSmith.design.subsite.LibraryCell#canAnchorAt(BelId)}), its
+ * shared site properties agree with the other cells in the cluster, the clocked cells of the
+ * cluster share a clock and control set, and each connected pin of the cell can be reached
+ * through the routing of the {@link SiteTemplate} either from the site pins or from the cell
+ * in the cluster it connects to.  A LUT placed on the 5LUT or 6LUT BEL paired with another
+ * LUT must leave the sixth input free, and the two LUTs may use at most five distinct input
+ * nets since the pair shares its first five inputs.  Connections that can be made inside the
+ * site are preferred when choosing between BELs.  Legality is decided from the library and
+ * site templates only, no cells are placed in the design while packing, so the run time
+ * grows linearly with the number of cells.
+ * <p>
+ * Competition between cells for shared site pins is not modeled, nor are the LUT
+ * pairing rules for cells other than LUTs (SRLs and LUTRAMs), so the clusters are a
+ * good starting point for placement rather than a guaranteed legal packing.
+ * <p>
+ * When placing clusters, the candidate sites of chains are indexed by site column and
+ * each column keeps a cursor past its claimed bottom sites, so a chain is usually placed
+ * after checking only as many sites as it has elements.
+ */
+public class ClusterPacker {
+	/** Nets with more pins than this do not attract cells into the same cluster */
+	private static final int MAX_AFFINITY_FANOUT = 16;
+	/** Maximum number of clusters a cell is tried in because of its connections */
+	private static final int MAX_AFFINITY_CLUSTERS = 8;
+	/** Input pins that connect the elements of carry chains and DSP/BRAM cascades */
+	private static final Set<String> CASCADE_IN_PINS = new HashSet<>(Arrays.asList(
+			"CI", "ACIN", "BCIN", "PCIN", "CARRYCASCIN", "MULTSIGNIN", "CASCADEINA", "CASCADEINB"
+	));
+
+	private final Device device;
+	private final CellDesign design;
+	private final List<PackedCluster> clusters;
+	private final Map<Cell, PackedCluster> cellClusters;
+	/** The cluster most recently created for each site type */
+	private final Map<SiteType, PackedCluster> openClusters;
+	/** Number of clusters created for each site type */
+	private final Map<SiteType, Integer> clusterCounts;
+	/** Sites that can be configured as each site type */
+	private final Map<SiteType, List<Site>> sitesOfType;
+	/** Reachability information for each site template */
+	private final Map<SiteTemplate, SiteRouting> siteRouting;
+	/** Sites that can be configured as each site type, by column from bottom to top */
+	private final Map<SiteType, List<SiteColumn>> chainColumns;
+
+	public ClusterPacker(Device device, CellDesign design) {
+		this.device = device;
+		this.design = design;
+		this.clusters = new ArrayList<>();
+		this.cellClusters = new HashMap<>();
+		this.openClusters = new HashMap<>();
+		this.clusterCounts = new HashMap<>();
+		this.sitesOfType = new HashMap<>();
+		this.siteRouting = new HashMap<>();
+		this.chainColumns = new HashMap<>();
+
+		for (Site site : device.getSites().values()) {
+			for (SiteType type : site.getPossibleTypes())
+				sitesOfType.computeIfAbsent(type, k -> new ArrayList<>()).add(site);
+		}
+	}
+
+	/**
+	 * Packs the unplaced leaf cells of the design.  Ports, static sources and cells
+	 * that are already placed are not packed.
+	 *
+	 * @return the packed clusters
+	 * @throws Exceptions.DesignAssemblyException if a cell cannot be packed
+	 */
+	public List<PackedCluster> pack() {
+		List<Cell> cells = design.getLeafCells()
+				.filter(this::isPackable)
+				.collect(Collectors.toList());
+
+		packMacros(cells);
+		packChains(cells);
+		for (Cell cell : cells) {
+			if (!cellClusters.containsKey(cell))
+				packCell(cell);
+		}
+		return clusters;
+	}
+
+	/**
+	 * Returns the cluster the cell was packed into, or null if the cell was not packed.
+	 */
+	public PackedCluster getCluster(Cell cell) {
+		return cellClusters.get(cell);
+	}
+
+	/**
+	 * Places each packed cluster on an unused site of the device and places the cells of
+	 * the cluster on the BELs of the site.  Chains are placed in vertically adjacent sites.
+	 * The result can be used as the starting point of {@link SimulatedAnnealingPlacer}.
+	 *
+	 * @throws Exceptions.DesignAssemblyException if there are not enough free sites
+	 */
+	public void placeClusters() {
+		Set<Site> claimed = new HashSet<>();
+		Map<SiteType, Integer> nextSite = new HashMap<>();
+
+		// place chains first since they have the most restrictive placement
+		for (PackedCluster cluster : clusters) {
+			if (cluster.isChainHead() && cluster.getChainNext() != null)
+				placeChain(cluster, claimed);
+		}
+		for (PackedCluster cluster : clusters) {
+			if (cluster.getSite() != null)
+				continue;
+			List<Site> sites = sitesOfType.getOrDefault(cluster.getType(), Collections.emptyList());
+			int index = nextSite.getOrDefault(cluster.getType(), 0);
+			while (index < sites.size() && !isSiteFree(sites.get(index), claimed))
+				index++;
+			if (index == sites.size())
+				throw new Exceptions.DesignAssemblyException("Not enough sites of type " + cluster.getType());
+			nextSite.put(cluster.getType(), index + 1);
+			claimed.add(sites.get(index));
+			cluster.setSite(sites.get(index));
+		}
+
+		for (PackedCluster cluster : clusters) {
+			Site site = cluster.getSite();
+			design.setSiteType(site, cluster.getType());
+			for (Cell cell : cluster.getCells())
+				design.placeCell(cell, site.getBel(cluster.getBelId(cell)));
+		}
+	}
+
+	private void placeChain(PackedCluster head, Set<Site> claimed) {
+		List<PackedCluster> chain = new ArrayList<>();
+		for (PackedCluster cluster = head; cluster != null; cluster = cluster.getChainNext())
+			chain.add(cluster);
+
+		for (SiteColumn column : getChainColumns(head.getType())) {
+			List<Site> sites = column.sites;
+			// sites stay claimed or used, so the cursor only moves up
+			while (column.next < sites.size() && !isSiteFree(sites.get(column.next), claimed))
+				column.next++;
+			int start = column.next;
+			while (start + chain.size() <= sites.size()) {
+				int next = findConflict(chain, sites, start, claimed);
+				if (next < 0) {
+					for (int i = 0; i < chain.size(); i++) {
+						claimed.add(sites.get(start + i));
+						chain.get(i).setSite(sites.get(start + i));
+					}
+					return;
+				}
+				start = next;
+			}
+		}
+		throw new Exceptions.DesignAssemblyException("Unable to find sites for chain starting with " +
+				head.getCells().iterator().next().getName());
+	}
+
+	/*
+	 * Returns -1 if the chain fits in the sites of the column starting at index start,
+	 * otherwise the next index the chain can start at.
+	 */
+	private int findConflict(List<PackedCluster> chain, List<Site> sites, int start, Set<Site> claimed) {
+		for (int i = 0; i < chain.size(); i++) {
+			Site site = sites.get(start + i);
+			// no chain spans a gap in the column or a site that is taken
+			if (i > 0 && site.getInstanceY() != sites.get(start + i - 1).getInstanceY() + 1)
+				return start + i;
+			if (!isSiteFree(site, claimed))
+				return start + i + 1;
+			if (!Arrays.asList(site.getPossibleTypes()).contains(chain.get(i).getType()))
+				return start + 1;
+		}
+		return -1;
+	}
+
+	private List<SiteColumn> getChainColumns(SiteType type) {
+		return chainColumns.computeIfAbsent(type, t -> {
+			Map<String, List<Site>> byColumn = new LinkedHashMap<>();
+			for (Site site : sitesOfType.getOrDefault(t, Collections.emptyList())) {
+				String column = getColumnName(site);
+				if (column != null)
+					byColumn.computeIfAbsent(column, k -> new ArrayList<>()).add(site);
+			}
+			List<SiteColumn> columns = new ArrayList<>(byColumn.size());
+			for (List<Site> sites : byColumn.values()) {
+				sites.sort(Comparator.comparingInt(Site::getInstanceY));
+				columns.add(new SiteColumn(sites));
+			}
+			return columns;
+		});
+	}
+
+	// Returns the name of the column of sites of the same kind (SLICE_X0Y0 -> SLICE_X0)
+	private static String getColumnName(Site site) {
+		int split = site.getName().lastIndexOf("_X");
+		if (split < 0 || site.getInstanceX() < 0)
+			return null;
+		return site.getName().substring(0, split) + "_X" + site.getInstanceX();
+	}
+
+	private boolean isSiteFree(Site site, Set<Site> claimed) {
+		return !claimed.contains(site) && !design.isSiteUsed(site);
+	}
+
+	private boolean isPackable(Cell cell) {
+		if (cell.isPlaced() || cell.isPort() || cell.isStaticSource())
+			return false;
+		List<BelId> anchors = cell.getPossibleAnchors();
+		return anchors != null && !anchors.isEmpty();
+	}
+
+	/*
+	 * Packs the internal cells of each macro into a single site
+	 */
+	private void packMacros(List<Cell> cells) {
+		Map<Cell, List<Cell>> macroCells = new LinkedHashMap<>();
+		for (Cell cell : cells) {
+			if (cell.isInternal())
+				macroCells.computeIfAbsent(cell.getParent(), k -> new ArrayList<>()).add(cell);
+		}
+
+		for (Map.Entry<Cell, List<Cell>> e : macroCells.entrySet()) {
+			List<Cell> internalCells = e.getValue();
+			PackedCluster cluster = null;
+			for (SiteType type : getSiteTypes(internalCells.get(0))) {
+				PackedCluster candidate = createCluster(type);
+				if (candidate != null && internalCells.stream().allMatch(c -> tryAddCell(candidate, c))) {
+					cluster = candidate;
+					break;
+				}
+			}
+			if (cluster == null)
+				throw new Exceptions.DesignAssemblyException("Unable to pack macro " + e.getKey().getName() + " into a single site");
+			registerCluster(cluster);
+		}
+	}
+
+	/*
+	 * Packs carry chains and DSP/BRAM cascades into linked clusters
+	 */
+	private void packChains(List<Cell> cells) {
+		Map<Cell, Cell> previous = new HashMap<>();
+		Map<Cell, Cell> next = new LinkedHashMap<>();
+		for (Cell cell : cells) {
+			if (cellClusters.containsKey(cell))
+				continue;
+			for (CellPin pin : cell.getInputPins()) {
+				if (!CASCADE_IN_PINS.contains(getBaseName(pin.getName())))
+					continue;
+				CellNet net = pin.getNet();
+				if (net == null || net.isStaticNet() || net.getSourcePin() == null)
+					continue;
+				Cell driver = net.getSourcePin().getCell();
+				if (driver == cell || driver.getLibCell() != cell.getLibCell() ||
+						!isPackable(driver) || cellClusters.containsKey(driver) || next.containsKey(driver))
+					continue;
+				previous.put(cell, driver);
+				next.put(driver, cell);
+				break;
+			}
+		}
+
+		for (Cell head : next.keySet()) {
+			if (previous.containsKey(head))
+				continue;
+			PackedCluster last = null;
+			for (Cell cell = head; cell != null; cell = next.get(cell)) {
+				PackedCluster cluster = packInNewCluster(cell);
+				if (last != null)
+					last.linkChain(cluster);
+				last = cluster;
+			}
+		}
+	}
+
+	/*
+	 * Packs a single cell, preferring clusters of the cells it connects to
+	 */
+	private void packCell(Cell cell) {
+		for (PackedCluster cluster : getConnectedClusters(cell)) {
+			if (tryAddCell(cluster, cell)) {
+				cellClusters.put(cell, cluster);
+				return;
+			}
+		}
+
+		for (SiteType type : getSiteTypes(cell)) {
+			PackedCluster open = openClusters.get(type);
+			if (open != null && tryAddCell(open, cell)) {
+				cellClusters.put(cell, open);
+				return;
+			}
+		}
+
+		packInNewCluster(cell);
+	}
+
+	private PackedCluster packInNewCluster(Cell cell) {
+		for (SiteType type : getSiteTypes(cell)) {
+			if (clusterCounts.getOrDefault(type, 0) >= sitesOfType.getOrDefault(type, Collections.emptyList()).size())
+				continue;
+			PackedCluster cluster = createCluster(type);
+			if (cluster != null && tryAddCell(cluster, cell)) {
+				registerCluster(cluster);
+				return cluster;
+			}
+		}
+		throw new Exceptions.DesignAssemblyException("Unable to pack cell " + cell.getName());
+	}
+
+	private PackedCluster createCluster(SiteType type) {
+		SiteTemplate template = device.getSiteTemplate(type);
+		if (template == null || template.getBelTemplates() == null)
+			return null;
+		return new PackedCluster(template);
+	}
+
+	private void registerCluster(PackedCluster cluster) {
+		clusters.add(cluster);
+		clusterCounts.merge(cluster.getType(), 1, Integer::sum);
+		openClusters.put(cluster.getType(), cluster);
+		for (Cell cell : cluster.getCells())
+			cellClusters.put(cell, cluster);
+	}
+
+	// Returns the distinct site types of the cell's possible anchors in order
+	private Collection<SiteType> getSiteTypes(Cell cell) {
+		Set<SiteType> types = new LinkedHashSet<>();
+		for (BelId anchor : cell.getPossibleAnchors())
+			types.add(anchor.getSiteType());
+		return types;
+	}
+
+	// Returns the clusters of the cells connected to the cell through low fanout nets
+	private Collection<PackedCluster> getConnectedClusters(Cell cell) {
+		Set<PackedCluster> connected = new LinkedHashSet<>();
+		for (CellPin pin : cell.getPins()) {
+			CellNet net = pin.getNet();
+			if (net == null || net.isStaticNet() || net.getPins().size() > MAX_AFFINITY_FANOUT)
+				continue;
+			for (CellPin other : net.getPins()) {
+				PackedCluster cluster = cellClusters.get(other.getCell());
+				if (cluster != null && !cluster.isFull()) {
+					connected.add(cluster);
+					if (connected.size() == MAX_AFFINITY_CLUSTERS)
+						return connected;
+				}
+			}
+		}
+		return connected;
+	}
+
+	/*
+	 * Attempts to add the cell to the best BEL of the cluster.  Returns false if no BEL
+	 * of the cluster can legally hold the cell.
+	 */
+	private boolean tryAddCell(PackedCluster cluster, Cell cell) {
+		CellNet clockNet = getClockNet(cell);
+		if (clockNet != null && cluster.clockNet != null && clockNet != cluster.clockNet)
+			return false;
+		ControlSet controlSet = getControlSet(cell);
+		if (controlSet != null && cluster.controlSet != null && !controlSet.equals(cluster.controlSet))
+			return false;
+
+		BelTemplate bestBel = null;
+		Map<SiteProperty, Object> bestProperties = null;
+		int bestScore = -1;
+		for (BelTemplate bel : cluster.getTemplate().getBelTemplates().values()) {
+			if (cluster.isBelUsed(bel) || !cell.getLibCell().canAnchorAt(bel.getId()) ||
+					!isLutPairCompatible(cluster, cell, bel))
+				continue;
+			Map<SiteProperty, Object> properties = cell.getSharedSiteProperties(bel.getId());
+			if (!arePropertiesCompatible(cluster, properties))
+				continue;
+			int score = scorePins(cluster, cell, bel);
+			if (score > bestScore) {
+				bestScore = score;
+				bestBel = bel;
+				bestProperties = properties;
+			}
+		}
+		if (bestBel == null)
+			return false;
+
+		cluster.addCell(cell, bestBel, bestProperties);
+		if (clockNet != null)
+			cluster.clockNet = clockNet;
+		if (controlSet != null)
+			cluster.controlSet = controlSet;
+		return true;
+	}
+
+	/*
+	 * The 5LUT and 6LUT BELs of a site share their first five inputs.  A LUT fits next
+	 * to the LUT on the paired BEL only if neither uses a sixth input net and they use
+	 * at most five input nets together.
+	 */
+	private boolean isLutPairCompatible(PackedCluster cluster, Cell cell, BelTemplate bel) {
+		if (!cell.isLut())
+			return true;
+		String pairName = getPairedLutName(bel.getId().getName());
+		BelTemplate pair = pairName == null ? null : cluster.getTemplate().getBelTemplates().get(pairName);
+		Cell other = pair == null ? null : cluster.getCell(pair);
+		if (other == null || !other.isLut())
+			return true;
+
+		Set<CellNet> inputs = getInputNets(cell);
+		Set<CellNet> otherInputs = getInputNets(other);
+		if (inputs.size() > 5 || otherInputs.size() > 5)
+			return false;
+		inputs.addAll(otherInputs);
+		return inputs.size() <= 5;
+	}
+
+	// Returns the 6LUT paired with a 5LUT and vice versa (A5LUT <-> A6LUT)
+	private static String getPairedLutName(String belName) {
+		if (belName.length() != 5 || !belName.endsWith("LUT"))
+			return null;
+		char size = belName.charAt(1);
+		if (size != '5' && size != '6')
+			return null;
+		return belName.charAt(0) + (size == '5' ? "6" : "5") + "LUT";
+	}
+
+	private static Set<CellNet> getInputNets(Cell cell) {
+		Set<CellNet> nets = new HashSet<>();
+		for (CellPin pin : cell.getInputPins()) {
+			CellNet net = pin.getNet();
+			if (net != null && !net.isStaticNet())
+				nets.add(net);
+		}
+		return nets;
+	}
+
+	private boolean arePropertiesCompatible(PackedCluster cluster, Map<SiteProperty, Object> properties) {
+		for (Map.Entry<SiteProperty, Object> e : properties.entrySet()) {
+			Object existing = cluster.getSiteProperties().get(e.getKey());
+			if (existing != null && !existing.equals(e.getValue()))
+				return false;
+		}
+		return true;
+	}
+
+	/*
+	 * Checks that each connected pin of the cell can be routed at the BEL, either
+	 * through the site pins or from/to the cells in the cluster.  Returns -1 if the
+	 * BEL cannot hold the cell, otherwise the number of connections that can be made
+	 * inside the site.
+	 */
+	private int scorePins(PackedCluster cluster, Cell cell, BelTemplate bel) {
+		SiteRouting routing = getSiteRouting(cluster.getTemplate());
+		int score = 0;
+		for (CellPin pin : cell.getPins()) {
+			CellNet net = pin.getNet();
+			if (net == null || net.isStaticNet())
+				continue;
+			List<Integer> wires = getBelPinWires(pin, bel);
+			if (wires.isEmpty())
+				continue;
+
+			if (pin.isOutpin()) {
+				boolean external = false;
+				boolean leavesSite = net.getPins().size() > MAX_AFFINITY_FANOUT;
+				for (CellPin sink : net.getSinkPins()) {
+					if (leavesSite)
+						break;
+					BelTemplate sinkBel = cluster.getBelTemplate(sink.getCell());
+					if (sinkBel == null) {
+						leavesSite = true;
+					} else if (isRoutable(routing, wires, getBelPinWires(sink, sinkBel))) {
+						score++;
+					} else {
+						leavesSite = true;
+					}
+				}
+				for (int wire : wires)
+					external |= routing.reachesSiteOutput(wire);
+				if (leavesSite && !external)
+					return -1;
+			} else {
+				boolean external = false;
+				for (int wire : wires)
+					external |= routing.isReachableFromSiteInput(wire);
+				CellPin source = net.getSourcePin();
+				BelTemplate sourceBel = source == null ? null : cluster.getBelTemplate(source.getCell());
+				if (sourceBel != null && isRoutable(routing, getBelPinWires(source, sourceBel), wires))
+					score++;
+				else if (!external)
+					return -1;
+			}
+		}
+		return score;
+	}
+
+	private boolean isRoutable(SiteRouting routing, List<Integer> sources, List<Integer> sinks) {
+		for (int source : sources) {
+			for (int sink : sinks) {
+				if (routing.reaches(source, sink))
+					return true;
+			}
+		}
+		return false;
+	}
+
+	private List<Integer> getBelPinWires(CellPin pin, BelTemplate bel) {
+		List<String> names = pin.getPossibleBelPinNames(bel.getId());
+		if (names == null || names.isEmpty())
+			return Collections.emptyList();
+		List<Integer> wires = new ArrayList<>(names.size());
+		for (String name : names) {
+			BelPinTemplate pinTemplate = bel.getPinTemplate(name);
+			if (pinTemplate != null)
+				wires.add(pinTemplate.getWire());
+		}
+		return wires;
+	}
+
+	private SiteRouting getSiteRouting(SiteTemplate template) {
+		return siteRouting.computeIfAbsent(template, SiteRouting::new);
+	}
+
+	private static String getBaseName(String pinName) {
+		int bracket = pinName.indexOf('[');
+		return bracket < 0 ? pinName : pinName.substring(0, bracket);
+	}
+
+	private static CellNet getClockNet(Cell cell) {
+		for (CellPin pin : cell.getInputPins()) {
+			if (pin.getType() == CellPinType.CLOCK && pin.getNet() != null)
+				return pin.getNet();
+		}
+		return null;
+	}
+
+	// Returns the enable and set/reset nets of flip flops and latches
+	private static ControlSet getControlSet(Cell cell) {
+		if (!cell.isFlipFlop() && !cell.isLatch())
+			return null;
+		CellNet enable = null;
+		CellNet setReset = null;
+		for (CellPin pin : cell.getInputPins()) {
+			CellPinType type = pin.getType();
+			if (type == null)
+				continue;
+			switch (type) {
+				case ENABLE:
+					enable = pin.getNet();
+					break;
+				case CLEAR:
+				case PRESET:
+				case RESET:
+				case SET:
+				case SETRESET:
+					setReset = pin.getNet();
+					break;
+				default:
+					break;
+			}
+		}
+		return new ControlSet(enable, setReset);
+	}
+
+	/**
+	 * The enable and set/reset nets shared by the flip flops of a site.
+	 */
+	static final class ControlSet {
+		private final CellNet enable;
+		private final CellNet setReset;
+
+		ControlSet(CellNet enable, CellNet setReset) {
+			this.enable = enable;
+			this.setReset = setReset;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (o == null || getClass() != o.getClass()) return false;
+			ControlSet that = (ControlSet) o;
+			return enable == that.enable && setReset == that.setReset;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(enable, setReset);
+		}
+	}
+
+	/**
+	 * The sites of a column that can be configured as a site type, from bottom to top,
+	 * and the lowest of them that may still be free.
+	 */
+	private static final class SiteColumn {
+		private final List<Site> sites;
+		private int next = 0;
+
+		SiteColumn(List<Site> sites) {
+			this.sites = sites;
+		}
+	}
+
+	/**
+	 * Reachability of the wires of a site template through its routing.  Reachable
+	 * sets are computed on demand and cached.
+	 */
+	private static final class SiteRouting {
+		private final SiteTemplate template;
+		private final Map<Integer, Set<Integer>> reachable = new HashMap<>();
+		private final Set<Integer> fromSiteInputs = new HashSet<>();
+		private final Map<Integer, Boolean> toSiteOutputs = new HashMap<>();
+		private final Set<Integer> siteOutputs = new HashSet<>();
+
+		SiteRouting(SiteTemplate template) {
+			this.template = template;
+			for (SitePinTemplate sink : template.getSinks().values())
+				fromSiteInputs.addAll(getReachable(sink.getInternalWire()));
+			for (SitePinTemplate source : template.getSources().values())
+				siteOutputs.add(source.getInternalWire());
+		}
+
+		boolean reaches(int source, int sink) {
+			return getReachable(source).contains(sink);
+		}
+
+		boolean isReachableFromSiteInput(int wire) {
+			return fromSiteInputs.contains(wire);
+		}
+
+		boolean reachesSiteOutput(int wire) {
+			return toSiteOutputs.computeIfAbsent(wire,
+					w -> getReachable(w).stream().anyMatch(siteOutputs::contains));
+		}
+
+		// breadth first search of the wires reachable from the source wire
+		private Set<Integer> getReachable(int source) {
+			Set<Integer> wires = reachable.get(source);
+			if (wires != null)
+				return wires;
+
+			wires = new HashSet<>();
+			ArrayDeque<Integer> queue = new ArrayDeque<>();
+			wires.add(source);
+			queue.add(source);
+			while (!queue.isEmpty()) {
+				WireConnection[] connections = template.getWireConnections(queue.poll());
+				if (connections == null)
+					continue;
+				for (WireConnection wc : connections) {
+					if (wires.add(wc.getWire()))
+						queue.add(wc.getWire());
+				}
+			}
+			reachable.put(source, wires);
+			return wires;
+		}
+	}
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2016 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * BYU RapidSmith Tools is free software: you may redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * BYU RapidSmith Tools is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * A copy of the GNU General Public License is included with the BYU
+ * RapidSmith Tools. It can be found at doc/LICENSE.GPL3.TXT. You may
+ * also get a copy of the license at <http://www.gnu.org/licenses/>.
+ */
+package edu.byu.ece.rapidSmith.examples.placerDemo;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import edu.byu.ece.rapidSmith.design.subsite.Cell;
+import edu.byu.ece.rapidSmith.design.subsite.CellNet;
+import edu.byu.ece.rapidSmith.design.subsite.SiteProperty;
+import edu.byu.ece.rapidSmith.device.BelId;
+import edu.byu.ece.rapidSmith.device.BelTemplate;
+import edu.byu.ece.rapidSmith.device.Site;
+import edu.byu.ece.rapidSmith.device.SiteTemplate;
+import edu.byu.ece.rapidSmith.device.SiteType;
+
+/**
+ * A group of cells that the {@link ClusterPacker} has assigned to the BELs of a
+ * single site.  Clusters that are part of a carry chain or cascade are linked to
+ * the clusters directly above and below them in the chain and must be placed in
+ * vertically adjacent sites.
+ */
+public class PackedCluster {
+	/** Template of the site type this cluster is packed for */
+	private final SiteTemplate template;
+	/** Cell assigned to each BEL of the site, indexed by BEL index */
+	private final Cell[] belCells;
+	/** BELs the cells of this cluster have been assigned to */
+	private final Map<Cell, BelTemplate> cellBels;
+	/** Values of the shared site properties of the cells in this cluster */
+	private final Map<SiteProperty, Object> siteProperties;
+	/** Clock net shared by the clocked cells of this cluster */
+	CellNet clockNet;
+	/** Control set shared by the sequential cells of this cluster */
+	ClusterPacker.ControlSet controlSet;
+	/** Cluster below this one in a chain */
+	private PackedCluster chainPrevious;
+	/** Cluster above this one in a chain */
+	private PackedCluster chainNext;
+	/** Site this cluster has been placed on */
+	private Site site;
+
+	PackedCluster(SiteTemplate template) {
+		this.template = template;
+		this.belCells = new Cell[template.getBelTemplates().size()];
+		this.cellBels = new LinkedHashMap<>();
+		this.siteProperties = new HashMap<>();
+	}
+
+	/*Data Accessors*/
+	public SiteType getType() {
+		return template.getType();
+	}
+
+	public SiteTemplate getTemplate() {
+		return template;
+	}
+
+	/**
+	 * Returns the cells in this cluster in the order they were added.
+	 */
+	public Collection<Cell> getCells() {
+		return Collections.unmodifiableSet(cellBels.keySet());
+	}
+
+	/**
+	 * Returns the id of the BEL the cell is assigned to, or null if the cell is not
+	 * in this cluster.
+	 */
+	public BelId getBelId(Cell cell) {
+		BelTemplate bel = cellBels.get(cell);
+		return bel == null ? null : bel.getId();
+	}
+
+	BelTemplate getBelTemplate(Cell cell) {
+		return cellBels.get(cell);
+	}
+
+	/**
+	 * Returns the cell assigned to the BEL, or null if the BEL is free.
+	 */
+	Cell getCell(BelTemplate bel) {
+		return belCells[bel.getIndex()];
+	}
+
+	public boolean isBelUsed(BelTemplate bel) {
+		return belCells[bel.getIndex()] != null;
+	}
+
+	public int size() {
+		return cellBels.size();
+	}
+
+	public boolean isFull() {
+		return cellBels.size() == belCells.length;
+	}
+
+	Map<SiteProperty, Object> getSiteProperties() {
+		return siteProperties;
+	}
+
+	void addCell(Cell cell, BelTemplate bel, Map<SiteProperty, Object> properties) {
+		assert belCells[bel.getIndex()] == null;
+		belCells[bel.getIndex()] = cell;
+		cellBels.put(cell, bel);
+		siteProperties.putAll(properties);
+	}
+
+	public PackedCluster getChainPrevious() {
+		return chainPrevious;
+	}
+
+	public PackedCluster getChainNext() {
+		return chainNext;
+	}
+
+	/**
+	 * Returns true if this cluster is not part of a chain or is the bottom of a chain.
+	 */
+	public boolean isChainHead() {
+		return chainPrevious == null;
+	}
+
+	void linkChain(PackedCluster next) {
+		this.chainNext = next;
+		next.chainPrevious = this;
+	}
+
+	/**
+	 * Returns the site this cluster has been placed on, or null if the cluster
+	 * has not been placed.
+	 */
+	public Site getSite() {
+		return site;
+	}
+
+	void setSite(Site site) {
+		this.site = site;
+	}
+
+	@Override
+	public String toString() {
+		return "PackedCluster{" + getType() + ", cells=" + cellBels.size() + "}";
+	}
+}
@@ -26,6 +26,7 @@ import edu.byu.ece.rapidSmith.design.subsite.Cell;
 import edu.byu.ece.rapidSmith.design.subsite.CellDesign;
 import edu.byu.ece.rapidSmith.design.subsite.CellNet;
 import edu.byu.ece.rapidSmith.design.subsite.CellPin;
+import edu.byu.ece.rapidSmith.design.subsite.CongestionMap;
 import edu.byu.ece.rapidSmith.device.Device;
 import edu.byu.ece.rapidSmith.device.Site;
 import edu.byu.ece.rapidSmith.device.SiteType;
@@ -57,6 +58,12 @@ public class SimulatedAnnealingPlacer {
 	private HashMap<SiteType, List<Site>> siteTypeMap = new HashMap<>();
 	//placement cost variables
 	private int cost; 
+	private final ArrayList<VirtualNet> virtualNets = new ArrayList<>();
+	// optional routing congestion penalty
+	private CongestionMap congestionMap = null;
+	private double congestionWeight = 0;
+	// limit the penalty of regions without routing supply
+	private static final double MAX_CONGESTION_OVERUSE = 10.0;
 	
 	/**
 	 * Constructor
@@ -77,6 +84,70 @@ public class SimulatedAnnealingPlacer {
 		design.getNets().forEach(CellNet::unrouteFull);
 	}
 	
+	/**
+	 * Adds a routing congestion penalty to the cost of the placement.  The cost of each
+	 * net is increased by {@code weight} times the amount its bounding box is over
+	 * utilized (demand / supply - 1) in the congestion map.  Passing a null map
+	 * removes the penalty.
+	 * @param congestionMap map used to estimate the congestion of the placement
+	 * @param weight scale of the congestion penalty
+	 */
+	public void setCongestionMap(CongestionMap congestionMap, double weight) {
+		if (this.congestionMap != null) {
+			for (VirtualNet net : virtualNets)
+				this.congestionMap.removeNet(net);
+		}
+		this.congestionMap = congestionMap;
+		this.congestionWeight = weight;
+		
+		// recompute the cost of the current placement with the new penalty
+		recomputeCost();
+	}
+	
+	/*
+	 * Recomputes the cost of every net and the total cost of the placement.  Only
+	 * the nets of a moved cluster are recomputed during a move, but the congestion
+	 * penalty of every net changes as the congestion map is updated, so the cached
+	 * costs are refreshed after each temperature step to keep the total from drifting.
+	 */
+	private void recomputeCost() {
+		this.cost = 0;
+		for (VirtualNet net : virtualNets) {
+			int netCost = calculateNetCost(net);
+			this.netToCostMap[net.getUniqueID()] = netCost;
+			this.cost += netCost;
+		}
+	}
+	
+	/*
+	 * Computes the wirelength cost of the net, adding the congestion penalty when a
+	 * congestion map is in use.  Also updates the bounding box of the net in the map.
+	 */
+	private int calculateNetCost(VirtualNet net) {
+		int netCost = net.calculateCost();
+		if (congestionMap == null)
+			return netCost;
+		
+		congestionMap.setNetBounds(net, net.getMinRow(), net.getMinColumn(), 
+				net.getMaxRow(), net.getMaxColumn(), net.getNumPins());
+		double overuse = congestionMap.getRegionUtilization(net.getMinRow(), net.getMinColumn(), 
+				net.getMaxRow(), net.getMaxColumn()) - 1.0;
+		if (overuse > 0) 
+			netCost += (int) Math.round(netCost * congestionWeight * Math.min(overuse, MAX_CONGESTION_OVERUSE));
+		net.setCost(netCost);
+		return netCost;
+	}
+	
+	/*
+	 * Restores the congestion map bounding boxes of the nets after a move is rejected
+	 */
+	private void restoreNetBounds(Collection<VirtualNet> nets) {
+		if (congestionMap == null)
+			return;
+		for (VirtualNet net : nets)
+			calculateNetCost(net);
+	}
+	
 	public void setVivadoOutputStream(BufferedWriter out, String checkpoint) {
 		this.vivadoOut = out;
 		this.placementXdc = checkpoint + "placement.xdc";
@@ -157,6 +228,7 @@ public class SimulatedAnnealingPlacer {
 					vnet.setSinks(netSinks);
 					
 					int netCost = vnet.calculateCost();
+					this.virtualNets.add(vnet);
 					this.netToCostMap[vnet.getUniqueID()] =  netCost;
 					this.cost += netCost;
 				}
@@ -451,10 +523,11 @@ public class SimulatedAnnealingPlacer {
 			HashSet<VirtualNet> affectedNets = cluster.getAllAffectedNets();
 			for(VirtualNet net : affectedNets) {
 				newCost -= this.netToCostMap[net.getUniqueID()];
-				newCost += net.calculateCost();
+				newCost += calculateNetCost(net);
 			}
 			total_cost += Math.abs(newCost - this.cost);
 			cluster.rejectMove();
+			restoreNetBounds(affectedNets);
 		}
 		System.out.println("Starting Temp = " + (total_cost/moves_tested)*10);
 		
@@ -557,7 +630,7 @@ public class SimulatedAnnealingPlacer {
 				HashSet<VirtualNet> affectedNets = cluster.getAllAffectedNets();
 				for(VirtualNet net : affectedNets) {
 					newCost -= this.netToCostMap[net.getUniqueID()];
-					newCost += net.calculateCost();
+					newCost += calculateNetCost(net);
 				}
 				
 				//decide whether or not to keep the move
@@ -573,9 +646,14 @@ public class SimulatedAnnealingPlacer {
 				}
 				else { //reject move, continue
 					cluster.rejectMove();
+					restoreNetBounds(affectedNets);
 				}
 			}
 		
+			// the congestion penalties of nets that were not moved are stale
+			if (congestionMap != null)
+				recomputeCost();
+			
 			//calculate temperature statistics
 			percentAccepted = (double)accepted / (double)moves;
 			movesAtTemp = this.updateMovesAtTemp(percentAccepted);
@@ -164,6 +164,30 @@ public class VirtualNet {
 	//	this.sinks = sinks; 
 	//}
 	
+	/**
+	 * Returns the number of sites the net connects (source and sinks)
+	 */
+	public int getNumPins() {
+		return this.numSinks + 1;
+	}
+
+	// Bounding box of the net as of the last call to calculateCost or updateCost
+	public int getMinRow() {
+		return this.bottom;
+	}
+
+	public int getMaxRow() {
+		return this.top;
+	}
+
+	public int getMinColumn() {
+		return this.left;
+	}
+
+	public int getMaxColumn() {
+		return this.right;
+	}
+
 	public boolean isUpToDate() {
 		return this.upToDate;
 	}
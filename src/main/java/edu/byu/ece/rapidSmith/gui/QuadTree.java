@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2016 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * BYU RapidSmith Tools is free software: you may redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * BYU RapidSmith Tools is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * A copy of the GNU General Public License is included with the BYU
+ * RapidSmith Tools. It can be found at doc/LICENSE.GPL3.TXT. You may
+ * also get a copy of the license at <http://www.gnu.org/licenses/>.
+ */
+
+package edu.byu.ece.rapidSmith.gui;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A region quad-tree of items with rectangular bounds, used by the scenes to find
+ * the items to draw in the visible region and the items under the mouse without
+ * creating a graphics item for each.
+ * <p>
+ * Each node holds the items that do not fit entirely within one of its quadrants.
+ * A node is split when it holds more than {@link #NODE_CAPACITY} items.  Items
+ * that fall outside of the bounds of the tree are kept in the root.
+ *
+ * @param <T> the type of the items in the tree
+ */
+public final class QuadTree<T> {
+	private static final int NODE_CAPACITY = 8;
+	private static final int MAX_DEPTH = 16;
+
+	private final Node<T> root;
+	private int size = 0;
+
+	/**
+	 * Creates an empty tree covering the specified bounds.
+	 */
+	public QuadTree(double minX, double minY, double maxX, double maxY) {
+		root = new Node<>(minX, minY, maxX, maxY, 0);
+	}
+
+	/**
+	 * Adds an item with the specified bounds to the tree.
+	 */
+	public void insert(T item, double minX, double minY, double maxX, double maxY) {
+		root.insert(new Entry<>(item, Math.min(minX, maxX), Math.min(minY, maxY),
+				Math.max(minX, maxX), Math.max(minY, maxY)));
+		size++;
+	}
+
+	/**
+	 * Calls the action on each item whose bounds intersect the specified region.
+	 */
+	public void query(double minX, double minY, double maxX, double maxY, Consumer<? super T> action) {
+		root.query(minX, minY, maxX, maxY, action);
+	}
+
+	/**
+	 * Returns the items whose bounds intersect the specified region.
+	 */
+	public List<T> query(double minX, double minY, double maxX, double maxY) {
+		List<T> items = new ArrayList<>();
+		query(minX, minY, maxX, maxY, items::add);
+		return items;
+	}
+
+	/**
+	 * Removes all items from the tree.
+	 */
+	public void clear() {
+		root.clear();
+		size = 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	private static final class Entry<T> {
+		final T item;
+		final double minX, minY, maxX, maxY;
+
+		Entry(T item, double minX, double minY, double maxX, double maxY) {
+			this.item = item;
+			this.minX = minX;
+			this.minY = minY;
+			this.maxX = maxX;
+			this.maxY = maxY;
+		}
+
+		boolean intersects(double minX, double minY, double maxX, double maxY) {
+			return this.minX <= maxX && this.maxX >= minX &&
+					this.minY <= maxY && this.maxY >= minY;
+		}
+	}
+
+	private static final class Node<T> {
+		private final double minX, minY, maxX, maxY;
+		private final int depth;
+		private List<Entry<T>> entries = new ArrayList<>();
+		private Node<T>[] children = null;
+
+		Node(double minX, double minY, double maxX, double maxY, int depth) {
+			this.minX = minX;
+			this.minY = minY;
+			this.maxX = maxX;
+			this.maxY = maxY;
+			this.depth = depth;
+		}
+
+		void insert(Entry<T> entry) {
+			if (children != null) {
+				Node<T> child = childContaining(entry);
+				if (child != null) {
+					child.insert(entry);
+					return;
+				}
+			}
+			entries.add(entry);
+			if (children == null && entries.size() > NODE_CAPACITY && depth < MAX_DEPTH)
+				split();
+		}
+
+		@SuppressWarnings("unchecked")
+		private void split() {
+			double midX = (minX + maxX) / 2;
+			double midY = (minY + maxY) / 2;
+			children = new Node[] {
+					new Node<>(minX, minY, midX, midY, depth + 1),
+					new Node<>(midX, minY, maxX, midY, depth + 1),
+					new Node<>(minX, midY, midX, maxY, depth + 1),
+					new Node<>(midX, midY, maxX, maxY, depth + 1)
+			};
+			List<Entry<T>> old = entries;
+			entries = new ArrayList<>();
+			for (Entry<T> entry : old) {
+				Node<T> child = childContaining(entry);
+				if (child != null)
+					child.insert(entry);
+				else
+					entries.add(entry);
+			}
+		}
+
+		private Node<T> childContaining(Entry<T> entry) {
+			for (Node<T> child : children) {
+				if (entry.minX >= child.minX && entry.maxX <= child.maxX &&
+						entry.minY >= child.minY && entry.maxY <= child.maxY) {
+					return child;
+				}
+			}
+			return null;
+		}
+
+		void query(double minX, double minY, double maxX, double maxY, Consumer<? super T> action) {
+			for (Entry<T> entry : entries) {
+				if (entry.intersects(minX, minY, maxX, maxY))
+					action.accept(entry.item);
+			}
+			if (children != null) {
+				for (Node<T> child : children) {
+					if (child.minX <= maxX && child.maxX >= minX &&
+							child.minY <= maxY && child.maxY >= minY) {
+						child.query(minX, minY, maxX, maxY, action);
+					}
+				}
+			}
+		}
+
+		void clear() {
+			entries = new ArrayList<>();
+			children = null;
+		}
+	}
+}
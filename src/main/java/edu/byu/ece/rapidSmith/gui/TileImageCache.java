@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2016 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * BYU RapidSmith Tools is free software: you may redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * BYU RapidSmith Tools is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * A copy of the GNU General Public License is included with the BYU
+ * RapidSmith Tools. It can be found at doc/LICENSE.GPL3.TXT. You may
+ * also get a copy of the license at <http://www.gnu.org/licenses/>.
+ */
+
+package edu.byu.ece.rapidSmith.gui;
+
+import com.trolltech.qt.core.QRectF;
+import com.trolltech.qt.gui.QApplication;
+import com.trolltech.qt.gui.QGraphicsScene.SceneLayer;
+import com.trolltech.qt.gui.QImage;
+import com.trolltech.qt.gui.QImage.Format;
+import com.trolltech.qt.gui.QPainter;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Caches pre-rendered images of the fabric of a {@link TileScene}.
+ * <p>
+ * The scene is split into blocks of {@link #BLOCK_PIXELS} square pixels at each
+ * level of detail.  Level 0 draws one pixel per scene unit and each following
+ * level halves the resolution, so a block of level k covers
+ * {@code BLOCK_PIXELS * 2^k} scene units.  Missing blocks are rendered on
+ * background threads and handed back to the UI thread, which redraws the area.
+ * Until a block is ready the closest coarser cached block is scaled up in its
+ * place.  The least recently drawn blocks are evicted once the cache is full.
+ * <p>
+ * Except for the rendering itself, all methods must be called from the UI thread.
+ * Each render is handed the immutable {@link TileScene.FabricLayout} of the
+ * generation it was requested in.  A failed render is dropped so the block is
+ * requested again the next time it is drawn.
+ */
+final class TileImageCache {
+	static final int BLOCK_PIXELS = 512;
+	static final int MAX_LEVEL = 8;
+	private static final int MAX_CACHED_BLOCKS = 192;
+
+	private static final ExecutorService RENDERERS = Executors.newFixedThreadPool(
+			Math.max(1, Runtime.getRuntime().availableProcessors() - 1), r -> {
+				Thread thread = new Thread(r, "rs-tile-renderer");
+				thread.setDaemon(true);
+				thread.setPriority(Thread.MIN_PRIORITY);
+				return thread;
+			});
+
+	private final TileScene scene;
+	private final Map<Long, QImage> blocks = new LinkedHashMap<Long, QImage>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, QImage> eldest) {
+			if (size() <= MAX_CACHED_BLOCKS)
+				return false;
+			eldest.getValue().dispose();
+			return true;
+		}
+	};
+	private final Set<Long> requested = new HashSet<>();
+	// incremented when the scene is rebuilt so stale renders are dropped
+	private int generation = 0;
+	// the layout of the current generation, shared with the rendering threads
+	private TileScene.FabricLayout layout;
+
+	TileImageCache(TileScene scene) {
+		this.scene = scene;
+	}
+
+	/**
+	 * Drops all cached images and starts rendering the new layout of the scene,
+	 * e.g. after the scene is rebuilt for a new device.
+	 *
+	 * @param layout the new layout of the scene, or null if the scene is empty
+	 */
+	void invalidate(TileScene.FabricLayout layout) {
+		this.layout = layout;
+		generation++;
+		for (QImage image : blocks.values())
+			image.dispose();
+		blocks.clear();
+		requested.clear();
+	}
+
+	/**
+	 * Returns the coarsest level whose resolution is at least that of the view
+	 * at the specified scale.
+	 */
+	static int levelFor(double scale) {
+		int level = 0;
+		while (level < MAX_LEVEL && scale * (1 << (level + 1)) <= 1.0)
+			level++;
+		return level;
+	}
+
+	/**
+	 * Draws the region of the fabric exposed by {@code rect} with the painter of
+	 * the view.
+	 */
+	void draw(QPainter painter, QRectF rect, double width, double height) {
+		if (layout == null)
+			return;
+		int level = levelFor(painter.worldTransform().m11());
+		double span = span(level);
+		int firstX = (int) Math.max(0, Math.floor(rect.left() / span));
+		int firstY = (int) Math.max(0, Math.floor(rect.top() / span));
+		int lastX = (int) Math.floor(Math.min(rect.right(), width - 1) / span);
+		int lastY = (int) Math.floor(Math.min(rect.bottom(), height - 1) / span);
+		for (int by = firstY; by <= lastY; by++) {
+			for (int bx = firstX; bx <= lastX; bx++) {
+				QRectF target = new QRectF(bx * span, by * span, span, span);
+				QImage image = blocks.get(key(level, bx, by));
+				if (image != null) {
+					painter.drawImage(target, image);
+				} else {
+					request(level, bx, by);
+					drawFallback(painter, target, level);
+				}
+			}
+		}
+	}
+
+	/** Scales up the closest coarser cached block over the target area. */
+	private void drawFallback(QPainter painter, QRectF target, int level) {
+		for (int coarser = level + 1; coarser <= MAX_LEVEL; coarser++) {
+			double span = span(coarser);
+			int bx = (int) Math.floor(target.left() / span);
+			int by = (int) Math.floor(target.top() / span);
+			QImage image = blocks.get(key(coarser, bx, by));
+			if (image == null)
+				continue;
+			double pixelsPerUnit = 1.0 / (1 << coarser);
+			QRectF source = new QRectF(
+					(target.left() - bx * span) * pixelsPerUnit,
+					(target.top() - by * span) * pixelsPerUnit,
+					target.width() * pixelsPerUnit, target.height() * pixelsPerUnit);
+			painter.drawImage(target, image, source);
+			return;
+		}
+		// nothing is cached yet, make sure the overview is on its way
+		request(MAX_LEVEL, 0, 0);
+	}
+
+	private void request(int level, int bx, int by) {
+		long key = key(level, bx, by);
+		if (!requested.add(key))
+			return;
+		int requestGeneration = generation;
+		TileScene.FabricLayout requestLayout = layout;
+		RENDERERS.submit(() -> {
+			QImage image;
+			try {
+				image = render(requestLayout, level, bx, by);
+			} catch (RuntimeException e) {
+				System.err.println("Unable to render tile image: " + e);
+				QApplication.invokeLater(() -> failed(requestGeneration, key));
+				return;
+			}
+			QApplication.invokeLater(() -> deliver(requestGeneration, key, level, bx, by, image));
+		});
+	}
+
+	private static QImage render(TileScene.FabricLayout layout, int level, int bx, int by) {
+		double span = span(level);
+		QImage image = new QImage(BLOCK_PIXELS, BLOCK_PIXELS, Format.Format_RGB16);
+		image.fill(0);
+		QPainter painter = new QPainter(image);
+		try {
+			double pixelsPerUnit = 1.0 / (1 << level);
+			painter.scale(pixelsPerUnit, pixelsPerUnit);
+			painter.translate(-bx * span, -by * span);
+			layout.paint(painter, bx * span, by * span, span, span);
+		} finally {
+			painter.end();
+		}
+		return image;
+	}
+
+	// allows the block to be requested again the next time it is drawn
+	private void failed(int requestGeneration, long key) {
+		if (requestGeneration == generation)
+			requested.remove(key);
+	}
+
+	private void deliver(int requestGeneration, long key, int level, int bx, int by, QImage image) {
+		if (requestGeneration != generation) {
+			image.dispose();
+			return;
+		}
+		requested.remove(key);
+		blocks.put(key, image);
+		double span = span(level);
+		scene.invalidate(new QRectF(bx * span, by * span, span, span), SceneLayer.BackgroundLayer);
+	}
+
+	private static double span(int level) {
+		return (double) BLOCK_PIXELS * (1 << level);
+	}
+
+	private static long key(int level, int bx, int by) {
+		return ((long) level << 48) | ((long) by << 24) | bx;
+	}
+}
@@ -30,15 +30,12 @@ import com.trolltech.qt.core.QSizeF;
 import com.trolltech.qt.core.Qt.PenStyle;
 import com.trolltech.qt.gui.QBrush;
 import com.trolltech.qt.gui.QColor;
-import com.trolltech.qt.gui.QGraphicsPixmapItem;
 import com.trolltech.qt.gui.QGraphicsRectItem;
 import com.trolltech.qt.gui.QGraphicsScene;
 import com.trolltech.qt.gui.QGraphicsSceneMouseEvent;
 import com.trolltech.qt.gui.QImage;
 import com.trolltech.qt.gui.QPainter;
 import com.trolltech.qt.gui.QPen;
-import com.trolltech.qt.gui.QPixmap;
-import com.trolltech.qt.gui.QImage.Format;
 
 import edu.byu.ece.rapidSmith.design.xdl.XdlDesign;
 import edu.byu.ece.rapidSmith.device.*;
@@ -49,6 +46,11 @@ import edu.byu.ece.rapidSmith.device.families.Virtex6;
 /**
  * This class is used for the design explorer although, it could 
  * be used for building other applications as well.
+ * <p>
+ * The fabric is not drawn on the UI thread.  Images of the fabric are rendered
+ * in blocks at several levels of detail on background threads and cached (see
+ * {@link TileImageCache}); the background of the scene is drawn from the blocks
+ * matching the current zoom level.
  * @author Chris Lavin
  */
 public class TileScene extends QGraphicsScene{
@@ -88,7 +90,14 @@ public class TileScene extends QGraphicsScene{
 	public Signal0 mousePressed = new Signal0();
 	/** The current design associated with this scene */
 	private XdlDesign design;
-	/** This is the actual image shown in the scene of the FPGA fabric */
+	/** The cached images of the FPGA fabric shown in the scene */
+	private final TileImageCache fabricImages = new TileImageCache(this);
+	/**
+	 * Image of the fabric drawn by earlier versions of the scene.
+	 * @deprecated the fabric is now rendered in blocks by the scene and this
+	 *   field is always null
+	 */
+	@Deprecated
 	public QImage qImage;
 	/** This is the set of column tile types which should not be drawn */
 	private HashSet<TileType> tileColumnTypesToHide;
@@ -96,6 +105,8 @@ public class TileScene extends QGraphicsScene{
 	private HashSet<TileType> tileRowTypesToHide;
 	/** Qt Size container for the scene */
 	private QSize sceneSize;
+	/** Values between 0 and 1 shaded over the tiles, indexed by device row and column */
+	private double[][] heatMap;
 	/**
 	 * Empty constructor
 	 */
@@ -151,27 +162,23 @@ public class TileScene extends QGraphicsScene{
 			cols = device.getColumns();
 			sceneSize = new QSize((cols + 1) * (tileSize + 1), (rows + 1) * (tileSize + 1));
 			setSceneRect(new QRectF(new QPointF(0, 0), new QSizeF(sceneSize)));
-			drawFPGAFabric(drawSites);
+			layoutFPGAFabric(drawSites);
 		} 
 		else{
 			setSceneRect(new QRectF(0, 0, tileSize + 1, tileSize + 1));
+			fabricImages.invalidate(null);
 		}
 	}
 	
-	private void drawFPGAFabric(boolean drawSites){
+	private void layoutFPGAFabric(boolean drawSites){
 		setBackgroundBrush(new QBrush(QColor.black));
 		
-		//Create transparent QPixmap that accepts hovers 
+		//Create transparent item that accepts hovers 
 		//  so that moveMouseEvent is triggered
-		QPixmap pixelMap = new QPixmap(sceneSize);
-		pixelMap.fill(QColor.transparent);
-		QGraphicsPixmapItem background = addPixmap(pixelMap);
+		QGraphicsRectItem background = addRect(new QRectF(new QPointF(0, 0), new QSizeF(sceneSize)),
+				new QPen(PenStyle.NoPen));
 		background.setAcceptsHoverEvents(true);
 		background.setZValue(-1);
-		
-		// Draw colored tiles onto QPixMap
-		qImage = new QImage(sceneSize, Format.Format_RGB16);
-		QPainter painter = new QPainter(qImage);
 
 		// Determine which columns and rows to not draw
 		TreeSet<Integer> colsToSkip = new TreeSet<>();
@@ -206,65 +213,65 @@ public class TileScene extends QGraphicsScene{
 		}
 		rows = rows-rowsToSkip.size();
 		cols = cols-colsToSkip.size();
-		
-		//Draw dashed lines where rows/columns have been removed
-		QPen missingTileLinePen = new QPen(QColor.lightGray, 2, PenStyle.DashLine);
-		painter.setPen(missingTileLinePen);
+
+		// Remember where the dashed lines for removed rows/columns go
+		int[] hiddenColumnLines = new int[colsToSkip.size()];
 		i = 0;
 		for(int col : colsToSkip){
-			int realCol = col - i;
-			painter.drawLine(tileSize*realCol-1, 0, tileSize*realCol-1, rows*tileSize-3);
+			hiddenColumnLines[i] = col - i;
 			i++;
 		}
-		i=0;
+		int[] hiddenRowLines = new int[rowsToSkip.size()];
+		i = 0;
 		for(int row : rowsToSkip){
-			int realRow = row - i;
-			painter.drawLine(0,tileSize*realRow-1, cols*tileSize-3,tileSize*realRow-1);
+			hiddenRowLines[i] = row - i;
 			i++;
 		}
-		
-		// Draw the tile layout
-		int offset = (int) Math.ceil((lineWidth / 2.0));
 
-		FamilyInfo familyInfo = FamilyInfos.get(device.getFamily());
-		for(int y = 0; y < rows; y++){
-			for(int x = 0; x < cols; x++){
-				Tile tile = drawnTiles[y][x];
-				TileType tileType = tile.getType();
+		// the rendering threads only see this snapshot of the layout
+		fabricImages.invalidate(new FabricLayout(device, drawnTiles, hiddenColumnLines,
+				hiddenRowLines, tileSize, lineWidth, drawSites));
+	}
 
-				// Set pen color based on current tile
-				QColor color = TileColors.getSuggestedTileColor(tile);
-				painter.setPen(color);
-				
-				int rectX = x * tileSize;
-				int rectY = y * tileSize;
-				int rectSide = tileSize - 2 * offset;
-
-				if(drawSites){
-					if (familyInfo.clbTiles().contains(tileType)) {
-						drawCLB(painter, rectX, rectY, rectSide);
-					} else if (familyInfo.switchboxTiles().contains(tileType)) {
-						drawSwitchBox(painter, rectX, rectY, rectSide);
-					} else if (familyInfo.bramTiles().contains(tileType)) {
-						drawBRAM(painter, rectX, rectY, rectSide, offset, color);
-					} else if (familyInfo.dspTiles().contains(tileType)) {
-						drawDSP(painter, rectX, rectY, rectSide, offset, color);
-					} else { // Just fill the tile in with a color
-						colorTile(painter, x, y, offset, color);
-					}					
-				}
-				else{
-					colorTile(painter, x, y, offset, color);
-				}
-			}
+	public void drawBackground(QPainter painter, QRectF rect){
+		super.drawBackground(painter, rect);
+		if(device != null){
+			fabricImages.draw(painter, rect, sceneSize.width(), sceneSize.height());
 		}
+	}
 
-		painter.end();
+	@Override
+	protected void drawForeground(QPainter painter, QRectF rect){
+		super.drawForeground(painter, rect);
+		if(heatMap == null || drawnTiles == null)
+			return;
+		int firstX = Math.max(0, (int) Math.floor(rect.left() / tileSize));
+		int firstY = Math.max(0, (int) Math.floor(rect.top() / tileSize));
+		int lastX = Math.min(cols - 1, (int) Math.floor(rect.right() / tileSize));
+		int lastY = Math.min(rows - 1, (int) Math.floor(rect.bottom() / tileSize));
+		painter.setPen(PenStyle.NoPen);
+		for(int y = firstY; y <= lastY; y++){
+			for(int x = firstX; x <= lastX; x++){
+				Tile tile = drawnTiles[y][x];
+				if(tile.getRow() >= heatMap.length || tile.getColumn() >= heatMap[tile.getRow()].length)
+					continue;
+				double value = heatMap[tile.getRow()][tile.getColumn()];
+				if(value <= 0)
+					continue;
+				painter.setBrush(new QBrush(heatColor(value)));
+				painter.drawRect(x * tileSize, y * tileSize, tileSize - 1, tileSize - 1);
+			}
+		}
 	}
-	
-	public void drawBackground(QPainter painter, QRectF rect){
-		super.drawBackground(painter, rect);
-		painter.drawImage(0, 0, qImage);
+
+	/**
+	 * Returns a translucent color between blue (0) and red (1 and above).
+	 */
+	private static QColor heatColor(double value){
+		double clamped = Math.min(1.0, value);
+		int red = (int) (255 * clamped);
+		int alpha = 64 + (int) (128 * clamped);
+		return new QColor(red, 0, 255 - red, alpha);
 	}
 
 	/**
@@ -384,69 +391,21 @@ public class TileScene extends QGraphicsScene{
 	public int getTileSize(){
 		return tileSize;
 	}
-	
-	/*
-	 * Helper Drawing Methods
+
+	/**
+	 * Shades each tile of the scene by a value, such as the wire utilization of a
+	 * design ({@link edu.byu.ece.rapidSmith.design.subsite.RoutingUtilization#getWireUtilizationGrid()}).
+	 * @param heatMap values indexed by device row and column, where 0 leaves the
+	 * tile unshaded and values of 1 and above are drawn in full red.  Null removes
+	 * the overlay.
 	 */
-	
-	private void drawCLB(QPainter painter, int rectX, int rectY, int rectSide){
-		painter.drawRect(rectX, rectY + rectSide / 2, rectSide / 2 - 1, rectSide / 2 - 1);
-		painter.drawRect(rectX + rectSide / 2, rectY, rectSide / 2 - 1, rectSide / 2 - 1);
+	public void setHeatMap(double[][] heatMap){
+		this.heatMap = heatMap;
+		invalidate(sceneRect(), SceneLayer.ForegroundLayer);
 	}
-	
-	private void drawBRAM(QPainter painter, int rectX, int rectY, int rectSide, int offset, QColor color){
-		switch(device.getFamily().name()) {
-//			case SPARTAN6:
-//				painter.drawRect(rectX, rectY - 3 * tileSize, rectSide - 1, 4 * rectSide + 3 * 2 * offset - 1);
-//				painter.setPen(color.darker());
-//				painter.drawRect(rectX + 2, rectY - 3 * tileSize + 2, rectSide - 1 - 4, 2 * rectSide + 2 * offset - 1 - 2);
-//				painter.drawRect(rectX + 2, rectY - tileSize, rectSide - 1 - 4, 2 * rectSide + 2 * offset - 1 - 2);
-//				break;
-//			case VIRTEX5:
-//				painter.drawRect(rectX, rectY - 4 * tileSize, rectSide - 1, 5 * rectSide + 3 * 2 * offset - 1);
-//				painter.setPen(color.darker());
-//				painter.drawRect(rectX+2, rectY-4 * tileSize + 2, rectSide - 5, 5 * rectSide + 3 * 2 * offset - 5);
-//				break;
-			case "VIRTEX6":
-			case "ARTIX7":
-			case "KINTEX7":
-			case "VIRTEX7":
-				painter.drawRect(rectX, rectY - 4 * tileSize, rectSide - 1, 5 * rectSide + 3 * 2 * offset - 1);
-				painter.setPen(color.darker());
-				painter.drawRect(rectX+2, rectY-4 * tileSize + 2, rectSide - 5, ((int)(2.5 * rectSide)) + 3 * 2 * offset - 5);
-				painter.drawRect(rectX+2, (rectY-2 * tileSize) + 7, rectSide - 5, ((int)(2.5 * rectSide)) + 3 * 2 * offset - 5);
-				break;
-		}
-	}
-	
-	private void drawDSP(QPainter painter, int rectX, int rectY, int rectSide, int offset, QColor color){
-		switch(device.getFamily().name()) {
-//			case SPARTAN6:
-//				painter.drawRect(rectX, rectY - 3 * tileSize, rectSide - 1, 4 * rectSide + 3 * 2 * offset - 1);
-//				painter.setPen(color.darker());
-//				painter.drawRect(rectX+2, rectY-3 * tileSize + 2, rectSide - 5, 4 * rectSide + 3 * 2 * offset - 5);
-//				break;
-//			case VIRTEX5:
-			case "VIRTEX6":
-			case "ARTIX7":
-			case "KINTEX7":
-			case "VIRTEX7":
-				painter.drawRect(rectX, rectY - 4 * tileSize, rectSide - 1, 5 * rectSide + 3 * 2 * offset - 1);
-				painter.setPen(color.darker());
-				painter.drawRect(rectX+2, rectY-4 * tileSize + 2, rectSide - 5, ((int)(2.5 * rectSide)) + 3 * 2 * offset - 5);
-				painter.drawRect(rectX+2, (rectY-2 * tileSize) + 7, rectSide - 5, ((int)(2.5 * rectSide)) + 3 * 2 * offset - 5);
-				break;
-		}
 
-	}
-	
-	private void drawSwitchBox(QPainter painter, int rectX, int rectY, int rectSide){
-		painter.drawRect(rectX + rectSide / 6, rectY, 4 * rectSide / 6 - 1, rectSide - 1);
-	}
-	
-	private void colorTile(QPainter painter, int x, int y, int offset, QColor color){
-		painter.fillRect(x * tileSize, y * tileSize,
-				tileSize - 2 * offset, tileSize - 2 * offset, new QBrush(color));
+	public double[][] getHeatMap(){
+		return heatMap;
 	}
 	
 	private void populateTileTypesToHide(){
@@ -475,4 +434,161 @@ public class TileScene extends QGraphicsScene{
 //			break;
 		}		
 	}
+
+	/**
+	 * An immutable snapshot of the layout of the scene.  A new snapshot is taken
+	 * each time the scene is laid out and handed to the {@link TileImageCache}, so
+	 * the rendering threads never see a layout that is being rebuilt.
+	 */
+	static final class FabricLayout {
+		private final Device device;
+		private final Tile[][] drawnTiles;
+		private final int[] hiddenColumnLines;
+		private final int[] hiddenRowLines;
+		private final int tileSize;
+		private final double lineWidth;
+		private final boolean drawSites;
+		private final int rows;
+		private final int cols;
+
+		FabricLayout(Device device, Tile[][] drawnTiles, int[] hiddenColumnLines,
+				int[] hiddenRowLines, int tileSize, double lineWidth, boolean drawSites){
+			this.device = device;
+			this.drawnTiles = new Tile[drawnTiles.length][];
+			for(int i = 0; i < drawnTiles.length; i++){
+				this.drawnTiles[i] = drawnTiles[i].clone();
+			}
+			this.hiddenColumnLines = hiddenColumnLines.clone();
+			this.hiddenRowLines = hiddenRowLines.clone();
+			this.tileSize = tileSize;
+			this.lineWidth = lineWidth;
+			this.drawSites = drawSites;
+			this.rows = drawnTiles.length;
+			this.cols = drawnTiles.length == 0 ? 0 : drawnTiles[0].length;
+		}
+
+		/**
+		 * Paints the fabric in the specified region of the scene.  Called from the
+		 * rendering threads of the {@link TileImageCache}.
+		 */
+		void paint(QPainter painter, double x, double y, double width, double height){
+			//Draw dashed lines where rows/columns have been removed
+			QPen missingTileLinePen = new QPen(QColor.lightGray, 2, PenStyle.DashLine);
+			painter.setPen(missingTileLinePen);
+			for(int realCol : hiddenColumnLines){
+				painter.drawLine(tileSize*realCol-1, 0, tileSize*realCol-1, rows*tileSize-3);
+			}
+			for(int realRow : hiddenRowLines){
+				painter.drawLine(0,tileSize*realRow-1, cols*tileSize-3,tileSize*realRow-1);
+			}
+		
+			// Draw the tile layout
+			int offset = (int) Math.ceil((lineWidth / 2.0));
+
+			// BRAMs and DSPs are drawn from the bottom tile up, so include the
+			// tiles below the region whose drawings may extend into it
+			int firstX = Math.max(0, (int) Math.floor(x / tileSize));
+			int firstY = Math.max(0, (int) Math.floor(y / tileSize));
+			int lastX = Math.min(cols - 1, (int) Math.floor((x + width) / tileSize));
+			int lastY = Math.min(rows - 1, (int) Math.floor((y + height) / tileSize) + 5);
+
+			FamilyInfo familyInfo = FamilyInfos.get(device.getFamily());
+			for(int y2 = firstY; y2 <= lastY; y2++){
+				for(int x2 = firstX; x2 <= lastX; x2++){
+					Tile tile = drawnTiles[y2][x2];
+					TileType tileType = tile.getType();
+
+					// Set pen color based on current tile
+					QColor color = TileColors.getSuggestedTileColor(tile);
+					painter.setPen(color);
+				
+					int rectX = x2 * tileSize;
+					int rectY = y2 * tileSize;
+					int rectSide = tileSize - 2 * offset;
+
+					if(drawSites){
+						if (familyInfo.clbTiles().contains(tileType)) {
+							drawCLB(painter, rectX, rectY, rectSide);
+						} else if (familyInfo.switchboxTiles().contains(tileType)) {
+							drawSwitchBox(painter, rectX, rectY, rectSide);
+						} else if (familyInfo.bramTiles().contains(tileType)) {
+							drawBRAM(painter, rectX, rectY, rectSide, offset, color);
+						} else if (familyInfo.dspTiles().contains(tileType)) {
+							drawDSP(painter, rectX, rectY, rectSide, offset, color);
+						} else { // Just fill the tile in with a color
+							colorTile(painter, x2, y2, offset, color);
+						}					
+					}
+					else{
+						colorTile(painter, x2, y2, offset, color);
+					}
+				}
+			}
+		}
+
+		/*
+		 * Helper Drawing Methods
+		 */
+
+		private void drawCLB(QPainter painter, int rectX, int rectY, int rectSide){
+			painter.drawRect(rectX, rectY + rectSide / 2, rectSide / 2 - 1, rectSide / 2 - 1);
+			painter.drawRect(rectX + rectSide / 2, rectY, rectSide / 2 - 1, rectSide / 2 - 1);
+		}
+	
+		private void drawBRAM(QPainter painter, int rectX, int rectY, int rectSide, int offset, QColor color){
+			switch(device.getFamily().name()) {
+	//			case SPARTAN6:
+	//				painter.drawRect(rectX, rectY - 3 * tileSize, rectSide - 1, 4 * rectSide + 3 * 2 * offset - 1);
+	//				painter.setPen(color.darker());
+	//				painter.drawRect(rectX + 2, rectY - 3 * tileSize + 2, rectSide - 1 - 4, 2 * rectSide + 2 * offset - 1 - 2);
+	//				painter.drawRect(rectX + 2, rectY - tileSize, rectSide - 1 - 4, 2 * rectSide + 2 * offset - 1 - 2);
+	//				break;
+	//			case VIRTEX5:
+	//				painter.drawRect(rectX, rectY - 4 * tileSize, rectSide - 1, 5 * rectSide + 3 * 2 * offset - 1);
+	//				painter.setPen(color.darker());
+	//				painter.drawRect(rectX+2, rectY-4 * tileSize + 2, rectSide - 5, 5 * rectSide + 3 * 2 * offset - 5);
+	//				break;
+				case "VIRTEX6":
+				case "ARTIX7":
+				case "KINTEX7":
+				case "VIRTEX7":
+					painter.drawRect(rectX, rectY - 4 * tileSize, rectSide - 1, 5 * rectSide + 3 * 2 * offset - 1);
+					painter.setPen(color.darker());
+					painter.drawRect(rectX+2, rectY-4 * tileSize + 2, rectSide - 5, ((int)(2.5 * rectSide)) + 3 * 2 * offset - 5);
+					painter.drawRect(rectX+2, (rectY-2 * tileSize) + 7, rectSide - 5, ((int)(2.5 * rectSide)) + 3 * 2 * offset - 5);
+					break;
+			}
+		}
+	
+		private void drawDSP(QPainter painter, int rectX, int rectY, int rectSide, int offset, QColor color){
+			switch(device.getFamily().name()) {
+	//			case SPARTAN6:
+	//				painter.drawRect(rectX, rectY - 3 * tileSize, rectSide - 1, 4 * rectSide + 3 * 2 * offset - 1);
+	//				painter.setPen(color.darker());
+	//				painter.drawRect(rectX+2, rectY-3 * tileSize + 2, rectSide - 5, 4 * rectSide + 3 * 2 * offset - 5);
+	//				break;
+	//			case VIRTEX5:
+				case "VIRTEX6":
+				case "ARTIX7":
+				case "KINTEX7":
+				case "VIRTEX7":
+					painter.drawRect(rectX, rectY - 4 * tileSize, rectSide - 1, 5 * rectSide + 3 * 2 * offset - 1);
+					painter.setPen(color.darker());
+					painter.drawRect(rectX+2, rectY-4 * tileSize + 2, rectSide - 5, ((int)(2.5 * rectSide)) + 3 * 2 * offset - 5);
+					painter.drawRect(rectX+2, (rectY-2 * tileSize) + 7, rectSide - 5, ((int)(2.5 * rectSide)) + 3 * 2 * offset - 5);
+					break;
+			}
+
+		}
+	
+		private void drawSwitchBox(QPainter painter, int rectX, int rectY, int rectSide){
+			painter.drawRect(rectX + rectSide / 6, rectY, 4 * rectSide / 6 - 1, rectSide - 1);
+		}
+	
+		private void colorTile(QPainter painter, int x, int y, int offset, QColor color){
+			painter.fillRect(x * tileSize, y * tileSize,
+					tileSize - 2 * offset, tileSize - 2 * offset, new QBrush(color));
+		}
+
+	}
 }
@@ -84,6 +84,35 @@ public abstract class AbstractXdcInterface {
         return wireEnum;
     }
 
+    /**
+     * Tries to retrieve the wire with the given full name ({@code TILE_NAME/WIRE_NAME})
+     * from the currently loaded device. The name is resolved through the device's
+     * {@link WireNameResolver} without splitting the string. If the tile or wire
+     * does not exist, a ParseException is thrown.
+     *
+     * @param fullWireName full name of the wire
+     * @return {@link TileWire} object
+     */
+    protected TileWire tryGetTileWire(String fullWireName) {
+        int sep = WireNameResolver.indexOfSeparator(fullWireName);
+        if (sep == -1) {
+            throw new Exceptions.ParseException(String.format("Wire: \"%s\" is not of the form TILE/WIRE. \n"
+                    + "On line %d of %s", fullWireName, currentLineNumber, currentFile));
+        }
+
+        WireNameResolver resolver = device.getNameResolver();
+        Tile tile = resolver.getTile(fullWireName, 0, sep);
+        if (tile == null) {
+            tile = tryGetTile(fullWireName.substring(0, sep));
+        }
+
+        int wireEnum = resolver.getWireEnum(fullWireName, sep + 1, fullWireName.length());
+        if (wireEnum == -1) {
+            wireEnum = tryGetWireEnum(fullWireName.substring(sep + 1));
+        }
+        return new TileWire(tile, wireEnum);
+    }
+
     /**
      * Tries to retrieve the Site object with the given site name
      * from the currently loaded device. If the site does not exist
@@ -25,36 +25,88 @@ import edu.byu.ece.rapidSmith.design.*;
 import edu.byu.ece.rapidSmith.design.xdl.*;
 import edu.byu.ece.rapidSmith.device.*;
 import edu.byu.ece.rapidSmith.util.Exceptions.ParseException;
-import org.antlr.v4.runtime.ANTLRFileStream;
-import org.antlr.v4.runtime.CommonTokenStream;
-import org.antlr.v4.runtime.tree.ParseTreeWalker;
+import org.antlr.v4.runtime.CommonTokenFactory;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.UnbufferedCharStream;
+import org.antlr.v4.runtime.UnbufferedTokenStream;
+import org.antlr.v4.runtime.atn.PredictionMode;
 
 import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
- *
+ * Reads XDL designs.
+ * <p>
+ * The file is streamed through the lexer and an SLL parser.  Each instance, net and
+ * module is handled as soon as it has been parsed and then pruned from the parse
+ * tree so the tree of the full design is never held in memory.  Instances and
+ * modules are handled in file order on the parsing thread.  The pins and PIPs of
+ * nets outside of modules are resolved against the device by a pool of workers
+ * while parsing continues; the resolved nets are added to the design in file order.
  */
 public final class XDLReader {
+	// maximum number of nets waiting to be added to the design
+	private static final int MAX_PENDING_NETS = 4096;
+
+	private int numThreads = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Sets the number of threads used to resolve nets.  If 1, nets are resolved on
+	 * the parsing thread.  Defaults to the number of available processors.
+	 */
+	public void setNumThreads(int numThreads) {
+		if (numThreads < 1)
+			throw new IllegalArgumentException("numThreads must be positive: " + numThreads);
+		this.numThreads = numThreads;
+	}
+
 	public XdlDesign readDesign(Path xdlFile) throws IOException {
-		XDLLexer lexer = new XDLLexer(new ANTLRFileStream(xdlFile.toString()));
-		XDLParser parser = new XDLParser(new CommonTokenStream(lexer));
-		XDLParser.DesignContext design = parser.design();
-		ParseTreeWalker walker = new ParseTreeWalker();
-		DesignListener listener = new DesignListener();
-		walker.walk(listener, design);
-		return listener.design;
+		ExecutorService executor = null;
+		if (numThreads > 1) {
+			executor = Executors.newFixedThreadPool(numThreads, r -> {
+				Thread thread = new Thread(r, "rs-xdl-reader");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+
+		try (Reader reader = Files.newBufferedReader(xdlFile)) {
+			XDLLexer lexer = new XDLLexer(new UnbufferedCharStream(reader));
+			// tokens must own their text as the character stream is not retained
+			lexer.setTokenFactory(new CommonTokenFactory(true));
+			XDLParser parser = new XDLParser(new UnbufferedTokenStream<>(lexer));
+			parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+			DesignListener listener = new DesignListener(executor);
+			parser.addParseListener(listener);
+			parser.design();
+			return listener.design;
+		} finally {
+			if (executor != null)
+				executor.shutdownNow();
+		}
 	}
 
+	/**
+	 * Builds the design from the exit events of the parser.  The labeled tokens and
+	 * children of a rule are complete by the time its exit event fires.
+	 */
 	private static class DesignListener extends XDLParserBaseListener {
 		XdlDesign design;
-		private CfgState cfgState;
 		private Device device;
-
-		private XdlNet currNet = null;
-		private XdlInstance currInstance = null;
+		private WireNameResolver resolver;
+		private final ExecutorService executor;
+		private final Queue<Future<ResolvedNet>> pendingNets = new ArrayDeque<>();
 
 		private XdlModule currModule = null;
 		private String currModuleAnchorName = null;
@@ -63,63 +115,88 @@ public final class XDLReader {
 		private ArrayList<String> portInstanceNames = null;
 		private ArrayList<String> portPinNames = null;
 
+		DesignListener(ExecutorService executor) {
+			this.executor = executor;
+		}
+
 		@Override
-		public void enterDesign(XDLParser.DesignContext ctx) {
+		public void enterStd_design(XDLParser.Std_designContext ctx) {
+			startDesign((XDLParser.DesignContext) ctx.getParent());
+		}
+
+		@Override
+		public void enterHm_design(XDLParser.Hm_designContext ctx) {
+			startDesign((XDLParser.DesignContext) ctx.getParent());
+			design.setIsHardMacro(true);
+		}
+
+		private void startDesign(XDLParser.DesignContext ctx) {
 			String name = stripQuotes(ctx.name.getText());
 
 			String partName = ctx.part.getText();
 			device = RSEnvironment.defaultEnv().getDevice(partName);
 			if (device == null)
 				throw new ParseException("unsupported device: " + partName);
+			resolver = device.getNameResolver();
 
 			design = new XdlDesign(name, partName);
-			cfgState = CfgState.DESIGN;
 		}
 
 		@Override
-		public void exitDesign(XDLParser.DesignContext ctx) {
-			cfgState = null;
+		public void exitStd_design(XDLParser.Std_designContext ctx) {
+			design.setNCDVersion(ctx.version.getText().intern()); // TODO replace with version
+			while (!pendingNets.isEmpty())
+				addNet(awaitNet(pendingNets.poll()));
 		}
 
 		@Override
-		public void enterStd_design(XDLParser.Std_designContext ctx) {
-			design.setNCDVersion(ctx.version.getText().intern()); // TODO replace with version
+		public void exitCfg(XDLParser.CfgContext ctx) {
+			// the cfgs of instances, nets and modules are handled with their owners
+			ParserRuleContext parent = ctx.getParent();
+			if (parent instanceof XDLParser.Std_designContext ||
+					parent instanceof XDLParser.Hm_designContext) {
+				for (XDLParser.AttributeContext attrCtx : ctx.attribute())
+					design.addAttribute(makeAttribute(attrCtx));
+				parent.removeLastChild();
+			}
 		}
 
 		@Override
-		public void enterInst(XDLParser.InstContext ctx) {
+		public void exitInst(XDLParser.InstContext ctx) {
 			String name = stripQuotes(ctx.name.getText()).intern();
 			String typeName = stripQuotes(ctx.type.getText());
 			SiteType type = SiteType.valueOf(device.getFamily(), typeName);
-			currInstance = new XdlInstance(name, type);
-			currInstance.setDesign(design);
-			if (currModule == null) {
-				design.addInstance(currInstance);
+			XdlInstance inst = new XdlInstance(name, type);
+			inst.setDesign(design);
+			XdlModule module = getModule(ctx);
+			if (module == null) {
+				design.addInstance(inst);
 			} else {
-				currModule.addInstance(currInstance);
-				currInstance.setModuleTemplate(currModule);
-				if (currInstance.getName().equals(currModuleAnchorName))
-					currModule.setAnchor(currInstance);
+				module.addInstance(inst);
+				inst.setModuleTemplate(module);
+				if (inst.getName().equals(currModuleAnchorName))
+					module.setAnchor(inst);
 			}
-			cfgState = CfgState.INSTANCE;
-		}
 
-		@Override
-		public void exitInst(XDLParser.InstContext ctx) {
-			currInstance = null;
-			cfgState = CfgState.DESIGN;
+			setPlacement(inst, module, ctx.placement());
+			if (ctx.module_info() != null)
+				setModuleInfo(inst, ctx.module_info());
+			if (ctx.cfg() != null) {
+				for (XDLParser.AttributeContext attrCtx : ctx.cfg().attribute())
+					inst.addAttribute(makeAttribute(attrCtx));
+			}
+			ctx.getParent().removeLastChild();
 		}
 
-		@Override
-		public void enterPlacement(XDLParser.PlacementContext ctx) {
+		private void setPlacement(XdlInstance inst, XdlModule module, XDLParser.PlacementContext ctx) {
 			if (ctx.UNPLACED() != null) {
 				if (ctx.bonded == null) {
-					currInstance.setBonded(null); // TODO change bonded to internal
+					inst.setBonded(null); // TODO change bonded to internal
 				} else if (ctx.bonded.getType() == XDLParser.BONDED) {
-					currInstance.setBonded(true);
+					inst.setBonded(true);
 				} else {
 					assert ctx.bonded.getType() == XDLParser.UNBONDED;
-					currInstance.setBonded(false);
+					inst.setBonded(false);
 				}
 			} else {
 				assert ctx.PLACED() != null;
@@ -128,44 +205,42 @@ public final class XDLReader {
 				if (site == null)
 					throw new ParseException("no such site on device: " + siteName);
 				// TODO add check against tile
-				site.setType(currInstance.getType());
-				if (currModule == null) {
-					currInstance.place(site);
+				site.setType(inst.getType());
+				if (module == null) {
+					inst.place(site);
 					switch (site.getBondedType()) {
-						case BONDED: currInstance.setBonded(true); break;
-						case UNBONDED: currInstance.setBonded(false); break;
-						case INTERNAL: currInstance.setBonded(null); break;
+						case BONDED: inst.setBonded(true); break;
+						case UNBONDED: inst.setBonded(false); break;
+						case INTERNAL: inst.setBonded(null); break;
 						default: throw new AssertionError("illegal enum value");
 					}
 				} else {
-					currInstance.setSiteUnsafe(site);
+					inst.setSiteUnsafe(site);
 				}
 			}
 		}
 
-		@Override
-		public void enterModule_info(XDLParser.Module_infoContext ctx) {
+		private void setModuleInfo(XdlInstance inst, XDLParser.Module_infoContext ctx) {
 			String miName = stripQuotes(ctx.mi.getText()).intern();
 			String moduleName = stripQuotes(ctx.module_name.getText());
 			XdlModule module = design.getModule(moduleName);
 			if (module == null)
 				throw new ParseException("unknown module: " + moduleName);
-			currInstance.setModuleTemplate(module);
+			inst.setModuleTemplate(module);
 
 			String templateName = stripQuotes(ctx.instance.getText());
 			XdlInstance templateInstance = module.getInstance(templateName);
-			currInstance.setModuleTemplateInstance(templateInstance);
+			inst.setModuleTemplateInstance(templateInstance);
 			XdlModuleInstance mi = design.addInstanceToModuleInstances(
-					currInstance, miName);
+					inst, miName);
 
 			if(templateInstance.equals(module.getAnchor())) {
-				mi.setAnchor(currInstance);
+				mi.setAnchor(inst);
 			}
 		}
 
 		@Override
-		public void enterNet(XDLParser.NetContext ctx) {
-			String name = stripQuotes(ctx.name.getText()).intern();
+		public void exitNet(XDLParser.NetContext ctx) {
 			NetType type;
 			if (ctx.type != null) {
 				switch(ctx.type.getType()) {
@@ -177,103 +252,117 @@ public final class XDLReader {
 			} else {
 				type = NetType.WIRE;
 			}
-			currNet = new XdlNet(name, type);
-			if (currModule == null)
-				design.addNet(currNet);
-			else
-				currModule.addNet(currNet);
-		}
+			UnresolvedNet body = new UnresolvedNet(
+					stripQuotes(ctx.name.getText()).intern(), type, getModule(ctx));
+			if (ctx.cfg() != null) {
+				for (XDLParser.AttributeContext attrCtx : ctx.cfg().attribute())
+					body.attributes.add(makeAttribute(attrCtx));
+			}
+			for (XDLParser.PinContext pinCtx : ctx.pin()) {
+				body.pins.add(new String[] {
+						stripQuotes(pinCtx.instance.getText()), pinCtx.name.getText().intern() });
+				body.pinIsOutput.add(pinCtx.direction.getType() == XDLParser.OUTPIN);
+			}
+			for (XDLParser.PipContext pipCtx : ctx.pip()) {
+				body.pips.add(new String[] {
+						pipCtx.tile.getText(), pipCtx.source.getText(), pipCtx.sink.getText() });
+			}
+			ctx.getParent().removeLastChild();
 
-		@Override
-		public void exitNet(XDLParser.NetContext ctx) {
-			currNet = null;
-			cfgState = CfgState.DESIGN;
+			if (executor == null || body.module != null) {
+				// module nets may reference instances of modules still being parsed
+				addNet(resolveNet(body));
+				return;
+			}
+			pendingNets.add(executor.submit(() -> resolveNet(body)));
+			if (pendingNets.size() > MAX_PENDING_NETS)
+				addNet(awaitNet(pendingNets.poll()));
 		}
 
-		@Override
-		public void enterPin(XDLParser.PinContext ctx) {
-			XdlPin pin;
-			String instName = stripQuotes(ctx.instance.getText());
-			XdlInstance inst;
-			inst = getPinInstance(instName);
-
-			String name = ctx.name.getText().intern();
-			switch (ctx.direction.getType()) {
-				// Note: old code had an inout option, no special handling though
-				case XDLParser.INPIN:
-					pin = new XdlPin(false, name, inst);
-					break;
-				case XDLParser.OUTPIN:
-					if (currNet.getSource() != null) {
-						throw new ParseException("net " + currNet.getName()
-								+ " has two or more output pins");
-					}
-					pin = new XdlPin(true, name, inst);
-					break;
-				default:
-					throw new ParseException("illegal pin direction");
+		private static ResolvedNet awaitNet(Future<ResolvedNet> future) {
+			try {
+				return future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new ParseException("interrupted while resolving nets", e);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof RuntimeException)
+					throw (RuntimeException) e.getCause();
+				throw new ParseException(e.getCause());
 			}
+		}
 
-			// save the pin name for later connecting it to a port
-			if (currModule != null)
-				modulePinMap.put(inst.getName() + name, pin);
+		/**
+		 * Resolves the pins and PIPs of the net against the design and device.  May
+		 * be called from a worker thread, so only reads shared state.  The pins are
+		 * attached to their instances by {@link #addNet(ResolvedNet)}.
+		 */
+		private ResolvedNet resolveNet(UnresolvedNet body) {
+			XdlNet net = new XdlNet(body.name, body.type);
+			XdlInstance[] instances = new XdlInstance[body.pins.size()];
+			XdlPin[] pins = new XdlPin[body.pins.size()];
+			for (int i = 0; i < pins.length; i++) {
+				String instName = body.pins.get(i)[0];
+				String name = body.pins.get(i)[1];
+				instances[i] = body.module == null ?
+						design.getInstance(instName) : body.module.getInstance(instName);
+				if (instances[i] == null)
+					throw new ParseException("unrecognized instance: " + instName);
 
-			currNet.addPin(pin);
-			inst.addToNetList(currNet);
-		}
+				// Note: old code had an inout option, no special handling though
+				boolean isOutput = body.pinIsOutput.get(i);
+				if (isOutput && net.getSource() != null) {
+					throw new ParseException("net " + net.getName()
+							+ " has two or more output pins");
+				}
+				pins[i] = new XdlPin(isOutput, name, null);
+				net.addPin(pins[i]);
+			}
 
-		private XdlInstance getPinInstance(String instName) {
-			XdlInstance inst;
-			if (currModule == null) {
-				inst = design.getInstance(instName);
-			} else {
-				inst = currModule.getInstance(instName);
+			for (String[] pip : body.pips) {
+				Tile tile = device.getTile(pip[0]);
+				if (tile == null)
+					throw new ParseException("unrecognized tile: " + pip[0]);
+				Wire sourceWire = getWireSafe(tile, pip[1]);
+				Wire sinkWire = getWireSafe(tile, pip[2]);
+				net.addPIP(new PIP(sourceWire, sinkWire));
 			}
-			if (inst == null)
-				throw new ParseException("unrecognized instance: " + instName);
-			return inst;
-		}
 
-		@Override
-		public void enterPip(XDLParser.PipContext ctx) {
-			String tileName = ctx.tile.getText();
-			Tile tile = device.getTile(tileName);
-			if (tile == null)
-				throw new ParseException("unrecognized tile: " + tileName);
-
-			WireEnumerator we = device.getWireEnumerator();
-			Wire sourceWire = getWireSafe(we, tile, ctx.source.getText());
-			Wire sinkWire = getWireSafe(we, tile, ctx.source.getText());
-			PIP pip = new PIP(sourceWire, sinkWire);
-			currNet.addPIP(pip);
+			for (XdlAttribute attr : body.attributes)
+				net.addAttribute(attr);
+			return new ResolvedNet(net, body.module, pins, instances);
 		}
 
-		private Wire getWireSafe(WireEnumerator we, Tile tile, String wireName) {
-			Integer wireEnum = we.getWireEnum(wireName);
-			if (wireEnum == null)
+		private Wire getWireSafe(Tile tile, String wireName) {
+			int wireEnum = resolver.getWireEnum(wireName);
+			if (wireEnum == -1)
 				throw new ParseException("unrecognized wire: " + wireName);
 			return new TileWire(tile, wireEnum);
 		}
 
-		@Override
-		public void enterAttribute(XDLParser.AttributeContext ctx) {
-			XdlAttribute attr = makeAttribute(ctx);
-
-			switch (cfgState) {
-				case DESIGN:
-					design.addAttribute(attr);
-					break;
-				case INSTANCE:
-					currInstance.addAttribute(attr);
-					break;
-				case NET:
-					currNet.addAttribute(attr);
+		private void addNet(ResolvedNet resolved) {
+			XdlNet net = resolved.net;
+			for (int i = 0; i < resolved.pins.length; i++) {
+				XdlPin pin = resolved.pins[i];
+				XdlInstance inst = resolved.instances[i];
+				pin.setInstance(inst);
+				// save the pin name for later connecting it to a port
+				if (resolved.module != null)
+					modulePinMap.put(inst.getName() + pin.getName(), pin);
+				inst.addToNetList(net);
+			}
+
+			if (resolved.module == null)
+				design.addNet(net);
+			else
+				resolved.module.addNet(net);
+
+			if (net.hasAttributes()) {
+				for (XdlAttribute attr : net.getAttributes()) {
 					if(attr.getPhysicalName().equals("_MACRO")){
-						setNetModuleInstance(attr);
-				    }
-					break;
-				case MODULE:
-					currModule.addAttribute(attr);
+						setNetModuleInstance(net, attr);
+					}
+				}
 			}
 		}
 
@@ -284,52 +373,76 @@ public final class XDLReader {
 			return new XdlAttribute(physicalName, logicalName, value);
 		}
 
-		private void setNetModuleInstance(XdlAttribute attr) {
+		private void setNetModuleInstance(XdlNet net, XdlAttribute attr) {
 			XdlModuleInstance mi = design.getModuleInstance(attr.getValue());
-			currNet.setModuleInstance(mi);
-			mi.addNet(currNet);
+			net.setModuleInstance(mi);
+			mi.addNet(net);
 			XdlModule module = mi.getModule();
-			currNet.setModuleTemplate(module);
-			String moduleNetName = currNet.getName().replaceFirst(
+			net.setModuleTemplate(module);
+			String moduleNetName = net.getName().replaceFirst(
 					mi.getName() + "/", "");
-			currNet.setModuleTemplateNet(module.getNet(moduleNetName));
+			net.setModuleTemplateNet(module.getNet(moduleNetName));
 		}
 
-		@Override
-		public void enterModule(XDLParser.ModuleContext ctx) {
-			currModule = new XdlModule();
-			modulePinMap = new HashMap<>();
-			portNames = new ArrayList<>();
-			portInstanceNames = new ArrayList<>();
-			portPinNames = new ArrayList<>();
-			cfgState = CfgState.MODULE;
-
-			currModule.setName(stripQuotes(ctx.name.getText()).intern());
-			currModuleAnchorName = stripQuotes(ctx.anchor.getText());
+		/**
+		 * Returns the module containing the rule, creating it on first use, or null if
+		 * the rule is not in a module.  The module is created lazily as its name is not
+		 * yet parsed when the module rule is entered.
+		 */
+		private XdlModule getModule(ParserRuleContext ctx) {
+			if (!(ctx.getParent() instanceof XDLParser.ModuleContext))
+				return null;
+			if (currModule == null) {
+				XDLParser.ModuleContext moduleCtx = (XDLParser.ModuleContext) ctx.getParent();
+				currModule = new XdlModule();
+				modulePinMap = new HashMap<>();
+				portNames = new ArrayList<>();
+				portInstanceNames = new ArrayList<>();
+				portPinNames = new ArrayList<>();
+
+				currModule.setName(stripQuotes(moduleCtx.name.getText()).intern());
+				currModuleAnchorName = stripQuotes(moduleCtx.anchor.getText());
+			}
+			return currModule;
 		}
 
 		@Override
 		public void exitModule(XDLParser.ModuleContext ctx) {
-			int numPorts = portNames.size();
-			for (int i = 0; i < numPorts; i++) {
-				String key = portInstanceNames.get(i) + portPinNames.get(i);
-				XdlPort port = new XdlPort(portNames.get(i), modulePinMap.get(key));
-				currModule.addPort(port);
+			XdlModule module = currModule;
+			if (module == null) {
+				// an empty module
+				module = new XdlModule();
+				module.setName(stripQuotes(ctx.name.getText()).intern());
+			} else {
+				int numPorts = portNames.size();
+				for (int i = 0; i < numPorts; i++) {
+					String key = portInstanceNames.get(i) + portPinNames.get(i);
+					XdlPort port = new XdlPort(portNames.get(i), modulePinMap.get(key));
+					module.addPort(port);
+				}
+			}
+			if (ctx.cfg() != null) {
+				for (XDLParser.AttributeContext attrCtx : ctx.cfg().attribute())
+					module.addAttribute(makeAttribute(attrCtx));
 			}
+			design.addModule(module);
 
 			currModule = null;
+			currModuleAnchorName = null;
 			modulePinMap = null;
 			portNames = null;
 			portInstanceNames = null;
 			portPinNames = null;
-			cfgState = CfgState.DESIGN;
+			ctx.getParent().removeLastChild();
 		}
 
 		@Override
-		public void enterPort(XDLParser.PortContext ctx) {
+		public void exitPort(XDLParser.PortContext ctx) {
+			getModule(ctx);
 			portNames.add(stripQuotes(ctx.name.getText()).intern());
 			portInstanceNames.add(stripQuotes(ctx.inst_name.getText()).intern());
 			portPinNames.add(stripQuotes(ctx.inst_pin.getText()).intern());
+			ctx.getParent().removeLastChild();
 		}
 
 		private static String stripQuotes(String str) {
@@ -337,9 +450,37 @@ public final class XDLReader {
 				return str.substring(1, str.length()-1);
 			return str;
 		}
+	}
+
+	/** The text of a parsed net, independent of the parse tree. */
+	private static final class UnresolvedNet {
+		final String name;
+		final NetType type;
+		final XdlModule module;
+		final List<XdlAttribute> attributes = new ArrayList<>();
+		final List<String[]> pins = new ArrayList<>(); // instance, pin
+		final List<Boolean> pinIsOutput = new ArrayList<>();
+		final List<String[]> pips = new ArrayList<>(); // tile, source, sink
+
+		UnresolvedNet(String name, NetType type, XdlModule module) {
+			this.name = name;
+			this.type = type;
+			this.module = module;
+		}
+	}
 
-		private enum CfgState {
-			DESIGN, INSTANCE, NET, MODULE
+	/** A net whose pins and PIPs have been resolved but not yet added to the design. */
+	private static final class ResolvedNet {
+		final XdlNet net;
+		final XdlModule module;
+		final XdlPin[] pins;
+		final XdlInstance[] instances;
+
+		ResolvedNet(XdlNet net, XdlModule module, XdlPin[] pins, XdlInstance[] instances) {
+			this.net = net;
+			this.module = module;
+			this.pins = pins;
+			this.instances = instances;
 		}
 	}
 }
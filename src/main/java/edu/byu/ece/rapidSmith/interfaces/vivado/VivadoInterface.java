@@ -32,6 +32,8 @@ import edu.byu.ece.rapidSmith.design.subsite.*;
 import edu.byu.ece.rapidSmith.device.*;
 import edu.byu.ece.rapidSmith.interfaces.StaticResourcesInterface;
 import edu.byu.ece.rapidSmith.util.Exceptions;
+import edu.byu.ece.rapidSmith.util.Metrics;
+import edu.byu.ece.rapidSmith.util.PartNameTools;
 
 /**
  * This class is used to interface Vivado and RapidSmith2. 
@@ -83,32 +85,87 @@ public final class VivadoInterface {
 		}
 
 		// load the cell library
-		CellLibrary libCells = new CellLibrary(RSEnvironment.defaultEnv()
-				.getPartFolderPath(partName)
-				.resolve(CELL_LIBRARY_NAME));
-		
-		// add additional macro cell specifications to the cell library before parsing the EDIF netlist
-		libCells.loadMacroXML(rscpPath.resolve("macros.xml"));
-		
+		CellLibrary libCells;
+		try (Metrics.Phase ignored = Metrics.phase("rscp.cellLibrary")) {
+			libCells = new CellLibrary(RSEnvironment.defaultEnv()
+					.getPartFolderPath(partName)
+					.resolve(CELL_LIBRARY_NAME));
+
+			// add additional macro cell specifications to the cell library before parsing the EDIF netlist
+			libCells.loadMacroXML(rscpPath.resolve("macros.xml"));
+		}
+
+		return importCheckpoint(rscpPath, partName, mode, device, libCells, storeAdditionalInfo, addPseudoVccPins);
+	}
+
+	/**
+	 * Parses a RSCP generated from Tincr using an already loaded device and cell library.
+	 * This allows many checkpoints of the same part to be imported without reloading the
+	 * device and cell library for each one.  The cell library must already contain the
+	 * macros of the checkpoint (see {@link CellLibrary#loadMacroXML(Path)}) and is only
+	 * read during the import, so a single library can be shared between concurrent imports.
+	 *
+	 * @param rscp Path to the RSCP to import
+	 * @param device the device of the part the checkpoint targets
+	 * @param libCells the cell library of the part, including the checkpoint's macros
+	 * @param storeAdditionalInfo
+	 * @param addPseudoVccPins Whether to detect and add pseudo VCC pins based off of the placement.
+	 * @return
+	 * @throws IOException
+	 */
+	public static VivadoCheckpoint loadRSCP(String rscp, Device device, CellLibrary libCells,
+			boolean storeAdditionalInfo, boolean addPseudoVccPins) throws IOException {
+		Path rscpPath = Paths.get(rscp);
+
+		if (!rscpPath.getFileName().toString().endsWith(".rscp")) {
+			throw new AssertionError("Specified directory is not a RSCP. The directory should end in \".rscp\"");
+		}
+
+		DesignInfoInterface designInfo = new DesignInfoInterface();
+		designInfo.parse(rscpPath);
+		String partName = designInfo.getPart();
+		if (partName == null) {
+			throw new Exceptions.ParseException("Part name for the design not found in the design.info file!");
+		}
+		if (!PartNameTools.removeSpeedGrade(partName).equals(PartNameTools.removeSpeedGrade(device.getPartName()))) {
+			throw new IllegalArgumentException("Checkpoint targets part " + partName +
+					" but device " + device.getPartName() + " was provided");
+		}
+
+		return importCheckpoint(rscpPath, partName, designInfo.getMode(), device, libCells, storeAdditionalInfo, addPseudoVccPins);
+	}
+
+	private static VivadoCheckpoint importCheckpoint(Path rscpPath, String partName, ImplementationMode mode,
+			Device device, CellLibrary libCells, boolean storeAdditionalInfo, boolean addPseudoVccPins) throws IOException {
 		// create the RS2 netlist
 		String edifFile = rscpPath.resolve("netlist.edf").toString();
 		VivadoEdifInterface vivadoEdifInterface = new VivadoEdifInterface();
-		CellDesign design = vivadoEdifInterface.parseEdif(edifFile, libCells, partName);
+		CellDesign design;
+		try (Metrics.Phase ignored = Metrics.phase("rscp.edif")) {
+			design = vivadoEdifInterface.parseEdif(edifFile, libCells, partName);
+		}
 		design.setImplementationMode(mode);
 		
 		// parse the constraints into RapidSmith
 		String constraintsFile = rscpPath.resolve("constraints.xdc").toString();
 		XdcConstraintsInterface constraintsInterface = new XdcConstraintsInterface(design, device);
-		constraintsInterface.parseConstraintsXDC(constraintsFile);
+		try (Metrics.Phase ignored = Metrics.phase("rscp.constraints")) {
+			constraintsInterface.parseConstraintsXDC(constraintsFile);
+		}
 
 		// re-create the placement and routing information
 		String placementFile = rscpPath.resolve("placement.rsc").toString();
 		XdcPlacementInterface placementInterface = new XdcPlacementInterface(design, device);
-		placementInterface.parsePlacementXDC(placementFile);
+		placementInterface.setPinMappingCache(PinMappingCache.getIfOpen(device.getFamily()));
+		try (Metrics.Phase ignored = Metrics.phase("rscp.placement")) {
+			placementInterface.parsePlacementXDC(placementFile);
+		}
 
 		String routingFile = rscpPath.resolve("routing.rsc").toString();
 		XdcRoutingInterface routingInterface = new XdcRoutingInterface(design, device, placementInterface.getPinMap(), libCells);
-		routingInterface.parseRoutingXDC(routingFile);
+		try (Metrics.Phase ignored = Metrics.phase("rscp.routing")) {
+			routingInterface.parseRoutingXDC(routingFile);
+		}
 		design.setPartPinMap(routingInterface.getPartPinMap());
 
 		VivadoCheckpoint vivadoCheckpoint = new VivadoCheckpoint(partName, design, device, libCells);
@@ -195,22 +252,28 @@ public final class VivadoInterface {
 		// Write placement.xdc
 		String placementOut = Paths.get(tcpDirectory, "placement.xdc").toString();	
 		XdcPlacementInterface placementInterface = new XdcPlacementInterface(design, device);
-		placementInterface.writePlacementXDC(placementOut);
+		try (Metrics.Phase ignored = Metrics.phase("tcp.placement")) {
+			placementInterface.writePlacementXDC(placementOut);
+		}
 		
 		// Write routing.xdc
 		String routingOut = Paths.get(tcpDirectory, "routing.xdc").toString();
 		XdcRoutingInterface routingInterface = new XdcRoutingInterface(design, device);
-		if (design.getImplementationMode().equals(ImplementationMode.RECONFIG_MODULE)) {
-			String partpinRoutingOut = Paths.get(tcpDirectory, "partpin_routing.xdc").toString();
-			routingInterface.writeRoutingXDC(routingOut, partpinRoutingOut, design, intrasiteRouting);
-		} else {
-			routingInterface.writeRoutingXDC(routingOut, design, intrasiteRouting);
+		try (Metrics.Phase ignored = Metrics.phase("tcp.routing")) {
+			if (design.getImplementationMode().equals(ImplementationMode.RECONFIG_MODULE)) {
+				String partpinRoutingOut = Paths.get(tcpDirectory, "partpin_routing.xdc").toString();
+				routingInterface.writeRoutingXDC(routingOut, partpinRoutingOut, design, intrasiteRouting);
+			} else {
+				routingInterface.writeRoutingXDC(routingOut, design, intrasiteRouting);
+			}
 		}
 
 		// Write EDIF netlist
 		String edifOut = Paths.get(tcpDirectory, "netlist.edf").toString();
 		VivadoEdifInterface vivadoEdifInterface = new VivadoEdifInterface();
-		vivadoEdifInterface.writeEdif(edifOut, design);
+		try (Metrics.Phase ignored = Metrics.phase("tcp.edif")) {
+			vivadoEdifInterface.writeEdif(edifOut, design);
+		}
 
 		// write constraints.xdc
 		String constraintsOut = Paths.get(tcpDirectory, "constraints.xdc").toString();
@@ -49,12 +49,22 @@ public class XdcPlacementInterface extends AbstractXdcInterface {
 	private int currentLineNumber;
 	private String currentFile;
 	private final Map<BelPin, CellPin> belPinToCellPinMap;
+	private PinMappingCache pinMappingCache;
 
 	public XdcPlacementInterface(CellDesign design, Device device) {
 		super(device, design);
 		this.design = design;
 		belPinToCellPinMap = new HashMap<>();
 	}
+
+	/**
+	 * Sets a cache that the pin mappings read from the placement file are added to.
+	 * 
+	 * @param pinMappingCache the cache to record to, or null to not record mappings
+	 */
+	public void setPinMappingCache(PinMappingCache pinMappingCache) {
+		this.pinMappingCache = pinMappingCache;
+	}
 	
 	/**
 	 * Applies the placement constraints from the TINCR checkpoint files
@@ -98,7 +108,7 @@ public class XdcPlacementInterface extends AbstractXdcInterface {
 		Site site = tryGetSite(toks[2]);
 		
 		String siteType = toks[3];
-		site.setType(SiteType.valueOf(device.getFamily(), siteType));
+		design.setSiteType(site, SiteType.valueOf(device.getFamily(), siteType));
 		
 		Bel bel = tryGetBel(site, toks[4]);
 		
@@ -124,6 +134,9 @@ public class XdcPlacementInterface extends AbstractXdcInterface {
 				}
 			}
 		}
+
+		if (pinMappingCache != null)
+			pinMappingCache.record(cell);
 	}
 	
 	private void applyPortPlacement(String[] toks) {
@@ -25,6 +25,7 @@ import edu.byu.ece.rapidSmith.device.*;
 import edu.byu.ece.rapidSmith.device.families.FamilyInfo;
 import edu.byu.ece.rapidSmith.device.families.FamilyInfos;
 import edu.byu.ece.rapidSmith.interfaces.AbstractXdcInterface;
+import edu.byu.ece.rapidSmith.util.Metrics;
 
 import java.io.*;
 import java.util.*;
@@ -60,6 +61,11 @@ public class XdcRoutingInterface extends AbstractXdcInterface {
 	/** Nets with more than one port / partition pin as a sink **/
 	private Collection<CellNet> multiPortSinkNets;
 
+	private static final Metrics.Counter LINES_PARSED = Metrics.counter("xdc.routing.lines");
+	private static final Metrics.Counter NETS_ROUTED = Metrics.counter("xdc.routing.nets");
+	private static final Metrics.Counter ROUTE_TREE_NODES = Metrics.counter("xdc.routing.routeTreeNodes");
+	private static final Metrics.Counter PIPS_MATCHED = Metrics.counter("xdc.routing.pipsMatched");
+
 	/**
 	 * Creates a new XdcRoutingInterface object.
 	 * 
@@ -142,6 +148,7 @@ public class XdcRoutingInterface extends AbstractXdcInterface {
 			while ((line = br.readLine()) != null) {
 				this.currentLineNumber = br.getLineNumber();
 				String[] toks = whitespacePattern.split(line);
+				LINES_PARSED.increment();
 
 				// TODO: I know the order these things appear in the file, so I probably don't need a big switch statement
 				// Partition Pins must be processed before anything else (ensure they appear first in routing.rsc)
@@ -338,6 +345,7 @@ public class XdcRoutingInterface extends AbstractXdcInterface {
 	private void processIntersiteRoutePips(String[] toks) {
 		CellNet net = tryGetCellNet(toks[1]);
 		Map<String, Set<String>> pipMap = buildPipMap(toks, 2);
+		NETS_ROUTED.increment();
 
 		// There is a bug in Vivado where site pins for some nets starting at PAD's are
 		// not returned through the Tcl interface.
@@ -431,6 +439,7 @@ public class XdcRoutingInterface extends AbstractXdcInterface {
 		while (!searchQueue.isEmpty()) {
 			
 			RouteTree routeTree = searchQueue.poll();
+			ROUTE_TREE_NODES.increment();
 			Wire sourceWire = routeTree.getWire();
 			// add connecting wires that exist in the net to the search queue
 
@@ -444,6 +453,7 @@ public class XdcRoutingInterface extends AbstractXdcInterface {
 				
 				if (conn.isPip()) { 
 					if (pipMap.getOrDefault(sourceWire.getFullName(), emptySet).contains(sinkWire.getFullName())) {
+						PIPS_MATCHED.increment();
 						this.pipUsedInRoute = true;
 						RouteTree sinkTree = routeTree.connect(conn);
 						searchQueue.add(sinkTree);
@@ -467,10 +477,7 @@ public class XdcRoutingInterface extends AbstractXdcInterface {
 	}
 	
 	private Wire createTileWire(String startWireName) {
-		String[] startWireToks = startWireName.split("/");
-		Tile tile = tryGetTile(startWireToks[0]);
-		int wireEnum = tryGetWireEnum(startWireToks[1]);
-		return new TileWire(tile, wireEnum);
+		return tryGetTileWire(startWireName);
 	}
 
 	/**
@@ -29,6 +29,11 @@ public class FasmStaticInterface extends AbstractFasmInterface {
 	}
 
 	private Wire getWire(String fullWireName) {
+		// Resolve the common case without splitting the name
+		Wire wire = device.getNameResolver().getWire(fullWireName);
+		if (wire != null && !wire.getTile().getName().equals("OOC_WIRE_X0Y0"))
+			return wire;
+
 		String[] toks = fullWireName.split("/");
 		String tileName = toks[0];
 		String wireName = toks[1];
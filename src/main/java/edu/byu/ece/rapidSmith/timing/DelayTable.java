@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2016 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * BYU RapidSmith Tools is free software: you may redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * BYU RapidSmith Tools is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * A copy of the GNU General Public License is included with the BYU
+ * RapidSmith Tools. It can be found at doc/LICENSE.GPL3.TXT. You may
+ * also get a copy of the license at <http://www.gnu.org/licenses/>.
+ */
+package edu.byu.ece.rapidSmith.timing;
+
+import edu.byu.ece.rapidSmith.RSEnvironment;
+import edu.byu.ece.rapidSmith.design.subsite.LibraryCell;
+import edu.byu.ece.rapidSmith.device.FamilyType;
+import edu.byu.ece.rapidSmith.device.Site;
+import edu.byu.ece.rapidSmith.device.Tile;
+import edu.byu.ece.rapidSmith.device.WireType;
+import edu.byu.ece.rapidSmith.util.Exceptions;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Delay values used by the {@link TimingGraph} of a {@link edu.byu.ece.rapidSmith.design.subsite.CellDesign}.
+ * All delays are in picoseconds.
+ * <p>
+ * A table is loaded from the {@code delays.txt} file in the family folder of the
+ * device directory.  Each non-empty line of the file that does not start with
+ * {@code #} is one of:
+ * <pre>
+ *   arc &lt;libCell&gt; &lt;inputPin&gt; &lt;outputPin&gt; &lt;delay&gt;
+ *   clk2q &lt;libCell&gt; &lt;outputPin&gt; &lt;delay&gt;
+ *   setup &lt;libCell&gt; &lt;inputPin&gt; &lt;delay&gt;
+ *   wire &lt;WireType&gt; &lt;delay&gt;
+ *   default &lt;arc|clk2q|setup|wire|intrasite|net|tile&gt; &lt;delay&gt;
+ * </pre>
+ * The {@code net} and {@code tile} defaults are used to estimate the delay of
+ * unrouted nets as {@code net + tile * distance}, where distance is the
+ * Manhattan distance in tiles between the source and sink sites.  Values
+ * not found in the table fall back to the defaults.
+ */
+public class DelayTable {
+	/** Name of the delay file in the family folder */
+	public static final String DELAY_FILE_NAME = "delays.txt";
+
+	private final Map<String, Map<String, Double>> arcDelays = new HashMap<>();
+	private final Map<String, Map<String, Double>> clockToOutDelays = new HashMap<>();
+	private final Map<String, Map<String, Double>> setupTimes = new HashMap<>();
+	private final Map<WireType, Double> wireDelays = new EnumMap<>(WireType.class);
+	private double defaultArcDelay = 100.0;
+	private double defaultClockToOut = 300.0;
+	private double defaultSetup = 50.0;
+	private double defaultWireDelay = 100.0;
+	private double intrasiteDelay = 50.0;
+	private double netBaseDelay = 200.0;
+	private double perTileDelay = 50.0;
+
+	/**
+	 * Loads the delay table of the family from the environment.  If the family
+	 * does not have a delay file, a table with only the default values is returned.
+	 */
+	public static DelayTable loadFamily(RSEnvironment env, FamilyType family) {
+		Path path = env.getPartFolderPath(family).resolve(DELAY_FILE_NAME);
+		if (!Files.exists(path))
+			return new DelayTable();
+		try {
+			return load(path);
+		} catch (IOException e) {
+			throw new Exceptions.EnvironmentException("Error reading delay file " + path, e);
+		}
+	}
+
+	/**
+	 * Loads a delay table from the specified file.
+	 *
+	 * @throws Exceptions.ParseException if a line of the file is malformed
+	 */
+	public static DelayTable load(Path path) throws IOException {
+		DelayTable table = new DelayTable();
+		try (BufferedReader br = Files.newBufferedReader(path)) {
+			String line;
+			int lineNumber = 0;
+			while ((line = br.readLine()) != null) {
+				lineNumber++;
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#"))
+					continue;
+				try {
+					table.parseLine(line.split("\\s+"));
+				} catch (IllegalArgumentException e) {
+					throw new Exceptions.ParseException("Invalid delay entry on line " + lineNumber + " of " + path + ": " + line, e);
+				}
+			}
+		}
+		return table;
+	}
+
+	private void parseLine(String[] tokens) {
+		switch (tokens[0]) {
+			case "arc":
+				checkLength(tokens, 5);
+				setArcDelay(tokens[1], tokens[2], tokens[3], Double.parseDouble(tokens[4]));
+				break;
+			case "clk2q":
+				checkLength(tokens, 4);
+				setClockToOut(tokens[1], tokens[2], Double.parseDouble(tokens[3]));
+				break;
+			case "setup":
+				checkLength(tokens, 4);
+				setSetupTime(tokens[1], tokens[2], Double.parseDouble(tokens[3]));
+				break;
+			case "wire":
+				checkLength(tokens, 3);
+				setWireDelay(WireType.valueOf(tokens[1]), Double.parseDouble(tokens[2]));
+				break;
+			case "default":
+				checkLength(tokens, 3);
+				setDefault(tokens[1], Double.parseDouble(tokens[2]));
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown entry type " + tokens[0]);
+		}
+	}
+
+	private static void checkLength(String[] tokens, int length) {
+		if (tokens.length != length)
+			throw new IllegalArgumentException("Expected " + length + " fields");
+	}
+
+	private void setDefault(String name, double delay) {
+		switch (name) {
+			case "arc": defaultArcDelay = delay; break;
+			case "clk2q": defaultClockToOut = delay; break;
+			case "setup": defaultSetup = delay; break;
+			case "wire": defaultWireDelay = delay; break;
+			case "intrasite": intrasiteDelay = delay; break;
+			case "net": netBaseDelay = delay; break;
+			case "tile": perTileDelay = delay; break;
+			default:
+				throw new IllegalArgumentException("Unknown default " + name);
+		}
+	}
+
+	public void setArcDelay(String libCell, String inputPin, String outputPin, double delay) {
+		arcDelays.computeIfAbsent(libCell, k -> new HashMap<>()).put(inputPin + "->" + outputPin, delay);
+	}
+
+	public void setClockToOut(String libCell, String outputPin, double delay) {
+		clockToOutDelays.computeIfAbsent(libCell, k -> new HashMap<>()).put(outputPin, delay);
+	}
+
+	public void setSetupTime(String libCell, String inputPin, double delay) {
+		setupTimes.computeIfAbsent(libCell, k -> new HashMap<>()).put(inputPin, delay);
+	}
+
+	public void setWireDelay(WireType type, double delay) {
+		wireDelays.put(type, delay);
+	}
+
+	/**
+	 * Returns the delay of the combinational arc between the input and output pin of the cell.
+	 */
+	public double getArcDelay(LibraryCell libCell, String inputPin, String outputPin) {
+		Map<String, Double> delays = arcDelays.get(libCell.getName());
+		if (delays == null)
+			return defaultArcDelay;
+		return delays.getOrDefault(inputPin + "->" + outputPin, defaultArcDelay);
+	}
+
+	/**
+	 * Returns the clock to output delay of an output pin of a sequential cell.
+	 */
+	public double getClockToOut(LibraryCell libCell, String outputPin) {
+		return lookup(clockToOutDelays, libCell, outputPin, defaultClockToOut);
+	}
+
+	/**
+	 * Returns the setup time of an input pin of a sequential cell.
+	 */
+	public double getSetupTime(LibraryCell libCell, String inputPin) {
+		return lookup(setupTimes, libCell, inputPin, defaultSetup);
+	}
+
+	private static double lookup(Map<String, Map<String, Double>> table, LibraryCell libCell, String pin, double dflt) {
+		Map<String, Double> delays = table.get(libCell.getName());
+		if (delays == null)
+			return dflt;
+		return delays.getOrDefault(pin, dflt);
+	}
+
+	/**
+	 * Returns the delay of a routing wire of the specified type.
+	 */
+	public double getWireDelay(WireType type) {
+		if (type == null)
+			return defaultWireDelay;
+		return wireDelays.getOrDefault(type, defaultWireDelay);
+	}
+
+	/**
+	 * Returns the delay of a connection made inside a site.
+	 */
+	public double getIntrasiteDelay() {
+		return intrasiteDelay;
+	}
+
+	/**
+	 * Estimates the delay of an unrouted connection between two placed sites.
+	 */
+	public double estimateNetDelay(Site source, Site sink) {
+		if (source == sink)
+			return intrasiteDelay;
+		Tile srcTile = source.getTile();
+		Tile sinkTile = sink.getTile();
+		int distance = Math.abs(srcTile.getColumn() - sinkTile.getColumn()) +
+				Math.abs(srcTile.getRow() - sinkTile.getRow());
+		return netBaseDelay + perTileDelay * distance;
+	}
+}
@@ -0,0 +1,543 @@
+/*
+ * Copyright (c) 2016 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * BYU RapidSmith Tools is free software: you may redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * BYU RapidSmith Tools is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * A copy of the GNU General Public License is included with the BYU
+ * RapidSmith Tools. It can be found at doc/LICENSE.GPL3.TXT. You may
+ * also get a copy of the license at <http://www.gnu.org/licenses/>.
+ */
+package edu.byu.ece.rapidSmith.timing;
+
+import edu.byu.ece.rapidSmith.design.subsite.Cell;
+import edu.byu.ece.rapidSmith.design.subsite.CellDesign;
+import edu.byu.ece.rapidSmith.design.subsite.CellNet;
+import edu.byu.ece.rapidSmith.design.subsite.CellPin;
+import edu.byu.ece.rapidSmith.design.subsite.CellPinType;
+import edu.byu.ece.rapidSmith.design.subsite.RouteTree;
+import edu.byu.ece.rapidSmith.device.Device;
+import edu.byu.ece.rapidSmith.device.Site;
+import edu.byu.ece.rapidSmith.device.SitePin;
+import edu.byu.ece.rapidSmith.device.WireEnumerator;
+
+import java.util.*;
+
+/**
+ * Static timing graph of the leaf cells of a {@link CellDesign}.
+ * <p>
+ * The nodes of the graph are the connected {@link CellPin}s of the design.  Cell
+ * arcs connect the inputs of combinational cells to their outputs and are annotated
+ * with delays from a {@link DelayTable}.  Net arcs connect the source of each net
+ * to its sinks.  The delay of a net arc is computed from the wire types of the
+ * net's intersite {@link RouteTree} when the net is routed, and estimated from the
+ * distance between the source and sink sites otherwise.  Clock and static nets
+ * are not timed.
+ * <p>
+ * Paths start at the outputs of sequential cells (cells with a clock pin) and input
+ * ports, and end at the data inputs of sequential cells and output ports.  All
+ * paths are checked against a single clock period.  Combinational loops are broken
+ * by ignoring the arc that closes the loop.
+ * <p>
+ * After the graph is built, {@link #cellMoved(Cell)} and {@link #netRerouted(CellNet)}
+ * recompute the delays of the affected nets and mark the changed pins.  The arrival
+ * and required times of the fan-out and fan-in cones of those pins are updated the
+ * next time a timing value is requested, stopping wherever a value is unchanged.
+ * Changes to the netlist itself (adding or removing cells and nets) require
+ * a new graph.
+ */
+public class TimingGraph {
+	private final CellDesign design;
+	private final DelayTable delays;
+	private final WireEnumerator wireEnumerator;
+	private final Map<CellPin, Node> nodes;
+	private final Map<CellNet, List<Arc>> netArcs;
+	private final List<Node> startpoints;
+	private final List<Node> endpoints;
+	private List<Node> topologicalOrder;
+	private double clockPeriod;
+
+	private final PriorityQueue<Node> forwardQueue;
+	private final PriorityQueue<Node> backwardQueue;
+
+	/**
+	 * Builds the timing graph of the design and computes its arrival and required times.
+	 *
+	 * @param device the device the design is implemented on
+	 * @param design the design to analyze
+	 * @param delays delay values of the device family
+	 * @param clockPeriod clock period in picoseconds that all paths are checked against
+	 */
+	public TimingGraph(Device device, CellDesign design, DelayTable delays, double clockPeriod) {
+		this.design = design;
+		this.delays = delays;
+		this.wireEnumerator = device.getWireEnumerator();
+		this.clockPeriod = clockPeriod;
+		this.nodes = new HashMap<>();
+		this.netArcs = new HashMap<>();
+		this.startpoints = new ArrayList<>();
+		this.endpoints = new ArrayList<>();
+		this.forwardQueue = new PriorityQueue<>(Comparator.comparingInt(n -> n.level));
+		this.backwardQueue = new PriorityQueue<>((n1, n2) -> Integer.compare(n2.level, n1.level));
+
+		build();
+		levelize();
+		for (CellNet net : netArcs.keySet())
+			updateNetDelays(net);
+		clearQueues();
+		computeArrivalTimes();
+		computeRequiredTimes();
+	}
+
+	/* ****************
+	 *  Graph Building
+	 * ****************/
+	private void build() {
+		design.getLeafCells().forEach(this::addCellArcs);
+		for (CellNet net : design.getNets()) {
+			if (net.isStaticNet() || net.isClkNet())
+				continue;
+			CellPin source = net.getSourcePin();
+			Node from = source == null ? null : nodes.get(source);
+			if (from == null)
+				continue;
+			List<Arc> arcs = new ArrayList<>();
+			for (CellPin sink : net.getSinkPins()) {
+				Node to = nodes.get(sink);
+				if (to != null)
+					arcs.add(connect(from, to, net, 0.0));
+			}
+			netArcs.put(net, arcs);
+		}
+	}
+
+	private void addCellArcs(Cell cell) {
+		if (cell.isStaticSource())
+			return;
+
+		List<Node> inputs = new ArrayList<>();
+		List<Node> outputs = new ArrayList<>();
+		boolean sequential = false;
+		for (CellPin pin : cell.getPins()) {
+			if (pin.isPseudoPin() || !pin.isConnectedToNet())
+				continue;
+			if (pin.isInpin() && pin.getType() == CellPinType.CLOCK) {
+				sequential = true;
+				continue;
+			}
+			Node node = new Node(pin);
+			nodes.put(pin, node);
+			if (pin.isInpin())
+				inputs.add(node);
+			if (pin.isOutpin())
+				outputs.add(node);
+		}
+
+		if (sequential) {
+			for (Node input : inputs) {
+				input.endpoint = true;
+				input.setup = delays.getSetupTime(cell.getLibCell(), input.pin.getName());
+				endpoints.add(input);
+			}
+			for (Node output : outputs) {
+				output.startpoint = true;
+				output.launch = delays.getClockToOut(cell.getLibCell(), output.pin.getName());
+				startpoints.add(output);
+			}
+		} else if (cell.isPort()) {
+			for (Node input : inputs) {
+				input.endpoint = true;
+				endpoints.add(input);
+			}
+			for (Node output : outputs) {
+				output.startpoint = true;
+				startpoints.add(output);
+			}
+		} else {
+			for (Node input : inputs) {
+				for (Node output : outputs) {
+					double delay = delays.getArcDelay(cell.getLibCell(), input.pin.getName(), output.pin.getName());
+					connect(input, output, null, delay);
+				}
+			}
+		}
+	}
+
+	private static Arc connect(Node from, Node to, CellNet net, double delay) {
+		Arc arc = new Arc(from, to, net, delay);
+		from.fanout.add(arc);
+		to.fanin.add(arc);
+		return arc;
+	}
+
+	/*
+	 * Orders the nodes with a depth first search.  Arcs back to a node still on
+	 * the search stack close a combinational loop and are ignored from here on.
+	 * The level of a node is the length of the longest path reaching it.
+	 */
+	private void levelize() {
+		List<Node> order = new ArrayList<>(nodes.size());
+		Set<Node> visited = new HashSet<>();
+		Set<Node> onStack = new HashSet<>();
+		ArrayDeque<Iterator<Arc>> iterators = new ArrayDeque<>();
+		ArrayDeque<Node> stack = new ArrayDeque<>();
+
+		for (Node root : nodes.values()) {
+			if (!visited.add(root))
+				continue;
+			stack.push(root);
+			onStack.add(root);
+			iterators.push(root.fanout.iterator());
+			while (!stack.isEmpty()) {
+				Iterator<Arc> it = iterators.peek();
+				if (it.hasNext()) {
+					Arc arc = it.next();
+					if (onStack.contains(arc.to)) {
+						arc.loop = true;
+					} else if (visited.add(arc.to)) {
+						stack.push(arc.to);
+						onStack.add(arc.to);
+						iterators.push(arc.to.fanout.iterator());
+					}
+				} else {
+					Node done = stack.pop();
+					iterators.pop();
+					onStack.remove(done);
+					order.add(done);
+				}
+			}
+		}
+
+		// the post-order is the reverse topological order
+		Collections.reverse(order);
+		for (Node node : order) {
+			for (Arc arc : node.fanout) {
+				if (!arc.loop)
+					arc.to.level = Math.max(arc.to.level, node.level + 1);
+			}
+		}
+		order.sort(Comparator.comparingInt(n -> n.level));
+		topologicalOrder = order;
+	}
+
+	/* ****************
+	 *  Delay Updates
+	 * ****************/
+
+	/**
+	 * Updates the delays of the nets connected to a cell after it has been placed,
+	 * moved or unplaced.
+	 */
+	public void cellMoved(Cell cell) {
+		for (CellPin pin : cell.getPins()) {
+			CellNet net = pin.getNet();
+			if (net != null && netArcs.containsKey(net))
+				updateNetDelays(net);
+		}
+	}
+
+	/**
+	 * Updates the delays of a net after it has been routed, rerouted or unrouted.
+	 */
+	public void netRerouted(CellNet net) {
+		if (netArcs.containsKey(net))
+			updateNetDelays(net);
+	}
+
+	private void updateNetDelays(CellNet net) {
+		List<Arc> arcs = netArcs.get(net);
+		if (arcs.isEmpty())
+			return;
+
+		Map<Site, Double> routedDelays = computeRoutedDelays(net);
+		Site sourceSite = arcs.get(0).from.pin.getCell().getSite();
+		for (Arc arc : arcs) {
+			Site sinkSite = arc.to.pin.getCell().getSite();
+			double delay;
+			if (sourceSite == null || sinkSite == null) {
+				delay = 0.0;
+			} else if (sourceSite == sinkSite) {
+				delay = delays.getIntrasiteDelay();
+			} else if (routedDelays.containsKey(sinkSite)) {
+				delay = routedDelays.get(sinkSite);
+			} else {
+				delay = delays.estimateNetDelay(sourceSite, sinkSite);
+			}
+
+			if (delay != arc.delay) {
+				arc.delay = delay;
+				markForward(arc.to);
+				markBackward(arc.from);
+			}
+		}
+	}
+
+	// Returns the delay through the intersite routing to each site the net reaches
+	private Map<Site, Double> computeRoutedDelays(CellNet net) {
+		List<RouteTree> routes = net.getIntersiteRouteTreeList();
+		if (routes.isEmpty())
+			return Collections.emptyMap();
+
+		Map<Site, Double> siteDelays = new HashMap<>();
+		Map<RouteTree, Double> treeDelays = new HashMap<>();
+		for (RouteTree route : routes) {
+			for (RouteTree rt : route) {
+				RouteTree parent = rt.getParent();
+				double delay = (parent == null ? 0.0 : treeDelays.get(parent)) +
+						delays.getWireDelay(wireEnumerator.getWireType(rt.getWire().getWireEnum()));
+				treeDelays.put(rt, delay);
+				SitePin sitePin = rt.getConnectedSitePin();
+				if (sitePin != null && sitePin.isInput())
+					siteDelays.merge(sitePin.getSite(), delay + delays.getIntrasiteDelay(), Math::min);
+			}
+		}
+		return siteDelays;
+	}
+
+	private void markForward(Node node) {
+		if (!node.forwardQueued) {
+			node.forwardQueued = true;
+			forwardQueue.add(node);
+		}
+	}
+
+	private void markBackward(Node node) {
+		if (!node.backwardQueued) {
+			node.backwardQueued = true;
+			backwardQueue.add(node);
+		}
+	}
+
+	private void clearQueues() {
+		for (Node node : forwardQueue)
+			node.forwardQueued = false;
+		for (Node node : backwardQueue)
+			node.backwardQueued = false;
+		forwardQueue.clear();
+		backwardQueue.clear();
+	}
+
+	/* ****************
+	 *  Propagation
+	 * ****************/
+	private void computeArrivalTimes() {
+		for (Node node : topologicalOrder)
+			node.arrival = computeArrival(node);
+	}
+
+	private void computeRequiredTimes() {
+		for (int i = topologicalOrder.size() - 1; i >= 0; i--) {
+			Node node = topologicalOrder.get(i);
+			node.required = computeRequired(node);
+		}
+	}
+
+	private double computeArrival(Node node) {
+		double arrival = node.startpoint ? node.launch : 0.0;
+		for (Arc arc : node.fanin) {
+			if (!arc.loop)
+				arrival = Math.max(arrival, arc.from.arrival + arc.delay);
+		}
+		return arrival;
+	}
+
+	private double computeRequired(Node node) {
+		double required = node.endpoint ? clockPeriod - node.setup : Double.POSITIVE_INFINITY;
+		for (Arc arc : node.fanout) {
+			if (!arc.loop)
+				required = Math.min(required, arc.to.required - arc.delay);
+		}
+		return required;
+	}
+
+	/**
+	 * Propagates all pending delay changes through the graph.  This is called
+	 * automatically before any timing value is returned.
+	 */
+	public void update() {
+		while (!forwardQueue.isEmpty()) {
+			Node node = forwardQueue.poll();
+			node.forwardQueued = false;
+			double arrival = computeArrival(node);
+			if (arrival != node.arrival) {
+				node.arrival = arrival;
+				for (Arc arc : node.fanout) {
+					if (!arc.loop)
+						markForward(arc.to);
+				}
+			}
+		}
+		while (!backwardQueue.isEmpty()) {
+			Node node = backwardQueue.poll();
+			node.backwardQueued = false;
+			double required = computeRequired(node);
+			if (required != node.required) {
+				node.required = required;
+				for (Arc arc : node.fanin) {
+					if (!arc.loop)
+						markBackward(arc.from);
+				}
+			}
+		}
+	}
+
+	/* ****************
+	 *  Queries
+	 * ****************/
+	public double getClockPeriod() {
+		return clockPeriod;
+	}
+
+	/**
+	 * Sets the clock period the paths are checked against and recomputes all required times.
+	 */
+	public void setClockPeriod(double clockPeriod) {
+		this.clockPeriod = clockPeriod;
+		update();
+		computeRequiredTimes();
+	}
+
+	/**
+	 * Returns the time the latest signal arrives at the pin, or NaN if the
+	 * pin is not part of the timing graph.
+	 */
+	public double getArrivalTime(CellPin pin) {
+		Node node = getNode(pin);
+		return node == null ? Double.NaN : node.arrival;
+	}
+
+	/**
+	 * Returns the latest time a signal can arrive at the pin without violating
+	 * the clock period.  Pins that do not reach an endpoint have an infinite
+	 * required time.  Returns NaN if the pin is not part of the timing graph.
+	 */
+	public double getRequiredTime(CellPin pin) {
+		Node node = getNode(pin);
+		return node == null ? Double.NaN : node.required;
+	}
+
+	/**
+	 * Returns the slack of the pin (required time minus arrival time), or NaN if
+	 * the pin is not part of the timing graph.
+	 */
+	public double getSlack(CellPin pin) {
+		Node node = getNode(pin);
+		return node == null ? Double.NaN : node.required - node.arrival;
+	}
+
+	/**
+	 * Returns the smallest slack of all path endpoints.
+	 */
+	public double getWorstSlack() {
+		update();
+		double worst = Double.POSITIVE_INFINITY;
+		for (Node node : endpoints)
+			worst = Math.min(worst, node.required - node.arrival);
+		return worst;
+	}
+
+	/**
+	 * Returns the sum of the negative slacks of all path endpoints.
+	 */
+	public double getTotalNegativeSlack() {
+		update();
+		double total = 0.0;
+		for (Node node : endpoints) {
+			double slack = node.required - node.arrival;
+			if (slack < 0)
+				total += slack;
+		}
+		return total;
+	}
+
+	/**
+	 * Returns the pins that start timing paths.
+	 */
+	public List<CellPin> getStartpoints() {
+		return toPins(startpoints);
+	}
+
+	/**
+	 * Returns the pins that end timing paths.
+	 */
+	public List<CellPin> getEndpoints() {
+		return toPins(endpoints);
+	}
+
+	/**
+	 * Returns the pins along the latest arriving path ending at the pin,
+	 * from the start of the path to the pin.
+	 */
+	public List<CellPin> getCriticalPath(CellPin endpoint) {
+		Node node = getNode(endpoint);
+		if (node == null)
+			return Collections.emptyList();
+
+		LinkedList<CellPin> path = new LinkedList<>();
+		while (node != null) {
+			path.addFirst(node.pin);
+			Node next = null;
+			for (Arc arc : node.fanin) {
+				if (!arc.loop && arc.from.arrival + arc.delay == node.arrival)
+					next = arc.from;
+			}
+			node = next;
+		}
+		return path;
+	}
+
+	private Node getNode(CellPin pin) {
+		update();
+		return nodes.get(pin);
+	}
+
+	private static List<CellPin> toPins(List<Node> nodes) {
+		List<CellPin> pins = new ArrayList<>(nodes.size());
+		for (Node node : nodes)
+			pins.add(node.pin);
+		return pins;
+	}
+
+	private static final class Node {
+		final CellPin pin;
+		final List<Arc> fanin = new ArrayList<>(2);
+		final List<Arc> fanout = new ArrayList<>(2);
+		int level;
+		boolean startpoint;
+		boolean endpoint;
+		double launch;
+		double setup;
+		double arrival;
+		double required;
+		boolean forwardQueued;
+		boolean backwardQueued;
+
+		Node(CellPin pin) {
+			this.pin = pin;
+		}
+	}
+
+	private static final class Arc {
+		final Node from;
+		final Node to;
+		final CellNet net;
+		double delay;
+		boolean loop;
+
+		Arc(Node from, Node to, CellNet net, double delay) {
+			this.from = from;
+			this.to = to;
+			this.net = net;
+			this.delay = delay;
+		}
+	}
+}
@@ -0,0 +1,513 @@
+/*
+ * Copyright (c) 2016 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * BYU RapidSmith Tools is free software: you may redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * BYU RapidSmith Tools is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * A copy of the GNU General Public License is included with the BYU
+ * RapidSmith Tools. It can be found at doc/LICENSE.GPL3.TXT. You may
+ * also get a copy of the license at <http://www.gnu.org/licenses/>.
+ */
+package edu.byu.ece.rapidSmith.util;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Asynchronous, pipelined alternative to {@link VivadoConsole}.
+ * <p>
+ * Commands are sent to one of several Vivado processes (workers) without waiting for
+ * the previous command to finish, and each call returns a {@link CompletableFuture}
+ * that completes with the output of the command.  A worker executes its commands in
+ * the order they were submitted, so commands that depend on each other (for example
+ * {@code link_design} followed by queries of the design) should be submitted to the
+ * same worker with {@link #submit(int, String)}.
+ * <p>
+ * Many similar queries can be sent as a single Tcl {@code foreach} with
+ * {@link #batch(String, List)}.  The replies are separated by markers written by
+ * Vivado and returned in the order of the arguments.
+ * <p>
+ * Each worker defines two Tcl procedures when it starts, {@code ::rs_async_run id cmd}
+ * and {@code ::rs_async_batch id template args}, that frame the output of each
+ * request with {@code #rs#begin id} and {@code #rs#end id} lines.  Any process that
+ * understands these procedures (such as a plain {@code tclsh} or a test stub) can be
+ * used in place of Vivado with {@link #AsyncVivadoConsole(List, String, int)}.
+ * <p>
+ * A Tcl error completes the command's future exceptionally with a
+ * {@link TclException}.  For batches, the error of an individual argument is returned
+ * as a single line starting with {@code ERROR:} for that argument.  Replies are matched
+ * to requests by their ids.  If the reply to a request is lost, the request fails with
+ * an {@link Exceptions.EnvironmentException} and later replies are still delivered to
+ * their own requests.
+ */
+public class AsyncVivadoConsole implements AutoCloseable {
+	private static final String BEGIN = "#rs#begin ";
+	private static final String END = "#rs#end ";
+	private static final String ERROR = "#rs#error ";
+	private static final String ITEM = "#rs#item";
+	private static final String ITEM_ERROR = "#rs#itemerror ";
+	/** Placeholder replaced with each argument of a batch */
+	public static final String ARG = "%ARG%";
+
+	private static final String PROCS =
+			"proc ::rs_async_run {id cmd} {\n" +
+			"  puts \"#rs#begin $id\"\n" +
+			"  if {[catch {uplevel #0 $cmd} result]} {\n" +
+			"    puts \"#rs#error $id [string map {\"\\n\" \" \"} $result]\"\n" +
+			"  } elseif {$result ne \"\"} {\n" +
+			"    puts $result\n" +
+			"  }\n" +
+			"  puts \"#rs#end $id\"\n" +
+			"  flush stdout\n" +
+			"}\n" +
+			"proc ::rs_async_batch {id template args} {\n" +
+			"  puts \"#rs#begin $id\"\n" +
+			"  foreach rs_arg $args {\n" +
+			"    puts \"#rs#item\"\n" +
+			"    if {[catch {uplevel #0 [string map [list %ARG% $rs_arg] $template]} result]} {\n" +
+			"      puts \"#rs#itemerror [string map {\"\\n\" \" \"} $result]\"\n" +
+			"    } elseif {$result ne \"\"} {\n" +
+			"      puts $result\n" +
+			"    }\n" +
+			"  }\n" +
+			"  puts \"#rs#end $id\"\n" +
+			"  flush stdout\n" +
+			"}\n";
+
+	private final List<Worker> workers;
+	private final AtomicLong nextId = new AtomicLong();
+	/** How long {@link #runCommand(String)} waits for a result, 0 to wait forever */
+	private long timeout = 60000;
+
+	/**
+	 * Starts {@code numWorkers} Vivado processes in Tcl mode in the specified directory.
+	 * The Vivado executable must be on the user's PATH.
+	 */
+	public AsyncVivadoConsole(String runDirectory, int numWorkers) {
+		this(getVivadoCommand(), runDirectory, numWorkers);
+	}
+
+	/**
+	 * Starts {@code numWorkers} processes of the specified Tcl shell command in the
+	 * specified directory.
+	 */
+	public AsyncVivadoConsole(List<String> command, String runDirectory, int numWorkers) {
+		if (numWorkers < 1)
+			throw new IllegalArgumentException("numWorkers must be positive: " + numWorkers);
+		workers = new ArrayList<>(numWorkers);
+		try {
+			for (int i = 0; i < numWorkers; i++)
+				workers.add(new Worker(i, command, runDirectory));
+		} catch (IOException e) {
+			close();
+			throw new Exceptions.EnvironmentException("Cannot start " + command.get(0) + ": " + e.getMessage(), e);
+		}
+	}
+
+	private static List<String> getVivadoCommand() {
+		String osType = System.getProperty("os.name").toLowerCase();
+		String vivadoCommand = osType.contains("win") ? "vivado.bat" : "vivado";
+		return Arrays.asList(vivadoCommand, "-mode", "tcl");
+	}
+
+	public int getNumWorkers() {
+		return workers.size();
+	}
+
+	/**
+	 * Sets how long {@link #runCommand(String)} waits for a result before throwing
+	 * a {@link TimeoutException}.  0 waits forever.
+	 */
+	public void setTimeout(long timeoutMilliseconds) {
+		this.timeout = timeoutMilliseconds;
+	}
+
+	/* ****************
+	 *  Single Commands
+	 * ****************/
+
+	/**
+	 * Sends a command to the least busy worker.
+	 *
+	 * @return future completing with the output lines of the command
+	 */
+	public CompletableFuture<List<String>> submit(String cmd) {
+		return submit(leastBusyWorker(), cmd);
+	}
+
+	/**
+	 * Sends a command to the specified worker.  Commands sent to the same worker run
+	 * in the order they were submitted.
+	 */
+	public CompletableFuture<List<String>> submit(int worker, String cmd) {
+		Worker w = workers.get(worker);
+		Request request = new Request(nextId.incrementAndGet(), false);
+		w.send(request, "::rs_async_run " + request.id + " " + quote(cmd), true);
+		return request.lines;
+	}
+
+	/**
+	 * Sends all of the commands, spreading them across the workers, with a single
+	 * write to each worker.
+	 *
+	 * @return futures of the commands in the order of the commands
+	 */
+	public List<CompletableFuture<List<String>>> submitAll(Collection<String> cmds) {
+		List<CompletableFuture<List<String>>> futures = new ArrayList<>(cmds.size());
+		int i = 0;
+		int perWorker = (cmds.size() + workers.size() - 1) / workers.size();
+		for (String cmd : cmds) {
+			Worker w = workers.get(perWorker == 0 ? 0 : i++ / perWorker);
+			Request request = new Request(nextId.incrementAndGet(), false);
+			w.send(request, "::rs_async_run " + request.id + " " + quote(cmd), false);
+			futures.add(request.lines);
+		}
+		for (Worker w : workers)
+			w.flush();
+		return futures;
+	}
+
+	/**
+	 * Sends a command and waits for its output.
+	 *
+	 * @throws TclException if the command caused a Tcl error
+	 * @throws Exceptions.EnvironmentException if the command timed out or the
+	 *   Vivado process ended
+	 */
+	public List<String> runCommand(String cmd) {
+		CompletableFuture<List<String>> future = submit(cmd);
+		try {
+			return timeout == 0 ? future.get() : future.get(timeout, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new Exceptions.EnvironmentException("Interrupted while running command \"" + cmd + "\"", e);
+		} catch (TimeoutException e) {
+			throw new Exceptions.EnvironmentException("Command \"" + cmd + "\" timed out.", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new Exceptions.EnvironmentException("Error running command \"" + cmd + "\"", e.getCause());
+		}
+	}
+
+	/* ****************
+	 *  Batches
+	 * ****************/
+
+	/**
+	 * Runs the template once for each argument in a single Tcl {@code foreach}, with
+	 * each occurrence of {@link #ARG} in the template replaced by the argument.  The
+	 * arguments are split evenly across the workers.
+	 * <p>
+	 * Example: {@code batch("get_property SITE_TYPE [get_sites %ARG%]", siteNames)}
+	 *
+	 * @return future completing with the output lines for each argument, in order
+	 */
+	public CompletableFuture<List<List<String>>> batch(String template, List<String> args) {
+		if (args.isEmpty())
+			return CompletableFuture.completedFuture(Collections.emptyList());
+
+		int chunk = (args.size() + workers.size() - 1) / workers.size();
+		List<CompletableFuture<List<List<String>>>> parts = new ArrayList<>();
+		for (int start = 0, w = 0; start < args.size(); start += chunk, w++) {
+			List<String> part = args.subList(start, Math.min(args.size(), start + chunk));
+			parts.add(batch(w, template, part));
+		}
+
+		return CompletableFuture.allOf(parts.toArray(new CompletableFuture<?>[0])).thenApply(v -> {
+			List<List<String>> results = new ArrayList<>(args.size());
+			for (CompletableFuture<List<List<String>>> part : parts)
+				results.addAll(part.join());
+			return results;
+		});
+	}
+
+	/**
+	 * Runs the template once for each argument on the specified worker.
+	 *
+	 * @see #batch(String, List)
+	 */
+	public CompletableFuture<List<List<String>>> batch(int worker, String template, List<String> args) {
+		Worker w = workers.get(worker);
+		Request request = new Request(nextId.incrementAndGet(), true);
+		StringBuilder sb = new StringBuilder();
+		sb.append("::rs_async_batch ").append(request.id).append(" ").append(quote(template));
+		for (String arg : args)
+			sb.append(" ").append(quote(arg));
+		request.expectedItems = args.size();
+		w.send(request, sb.toString(), true);
+		return request.items;
+	}
+
+	/* ****************
+	 *  Helpers
+	 * ****************/
+
+	private int leastBusyWorker() {
+		int best = 0;
+		for (int i = 1; i < workers.size(); i++) {
+			if (workers.get(i).outstanding.get() < workers.get(best).outstanding.get())
+				best = i;
+		}
+		return best;
+	}
+
+	/**
+	 * Quotes a string so Tcl passes it to a procedure unchanged.
+	 */
+	static String quote(String s) {
+		StringBuilder sb = new StringBuilder(s.length() + 2);
+		sb.append('"');
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			switch (c) {
+				case '\\': case '"': case '$': case '[': case ']': case '{': case '}':
+					sb.append('\\').append(c);
+					break;
+				case '\n':
+					sb.append("\\n");
+					break;
+				case '\r':
+					break;
+				default:
+					sb.append(c);
+			}
+		}
+		return sb.append('"').toString();
+	}
+
+	/**
+	 * Closes the connections to the workers and ends the processes.  Commands that
+	 * have not completed fail.
+	 */
+	@Override
+	public void close() {
+		for (Worker w : workers)
+			w.close();
+	}
+
+	/**
+	 * Exception thrown when a command sent to Vivado causes a Tcl error.
+	 */
+	public static class TclException extends RuntimeException {
+		private static final long serialVersionUID = -3326018925431536172L;
+
+		public TclException(String message) {
+			super(message);
+		}
+	}
+
+	private static final class Request {
+		final long id;
+		final boolean isBatch;
+		final CompletableFuture<List<String>> lines;
+		final CompletableFuture<List<List<String>>> items;
+		int expectedItems;
+
+		Request(long id, boolean isBatch) {
+			this.id = id;
+			this.isBatch = isBatch;
+			this.lines = isBatch ? null : new CompletableFuture<>();
+			this.items = isBatch ? new CompletableFuture<>() : null;
+		}
+
+		void fail(Throwable t) {
+			if (isBatch)
+				items.completeExceptionally(t);
+			else
+				lines.completeExceptionally(t);
+		}
+	}
+
+	/**
+	 * A Vivado process with the requests sent to it in order.
+	 */
+	private static final class Worker {
+		private final Process process;
+		private final BufferedWriter out;
+		private final ConcurrentLinkedQueue<Request> pending = new ConcurrentLinkedQueue<>();
+		private final AtomicInteger outstanding = new AtomicInteger();
+		private volatile boolean closed = false;
+
+		Worker(int index, List<String> command, String runDirectory) throws IOException {
+			ProcessBuilder builder = new ProcessBuilder(command);
+			builder.redirectErrorStream(true);
+			builder.directory(new File(runDirectory));
+			process = builder.start();
+			out = new BufferedWriter(new OutputStreamWriter(process.getOutputStream()));
+			out.write(PROCS);
+			out.flush();
+
+			Thread reader = new Thread(this::readOutput, "vivado-worker-" + index);
+			reader.setDaemon(true);
+			reader.start();
+		}
+
+		synchronized void send(Request request, String line, boolean flush) {
+			if (closed) {
+				request.fail(new Exceptions.EnvironmentException("Vivado console is closed"));
+				return;
+			}
+			pending.add(request);
+			outstanding.incrementAndGet();
+			try {
+				out.write(line);
+				out.write('\n');
+				if (flush)
+					out.flush();
+			} catch (IOException e) {
+				failAll(e);
+			}
+		}
+
+		synchronized void flush() {
+			try {
+				if (!closed)
+					out.flush();
+			} catch (IOException e) {
+				failAll(e);
+			}
+		}
+
+		private void readOutput() {
+			BufferedReader in = new BufferedReader(new InputStreamReader(process.getInputStream()));
+			Request current = null;
+			List<String> lines = null;
+			List<List<String>> items = null;
+			String error = null;
+			try {
+				String line;
+				while ((line = in.readLine()) != null) {
+					if (line.startsWith(BEGIN)) {
+						if (current != null)
+							drop(current, "was interrupted by the reply to another request");
+						current = match(parseId(line, BEGIN));
+						lines = new ArrayList<>();
+						items = new ArrayList<>();
+						error = null;
+					} else if (current == null) {
+						// Vivado banners and messages between requests
+						continue;
+					} else if (line.startsWith(END)) {
+						if (parseId(line, END) != current.id) {
+							drop(current, "received a mismatched end marker: " + line);
+							current = null;
+							continue;
+						}
+						pending.remove(current);
+						outstanding.decrementAndGet();
+						if (error != null) {
+							current.fail(new TclException(error));
+						} else if (current.isBatch) {
+							current.items.complete(items);
+						} else {
+							current.lines.complete(lines);
+						}
+						current = null;
+					} else if (line.startsWith(ERROR)) {
+						error = "ERROR: " + line.substring(line.indexOf(' ', ERROR.length()) + 1);
+					} else if (current.isBatch && line.equals(ITEM)) {
+						lines = new ArrayList<>();
+						items.add(lines);
+					} else if (current.isBatch && line.startsWith(ITEM_ERROR)) {
+						lines.add("ERROR: " + line.substring(ITEM_ERROR.length()));
+					} else if (lines != null) {
+						lines.add(line);
+					}
+				}
+			} catch (IOException e) {
+				// fall through and fail the remaining requests
+			}
+			failAll(new Exceptions.EnvironmentException("Vivado process ended"));
+		}
+
+		private static long parseId(String line, String marker) {
+			try {
+				return Long.parseLong(line.substring(marker.length()).trim());
+			} catch (NumberFormatException e) {
+				return -1;
+			}
+		}
+
+		/**
+		 * Returns the pending request with the id of a reply.  Requests sent before it
+		 * are failed, as Vivado replies in order and their replies were lost.  Returns
+		 * null for a reply to no pending request, so its output is skipped.
+		 */
+		private Request match(long id) {
+			boolean found = false;
+			for (Request request : pending) {
+				if (request.id == id) {
+					found = true;
+					break;
+				}
+			}
+			if (!found)
+				return null;
+			Request request;
+			while ((request = pending.peek()) != null && request.id != id)
+				drop(request, "received no reply");
+			return request;
+		}
+
+		private void drop(Request request, String reason) {
+			if (pending.remove(request)) {
+				outstanding.decrementAndGet();
+				request.fail(new Exceptions.EnvironmentException("Request " + request.id + " " + reason));
+			}
+		}
+
+		private void failAll(Throwable t) {
+			Request request;
+			while ((request = pending.poll()) != null) {
+				outstanding.decrementAndGet();
+				request.fail(t);
+			}
+		}
+
+		synchronized void close() {
+			if (closed)
+				return;
+			closed = true;
+			try {
+				out.write("exit\n");
+				out.flush();
+			} catch (IOException e) {
+				// the process has already exited
+			}
+			try {
+				if (!process.waitFor(10, TimeUnit.SECONDS))
+					process.destroy();
+			} catch (InterruptedException e) {
+				process.destroy();
+				Thread.currentThread().interrupt();
+			}
+			failAll(new Exceptions.EnvironmentException("Vivado console is closed"));
+		}
+	}
+}
@@ -0,0 +1,351 @@
+/*
+ * Copyright (c) 2016 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * BYU RapidSmith Tools is free software: you may redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * BYU RapidSmith Tools is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * A copy of the GNU General Public License is included with the BYU
+ * RapidSmith Tools. It can be found at doc/LICENSE.GPL3.TXT. You may
+ * also get a copy of the license at <http://www.gnu.org/licenses/>.
+ */
+package edu.byu.ece.rapidSmith.util;
+
+import edu.byu.ece.rapidSmith.RSEnvironment;
+import edu.byu.ece.rapidSmith.design.subsite.CellLibrary;
+import edu.byu.ece.rapidSmith.device.Device;
+import edu.byu.ece.rapidSmith.device.Site;
+import edu.byu.ece.rapidSmith.device.SiteTypeOverlay;
+import edu.byu.ece.rapidSmith.interfaces.vivado.DesignInfoInterface;
+import edu.byu.ece.rapidSmith.interfaces.vivado.VivadoCheckpoint;
+import edu.byu.ece.rapidSmith.interfaces.vivado.VivadoInterface;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Imports, processes and exports many RSCP checkpoints in parallel while loading the
+ * {@link Device} and {@link CellLibrary} of each part only once.
+ * <p>
+ * Devices are shared by all jobs of the same part.  Each job runs with its own
+ * {@link SiteTypeOverlay} bound, so site types set while importing and processing a
+ * design are kept with the design and never change the shared device.  Cell libraries
+ * are cached by the contents of the part's {@code cellLibrary.xml} and the checkpoint's
+ * {@code macros.xml}, so checkpoints with the same macros share one library.
+ * <p>
+ * For each job the wall clock time of the import and processing steps, the CPU time
+ * and the number of bytes allocated by the worker thread are recorded in a
+ * {@link JobResult}.  Allocation accounting requires a JVM that supports
+ * thread allocation measurement and is reported as -1 otherwise.
+ * <p>
+ * Example:
+ * <pre>{@code
+ * try (BatchDesignRunner runner = new BatchDesignRunner(RSEnvironment.defaultEnv(), 8)) {
+ *     List<JobResult> results = runner.runAll(rscps, (checkpoint, rscp) ->
+ *         VivadoInterface.writeTCP(outDir.resolve(rscp.getFileName() + ".tcp").toString(),
+ *             checkpoint.getDesign(), checkpoint.getDevice(), checkpoint.getLibCells()));
+ * }
+ * }</pre>
+ */
+public class BatchDesignRunner implements AutoCloseable {
+	private static final String CELL_LIBRARY_NAME = "cellLibrary.xml";
+	private static final String MACROS_NAME = "macros.xml";
+
+	private final RSEnvironment env;
+	private final ExecutorService executor;
+	private final Map<String, Device> devices = new ConcurrentHashMap<>();
+	private final Map<String, Future<CellLibrary>> libraries = new ConcurrentHashMap<>();
+	private boolean storeAdditionalInfo = false;
+	private boolean addPseudoVccPins = false;
+
+	/**
+	 * Processing applied to each imported checkpoint, typically a transformation
+	 * followed by an export.  The design's site types are bound to the calling thread
+	 * while the job runs.
+	 */
+	@FunctionalInterface
+	public interface DesignJob {
+		void process(VivadoCheckpoint checkpoint, Path rscp) throws Exception;
+	}
+
+	/**
+	 * Creates a runner with one worker per available processor.
+	 */
+	public BatchDesignRunner(RSEnvironment env) {
+		this(env, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates a runner with the specified number of workers.
+	 */
+	public BatchDesignRunner(RSEnvironment env, int numWorkers) {
+		if (numWorkers < 1)
+			throw new IllegalArgumentException("numWorkers must be positive: " + numWorkers);
+		this.env = env;
+		this.executor = Executors.newFixedThreadPool(numWorkers, r -> {
+			Thread thread = new Thread(r, "rs-batch-worker");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	public void setStoreAdditionalInfo(boolean storeAdditionalInfo) {
+		this.storeAdditionalInfo = storeAdditionalInfo;
+	}
+
+	public void setAddPseudoVccPins(boolean addPseudoVccPins) {
+		this.addPseudoVccPins = addPseudoVccPins;
+	}
+
+	/**
+	 * Submits a checkpoint for processing.  Failures of the job are reported in the
+	 * returned result rather than thrown.
+	 */
+	public Future<JobResult> submit(Path rscp, DesignJob job) {
+		return executor.submit(() -> runJob(rscp, job));
+	}
+
+	/**
+	 * Processes all of the checkpoints and waits for them to complete.
+	 *
+	 * @return the results of the jobs in the order of the checkpoints
+	 */
+	public List<JobResult> runAll(List<Path> rscps, DesignJob job) throws InterruptedException {
+		List<Future<JobResult>> futures = new ArrayList<>(rscps.size());
+		for (Path rscp : rscps)
+			futures.add(submit(rscp, job));
+
+		List<JobResult> results = new ArrayList<>(futures.size());
+		for (Future<JobResult> future : futures) {
+			try {
+				results.add(future.get());
+			} catch (ExecutionException e) {
+				// runJob catches all job failures, so only errors escape
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Returns the device of the part, loading it if it has not been loaded by this runner.
+	 */
+	public Device getDevice(String partName) {
+		return devices.computeIfAbsent(PartNameTools.removeSpeedGrade(partName), part -> {
+			// the environment's device cache is not thread safe
+			synchronized (env) {
+				Device device = env.getDevice(part);
+				warm(device);
+				return device;
+			}
+		});
+	}
+
+	/**
+	 * Builds the lazily created lookups of the device before it is shared with the
+	 * workers.  The device is published to the workers through the device map, so
+	 * the lookups are visible to all of them and never built concurrently.  The key
+	 * and value caches of the wire hash maps are safe to build from any thread and
+	 * are left to be built on demand.
+	 */
+	private static void warm(Device device) {
+		device.getNameResolver();
+		device.getRouteThrough(0, 0);
+		Iterator<Site> sites = device.getSites().values().iterator();
+		if (sites.hasNext())
+			device.getAllSitesOfType(sites.next().getDefaultType());
+	}
+
+	/**
+	 * Returns the cell library of the part extended with the macros of the checkpoint.
+	 * Libraries are cached by the contents of the library and macro files.
+	 */
+	public CellLibrary getCellLibrary(String partName, Path rscp) throws IOException {
+		Path libraryPath = env.getPartFolderPath(partName).resolve(CELL_LIBRARY_NAME);
+		Path macrosPath = rscp.resolve(MACROS_NAME);
+		String key = digest(libraryPath, macrosPath);
+
+		CompletableFuture<CellLibrary> created = new CompletableFuture<>();
+		Future<CellLibrary> existing = libraries.putIfAbsent(key, created);
+		if (existing == null) {
+			try {
+				CellLibrary libCells = new CellLibrary(libraryPath);
+				if (Files.exists(macrosPath))
+					libCells.loadMacroXML(macrosPath);
+				created.complete(libCells);
+			} catch (IOException | RuntimeException e) {
+				libraries.remove(key);
+				created.completeExceptionally(e);
+				throw e;
+			}
+			existing = created;
+		}
+
+		try {
+			return existing.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for cell library", e);
+		} catch (ExecutionException e) {
+			throw new IOException("Error loading cell library " + libraryPath, e.getCause());
+		}
+	}
+
+	private static String digest(Path... paths) throws IOException {
+		MessageDigest md;
+		try {
+			md = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new AssertionError(e);
+		}
+		for (Path path : paths) {
+			if (Files.exists(path))
+				md.update(Files.readAllBytes(path));
+			// separate the files so moving bytes between them changes the digest
+			md.update((byte) 0);
+		}
+		StringBuilder sb = new StringBuilder();
+		for (byte b : md.digest())
+			sb.append(String.format("%02x", b));
+		return sb.toString();
+	}
+
+	private JobResult runJob(Path rscp, DesignJob job) {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		long startCpu = threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : -1;
+		long startAllocated = Metrics.getThreadAllocatedBytes();
+		long start = System.nanoTime();
+		long importTime = -1;
+		long processTime = -1;
+		Throwable error = null;
+
+		// keep site types set during the import out of the shared device
+		try (SiteTypeOverlay.Binding ignored = new SiteTypeOverlay().bind()) {
+			DesignInfoInterface designInfo = new DesignInfoInterface();
+			designInfo.parse(rscp);
+			String partName = designInfo.getPart();
+			if (partName == null)
+				throw new Exceptions.ParseException("Part name for the design not found in the design.info file!");
+
+			Device device = getDevice(partName);
+			CellLibrary libCells = getCellLibrary(partName, rscp);
+			// the device and cell library are shared, so loading them is not part of the import
+			long importStart = System.nanoTime();
+			VivadoCheckpoint checkpoint = VivadoInterface.loadRSCP(rscp.toString(), device, libCells,
+					storeAdditionalInfo, addPseudoVccPins);
+			importTime = System.nanoTime() - importStart;
+
+			long processStart = System.nanoTime();
+			try (SiteTypeOverlay.Binding ignored2 = checkpoint.getDesign().bindSiteTypes()) {
+				job.process(checkpoint, rscp);
+			}
+			processTime = System.nanoTime() - processStart;
+		} catch (Exception e) {
+			error = e;
+		}
+
+		long wallTime = System.nanoTime() - start;
+		long cpuTime = startCpu < 0 ? -1 : threads.getCurrentThreadCpuTime() - startCpu;
+		long allocated = startAllocated < 0 ? -1 : Metrics.getThreadAllocatedBytes() - startAllocated;
+		return new JobResult(rscp, error, importTime, processTime, wallTime, cpuTime, allocated);
+	}
+
+	/**
+	 * Stops accepting new jobs.  Jobs already submitted still run to completion.
+	 */
+	@Override
+	public void close() {
+		executor.shutdown();
+	}
+
+	/**
+	 * Outcome and resource usage of a single job.  Times are in nanoseconds.
+	 */
+	public static final class JobResult {
+		private final Path rscp;
+		private final Throwable error;
+		private final long importTime;
+		private final long processTime;
+		private final long wallTime;
+		private final long cpuTime;
+		private final long allocatedBytes;
+
+		JobResult(Path rscp, Throwable error, long importTime, long processTime,
+				long wallTime, long cpuTime, long allocatedBytes) {
+			this.rscp = rscp;
+			this.error = error;
+			this.importTime = importTime;
+			this.processTime = processTime;
+			this.wallTime = wallTime;
+			this.cpuTime = cpuTime;
+			this.allocatedBytes = allocatedBytes;
+		}
+
+		public Path getRscp() {
+			return rscp;
+		}
+
+		public boolean isSuccess() {
+			return error == null;
+		}
+
+		/**
+		 * Returns the exception that stopped the job, or null if the job succeeded.
+		 */
+		public Throwable getError() {
+			return error;
+		}
+
+		/**
+		 * Returns the time spent importing the checkpoint, or -1 if the import failed.
+		 * Loading the shared device and cell library is not included.
+		 */
+		public long getImportTime() {
+			return importTime;
+		}
+
+		/** Returns the time spent in the job, or -1 if it did not complete. */
+		public long getProcessTime() {
+			return processTime;
+		}
+
+		public long getWallTime() {
+			return wallTime;
+		}
+
+		/** Returns the CPU time of the worker thread, or -1 if not supported. */
+		public long getCpuTime() {
+			return cpuTime;
+		}
+
+		/** Returns the bytes allocated by the worker thread, or -1 if not supported. */
+		public long getAllocatedBytes() {
+			return allocatedBytes;
+		}
+
+		@Override
+		public String toString() {
+			return rscp + (isSuccess() ? " ok" : " failed (" + error + ")") +
+					String.format(" wall=%.1fms cpu=%.1fms alloc=%dMB",
+							wallTime / 1e6, cpuTime / 1e6, allocatedBytes >> 20);
+		}
+	}
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2016 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * BYU RapidSmith Tools is free software: you may redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * BYU RapidSmith Tools is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * A copy of the GNU General Public License is included with the BYU
+ * RapidSmith Tools. It can be found at doc/LICENSE.GPL3.TXT. You may
+ * also get a copy of the license at <http://www.gnu.org/licenses/>.
+ */
+package edu.byu.ece.rapidSmith.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses and decompresses the independent blocks of a {@link ChunkedDeviceFile}.
+ * Each codec is identified by a unique id which is stored with every block so the
+ * reader can select the correct codec.  Custom codecs can be made available to the
+ * reader through {@link #register(BlockCodec)}.
+ * <p>
+ * Codec instances must be thread safe as blocks are encoded and decoded in parallel.
+ */
+public abstract class BlockCodec {
+	private static final Map<Integer, BlockCodec> codecs = new ConcurrentHashMap<>();
+
+	/** Stores blocks without compression.  Useful for fast local disks. */
+	public static final BlockCodec NONE = register(new NoneCodec());
+	/** Compresses blocks with the default Deflate compression level. */
+	public static final BlockCodec DEFLATE = register(new DeflateCodec(Deflater.DEFAULT_COMPRESSION));
+
+	/**
+	 * Returns a Deflate codec using the specified compression level.  All Deflate
+	 * codecs share the same id since the level is not needed to decompress a block.
+	 *
+	 * @param level the compression level (0-9) or {@link Deflater#DEFAULT_COMPRESSION}
+	 * @return the Deflate codec
+	 */
+	public static BlockCodec deflate(int level) {
+		if (level != Deflater.DEFAULT_COMPRESSION && (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION))
+			throw new IllegalArgumentException("Illegal deflate level: " + level);
+		return new DeflateCodec(level);
+	}
+
+	/**
+	 * Makes the codec available for decoding blocks with its id.
+	 *
+	 * @param codec the codec to register
+	 * @return the registered codec
+	 * @throws IllegalArgumentException if another codec is already registered with the same id
+	 */
+	public static BlockCodec register(BlockCodec codec) {
+		BlockCodec existing = codecs.putIfAbsent(codec.getId(), codec);
+		if (existing != null && existing != codec)
+			throw new IllegalArgumentException("Codec id " + codec.getId() + " already in use");
+		return codec;
+	}
+
+	/**
+	 * Returns the registered codec with the given id or null if no such codec
+	 * has been registered.
+	 */
+	public static BlockCodec forId(int id) {
+		return codecs.get(id);
+	}
+
+	/**
+	 * @return the id stored with blocks encoded by this codec.  Must fit in a byte.
+	 */
+	public abstract int getId();
+
+	/**
+	 * Encodes the block.
+	 *
+	 * @param data the uncompressed block
+	 * @return the encoded block
+	 */
+	public abstract byte[] encode(byte[] data) throws IOException;
+
+	/**
+	 * Decodes the block.
+	 *
+	 * @param data the encoded block
+	 * @param decodedLength the length of the block before it was encoded
+	 * @return the decoded block
+	 */
+	public abstract byte[] decode(byte[] data, int decodedLength) throws IOException;
+
+	private static final class NoneCodec extends BlockCodec {
+		@Override
+		public int getId() {
+			return 0;
+		}
+
+		@Override
+		public byte[] encode(byte[] data) {
+			return data;
+		}
+
+		@Override
+		public byte[] decode(byte[] data, int decodedLength) throws IOException {
+			if (data.length != decodedLength)
+				throw new IOException("Block length mismatch");
+			return data;
+		}
+	}
+
+	private static final class DeflateCodec extends BlockCodec {
+		private final int level;
+
+		DeflateCodec(int level) {
+			this.level = level;
+		}
+
+		@Override
+		public int getId() {
+			return 1;
+		}
+
+		@Override
+		public byte[] encode(byte[] data) {
+			Deflater deflater = new Deflater(level);
+			try {
+				deflater.setInput(data);
+				deflater.finish();
+				ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+				byte[] buffer = new byte[64 * 1024];
+				while (!deflater.finished()) {
+					int n = deflater.deflate(buffer);
+					out.write(buffer, 0, n);
+				}
+				return out.toByteArray();
+			} finally {
+				deflater.end();
+			}
+		}
+
+		@Override
+		public byte[] decode(byte[] data, int decodedLength) throws IOException {
+			Inflater inflater = new Inflater();
+			try {
+				inflater.setInput(data);
+				byte[] decoded = new byte[decodedLength];
+				int offset = 0;
+				while (offset < decodedLength) {
+					int n = inflater.inflate(decoded, offset, decodedLength - offset);
+					if (n == 0 && (inflater.finished() || inflater.needsInput()))
+						break;
+					offset += n;
+				}
+				if (offset != decodedLength)
+					throw new IOException("Truncated block");
+				return decoded;
+			} catch (DataFormatException e) {
+				throw new IOException("Corrupt block", e);
+			} finally {
+				inflater.end();
+			}
+		}
+	}
+}
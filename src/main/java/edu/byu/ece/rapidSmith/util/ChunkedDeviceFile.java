@@ -0,0 +1,492 @@
+/*
+ * Copyright (c) 2016 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * BYU RapidSmith Tools is free software: you may redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * BYU RapidSmith Tools is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * A copy of the GNU General Public License is included with the BYU
+ * RapidSmith Tools. It can be found at doc/LICENSE.GPL3.TXT. You may
+ * also get a copy of the license at <http://www.gnu.org/licenses/>.
+ */
+package edu.byu.ece.rapidSmith.util;
+
+import com.caucho.hessian.io.Hessian2Input;
+import com.caucho.hessian.io.Hessian2Output;
+import edu.byu.ece.rapidSmith.device.*;
+import edu.byu.ece.rapidSmith.primitiveDefs.PrimitiveDefList;
+
+import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.zip.Deflater;
+
+/**
+ * Reads and writes device files in a chunked container format.  Rather than
+ * compressing the entire serialized device as a single stream, the device is
+ * split into independently compressed blocks (header, wire enumerator, site
+ * templates, route-throughs, the pooled wire connection maps and ranges of tile
+ * rows).  Blocks are encoded and decoded in parallel and then assembled into
+ * the device, so loading scales with the number of available cores.
+ * <p>
+ * The container is laid out as:
+ * <pre>
+ *   int    magic ("RSCD")
+ *   short  format version
+ *   UTF    device file version
+ *   int    block count
+ *   blocks: byte type, int index, byte codec, int decoded length,
+ *           int encoded length, encoded bytes
+ * </pre>
+ * Each block is a Hessian serialized object encoded with a {@link BlockCodec}.
+ * {@link FileTools#loadDevice(Path)} detects this format automatically.
+ */
+public final class ChunkedDeviceFile {
+	private static final int MAGIC = 0x52534344; // "RSCD"
+	private static final short FORMAT_VERSION = 2;
+
+	private static final byte HEADER_BLOCK = 0;
+	private static final byte WIRE_ENUMERATOR_BLOCK = 1;
+	private static final byte SITE_TEMPLATES_BLOCK = 2;
+	private static final byte ROUTE_THROUGHS_BLOCK = 3;
+	private static final byte WIRE_MAPS_BLOCK = 4;
+	private static final byte TILES_BLOCK = 5;
+
+	/** Approximate number of tiles stored in each tile block */
+	private static final int TILES_PER_BLOCK = 4096;
+	/** Number of pooled wire maps stored in each wire map block */
+	private static final int WIRE_MAPS_PER_BLOCK = 2048;
+
+	private ChunkedDeviceFile() { }
+
+	/**
+	 * Checks if the file at the specified path is a chunked device file.
+	 *
+	 * @param path path to the file to check
+	 * @return true if the file begins with the chunked device file magic number
+	 * @throws IOException if the file cannot be read
+	 */
+	public static boolean isChunkedFile(Path path) throws IOException {
+		try (DataInputStream in = new DataInputStream(Files.newInputStream(path))) {
+			return in.readInt() == MAGIC;
+		} catch (EOFException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Writes the device to the specified path using the default Deflate codec.
+	 *
+	 * @param device the device to write
+	 * @param path the path of the file to create
+	 * @throws IOException if an error occurs writing the file
+	 */
+	public static void write(Device device, Path path) throws IOException {
+		write(device, path, BlockCodec.DEFLATE);
+	}
+
+	/**
+	 * Writes the device to the specified path.  Each block is compressed using
+	 * the specified codec.
+	 *
+	 * @param device the device to write
+	 * @param path the path of the file to create
+	 * @param codec the codec to compress the blocks with
+	 * @throws IOException if an error occurs writing the file
+	 */
+	public static void write(Device device, Path path, BlockCodec codec) throws IOException {
+		Objects.requireNonNull(codec);
+		List<Block> blocks = split(device);
+
+		try {
+			blocks.parallelStream().forEach(b -> b.encode(codec));
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(Files.newOutputStream(path)))) {
+			out.writeInt(MAGIC);
+			out.writeShort(FORMAT_VERSION);
+			out.writeUTF(Device.LATEST_DEVICE_FILE_VERSION);
+			out.writeInt(blocks.size());
+			for (Block block : blocks) {
+				out.writeByte(block.type);
+				out.writeInt(block.index);
+				out.writeByte(block.codec);
+				out.writeInt(block.decodedLength);
+				out.writeInt(block.data.length);
+				out.write(block.data);
+			}
+		}
+	}
+
+	/**
+	 * Reads a device from a chunked device file.
+	 *
+	 * @param path path to the chunked device file
+	 * @return the loaded device
+	 * @throws IOException if the file cannot be read, is corrupt or contains a
+	 *   device of an unsupported version
+	 */
+	public static Device read(Path path) throws IOException {
+		List<Block> blocks = new ArrayList<>();
+		try (DataInputStream in = new DataInputStream(
+				new BufferedInputStream(Files.newInputStream(path)))) {
+			if (in.readInt() != MAGIC)
+				throw new IOException("Not a chunked device file: " + path);
+			short formatVersion = in.readShort();
+			if (formatVersion != FORMAT_VERSION)
+				throw new IOException("Unsupported chunked device file version " + formatVersion +
+						", expected version " + FORMAT_VERSION + ": " + path);
+			String deviceVersion = in.readUTF();
+			if (!deviceVersion.equals(Device.LATEST_DEVICE_FILE_VERSION))
+				throw new IOException("Unsupported device file version " + deviceVersion +
+						", expected version " + Device.LATEST_DEVICE_FILE_VERSION + ": " + path);
+
+			int numBlocks = in.readInt();
+			for (int i = 0; i < numBlocks; i++) {
+				Block block = new Block(in.readByte(), in.readInt(), null);
+				block.codec = in.readByte();
+				block.decodedLength = in.readInt();
+				block.data = new byte[in.readInt()];
+				in.readFully(block.data);
+				blocks.add(block);
+			}
+		}
+
+		try {
+			blocks.parallelStream().forEach(Block::decode);
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		return assemble(blocks);
+	}
+
+	/**
+	 * Divides the device into the blocks to write.  Wire maps are shared between
+	 * tiles, so each unique map is written once and tiles refer to the maps by
+	 * their index in the pool.
+	 */
+	private static List<Block> split(Device device) {
+		List<Block> blocks = new ArrayList<>();
+		int rows = device.getRows();
+		int columns = device.getColumns();
+
+		Map<WireHashMap, Integer> wireMapIndices = new IdentityHashMap<>();
+		List<WireHashMap> wireMaps = new ArrayList<>();
+		TileRecord[][] records = new TileRecord[rows][columns];
+		for (int row = 0; row < rows; row++) {
+			for (int col = 0; col < columns; col++) {
+				Tile tile = device.getTile(row, col);
+				TileRecord record = new TileRecord();
+				record.name = tile.getName();
+				record.type = tile.getType();
+				record.sites = tile.getSites();
+				record.wires = poolIndex(tile.getWireHashMap(), wireMapIndices, wireMaps);
+				record.reverseWires = poolIndex(tile.getReverseWireHashMap(), wireMapIndices, wireMaps);
+				records[row][col] = record;
+			}
+		}
+
+		DeviceHeader header = new DeviceHeader();
+		header.partName = device.getPartName();
+		header.family = device.getFamily();
+		header.rows = rows;
+		header.columns = columns;
+		// templates are normally used by a tile as well, but make sure they are written
+		for (int i = 0; i < wireMaps.size(); i++) {
+			if (wireMaps.get(i).getTemplate() != null)
+				poolIndex(wireMaps.get(i).getTemplate(), wireMapIndices, wireMaps);
+		}
+		header.wireMapCount = wireMaps.size();
+		header.wireMapTemplates = new int[wireMaps.size()];
+		for (int i = 0; i < wireMaps.size(); i++) {
+			WireHashMap template = wireMaps.get(i).getTemplate();
+			header.wireMapTemplates[i] = template == null ? -1 : wireMapIndices.get(template);
+		}
+		header.primitiveDefs = device.getPrimitiveDefs();
+		header.packagePins = new ArrayList<>(device.getPackagePins());
+		blocks.add(new Block(HEADER_BLOCK, 0, header));
+
+		blocks.add(new Block(WIRE_ENUMERATOR_BLOCK, 0, device.getWireEnumerator()));
+		blocks.add(new Block(SITE_TEMPLATES_BLOCK, 0, new ArrayList<>(device.getSiteTemplates().values())));
+		blocks.add(new Block(ROUTE_THROUGHS_BLOCK, 0, device.getRouteThroughMap()));
+
+		for (int start = 0; start < wireMaps.size(); start += WIRE_MAPS_PER_BLOCK) {
+			int end = Math.min(start + WIRE_MAPS_PER_BLOCK, wireMaps.size());
+			WireHashMap[] chunk = wireMaps.subList(start, end).toArray(new WireHashMap[0]);
+			blocks.add(new Block(WIRE_MAPS_BLOCK, start, chunk));
+		}
+
+		int rowsPerBlock = Math.max(1, TILES_PER_BLOCK / Math.max(1, columns));
+		for (int start = 0; start < rows; start += rowsPerBlock) {
+			int end = Math.min(start + rowsPerBlock, rows);
+			blocks.add(new Block(TILES_BLOCK, start, Arrays.copyOfRange(records, start, end)));
+		}
+		return blocks;
+	}
+
+	private static int poolIndex(
+		WireHashMap wires, Map<WireHashMap, Integer> indices, List<WireHashMap> pool
+	) {
+		if (wires == null)
+			return -1;
+		return indices.computeIfAbsent(wires, k -> {
+			pool.add(k);
+			return pool.size() - 1;
+		});
+	}
+
+	/**
+	 * Builds the device from the decoded blocks.  Mirrors the work done when
+	 * deserializing a device through Hessian.
+	 */
+	@SuppressWarnings("unchecked")
+	private static Device assemble(List<Block> blocks) throws IOException {
+		DeviceHeader header = null;
+		WireEnumerator we = null;
+		List<SiteTemplate> siteTemplates = null;
+		Map<Integer, Map<Integer, PIPRouteThrough>> routeThroughs = null;
+		for (Block block : blocks) {
+			switch (block.type) {
+				case HEADER_BLOCK:
+					header = (DeviceHeader) block.payload;
+					break;
+				case WIRE_ENUMERATOR_BLOCK:
+					we = (WireEnumerator) block.payload;
+					break;
+				case SITE_TEMPLATES_BLOCK:
+					siteTemplates = (List<SiteTemplate>) block.payload;
+					break;
+				case ROUTE_THROUGHS_BLOCK:
+					routeThroughs = (Map<Integer, Map<Integer, PIPRouteThrough>>) block.payload;
+					break;
+			}
+		}
+		if (header == null || we == null || siteTemplates == null)
+			throw new IOException("Chunked device file is missing required blocks");
+
+		WireHashMap[] wireMaps = new WireHashMap[header.wireMapCount];
+		Tile[][] tiles = new Tile[header.rows][header.columns];
+		int wireMapChunks = 0;
+		for (Block block : blocks) {
+			if (block.type == WIRE_MAPS_BLOCK) {
+				WireHashMap[] chunk = (WireHashMap[]) block.payload;
+				System.arraycopy(chunk, 0, wireMaps, block.index, chunk.length);
+				wireMapChunks++;
+			}
+		}
+		// connection arrays and templates are only shared within a block, restore
+		// the pooling between blocks
+		if (wireMapChunks > 1) {
+			internConnections(wireMaps);
+			if (header.wireMapTemplates != null) {
+				for (int i = 0; i < wireMaps.length; i++) {
+					if (header.wireMapTemplates[i] != -1)
+						wireMaps[i].replaceTemplate(wireMaps[header.wireMapTemplates[i]]);
+				}
+			}
+		}
+
+		for (Block block : blocks) {
+			if (block.type != TILES_BLOCK)
+				continue;
+			TileRecord[][] records = (TileRecord[][]) block.payload;
+			for (int i = 0; i < records.length; i++) {
+				for (int col = 0; col < header.columns; col++) {
+					tiles[block.index + i][col] = records[i][col].toTile(wireMaps);
+				}
+			}
+		}
+
+		Device device = new Device();
+		device.setPartName(header.partName);
+		device.setFamily(header.family);
+		device.setTileArray(tiles);
+		for (int row = 0; row < header.rows; row++) {
+			for (int col = 0; col < header.columns; col++) {
+				Tile tile = tiles[row][col];
+				if (tile == null)
+					throw new IOException("Chunked device file is missing tile blocks");
+				tile.setDevice(device);
+				tile.setRow(row);
+				tile.setColumn(col);
+			}
+		}
+		device.setRouteThroughMap(routeThroughs);
+		Map<SiteType, SiteTemplate> templateMap = new HashMap<>();
+		for (SiteTemplate template : siteTemplates) {
+			templateMap.put(template.getType(), template);
+		}
+		device.setSiteTemplates(templateMap);
+		device.setWireEnumerator(we);
+		device.setPrimitiveDefs(header.primitiveDefs);
+
+		device.constructTileMap();
+		device.constructDependentResources();
+		for (PackagePin packagePin : header.packagePins) {
+			device.addPackagePin(packagePin);
+		}
+		return device;
+	}
+
+	private static void internConnections(WireHashMap[] wireMaps) {
+		Map<List<WireConnection>, WireConnection[]> pool = new HashMap<>();
+		for (WireHashMap wireMap : wireMaps)
+			wireMap.internConnections(pool);
+	}
+
+	/**
+	 * Converts existing device files into the chunked format without having to
+	 * regenerate the device.
+	 * <p>
+	 * Usage: ChunkedDeviceFile [-codec none|deflate[:level]] &lt;input&gt; [output]
+	 */
+	public static void main(String[] args) throws IOException {
+		BlockCodec codec = BlockCodec.DEFLATE;
+		List<String> files = new ArrayList<>();
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-codec") && i + 1 < args.length) {
+				codec = parseCodec(args[++i]);
+			} else {
+				files.add(args[i]);
+			}
+		}
+		if (files.isEmpty() || files.size() > 2) {
+			System.err.println("Usage: ChunkedDeviceFile [-codec none|deflate[:level]] <input> [output]");
+			System.exit(1);
+		}
+
+		Path input = Paths.get(files.get(0));
+		Path output = files.size() == 2 ? Paths.get(files.get(1)) : input;
+		Device device = FileTools.loadDevice(input);
+		if (device == null) {
+			System.err.println("Could not load device file " + input);
+			System.exit(1);
+		}
+
+		// write to a unique file in the same directory and move it into place so
+		// a failed conversion never leaves a partially written device file,
+		// including when the input is converted in place
+		Path dir = output.toAbsolutePath().getParent();
+		Path tmp = Files.createTempFile(dir, output.getFileName().toString(), ".tmp");
+		try {
+			write(device, tmp, codec);
+			try {
+				Files.move(tmp, output, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tmp, output, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+
+	private static BlockCodec parseCodec(String name) {
+		if (name.equals("none"))
+			return BlockCodec.NONE;
+		if (name.equals("deflate"))
+			return BlockCodec.DEFLATE;
+		if (name.startsWith("deflate:"))
+			return BlockCodec.deflate(Integer.parseInt(name.substring("deflate:".length())));
+		throw new IllegalArgumentException("Unknown codec: " + name + ", expected none or deflate[:" +
+			Deflater.NO_COMPRESSION + "-" + Deflater.BEST_COMPRESSION + "]");
+	}
+
+	private static final class Block {
+		private final byte type;
+		private final int index;
+		private Object payload;
+		private byte codec;
+		private int decodedLength;
+		private byte[] data;
+
+		Block(byte type, int index, Object payload) {
+			this.type = type;
+			this.index = index;
+			this.payload = payload;
+		}
+
+		void encode(BlockCodec codec) {
+			try {
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				Hessian2Output hos = new Hessian2Output(bytes);
+				hos.writeObject(payload);
+				hos.close();
+				byte[] raw = bytes.toByteArray();
+				this.codec = (byte) codec.getId();
+				this.decodedLength = raw.length;
+				this.data = codec.encode(raw);
+				this.payload = null;
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		void decode() {
+			try {
+				BlockCodec blockCodec = BlockCodec.forId(codec);
+				if (blockCodec == null)
+					throw new IOException("Unknown block codec: " + codec);
+				byte[] raw = blockCodec.decode(data, decodedLength);
+				Hessian2Input his = new Hessian2Input(new ByteArrayInputStream(raw));
+				this.payload = his.readObject();
+				his.close();
+				this.data = null;
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	private static final class DeviceHeader implements Serializable {
+		private static final long serialVersionUID = 4236207931186441712L;
+		private String partName;
+		private FamilyType family;
+		private int rows;
+		private int columns;
+		private int wireMapCount;
+		/** Index of the template of each wire map, -1 for maps without a template */
+		private int[] wireMapTemplates;
+		private PrimitiveDefList primitiveDefs;
+		private ArrayList<PackagePin> packagePins;
+	}
+
+	private static final class TileRecord implements Serializable {
+		private static final long serialVersionUID = -2165734395466209548L;
+		private String name;
+		private TileType type;
+		private Site[] sites;
+		private int wires;
+		private int reverseWires;
+
+		Tile toTile(WireHashMap[] wireMaps) {
+			Tile tile = new Tile();
+			tile.setName(name);
+			tile.setType(type);
+			tile.setSites(sites);
+			if (sites != null) {
+				for (int i = 0; i < sites.length; i++) {
+					sites[i].setIndex(i);
+					sites[i].setTile(tile);
+				}
+			}
+			tile.setWireHashMap(wires == -1 ? null : wireMaps[wires]);
+			tile.setReverseWireConnections(reverseWires == -1 ? null : wireMaps[reverseWires]);
+			return tile;
+		}
+	}
+}
@@ -46,6 +46,11 @@ import java.util.stream.Collectors;
  * The primary method for this class is the diffDesigns method but support is
  * added for diffing instances and nets as well.  The main method prints the
  * differences between the two designs on the command line.
+ * <p>
+ * When diffing designs, structural fingerprints of every instance and net of
+ * both designs are first computed in parallel.  Matched instances and nets with
+ * equal fingerprints are skipped and only the remaining pairs are compared in
+ * detail.  Fingerprinting can be disabled with {@link #setUseFingerprints(boolean)}.
  */
 public class DesignDiffer {
 	public enum MatchInstanceMethod {
@@ -60,12 +65,14 @@ public class DesignDiffer {
 	private MatchNetMethod matchNetMethod;
 	private boolean ignoreBelProps;
 	private boolean ignoreInstProps;
+	private boolean useFingerprints;
 
 	public DesignDiffer() {
 		matchInstanceMethod = MatchInstanceMethod.BY_NAME;
 		matchNetMethod = MatchNetMethod.BY_NAME;
 		ignoreBelProps = false;
 		ignoreInstProps = false;
+		useFingerprints = true;
 	}
 
 	public void setMatchInstanceMethod(MatchInstanceMethod matchInstanceMethod) {
@@ -84,6 +91,14 @@ public class DesignDiffer {
 		this.ignoreInstProps = ignoreInstProp;
 	}
 
+	/**
+	 * Sets whether fingerprints are used to skip equivalent instances and nets.
+	 * Defaults to true.
+	 */
+	public void setUseFingerprints(boolean useFingerprints) {
+		this.useFingerprints = useFingerprints;
+	}
+
 	/**
 	 * Compares two design and returns the differences.
 	 *
@@ -164,6 +179,13 @@ public class DesignDiffer {
 			}
 		}
 
+		Map<XdlInstance, Long> instPrints = null;
+		Map<XdlNet, Long> netPrints = null;
+		if (useFingerprints) {
+			instPrints = fingerprintInstances(design1, design2);
+			netPrints = fingerprintNets(design1, design2);
+		}
+
 		// Compare instances
 		for (XdlInstance inst1 : design1.getInstances()) {
 			XdlInstance inst2 = null;
@@ -179,8 +201,11 @@ public class DesignDiffer {
 				diffs.add(Difference.subtraction("instance", inst1.getName()));
 				continue;
 			}
+			if (instPrints != null && instPrints.get(inst1).longValue() == instPrints.get(inst2).longValue())
+				continue;
 			DifferenceTree instTree = diffInstances(inst1, inst2);
-			diffs.addChild(instTree);
+			if (!instTree.isEmpty())
+				diffs.addChild(instTree);
 		}
 		for (XdlInstance inst2 : design2.getInstances()) {
 			switch (matchInstanceMethod) {
@@ -224,6 +249,8 @@ public class DesignDiffer {
 				diffs.add(Difference.subtraction("net", net1.getName()));
 				continue;
 			}
+			if (netPrints != null && netPrints.get(net1).longValue() == netPrints.get(net2).longValue())
+				continue;
 			DifferenceTree netTree = diffNets(net1, net2);
 			if (!netTree.isEmpty())
 				diffs.addChild(netTree);
@@ -233,13 +260,14 @@ public class DesignDiffer {
 				for (XdlNet net2 : design2.getNets()) {
 					if (design1.getNet(net2.getName()) == null)
 						diffs.add(Difference.addition("net", net2.getName()));
-					break;
 				}
+				break;
 			case BY_SOURCE_PIN:
 				//noinspection ConstantConditions
 				for (XdlNet net2 : netSourcePinMap.values()) {
 					diffs.add(Difference.addition("net", net2.getName()));
 				}
+				break;
 		}
 
 		// compare modules
@@ -254,7 +282,7 @@ public class DesignDiffer {
 				diffs.addChild(modTree);
 		}
 		for (XdlModule module2 : design2.getModules()) {
-			if (design1.getModuleInstance(module2.getName()) == null)
+			if (design1.getModule(module2.getName()) == null)
 				diffs.add(Difference.addition("module", module2.getName()));
 		}
 
@@ -277,6 +305,89 @@ public class DesignDiffer {
 		return diffs;
 	}
 
+	private Map<XdlInstance, Long> fingerprintInstances(XdlDesign design1, XdlDesign design2) {
+		Map<XdlInstance, Long> prints = new IdentityHashMap<>();
+		prints.putAll(design1.getInstances().parallelStream()
+				.collect(Collectors.toMap(Function.identity(), this::fingerprint)));
+		prints.putAll(design2.getInstances().parallelStream()
+				.collect(Collectors.toMap(Function.identity(), this::fingerprint)));
+		return prints;
+	}
+
+	private Map<XdlNet, Long> fingerprintNets(XdlDesign design1, XdlDesign design2) {
+		Map<XdlNet, Long> prints = new IdentityHashMap<>();
+		prints.putAll(design1.getNets().parallelStream()
+				.collect(Collectors.toMap(Function.identity(), this::fingerprint)));
+		prints.putAll(design2.getNets().parallelStream()
+				.collect(Collectors.toMap(Function.identity(), this::fingerprint)));
+		return prints;
+	}
+
+	/**
+	 * Fingerprints every property of the instance compared by
+	 * {@link #diffInstances(XdlInstance, XdlInstance)}.
+	 */
+	private long fingerprint(XdlInstance inst) {
+		long h = Fingerprint.mix(Fingerprint.SEED, inst.getName());
+		h = Fingerprint.mix(h, inst.getType().name());
+		h = Fingerprint.mix(h, String.valueOf(inst.getBonded()));
+		h = Fingerprint.mix(h, inst.isPlaced() ? inst.getSite().getName() : null);
+
+		long pins = 0;
+		for (XdlPin pin : inst.getPins()) {
+			long p = Fingerprint.mix(Fingerprint.SEED, pin.getName());
+			pins += Fingerprint.finish(Fingerprint.mix(p, String.valueOf(pin.getDirection())));
+		}
+		h = Fingerprint.mix(h, pins);
+
+		long attrs = 0;
+		for (XdlAttribute attr : inst.getAttributes()) {
+			if (ignoreBelProps && attr.getPhysicalName().equals("_BEL_PROP"))
+				continue;
+			if (ignoreInstProps && attr.getPhysicalName().equals("_INST_PROP"))
+				continue;
+			attrs += fingerprint(attr);
+		}
+		return Fingerprint.mix(h, attrs);
+	}
+
+	/**
+	 * Fingerprints every property of the net compared by
+	 * {@link #diffNets(XdlNet, XdlNet)}.  PIPs are fingerprinted independent of
+	 * their direction to match the equality of {@link PIP}.
+	 */
+	private long fingerprint(XdlNet net) {
+		long h = Fingerprint.mix(Fingerprint.SEED, net.getName());
+		h = Fingerprint.mix(h, net.getType().toString());
+		h = Fingerprint.mix(h, net.getSource() == null ? null : net.getSource().getName());
+
+		long attrs = 0;
+		if (net.getAttributes() != null) {
+			for (XdlAttribute attr : net.getAttributes())
+				attrs += fingerprint(attr);
+		}
+		h = Fingerprint.mix(h, attrs);
+
+		long pins = 0;
+		for (XdlPin pin : net.getPins())
+			pins += Fingerprint.finish(Fingerprint.of(new PinId(pin).toString()));
+		h = Fingerprint.mix(h, pins);
+
+		long pips = 0;
+		for (PIP pip : net.getPIPs()) {
+			long wires = Fingerprint.finish(Fingerprint.of(pip.getStartWire().getName())) +
+					Fingerprint.finish(Fingerprint.of(pip.getEndWire().getName()));
+			pips += Fingerprint.finish(Fingerprint.mix(Fingerprint.of(pip.getTile().getName()), wires));
+		}
+		return Fingerprint.mix(h, pips);
+	}
+
+	private static long fingerprint(XdlAttribute attr) {
+		long h = Fingerprint.mix(Fingerprint.SEED, attr.getPhysicalName());
+		h = Fingerprint.mix(h, attr.getLogicalName());
+		return Fingerprint.finish(Fingerprint.mix(h, attr.getValue()));
+	}
+
 	private DifferenceTree diffModules(XdlModule mod1, XdlModule mod2) {
 		DifferenceTree diffs = new DifferenceTree(mod1.getName(), "module");
 
@@ -334,7 +445,8 @@ public class DesignDiffer {
 				continue;
 			}
 			DifferenceTree instTree = diffInstances(inst1, inst2);
-			diffs.addChild(instTree);
+			if (!instTree.isEmpty())
+				diffs.addChild(instTree);
 		}
 		for (XdlInstance inst2 : mod2.getInstances()) {
 			if (mod1.getInstance(inst2.getName()) == null)
@@ -362,7 +474,7 @@ public class DesignDiffer {
 
 	private DifferenceTree diffModuleInstances(XdlModuleInstance mi1, XdlModuleInstance mi2) {
 		DifferenceTree diffs = new DifferenceTree(mi1.getName(), "module instance");
-		if (!mi1.getModule().getName().equals(mi2.getName()))
+		if (!mi1.getModule().getName().equals(mi2.getModule().getName()))
 			diffs.add(Difference.change("module", mi1.getModule().getName(), mi2.getModule().getName()));
 
 		Map<String, XdlInstance> instances1 = mi1.getInstances().stream()
@@ -501,7 +613,8 @@ public class DesignDiffer {
 			Map<String, XdlAttribute> attrs2 = net2.getAttributes().stream()
 					.collect(Collectors.toMap(XdlAttribute::getPhysicalName, Function.identity()));
 			for (XdlAttribute attr1 : net1.getAttributes()) {
-				XdlAttribute attr2 = attrs2.get(attr1.getPhysicalName());
+				// test if it exists and remove it simultaneously
+				XdlAttribute attr2 = attrs2.remove(attr1.getPhysicalName());
 				if (attr2 == null) {
 					diffs.add(Difference.subtraction("attribute", attr1.getPhysicalName()));
 					continue;
@@ -30,9 +30,18 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
- *
+ * Compares two devices, usually the same part built by different versions of
+ * the device files creator, and reports their differences.
+ * <p>
+ * By default, the differ first computes structural fingerprints of the site
+ * templates, tiles and wire hash maps of both devices in parallel.  Fingerprints
+ * are computed from wire and site names rather than enumerations so they are
+ * comparable across devices.  Only objects whose fingerprints differ are
+ * compared in detail.  The fingerprints can be disabled with
+ * {@link #setUseFingerprints(boolean)} to compare every object.
  */
 public class DeviceDiffer {
 	private Device deviceGold;
@@ -40,8 +49,11 @@ public class DeviceDiffer {
 	private WireEnumerator weGold;
 	private WireEnumerator weTest;
 	private boolean verbose;
+	private boolean useFingerprints = true;
 
 	private HashSet<Pair> diffedWireHashMaps;
+	private Prints goldPrints;
+	private Prints testPrints;
 
 	private final class Pair {
 		private final WireHashMap gold;
@@ -58,6 +70,10 @@ public class DeviceDiffer {
 			Pair obj = (Pair) o;
 			return obj.gold == gold && obj.test == test;
 		}
+
+		public int hashCode() {
+			return 31 * System.identityHashCode(gold) + System.identityHashCode(test);
+		}
 	}
 
 	private DifferenceList differences;
@@ -80,9 +96,21 @@ public class DeviceDiffer {
 		this.weTest = device.getWireEnumerator();
 	}
 
+	/**
+	 * Sets whether fingerprints are used to skip equivalent tiles, site
+	 * templates and wire hash maps.  Defaults to true.
+	 */
+	public void setUseFingerprints(boolean useFingerprints) {
+		this.useFingerprints = useFingerprints;
+	}
+
 	public DifferenceList diff() {
 		diffedWireHashMaps = new HashSet<>();
 		differences = new DifferenceList("device", deviceGold.getPartName(), verbose);
+		if (useFingerprints) {
+			goldPrints = new Prints(deviceGold);
+			testPrints = new Prints(deviceTest);
+		}
 
 		if (!deviceGold.getPartName().equals(deviceTest.getPartName())) {
 			differences.add("name", deviceGold.getPartName(), deviceTest.getPartName());
@@ -96,6 +124,8 @@ public class DeviceDiffer {
 			differences.add("columns", "" + deviceGold.getColumns(), "" + deviceTest.getColumns());
 		}
 
+		diffSiteTemplates();
+
 		// diff tileMap
 		diffTileMap();
 
@@ -127,9 +157,54 @@ public class DeviceDiffer {
 //		}
 
 
+		goldPrints = null;
+		testPrints = null;
 		return differences;
 	}
 
+	private void diffSiteTemplates() {
+		Map<String, SiteTemplate> unseenTemplates = new HashMap<>();
+		if (deviceTest.getSiteTemplates() != null) {
+			for (SiteTemplate template : deviceTest.getSiteTemplates().values())
+				unseenTemplates.put(template.getType().name(), template);
+		}
+		if (deviceGold.getSiteTemplates() != null) {
+			for (SiteTemplate gold : deviceGold.getSiteTemplates().values()) {
+				String typeName = gold.getType().name();
+				SiteTemplate test = unseenTemplates.remove(typeName);
+				if (test == null) {
+					differences.add("site_template", typeName, "none");
+					continue;
+				}
+				if (useFingerprints &&
+						goldPrints.templates.get(gold).longValue() ==
+						testPrints.templates.get(test).longValue()) {
+					continue;
+				}
+				differences.down("site_template", typeName);
+				diffNames("bel", gold.getBelTemplates().keySet(), test.getBelTemplates().keySet());
+				diffNames("source", gold.getSources().keySet(), test.getSources().keySet());
+				diffNames("sink", gold.getSinks().keySet(), test.getSinks().keySet());
+				diffWireHashMaps(gold.getRouting(), test.getRouting());
+				differences.up();
+			}
+		}
+		for (String typeName : unseenTemplates.keySet()) {
+			differences.add("site_template", "none", typeName);
+		}
+	}
+
+	private void diffNames(String property, Set<String> gold, Set<String> test) {
+		for (String name : gold) {
+			if (!test.contains(name))
+				differences.add(property, name, "none");
+		}
+		for (String name : test) {
+			if (!gold.contains(name))
+				differences.add(property, "none", name);
+		}
+	}
+
 	private void diffTileMap() {
 		Set<String> unseenTiles = new HashSet<>(deviceTest.getTileMap().keySet());
 		for (String tileName : deviceGold.getTileMap().keySet()) {
@@ -137,6 +212,10 @@ public class DeviceDiffer {
 				differences.add("tile", tileName, "none");
 				continue;
 			}
+			if (useFingerprints && goldPrints.tiles.get(tileName).longValue() ==
+					testPrints.tiles.get(tileName).longValue()) {
+				continue;
+			}
 			differences.down("tile", tileName);
 			diffTiles(deviceGold.getTile(tileName), deviceTest.getTile(tileName));
 			differences.up();
@@ -162,7 +241,10 @@ public class DeviceDiffer {
 		diffSites(gold, test);
 		diffTilesSources(gold, test);
 		diffTileSinks(gold, test);
-		diffWireHashMaps(gold.getWireHashMap(), test.getWireHashMap());
+		if (!useFingerprints || goldPrints.wireHashMaps.get(gold.getWireHashMap()).longValue() !=
+				testPrints.wireHashMaps.get(test.getWireHashMap()).longValue()) {
+			diffWireHashMaps(gold.getWireHashMap(), test.getWireHashMap());
+		}
 	}
 
 	private void diffSites(Tile gold, Tile test) {
@@ -416,6 +498,104 @@ public class DeviceDiffer {
 		}
 	}
 
+	/**
+	 * The fingerprints of the site templates, tiles and wire hash maps of a device.
+	 * Wire hash maps are shared between tiles, so each distinct map is only
+	 * fingerprinted once.
+	 */
+	private static final class Prints {
+		private final long[] wireNames;
+		private final Map<WireHashMap, Long> wireHashMaps = new IdentityHashMap<>();
+		private final Map<SiteTemplate, Long> templates = new IdentityHashMap<>();
+		private final Map<String, Long> tiles;
+
+		Prints(Device device) {
+			wireNames = Arrays.stream(device.getWireEnumerator().getWires())
+					.parallel()
+					.mapToLong(Fingerprint::of)
+					.toArray();
+
+			Set<WireHashMap> distinct = Collections.newSetFromMap(new IdentityHashMap<>());
+			distinct.add(null);
+			for (Tile tile : device.getTileMap().values())
+				distinct.add(tile.getWireHashMap());
+			if (device.getSiteTemplates() != null) {
+				for (SiteTemplate template : device.getSiteTemplates().values())
+					distinct.add(template.getRouting());
+			}
+			WireHashMap[] maps = distinct.toArray(new WireHashMap[distinct.size()]);
+			long[] mapPrints = new long[maps.length];
+			IntStream.range(0, maps.length).parallel()
+					.forEach(i -> mapPrints[i] = fingerprint(maps[i]));
+			for (int i = 0; i < maps.length; i++)
+				wireHashMaps.put(maps[i], mapPrints[i]);
+
+			if (device.getSiteTemplates() != null) {
+				for (SiteTemplate template : device.getSiteTemplates().values())
+					templates.put(template, fingerprint(template));
+			}
+
+			tiles = device.getTileMap().values().parallelStream()
+					.collect(Collectors.toMap(Tile::getName, this::fingerprint));
+		}
+
+		private long fingerprint(WireHashMap whm) {
+			if (whm == null)
+				return 0;
+			long h = 0;
+			for (int source : whm.keySet()) {
+				long connections = 0;
+				for (WireConnection wc : whm.get(source)) {
+					long c = Fingerprint.mix(Fingerprint.SEED, wireNames[wc.getWire()]);
+					c = Fingerprint.mix(c, wc.getRowOffset());
+					c = Fingerprint.mix(c, wc.getColumnOffset());
+					connections += Fingerprint.finish(Fingerprint.mix(c, wc.isPIP()));
+				}
+				h += Fingerprint.finish(Fingerprint.mix(wireNames[source], connections));
+			}
+			return h;
+		}
+
+		private long fingerprint(SiteTemplate template) {
+			long h = Fingerprint.mix(Fingerprint.SEED, template.getType().name());
+			h = Fingerprint.mix(h, names(template.getBelTemplates().keySet()));
+			h = Fingerprint.mix(h, names(template.getSources().keySet()));
+			h = Fingerprint.mix(h, names(template.getSinks().keySet()));
+			return Fingerprint.mix(h, wireHashMaps.get(template.getRouting()));
+		}
+
+		private long fingerprint(Tile tile) {
+			long h = Fingerprint.mix(Fingerprint.SEED, tile.getType().name());
+			h = Fingerprint.mix(h, tile.getRow());
+			h = Fingerprint.mix(h, tile.getColumn());
+			if (tile.getSites() != null) {
+				for (Site site : tile.getSites()) {
+					h = Fingerprint.mix(h, site.getName());
+					h = Fingerprint.mix(h, site.getType().name());
+				}
+			}
+			h = Fingerprint.mix(h, wires(tile.getSources()));
+			h = Fingerprint.mix(h, wires(tile.getSinks()));
+			return Fingerprint.mix(h, wireHashMaps.get(tile.getWireHashMap()));
+		}
+
+		private long wires(Collection<Wire> wires) {
+			long h = 0;
+			if (wires != null) {
+				for (Wire wire : wires)
+					h += Fingerprint.finish(wireNames[wire.getWireEnum()]);
+			}
+			return h;
+		}
+
+		private static long names(Collection<String> names) {
+			long h = 0;
+			for (String name : names)
+				h += Fingerprint.finish(Fingerprint.of(name));
+			return h;
+		}
+	}
+
 	public static class DifferenceList {
 		private boolean verbose;
 		private DifferenceList curLevel;
@@ -109,6 +109,10 @@ public class DeviceInstaller {
 
 			try {
 				DeviceFilesCreator creator = new DeviceFilesCreator(retriever);
+				Integer budget = options.getInt("memory_budget");
+				String spillDir = options.getString("spill_dir");
+				if (budget != null && budget > 0)
+					creator.setMemoryBudget(budget * 1024L * 1024L, spillDir == null ? null : Paths.get(spillDir));
 				creator.createDevice();
 			} catch (IOException e) {
 				System.err.println("Encountered error handling file");
@@ -136,6 +140,11 @@ public class DeviceInstaller {
 		parser.addArgument("--ignore_disclaimer")
 				.action(Arguments.storeTrue())
 				.help("Ignore the disclaimer");
+		parser.addArgument("--memory_budget")
+				.type(Integer.class)
+				.help("Megabytes of intermediate wire tables to keep in memory before spilling to disk");
+		parser.addArgument("--spill_dir")
+				.help("Directory for temporary files when a memory budget is set");
 		parser.addArgument("device")
 				.nargs("+")
 				.help("XDLRC file or device");
@@ -360,8 +360,25 @@ public class FileTools {
 		}
 	}
 
+	/**
+	 * Writes the device to a chunked device file whose blocks are compressed
+	 * independently with the specified codec.  See {@link ChunkedDeviceFile}.
+	 */
+	public static void writeChunkedDeviceFile(Device device, Path path, BlockCodec codec) throws IOException {
+		ChunkedDeviceFile.write(device, path, codec);
+	}
+
+	/**
+	 * Loads the device file at the specified path.  Both the single stream Hessian
+	 * format and the chunked format of {@link ChunkedDeviceFile} are supported.
+	 *
+	 * @param filePath path to the device file
+	 * @return the loaded device or null if the device could not be loaded
+	 */
 	public static Device loadDevice(Path filePath) {
-		try {
+		try (Metrics.Phase ignored = Metrics.phase("device.load")) {
+			if (ChunkedDeviceFile.isChunkedFile(filePath))
+				return ChunkedDeviceFile.read(filePath);
 			return (Device) getCompactReader(filePath).readObject();
 		} catch (IOException e) {
 			return null;
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2016 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * BYU RapidSmith Tools is free software: you may redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * BYU RapidSmith Tools is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * A copy of the GNU General Public License is included with the BYU
+ * RapidSmith Tools. It can be found at doc/LICENSE.GPL3.TXT. You may
+ * also get a copy of the license at <http://www.gnu.org/licenses/>.
+ */
+
+package edu.byu.ece.rapidSmith.util;
+
+/**
+ * Helpers for building 64-bit structural fingerprints.  The differs compute a
+ * fingerprint for each object being compared and only perform the detailed
+ * comparison on objects whose fingerprints do not match.
+ * <p>
+ * Ordered contents are combined with {@link #mix(long, long)}.  Unordered
+ * contents (sets and multisets) are combined by summing the {@link #finish(long)
+ * finished} fingerprints of the elements so that the result does not depend on
+ * iteration order.
+ */
+public final class Fingerprint {
+	public static final long SEED = 0xcbf29ce484222325L;
+	private static final long PRIME = 0x100000001b3L;
+
+	private Fingerprint() { }
+
+	/** Returns the fingerprint of a string, or of null. */
+	public static long of(String s) {
+		if (s == null)
+			return 0;
+		long h = SEED;
+		for (int i = 0; i < s.length(); i++) {
+			h ^= s.charAt(i);
+			h *= PRIME;
+		}
+		return h;
+	}
+
+	/** Adds the next ordered value to the fingerprint {@code h}. */
+	public static long mix(long h, long value) {
+		return (h ^ finish(value)) * PRIME;
+	}
+
+	/** Adds the next ordered string to the fingerprint {@code h}. */
+	public static long mix(long h, String value) {
+		return mix(h, of(value));
+	}
+
+	/** Adds the next ordered boolean to the fingerprint {@code h}. */
+	public static long mix(long h, boolean value) {
+		return mix(h, value ? 1231 : 1237);
+	}
+
+	/** Scrambles the bits of a fingerprint (the murmur3 finalizer). */
+	public static long finish(long h) {
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright (c) 2016 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * BYU RapidSmith Tools is free software: you may redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * BYU RapidSmith Tools is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * A copy of the GNU General Public License is included with the BYU
+ * RapidSmith Tools. It can be found at doc/LICENSE.GPL3.TXT. You may
+ * also get a copy of the license at <http://www.gnu.org/licenses/>.
+ */
+package edu.byu.ece.rapidSmith.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lightweight timers and counters for the hot paths of RapidSmith.
+ * <p>
+ * Metrics are disabled by default and are enabled with {@link #setEnabled(boolean)}
+ * or by running with {@code -Drapidsmith.metrics=true}.  When disabled, starting a
+ * phase returns a shared no-op object and incrementing a counter is a single
+ * volatile read, so instrumentation can be left in place.
+ * <p>
+ * Phases are timed with try-with-resources:
+ * <pre>{@code
+ * try (Metrics.Phase ignored = Metrics.phase("rscp.routing")) {
+ *     ...
+ * }
+ * }</pre>
+ * For each phase name the number of runs, the total and maximum wall clock time and
+ * the bytes allocated by the running thread are recorded.  Counters should be held in
+ * static fields so the lookup is done once:
+ * <pre>{@code
+ * private static final Metrics.Counter NETS = Metrics.counter("xdc.routing.nets");
+ * ...
+ * NETS.increment();
+ * }</pre>
+ * The collected metrics are exported with {@link #toJson()}.  Other sinks, such as
+ * JFR events on JVMs that support them, can be attached with
+ * {@link #addListener(Listener)}.
+ */
+public final class Metrics {
+	private static volatile boolean enabled = Boolean.getBoolean("rapidsmith.metrics");
+
+	private static final Map<String, PhaseStats> phases = new ConcurrentHashMap<>();
+	private static final Map<String, Counter> counters = new ConcurrentHashMap<>();
+	private static final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+	private Metrics() { }
+
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	public static void setEnabled(boolean enabled) {
+		Metrics.enabled = enabled;
+	}
+
+	/**
+	 * Receives each completed phase.  Listeners are called on the thread that ran the phase.
+	 */
+	@FunctionalInterface
+	public interface Listener {
+		void phaseCompleted(String name, long nanos, long allocatedBytes);
+	}
+
+	public static void addListener(Listener listener) {
+		listeners.add(listener);
+	}
+
+	public static void removeListener(Listener listener) {
+		listeners.remove(listener);
+	}
+
+	/* ****************
+	 *  Phases
+	 * ****************/
+
+	/**
+	 * Starts timing a phase.  The phase is recorded when the returned object is closed.
+	 */
+	public static Phase phase(String name) {
+		if (!enabled)
+			return Phase.DISABLED;
+		return new Phase(name);
+	}
+
+	/**
+	 * A running phase.  Closing the phase records it.
+	 */
+	public static final class Phase implements AutoCloseable {
+		private static final Phase DISABLED = new Phase();
+
+		private final String name;
+		private final long start;
+		private final long startAllocated;
+
+		private Phase() {
+			this.name = null;
+			this.start = 0;
+			this.startAllocated = 0;
+		}
+
+		private Phase(String name) {
+			this.name = name;
+			this.startAllocated = getThreadAllocatedBytes();
+			this.start = System.nanoTime();
+		}
+
+		@Override
+		public void close() {
+			if (name == null)
+				return;
+			long nanos = System.nanoTime() - start;
+			long allocated = startAllocated < 0 ? -1 : getThreadAllocatedBytes() - startAllocated;
+			phases.computeIfAbsent(name, k -> new PhaseStats()).record(nanos, allocated);
+			for (Listener listener : listeners)
+				listener.phaseCompleted(name, nanos, allocated);
+		}
+	}
+
+	/**
+	 * Accumulated statistics of all runs of a phase.
+	 */
+	public static final class PhaseStats {
+		private long count;
+		private long totalNanos;
+		private long maxNanos;
+		private long allocatedBytes;
+
+		private synchronized void record(long nanos, long allocated) {
+			count++;
+			totalNanos += nanos;
+			maxNanos = Math.max(maxNanos, nanos);
+			if (allocated > 0)
+				allocatedBytes += allocated;
+		}
+
+		public synchronized long getCount() {
+			return count;
+		}
+
+		public synchronized long getTotalNanos() {
+			return totalNanos;
+		}
+
+		public synchronized long getMaxNanos() {
+			return maxNanos;
+		}
+
+		/** Returns the bytes allocated by the threads running the phase, or 0 if not supported. */
+		public synchronized long getAllocatedBytes() {
+			return allocatedBytes;
+		}
+	}
+
+	/* ****************
+	 *  Counters
+	 * ****************/
+
+	/**
+	 * Returns the counter with the specified name, creating it if it does not exist.
+	 */
+	public static Counter counter(String name) {
+		return counters.computeIfAbsent(name, k -> new Counter());
+	}
+
+	/**
+	 * A named event counter.  Updates are ignored while metrics are disabled.
+	 */
+	public static final class Counter {
+		private final LongAdder value = new LongAdder();
+
+		private Counter() { }
+
+		public void increment() {
+			if (enabled)
+				value.increment();
+		}
+
+		public void add(long amount) {
+			if (enabled)
+				value.add(amount);
+		}
+
+		public long get() {
+			return value.sum();
+		}
+	}
+
+	/* ****************
+	 *  Results
+	 * ****************/
+
+	/**
+	 * Returns the statistics of each recorded phase sorted by name.
+	 */
+	public static Map<String, PhaseStats> getPhases() {
+		return Collections.unmodifiableMap(new TreeMap<>(phases));
+	}
+
+	/**
+	 * Returns the value of each counter sorted by name.
+	 */
+	public static Map<String, Long> getCounters() {
+		Map<String, Long> values = new TreeMap<>();
+		counters.forEach((name, counter) -> values.put(name, counter.get()));
+		return values;
+	}
+
+	/**
+	 * Clears all recorded phases and counter values.
+	 */
+	public static void reset() {
+		phases.clear();
+		for (Counter counter : counters.values())
+			counter.value.reset();
+	}
+
+	/**
+	 * Returns a JSON summary of the recorded phases and counters.
+	 */
+	public static String toJson() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("{\n  \"phases\": {");
+		String sep = "\n";
+		for (Map.Entry<String, PhaseStats> e : getPhases().entrySet()) {
+			PhaseStats stats = e.getValue();
+			sb.append(sep).append("    ").append(quote(e.getKey())).append(": {")
+					.append("\"count\": ").append(stats.getCount())
+					.append(", \"totalMs\": ").append(String.format(Locale.ROOT, "%.3f", stats.getTotalNanos() / 1e6))
+					.append(", \"maxMs\": ").append(String.format(Locale.ROOT, "%.3f", stats.getMaxNanos() / 1e6))
+					.append(", \"allocatedBytes\": ").append(stats.getAllocatedBytes())
+					.append("}");
+			sep = ",\n";
+		}
+		sb.append("\n  },\n  \"counters\": {");
+		sep = "\n";
+		for (Map.Entry<String, Long> e : getCounters().entrySet()) {
+			sb.append(sep).append("    ").append(quote(e.getKey())).append(": ").append(e.getValue());
+			sep = ",\n";
+		}
+		sb.append("\n  }\n}\n");
+		return sb.toString();
+	}
+
+	/**
+	 * Writes the JSON summary of the recorded metrics to the specified file.
+	 */
+	public static void writeJson(Path path) throws IOException {
+		try (Writer writer = Files.newBufferedWriter(path)) {
+			writer.write(toJson());
+		}
+	}
+
+	private static String quote(String s) {
+		return "\"" + s.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+	}
+
+	/**
+	 * Returns the number of bytes allocated by the current thread, or -1 if the JVM
+	 * does not support measuring thread allocations.
+	 */
+	public static long getThreadAllocatedBytes() {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+			if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled())
+				return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2016 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * BYU RapidSmith Tools is free software: you may redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * BYU RapidSmith Tools is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * A copy of the GNU General Public License is included with the BYU
+ * RapidSmith Tools. It can be found at doc/LICENSE.GPL3.TXT. You may
+ * also get a copy of the license at <http://www.gnu.org/licenses/>.
+ */
+package design.subsite;
+
+import java.io.IOException;
+import java.util.List;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import edu.byu.ece.rapidSmith.RSEnvironment;
+import edu.byu.ece.rapidSmith.device.Bel;
+import edu.byu.ece.rapidSmith.device.BelId;
+import edu.byu.ece.rapidSmith.device.Device;
+import edu.byu.ece.rapidSmith.device.Site;
+import edu.byu.ece.rapidSmith.design.subsite.Cell;
+import edu.byu.ece.rapidSmith.design.subsite.CellDesign;
+import edu.byu.ece.rapidSmith.design.subsite.CellLibrary;
+
+/**
+ * jUnit test for the placement bookkeeping of the CellDesign class
+ */
+class CellDesignPlacementTest {
+
+	private static Device device;
+	private static CellLibrary libCells;
+
+	@BeforeAll
+	static void initializeTest() {
+		try {
+			device = RSEnvironment.defaultEnv().getDevice("xc7a100tcsg324");
+			libCells = new CellLibrary(RSEnvironment.defaultEnv()
+					.getPartFolderPath("xc7a100tcsg324")
+					.resolve("cellLibrary.xml"));
+		} catch (IOException e) {
+			fail("Cannot find cell library XML in test directory. Setup is incorrect.");
+		}
+	}
+
+	@Test
+	@DisplayName("test placing and unplacing cells")
+	void testPlacement() {
+		CellDesign design = new CellDesign("test", device.getPartName());
+		Cell lut = design.addCell(new Cell("lut", libCells.get("LUT6")));
+		Cell ff = design.addCell(new Cell("ff", libCells.get("FDRE")));
+
+		Bel lutBel = getFirstAnchor(lut);
+		Site site = lutBel.getSite();
+		assertTrue(design.canPlaceCellAt(lut, lutBel));
+		assertFalse(design.canPlaceCellAt(ff, lutBel), "FDRE cannot be placed on a LUT BEL");
+
+		design.placeCell(lut, lutBel);
+		assertTrue(design.isBelUsed(lutBel));
+		assertTrue(design.isBelUsed(site.getBel(lutBel.getId())), "Equal BELs should be occupied");
+		assertSame(lut, design.getCellAtBel(lutBel));
+		assertTrue(design.isSiteUsed(site));
+		assertTrue(design.getUsedSites().contains(site));
+		assertEquals(1, design.getCellsAtSite(site).size());
+		assertFalse(design.canPlaceCellAt(lut, lutBel), "Occupied BEL");
+
+		design.unplaceCell(lut);
+		assertFalse(design.isBelUsed(lutBel));
+		assertNull(design.getCellAtBel(lutBel));
+		assertFalse(design.isSiteUsed(site));
+		assertNull(design.getCellsAtSite(site));
+		assertTrue(design.getUsedSites().isEmpty());
+	}
+
+	private static Bel getFirstAnchor(Cell cell) {
+		for (BelId id : cell.getPossibleAnchors()) {
+			List<Site> sites = device.getAllSitesOfType(id.getSiteType());
+			if (sites != null && !sites.isEmpty())
+				return sites.get(0).getBel(id);
+		}
+		fail("No BEL found for " + cell.getName());
+		return null;
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2016 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * BYU RapidSmith Tools is free software: you may redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * BYU RapidSmith Tools is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * A copy of the GNU General Public License is included with the BYU
+ * RapidSmith Tools. It can be found at doc/LICENSE.GPL3.TXT. You may
+ * also get a copy of the license at <http://www.gnu.org/licenses/>.
+ */
+package design.subsite;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import edu.byu.ece.rapidSmith.RSEnvironment;
+import edu.byu.ece.rapidSmith.design.subsite.CellLibrary;
+import edu.byu.ece.rapidSmith.design.subsite.LibraryCell;
+import edu.byu.ece.rapidSmith.design.subsite.LibraryPin;
+
+/**
+ * jUnit test for the compiled binary form of cell libraries
+ */
+class CellLibraryCacheTest {
+
+	private static final Path libraryXml = RSEnvironment.defaultEnv()
+			.getEnvironmentPath()
+			.resolve("src")
+			.resolve("test")
+			.resolve("resources")
+			.resolve("design/assembly/cellLibraryTest.xml");
+
+	@Test
+	@DisplayName("test a library loaded from the cache matches the XML")
+	void testCachedLibrary() throws IOException {
+		Path dir = Files.createTempDirectory("cellLibraryCache");
+		Path xml = dir.resolve("cellLibrary.xml");
+		Files.copy(libraryXml, xml);
+		Path cache = CellLibrary.getCachePath(xml);
+
+		try {
+			CellLibrary fromXml = new CellLibrary(xml);
+			assertTrue(Files.exists(cache));
+			CellLibrary fromCache = new CellLibrary(xml);
+			assertLibrariesEqual(fromXml, fromCache);
+
+			// changing the XML invalidates the cache
+			byte[] oldCache = Files.readAllBytes(cache);
+			Files.write(xml, "\n<!-- modified -->\n".getBytes(), StandardOpenOption.APPEND);
+			assertLibrariesEqual(fromXml, new CellLibrary(xml));
+			assertFalse(java.util.Arrays.equals(oldCache, Files.readAllBytes(cache)));
+		} finally {
+			Files.deleteIfExists(cache);
+			Files.deleteIfExists(xml);
+			Files.deleteIfExists(dir);
+		}
+	}
+
+	@Test
+	@DisplayName("test corrupted and truncated caches are replaced")
+	void testCorruptedCache() throws IOException {
+		Path dir = Files.createTempDirectory("cellLibraryCache");
+		Path xml = dir.resolve("cellLibrary.xml");
+		Files.copy(libraryXml, xml);
+		Path cache = CellLibrary.getCachePath(xml);
+
+		try {
+			CellLibrary fromXml = new CellLibrary(xml);
+			byte[] valid = Files.readAllBytes(cache);
+
+			// flip a byte of the contents
+			byte[] corrupted = valid.clone();
+			corrupted[corrupted.length - 1] ^= 0x55;
+			Files.write(cache, corrupted);
+			assertLibrariesEqual(fromXml, new CellLibrary(xml));
+			assertTrue(java.util.Arrays.equals(valid, Files.readAllBytes(cache)));
+
+			// cut off the end of the contents
+			Files.write(cache, java.util.Arrays.copyOf(valid, valid.length - 8));
+			assertLibrariesEqual(fromXml, new CellLibrary(xml));
+			assertTrue(java.util.Arrays.equals(valid, Files.readAllBytes(cache)));
+
+			// no temporary files are left behind
+			try (java.util.stream.Stream<Path> files = Files.list(dir)) {
+				assertEquals(2, files.count());
+			}
+		} finally {
+			Files.deleteIfExists(cache);
+			Files.deleteIfExists(xml);
+			Files.deleteIfExists(dir);
+		}
+	}
+
+	private static void assertLibrariesEqual(CellLibrary expected, CellLibrary actual) {
+		assertEquals(expected.getFamilyType(), actual.getFamilyType());
+		assertEquals(expected.size(), actual.size());
+		assertEquals(expected.getVccSource().getName(), actual.getVccSource().getName());
+		for (LibraryCell cell : expected) {
+			LibraryCell other = actual.get(cell.getName());
+			assertNotNull(other, cell.getName());
+			assertEquals(cell.isMacro(), other.isMacro());
+			assertEquals(cell.getPossibleAnchors(), other.getPossibleAnchors());
+			assertEquals(cell.getConfigurableProperties(), other.getConfigurableProperties());
+			assertEquals(cell.getLibraryPins().size(), other.getLibraryPins().size());
+			for (LibraryPin pin : cell.getLibraryPins()) {
+				LibraryPin otherPin = other.getLibraryPin(pin.getName());
+				assertEquals(pin.getDirection(), otherPin.getDirection());
+				assertEquals(pin.getPinType(), otherPin.getPinType());
+				assertEquals(pin.getPossibleBelPins(), otherPin.getPossibleBelPins());
+			}
+		}
+	}
+}
@@ -30,9 +30,11 @@ import static org.junit.jupiter.api.Assertions.*;
 import edu.byu.ece.rapidSmith.RSEnvironment;
 import edu.byu.ece.rapidSmith.device.PinDirection;
 import edu.byu.ece.rapidSmith.design.subsite.CellLibrary;
+import edu.byu.ece.rapidSmith.design.subsite.CellDesign;
 import edu.byu.ece.rapidSmith.design.subsite.Cell;
 import edu.byu.ece.rapidSmith.design.subsite.CellPin;
 import edu.byu.ece.rapidSmith.design.subsite.CellNet;
+import edu.byu.ece.rapidSmith.design.subsite.RouteStatus;
 import edu.byu.ece.rapidSmith.design.NetType;
 
 import static org.junit.jupiter.api.Assertions.fail;
@@ -242,4 +244,49 @@ class CellNetTest {
             assertEquals(sink_pins.size()-index-1, net.getFanOut(), "CellNet has improper fan out after removing a sink pin.");
         }
     }
+
+    /**
+     * Test that the route status of a Net and the route status counts of its design
+     * are kept up-to-date as sinks are marked as routed and unrouted.
+     */
+    @Test
+    @DisplayName("test CellNet incremental route status")
+    void testRouteStatus() {
+        CellDesign design = new CellDesign("test_design", "xc7a100tcsg324");
+        CellNet net = new CellNet("test_gnd", NetType.GND);
+        Cell gnd = new Cell("test_gnd_cell", cell_library.get("GND"));
+        Cell ff1 = new Cell("test_ff1", cell_library.get("FDRE"));
+        Cell ff2 = new Cell("test_ff2", cell_library.get("FDRE"));
+        Cell carry = new Cell("test_carry", cell_library.get("CARRY4"));
+        design.addNet(net);
+        net.connectToPin(gnd.getPin("G"));
+        net.connectToPin(ff1.getPin("D"));
+        net.connectToPin(ff2.getPin("D"));
+        assertEquals(RouteStatus.UNROUTED, net.getRouteStatus(), "Net should be unrouted before any sinks are routed.");
+        assertEquals(1, design.getUnroutedNetCount(), "Design should have one unrouted net.");
+
+        net.addRoutedSink(ff1.getPin("D"));
+        assertEquals(RouteStatus.PARTIALLY_ROUTED, net.getRouteStatus(), "Net should be partially routed after routing one sink.");
+        assertEquals(0, design.getUnroutedNetCount(), "Design should have no unrouted nets.");
+        assertEquals(1, design.getPartiallyRoutedNetCount(), "Design should have one partially routed net.");
+
+        net.addRoutedSink(ff2.getPin("D"));
+        assertEquals(RouteStatus.FULLY_ROUTED, net.getRouteStatus(), "Net should be fully routed after routing all sinks.");
+        assertEquals(1, design.getFullyRoutedNetCount(), "Design should have one fully routed net.");
+
+        // only one of the CI/CYINIT pins of a CARRY cell is ever routed on the GND net
+        net.connectToPin(carry.getPin("CI"));
+        net.connectToPin(carry.getPin("CYINIT"));
+        assertEquals(RouteStatus.PARTIALLY_ROUTED, net.getRouteStatus(), "Net should be partially routed after adding a carry sink.");
+        net.addRoutedSink(carry.getPin("CYINIT"));
+        assertEquals(RouteStatus.FULLY_ROUTED, net.getRouteStatus(), "Unrouted CI pin should not count against the GND net.");
+
+        net.removeRoutedSink(ff1.getPin("D"));
+        assertEquals(RouteStatus.PARTIALLY_ROUTED, net.getRouteStatus(), "Net should be partially routed after unrouting a sink.");
+        assertEquals(0, design.getFullyRoutedNetCount(), "Design should have no fully routed nets.");
+
+        net.unrouteFull();
+        assertEquals(RouteStatus.UNROUTED, net.getRouteStatus(), "Net should be unrouted after unrouting the net.");
+        assertEquals(1, design.getUnroutedNetCount(), "Design should have one unrouted net.");
+    }
 }
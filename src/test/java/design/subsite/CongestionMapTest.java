@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2016 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * BYU RapidSmith Tools is free software: you may redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * BYU RapidSmith Tools is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * A copy of the GNU General Public License is included with the BYU
+ * RapidSmith Tools. It can be found at doc/LICENSE.GPL3.TXT. You may
+ * also get a copy of the license at <http://www.gnu.org/licenses/>.
+ */
+package design.subsite;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import edu.byu.ece.rapidSmith.RSEnvironment;
+import edu.byu.ece.rapidSmith.device.Device;
+import edu.byu.ece.rapidSmith.device.Tile;
+import edu.byu.ece.rapidSmith.device.WireHashMap;
+import edu.byu.ece.rapidSmith.design.subsite.CongestionMap;
+
+/**
+ * jUnit test for the CongestionMap class
+ */
+class CongestionMapTest {
+
+	private static Device device;
+
+	@BeforeAll
+	static void initializeTest() {
+		device = RSEnvironment.defaultEnv().getDevice("xc7a100tcsg324");
+	}
+
+	@Test
+	@DisplayName("test switchbox tiles have routing supply")
+	void testSupply() {
+		CongestionMap map = new CongestionMap(device);
+		Tile intTile = device.getTile("INT_L_X0Y0");
+		assertNotNull(intTile);
+		assertTrue(map.getHorizontalSupply(intTile) > 0);
+		assertTrue(map.getVerticalSupply(intTile) > 0);
+	}
+
+	@Test
+	@DisplayName("test supply of a tile with a templated wire map")
+	void testTemplatedSupply() {
+		Tile intTile = device.getTile("INT_L_X0Y0");
+		WireHashMap full = intTile.getWireHashMap();
+		CongestionMap expected = new CongestionMap(device);
+
+		// a template with every other entry of the full map
+		WireHashMap template = new WireHashMap();
+		int i = 0;
+		for (Integer key : full.keySet()) {
+			if (i++ % 2 == 0)
+				template.put(key, full.get(key));
+		}
+		WireHashMap templated = WireHashMap.withTemplate(template, full);
+		assertTrue(templated.getNumStoredEntries() < full.size());
+		assertEquals(full, templated);
+
+		intTile.setWireHashMap(templated);
+		try {
+			CongestionMap actual = new CongestionMap(device);
+			assertEquals(expected.getHorizontalSupply(intTile), actual.getHorizontalSupply(intTile), 1e-9);
+			assertEquals(expected.getVerticalSupply(intTile), actual.getVerticalSupply(intTile), 1e-9);
+		} finally {
+			intTile.setWireHashMap(full);
+		}
+	}
+
+	@Test
+	@DisplayName("test adding, moving and removing net demand")
+	void testDemand() {
+		CongestionMap map = new CongestionMap(device);
+		Object net = new Object();
+		Tile inside = device.getTile(10, 12);
+		Tile outside = device.getTile(30, 30);
+
+		// a 5 row by 4 column box
+		map.setNetBounds(net, 10, 10, 14, 13, 2);
+		assertEquals(1.0 / 5, map.getHorizontalDemand(inside), 1e-9);
+		assertEquals(1.0 / 4, map.getVerticalDemand(inside), 1e-9);
+		assertEquals(0.0, map.getHorizontalDemand(outside), 1e-9);
+
+		// replacing the bounds removes the old demand
+		map.setNetBounds(net, 28, 28, 31, 31, 2);
+		assertEquals(0.0, map.getHorizontalDemand(inside), 1e-9);
+		assertEquals(1.0 / 4, map.getHorizontalDemand(outside), 1e-9);
+
+		map.removeNet(net);
+		assertEquals(0.0, map.getVerticalDemand(outside), 1e-9);
+		assertEquals(0.0, map.getTotalOverflow(), 1e-9);
+	}
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright (c) 2016 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * BYU RapidSmith Tools is free software: you may redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * BYU RapidSmith Tools is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * A copy of the GNU General Public License is included with the BYU
+ * RapidSmith Tools. It can be found at doc/LICENSE.GPL3.TXT. You may
+ * also get a copy of the license at <http://www.gnu.org/licenses/>.
+ */
+package design.subsite;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import edu.byu.ece.rapidSmith.RSEnvironment;
+import edu.byu.ece.rapidSmith.design.NetType;
+import edu.byu.ece.rapidSmith.design.subsite.Cell;
+import edu.byu.ece.rapidSmith.design.subsite.CellDesign;
+import edu.byu.ece.rapidSmith.design.subsite.CellNet;
+import edu.byu.ece.rapidSmith.design.subsite.CellPin;
+import edu.byu.ece.rapidSmith.design.subsite.DesignRuleChecker;
+import edu.byu.ece.rapidSmith.design.subsite.DesignRuleChecker.Rule;
+import edu.byu.ece.rapidSmith.design.subsite.DesignRuleChecker.Violation;
+import edu.byu.ece.rapidSmith.design.subsite.RouteTree;
+import edu.byu.ece.rapidSmith.device.Bel;
+import edu.byu.ece.rapidSmith.device.BelPin;
+import edu.byu.ece.rapidSmith.device.Connection;
+import edu.byu.ece.rapidSmith.device.Device;
+import edu.byu.ece.rapidSmith.device.Site;
+import edu.byu.ece.rapidSmith.device.SiteType;
+import edu.byu.ece.rapidSmith.device.SiteTypeOverlay;
+import edu.byu.ece.rapidSmith.device.Tile;
+import edu.byu.ece.rapidSmith.device.Wire;
+import edu.byu.ece.rapidSmith.interfaces.vivado.VivadoEdifInterface;
+import edu.byu.ece.rapidSmith.interfaces.vivado.VivadoInterface;
+
+/**
+ * jUnit test for the DesignRuleChecker class
+ */
+class DesignRuleCheckerTest {
+
+	private static final Path checkpoint = RSEnvironment.defaultEnv().getEnvironmentPath()
+			.resolve("src")
+			.resolve("test")
+			.resolve("resources")
+			.resolve("ImportTests")
+			.resolve("RSCP")
+			.resolve("artix7")
+			.resolve("count16.rscp");
+
+	private static Device device;
+	private static Wire source;
+	private static Connection pip;
+
+	@BeforeAll
+	static void initializeTest() {
+		VivadoEdifInterface.suppressWarnings(true);
+		VivadoEdifInterface.suppressInfoMessages(true);
+		device = RSEnvironment.defaultEnv().getDevice("xc7a100tcsg324");
+		Tile intTile = device.getTile("INT_L_X0Y0");
+		for (Wire wire : intTile.getWires()) {
+			for (Connection c : wire.getWireConnections()) {
+				if (c.isPip()) {
+					source = wire;
+					pip = c;
+					return;
+				}
+			}
+		}
+	}
+
+	private static CellNet addRoutedNet(CellDesign design, String name) {
+		CellNet net = new CellNet(name, NetType.WIRE);
+		design.addNet(net);
+		RouteTree route = new RouteTree(source);
+		route.connect(pip);
+		net.addIntersiteRouteTree(route);
+		return net;
+	}
+
+	@Test
+	@DisplayName("test a design with a single routed net passes")
+	void testCleanDesign() {
+		CellDesign design = new CellDesign("clean", device.getPartName());
+		addRoutedNet(design, "a");
+		assertTrue(new DesignRuleChecker().check(design).isEmpty());
+	}
+
+	@Test
+	@DisplayName("test wires shared by two nets are reported")
+	void testWireConflict() {
+		CellDesign design = new CellDesign("conflict", device.getPartName());
+		addRoutedNet(design, "a");
+		addRoutedNet(design, "b");
+
+		List<Violation> violations = new DesignRuleChecker().checkRouting(design);
+		assertEquals(2, violations.size());
+		for (Violation violation : violations) {
+			assertEquals(Rule.WIRE_CONFLICT, violation.getRule());
+			assertNotNull(violation.getNet());
+			assertNotNull(violation.getWire());
+		}
+
+		DesignRuleChecker failFast = new DesignRuleChecker();
+		failFast.setFailFast(true);
+		assertEquals(1, failFast.checkRouting(design).size());
+	}
+
+	/* ****************
+	 *  Placed and routed design
+	 * ****************/
+
+	private static CellDesign loadPlacedDesign() throws IOException {
+		return VivadoInterface.loadRSCP(checkpoint.toString()).getDesign();
+	}
+
+	private static List<Violation> ofRule(List<Violation> violations, Rule rule) {
+		return violations.stream()
+				.filter(v -> v.getRule() == rule)
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * Returns a routed net of the design with a sink reached through the intersite
+	 * routing of the net.
+	 */
+	private static CellNet findRoutedNet(CellDesign design) {
+		for (CellNet net : design.getNets()) {
+			if (net.isStaticNet() || net.getSourceRouteTree() == null || !net.hasIntersiteRouting())
+				continue;
+			if (findIntersiteSink(net) != null)
+				return net;
+		}
+		fail("No routed net in " + design.getName());
+		return null;
+	}
+
+	private static BelPin findIntersiteSink(CellNet net) {
+		for (CellPin sink : net.getRoutedSinks()) {
+			for (BelPin belPin : sink.getMappedBelPins()) {
+				RouteTree leaf = net.getSinkRouteTree(belPin);
+				if (leaf != null && leaf.getRoot() != net.getSourceRouteTree())
+					return belPin;
+			}
+		}
+		return null;
+	}
+
+	@Test
+	@DisplayName("test cells in a site of the wrong type are reported")
+	void testSiteTypeMismatch() throws IOException {
+		CellDesign design = loadPlacedDesign();
+		Cell cell = design.getLeafCells()
+				.filter(Cell::isPlaced)
+				.findFirst().orElseThrow(AssertionError::new);
+		Site site = cell.getSite();
+		assertTrue(ofRule(new DesignRuleChecker().checkPlacement(design), Rule.SITE_TYPE_MISMATCH).isEmpty());
+
+		SiteType other = device.getSiteTemplates().keySet().stream()
+				.filter(t -> t != design.getSiteType(site))
+				.findFirst().orElseThrow(AssertionError::new);
+		design.getSiteTypes().setTypeUnchecked(site, other);
+
+		List<Violation> violations = ofRule(new DesignRuleChecker().checkPlacement(design), Rule.SITE_TYPE_MISMATCH);
+		assertFalse(violations.isEmpty());
+		for (Violation violation : violations)
+			assertEquals(site, violation.getCell().getSite());
+	}
+
+	@Test
+	@DisplayName("test cells placed on BELs they cannot be anchored at are reported")
+	void testInvalidAnchor() throws IOException {
+		CellDesign design = loadPlacedDesign();
+		assertTrue(ofRule(new DesignRuleChecker().checkPlacement(design), Rule.INVALID_ANCHOR).isEmpty());
+
+		// move a cell to a free BEL of its site that it cannot be placed on
+		Cell moved = null;
+		for (Cell cell : design.getLeafCells().filter(Cell::isPlaced).collect(Collectors.toList())) {
+			List<?> anchors = cell.getLibCell().getPossibleAnchors();
+			if (anchors == null || anchors.isEmpty())
+				continue;
+			for (Bel bel : cell.getSite().getBels()) {
+				if (!design.isBelUsed(bel) && !cell.getLibCell().canAnchorAt(bel.getId())) {
+					design.unplaceCell(cell);
+					design.placeCell(cell, bel);
+					moved = cell;
+					break;
+				}
+			}
+			if (moved != null)
+				break;
+		}
+		assertNotNull(moved);
+
+		List<Violation> violations = ofRule(new DesignRuleChecker().checkPlacement(design), Rule.INVALID_ANCHOR);
+		assertEquals(1, violations.size());
+		assertEquals(moved, violations.get(0).getCell());
+	}
+
+	@Test
+	@DisplayName("test intersite routes not driven by the net source are reported")
+	void testUnsourcedRoute() throws IOException {
+		CellDesign design = loadPlacedDesign();
+		CellNet net = findRoutedNet(design);
+		assertTrue(ofRule(new DesignRuleChecker().checkRouting(design), Rule.UNSOURCED_ROUTE).isEmpty());
+
+		net.addIntersiteRouteTree(new RouteTree(source));
+
+		List<Violation> violations = ofRule(new DesignRuleChecker().checkRouting(design), Rule.UNSOURCED_ROUTE);
+		assertEquals(1, violations.size());
+		assertEquals(net, violations.get(0).getNet());
+		assertEquals(source, violations.get(0).getWire());
+	}
+
+	@Test
+	@DisplayName("test routed sinks without a route to their BEL pin are reported")
+	void testUnroutedSink() throws IOException {
+		CellDesign design = loadPlacedDesign();
+		CellNet net = findRoutedNet(design);
+		assertTrue(ofRule(new DesignRuleChecker().checkRouting(design), Rule.UNROUTED_SINK).isEmpty());
+
+		BelPin belPin = findIntersiteSink(net);
+		net.getBelPinRouteTrees().remove(belPin);
+
+		List<Violation> violations = ofRule(new DesignRuleChecker().checkRouting(design), Rule.UNROUTED_SINK);
+		assertEquals(1, violations.size());
+		assertEquals(net, violations.get(0).getNet());
+		assertEquals(belPin.getBel(), violations.get(0).getCell().getBel());
+	}
+
+	@Test
+	@DisplayName("test sinks not reached from the net source are reported")
+	void testDisconnectedSink() throws IOException {
+		CellDesign design = loadPlacedDesign();
+		CellNet net = findRoutedNet(design);
+		assertTrue(ofRule(new DesignRuleChecker().checkRouting(design), Rule.DISCONNECTED_SINK).isEmpty());
+
+		net.setIntersiteRouteTrees(new ArrayList<>());
+
+		List<Violation> violations = ofRule(new DesignRuleChecker().checkRouting(design), Rule.DISCONNECTED_SINK);
+		assertFalse(violations.isEmpty());
+		for (Violation violation : violations)
+			assertEquals(net, violation.getNet());
+	}
+
+	@Test
+	@DisplayName("test the checker uses the site types of the design on its worker threads")
+	void testSiteTypesBound() throws IOException {
+		CellDesign design = loadPlacedDesign();
+		List<Violation> expected = new DesignRuleChecker().check(design);
+		try (SiteTypeOverlay.Binding ignored = design.bindSiteTypes()) {
+			assertEquals(expected.toString(), new DesignRuleChecker().check(design).toString());
+		}
+	}
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2016 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * BYU RapidSmith Tools is free software: you may redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * BYU RapidSmith Tools is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * A copy of the GNU General Public License is included with the BYU
+ * RapidSmith Tools. It can be found at doc/LICENSE.GPL3.TXT. You may
+ * also get a copy of the license at <http://www.gnu.org/licenses/>.
+ */
+package design.subsite;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import edu.byu.ece.rapidSmith.RSEnvironment;
+import edu.byu.ece.rapidSmith.design.NetType;
+import edu.byu.ece.rapidSmith.design.subsite.Cell;
+import edu.byu.ece.rapidSmith.design.subsite.CellDesign;
+import edu.byu.ece.rapidSmith.design.subsite.CellLibrary;
+import edu.byu.ece.rapidSmith.design.subsite.CellNet;
+import edu.byu.ece.rapidSmith.design.subsite.ModuleRelocator;
+import edu.byu.ece.rapidSmith.design.subsite.ModuleRelocator.Module;
+import edu.byu.ece.rapidSmith.device.Bel;
+import edu.byu.ece.rapidSmith.device.BelPin;
+import edu.byu.ece.rapidSmith.device.Device;
+import edu.byu.ece.rapidSmith.device.Site;
+import edu.byu.ece.rapidSmith.device.SiteType;
+import edu.byu.ece.rapidSmith.util.Exceptions;
+
+/**
+ * jUnit test for the ModuleRelocator class
+ */
+class ModuleRelocatorTest {
+
+	private static Device device;
+	private static CellLibrary libCells;
+	private static SiteType slicel;
+
+	private FailingDesign design;
+	private Cell lut;
+	private Cell ff;
+	private Site site;
+	private Set<Integer> sitePips;
+	private ModuleRelocator relocator;
+	private Module module;
+
+	/**
+	 * A design that fails the first time site PIPs are set after it is armed.
+	 */
+	private static class FailingDesign extends CellDesign {
+		private boolean armed = false;
+
+		FailingDesign(String name, String partName) {
+			super(name, partName);
+		}
+
+		@Override
+		public void setUsedSitePipsAtSite(Site ps, Set<Integer> usedWires) {
+			if (armed) {
+				armed = false;
+				throw new IllegalStateException("Injected failure");
+			}
+			super.setUsedSitePipsAtSite(ps, usedWires);
+		}
+	}
+
+	@BeforeAll
+	static void initializeTest() {
+		try {
+			device = RSEnvironment.defaultEnv().getDevice("xc7a100tcsg324");
+			libCells = new CellLibrary(RSEnvironment.defaultEnv()
+					.getPartFolderPath("xc7a100tcsg324")
+					.resolve("cellLibrary.xml"));
+			slicel = SiteType.valueOf(device.getFamily(), "SLICEL");
+		} catch (IOException e) {
+			fail("Cannot find cell library XML in test directory. Setup is incorrect.");
+		}
+	}
+
+	@BeforeEach
+	void createModule() {
+		// a LUT driving a flip flop in a slice near the middle of the device
+		List<Site> slices = device.getAllSitesOfType(slicel);
+		site = slices.get(slices.size() / 2);
+
+		design = new FailingDesign("relocate", device.getPartName());
+		lut = design.addCell(new Cell("lut", libCells.get("LUT6")));
+		ff = design.addCell(new Cell("ff", libCells.get("FDRE")));
+		design.setSiteType(site, slicel);
+		design.placeCell(lut, site.getBel("A6LUT"));
+		design.placeCell(ff, site.getBel("AFF"));
+		lut.getPin("O").mapToBelPin(site.getBel("A6LUT").getBelPin("O6"));
+		ff.getPin("D").mapToBelPin(site.getBel("AFF").getBelPin("D"));
+
+		CellNet net = new CellNet("lut_out", NetType.WIRE);
+		design.addNet(net);
+		net.connectToPin(lut.getPin("O"));
+		net.connectToPin(ff.getPin("D"));
+
+		sitePips = new HashSet<>(Collections.singletonList(7));
+		design.setUsedSitePipsAtSite(site, new HashSet<>(sitePips));
+
+		relocator = new ModuleRelocator(design, device);
+		module = relocator.createModule(Arrays.asList(lut, ff), Collections.singletonList(net));
+	}
+
+	@Test
+	@DisplayName("test relocating a module moves its placement, pin mappings and site PIPs")
+	void testRelocate() {
+		List<int[]> offsets = relocator.findCompatibleOffsets(module);
+		assertFalse(offsets.isEmpty());
+		int[] offset = offsets.get(0);
+		Site target = device.getTile(site.getTile().getRow() + offset[0],
+				site.getTile().getColumn() + offset[1]).getSites()[site.getIndex()];
+
+		relocator.relocate(module, offset[0], offset[1]);
+
+		assertEquals(target, lut.getSite());
+		assertEquals("A6LUT", lut.getBel().getName());
+		assertEquals(target, ff.getSite());
+		assertEquals("AFF", ff.getBel().getName());
+		assertEquals(slicel, design.getSiteType(target));
+		assertEquals(sitePips, design.getUsedSitePipsAtSite(target));
+		assertTrue(design.getUsedSitePipsAtSite(site).isEmpty());
+		assertNull(design.getCellsAtSite(site));
+		assertEquals(Collections.singleton(target), module.getSites());
+
+		BelPin mapped = lut.getPin("O").getMappedBelPin();
+		assertEquals(target.getBel("A6LUT"), mapped.getBel());
+		assertEquals("O6", mapped.getName());
+	}
+
+	@Test
+	@DisplayName("test offsets that move a module off of the device are rejected")
+	void testIllegalOffset() {
+		Bel lutBel = lut.getBel();
+		assertNotNull(relocator.checkRelocation(module, device.getRows(), 0));
+		assertThrows(Exceptions.DesignAssemblyException.class,
+				() -> relocator.relocate(module, device.getRows(), 0));
+
+		assertEquals(lutBel, lut.getBel());
+		assertEquals(Collections.singleton(site), module.getSites());
+		assertEquals(sitePips, design.getUsedSitePipsAtSite(site));
+	}
+
+	@Test
+	@DisplayName("test a relocation that fails part way through is rolled back")
+	void testRollback() {
+		int[] offset = relocator.findCompatibleOffsets(module).get(0);
+		Site target = device.getTile(site.getTile().getRow() + offset[0],
+				site.getTile().getColumn() + offset[1]).getSites()[site.getIndex()];
+		SiteType targetType = design.getSiteType(target);
+		Bel lutBel = lut.getBel();
+		Bel ffBel = ff.getBel();
+		BelPin lutPin = lut.getPin("O").getMappedBelPin();
+
+		design.armed = true;
+		assertThrows(IllegalStateException.class, () -> relocator.relocate(module, offset[0], offset[1]));
+
+		assertEquals(lutBel, lut.getBel());
+		assertEquals(ffBel, ff.getBel());
+		assertEquals(lutPin, lut.getPin("O").getMappedBelPin());
+		assertEquals(sitePips, design.getUsedSitePipsAtSite(site));
+		assertEquals(slicel, design.getSiteType(site));
+		assertEquals(targetType, design.getSiteType(target));
+		assertNull(design.getCellsAtSite(target));
+		assertTrue(design.getUsedSitePipsAtSite(target).isEmpty());
+		assertEquals(Collections.singleton(site), module.getSites());
+
+		// the module can still be moved once the failure is gone
+		relocator.relocate(module, offset[0], offset[1]);
+		assertEquals(target, lut.getSite());
+	}
+}
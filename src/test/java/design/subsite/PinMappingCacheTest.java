@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2016 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * BYU RapidSmith Tools is free software: you may redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * BYU RapidSmith Tools is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * A copy of the GNU General Public License is included with the BYU
+ * RapidSmith Tools. It can be found at doc/LICENSE.GPL3.TXT. You may
+ * also get a copy of the license at <http://www.gnu.org/licenses/>.
+ */
+package design.subsite;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import edu.byu.ece.rapidSmith.RSEnvironment;
+import edu.byu.ece.rapidSmith.design.subsite.Cell;
+import edu.byu.ece.rapidSmith.design.subsite.CellDesign;
+import edu.byu.ece.rapidSmith.design.subsite.CellLibrary;
+import edu.byu.ece.rapidSmith.design.subsite.PinMappingCache;
+import edu.byu.ece.rapidSmith.device.Bel;
+import edu.byu.ece.rapidSmith.device.Device;
+import edu.byu.ece.rapidSmith.device.FamilyType;
+import edu.byu.ece.rapidSmith.device.Site;
+import edu.byu.ece.rapidSmith.device.SiteType;
+
+/**
+ * jUnit test for the PinMappingCache class
+ */
+class PinMappingCacheTest {
+
+	private static final List<String> LUT_BELS = Arrays.asList("A6LUT", "B6LUT", "C6LUT", "D6LUT");
+
+	private static Device device;
+	private static CellLibrary libCells;
+	private static List<Site> slices;
+
+	private CellDesign design;
+	private int nextSite;
+
+	@BeforeAll
+	static void initializeTest() {
+		try {
+			device = RSEnvironment.defaultEnv().getDevice("xc7a100tcsg324");
+			libCells = new CellLibrary(RSEnvironment.defaultEnv()
+					.getPartFolderPath("xc7a100tcsg324")
+					.resolve("cellLibrary.xml"));
+			slices = device.getAllSitesOfType(SiteType.valueOf(device.getFamily(), "SLICEL"));
+		} catch (IOException e) {
+			fail("Cannot find cell library XML in test directory. Setup is incorrect.");
+		}
+	}
+
+	@BeforeEach
+	void createDesign() {
+		design = new CellDesign("pinmap", device.getPartName());
+		nextSite = 0;
+	}
+
+	/**
+	 * Returns an environment without any device files.
+	 */
+	private static RSEnvironment createEnvironment() throws IOException {
+		Path root = Files.createTempDirectory("rsenv");
+		Files.createDirectories(root.resolve("devices").resolve(device.getFamily().name().toLowerCase()));
+		return new RSEnvironment(root);
+	}
+
+	/**
+	 * Places a new LUT6 on the BEL of the next free site.  If {@code swapped}, the
+	 * first two inputs are mapped to each other's BEL pins.
+	 */
+	private Cell placeLut(String belName, boolean swapped, boolean mapped) {
+		Cell cell = design.addCell(new Cell("lut" + nextSite, libCells.get("LUT6")));
+		Bel bel = slices.get(nextSite++).getBel(belName);
+		design.placeCell(cell, bel);
+		if (mapped) {
+			for (int i = 0; i < 6; i++) {
+				int belPin = swapped && i < 2 ? 1 - i : i;
+				cell.getPin("I" + i).mapToBelPin(bel.getBelPin("A" + (belPin + 1)));
+			}
+			cell.getPin("O").mapToBelPin(bel.getBelPin("O6"));
+		}
+		return cell;
+	}
+
+	@Test
+	@DisplayName("test each environment has its own cache of a family")
+	void testCachePerEnvironment() throws IOException {
+		FamilyType family = device.getFamily();
+		RSEnvironment env1 = createEnvironment();
+		RSEnvironment env2 = createEnvironment();
+		assertNull(PinMappingCache.getIfOpen(env1, family));
+
+		PinMappingCache cache1 = PinMappingCache.forFamily(env1, family);
+		assertSame(cache1, PinMappingCache.forFamily(env1, family));
+		assertSame(cache1, PinMappingCache.getIfOpen(env1, family));
+		assertNull(PinMappingCache.getIfOpen(env2, family));
+
+		PinMappingCache cache2 = PinMappingCache.forFamily(env2, family);
+		assertNotSame(cache1, cache2);
+		cache1.record(placeLut("A6LUT", false, true));
+		assertEquals(1, cache1.size());
+		assertEquals(0, cache2.size());
+	}
+
+	@Test
+	@DisplayName("test a cache is seeded from the pin mappings of its own environment")
+	void testSeededFromEnvironment() throws IOException {
+		RSEnvironment env = createEnvironment();
+		Files.write(env.getPartFolderPath(device.getFamily()).resolve("pinMappings.xml"), Arrays.asList(
+				"<?xml version=\"1.0\" encoding=\"UTF-8\"?>",
+				"<cells>",
+				"  <cell type=\"LUT6\" bel=\"D6LUT\" hash=\"seeded\">",
+				"    <properties/>",
+				"    <pins>",
+				"      <pin cellPin=\"I0\" belPin=\"A2\"/>",
+				"      <pin cellPin=\"O\" belPin=\"O6\"/>",
+				"    </pins>",
+				"  </cell>",
+				"</cells>"));
+
+		PinMappingCache cache = PinMappingCache.forFamily(env, device.getFamily());
+		assertEquals(1, cache.size());
+		Cell cell = placeLut("D6LUT", false, false);
+		Map<String, List<String>> pins = cache.getPinMapping(cell, cell.getBel());
+		assertNotNull(pins);
+		assertEquals(Arrays.asList("A2"), pins.get("I0"));
+		assertEquals(Arrays.asList("O6"), pins.get("O"));
+	}
+
+	@Test
+	@DisplayName("test a recorded mapping is applied to cells placed on the same BEL")
+	void testRecordAndApply() throws IOException {
+		PinMappingCache cache = PinMappingCache.forFamily(createEnvironment(), device.getFamily());
+		Cell recorded = placeLut("B6LUT", false, true);
+		cache.record(recorded);
+
+		Cell cell = placeLut("B6LUT", false, false);
+		Map<String, List<String>> pins = cache.getPinMapping(cell, cell.getBel());
+		assertNotNull(pins);
+		assertEquals(Arrays.asList("A1"), pins.get("I0"));
+		assertEquals(Arrays.asList("O6"), pins.get("O"));
+		assertNull(cache.getPinMapping(cell, slices.get(0).getBel("C6LUT")));
+
+		assertTrue(cache.applyPinMapping(cell, cell.getBel()));
+		assertEquals(cell.getBel().getBelPin("A6"), cell.getPin("I5").getMappedBelPin());
+		assertEquals(cell.getBel().getBelPin("O6"), cell.getPin("O").getMappedBelPin());
+	}
+
+	@Test
+	@DisplayName("test conflicting mappings of a cell and BEL are marked ambiguous")
+	void testAmbiguousMapping() throws IOException {
+		PinMappingCache cache = PinMappingCache.forFamily(createEnvironment(), device.getFamily());
+		cache.record(placeLut("C6LUT", false, true));
+		cache.record(placeLut("C6LUT", false, true));
+		Cell cell = placeLut("C6LUT", false, false);
+		assertNotNull(cache.getPinMapping(cell, cell.getBel()));
+
+		cache.record(placeLut("C6LUT", true, true));
+		assertNull(cache.getPinMapping(cell, cell.getBel()));
+		assertFalse(cache.applyPinMapping(cell, cell.getBel()));
+
+		// an ambiguous mapping stays ambiguous
+		cache.record(placeLut("C6LUT", false, true));
+		assertNull(cache.getPinMapping(cell, cell.getBel()));
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	@DisplayName("test conflicting mappings recorded concurrently are marked ambiguous")
+	void testConcurrentRecording() throws IOException {
+		PinMappingCache cache = PinMappingCache.forFamily(createEnvironment(), device.getFamily());
+		Cell[] cells = new Cell[400];
+		for (int i = 0; i < cells.length; i++)
+			cells[i] = placeLut(LUT_BELS.get(i % LUT_BELS.size()), i % 8 >= 4, true);
+
+		IntStream.range(0, cells.length).parallel().forEach(i -> cache.record(cells[i]));
+
+		assertEquals(LUT_BELS.size(), cache.size());
+		for (String belName : LUT_BELS) {
+			Cell cell = placeLut(belName, false, false);
+			assertNull(cache.getPinMapping(cell, cell.getBel()));
+		}
+	}
+
+	@Test
+	@DisplayName("test the cache can be saved while mappings are recorded")
+	void testSaveWhileRecording() throws IOException {
+		RSEnvironment env = createEnvironment();
+		Path folder = env.getPartFolderPath(device.getFamily());
+		PinMappingCache cache = PinMappingCache.forFamily(env, device.getFamily());
+		Cell[] cells = new Cell[400];
+		for (int i = 0; i < cells.length; i++)
+			cells[i] = placeLut(LUT_BELS.get(i % LUT_BELS.size()), false, true);
+
+		IntStream.range(0, cells.length).parallel().forEach(i -> {
+			cache.record(cells[i]);
+			if (i % 50 == 0)
+				cache.save();
+		});
+		cache.save();
+
+		assertTrue(Files.exists(folder.resolve(PinMappingCache.CACHE_FILENAME)));
+		try (Stream<Path> files = Files.list(folder)) {
+			assertFalse(files.anyMatch(f -> f.getFileName().toString().endsWith(".tmp")));
+		}
+	}
+}
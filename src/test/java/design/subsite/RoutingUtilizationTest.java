@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2016 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * BYU RapidSmith Tools is free software: you may redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * BYU RapidSmith Tools is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * A copy of the GNU General Public License is included with the BYU
+ * RapidSmith Tools. It can be found at doc/LICENSE.GPL3.TXT. You may
+ * also get a copy of the license at <http://www.gnu.org/licenses/>.
+ */
+package design.subsite;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import edu.byu.ece.rapidSmith.RSEnvironment;
+import edu.byu.ece.rapidSmith.design.NetType;
+import edu.byu.ece.rapidSmith.design.subsite.CellDesign;
+import edu.byu.ece.rapidSmith.design.subsite.CellNet;
+import edu.byu.ece.rapidSmith.design.subsite.RouteTree;
+import edu.byu.ece.rapidSmith.design.subsite.RoutingUtilization;
+import edu.byu.ece.rapidSmith.device.Connection;
+import edu.byu.ece.rapidSmith.device.Device;
+import edu.byu.ece.rapidSmith.device.Tile;
+import edu.byu.ece.rapidSmith.device.Wire;
+
+/**
+ * jUnit test for the RoutingUtilization class
+ */
+class RoutingUtilizationTest {
+
+	private static Device device;
+
+	@BeforeAll
+	static void initializeTest() {
+		device = RSEnvironment.defaultEnv().getDevice("xc7a100tcsg324");
+	}
+
+	@Test
+	@DisplayName("test an unrouted design uses no routing")
+	void testEmptyDesign() {
+		CellDesign design = new CellDesign("empty", device.getPartName());
+		design.addNet(new CellNet("net", NetType.WIRE));
+		RoutingUtilization utilization = RoutingUtilization.compute(design);
+
+		Tile intTile = device.getTile("INT_L_X0Y0");
+		assertTrue(utilization.getWireCapacity(intTile) > 0);
+		assertTrue(utilization.getPipCapacity(intTile) > 0);
+		assertEquals(0, utilization.getTotalWiresUsed());
+		assertEquals(0, utilization.getTotalPipsUsed());
+		assertEquals(0.0, utilization.getWireUtilization(intTile), 1e-9);
+	}
+
+	@Test
+	@DisplayName("test the wires and PIPs of a route tree are counted in their tile")
+	void testRoutedNet() {
+		Tile intTile = device.getTile("INT_L_X0Y0");
+		RouteTree route = null;
+		for (Wire wire : intTile.getWires()) {
+			for (Connection c : wire.getWireConnections()) {
+				if (c.isPip() && c.getSinkWire().getTile() == intTile) {
+					route = new RouteTree(wire);
+					route.connect(c);
+					break;
+				}
+			}
+			if (route != null)
+				break;
+		}
+		assertNotNull(route);
+
+		CellDesign design = new CellDesign("routed", device.getPartName());
+		CellNet net = new CellNet("net", NetType.WIRE);
+		design.addNet(net);
+		net.addIntersiteRouteTree(route);
+		RoutingUtilization utilization = RoutingUtilization.compute(design);
+
+		assertEquals(2, utilization.getWiresUsed(intTile));
+		assertEquals(1, utilization.getPipsUsed(intTile));
+		assertEquals(2, utilization.getTotalWiresUsed());
+		assertEquals(2.0 / utilization.getWireCapacity(intTile),
+				utilization.getWireUtilizationGrid()[intTile.getRow()][intTile.getColumn()], 1e-9);
+		assertEquals(intTile, utilization.getMostUtilizedTiles(5).get(0));
+	}
+}
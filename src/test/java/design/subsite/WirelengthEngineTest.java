@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2016 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * BYU RapidSmith Tools is free software: you may redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * BYU RapidSmith Tools is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * A copy of the GNU General Public License is included with the BYU
+ * RapidSmith Tools. It can be found at doc/LICENSE.GPL3.TXT. You may
+ * also get a copy of the license at <http://www.gnu.org/licenses/>.
+ */
+package design.subsite;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import edu.byu.ece.rapidSmith.RSEnvironment;
+import edu.byu.ece.rapidSmith.design.NetType;
+import edu.byu.ece.rapidSmith.device.Device;
+import edu.byu.ece.rapidSmith.device.Site;
+import edu.byu.ece.rapidSmith.device.Tile;
+import edu.byu.ece.rapidSmith.design.subsite.Cell;
+import edu.byu.ece.rapidSmith.design.subsite.CellDesign;
+import edu.byu.ece.rapidSmith.design.subsite.CellLibrary;
+import edu.byu.ece.rapidSmith.design.subsite.CellNet;
+import edu.byu.ece.rapidSmith.design.subsite.CellPin;
+import edu.byu.ece.rapidSmith.design.subsite.WirelengthEngine;
+
+/**
+ * jUnit test for the WirelengthEngine class
+ */
+class WirelengthEngineTest {
+
+	private static Device device;
+	private static CellLibrary libCells;
+
+	@BeforeAll
+	static void initializeTest() {
+		try {
+			device = RSEnvironment.defaultEnv().getDevice("xc7a100tcsg324");
+			libCells = new CellLibrary(RSEnvironment.defaultEnv()
+					.getPartFolderPath("xc7a100tcsg324")
+					.resolve("cellLibrary.xml"));
+		} catch (IOException e) {
+			fail("Cannot find cell library XML in test directory. Setup is incorrect.");
+		}
+	}
+
+	@Test
+	@DisplayName("test incremental HPWL matches a full recomputation")
+	void testIncrementalHpwl() {
+		Random random = new Random(42);
+		CellDesign design = new CellDesign("test", device.getPartName());
+		List<Cell> cells = new ArrayList<>();
+		for (int i = 0; i < 10; i++)
+			cells.add(design.addCell(new Cell("lut" + i, libCells.get("LUT6"))));
+		List<CellNet> nets = new ArrayList<>();
+		for (int i = 0; i < cells.size(); i++) {
+			CellNet net = design.addNet(new CellNet("net" + i, NetType.WIRE));
+			net.connectToPin(cells.get(i).getPin("O"));
+			// connect several inputs, sometimes of the same cell
+			for (int j = 1; j <= 4; j++)
+				net.connectToPin(cells.get(random.nextInt(cells.size())).getPin("A" + j));
+			nets.add(net);
+		}
+
+		List<Site> sites = device.getAllSitesOfType(device.getSite("SLICE_X0Y0").getType());
+		WirelengthEngine engine = new WirelengthEngine(design);
+		Map<Cell, Site> locations = new HashMap<>();
+		assertEquals(0.0, engine.getTotalCost(), 1e-9);
+
+		for (int move = 0; move < 500; move++) {
+			Cell cell = cells.get(random.nextInt(cells.size()));
+			Site site = random.nextInt(10) == 0 ? null : sites.get(random.nextInt(sites.size()));
+
+			double before = engine.getTotalCost();
+			Cell other = cells.get(random.nextInt(cells.size()));
+			Site otherSite = sites.get(random.nextInt(sites.size()));
+			double evaluated = engine.evaluateMoves(new Cell[] {cell, other}, new Site[] {site, otherSite});
+			assertEquals(before, engine.getTotalCost(), 1e-9, "Evaluating moves should not change the cost");
+
+			double applied = engine.applyMoves(new Cell[] {cell, other}, new Site[] {site, otherSite});
+			assertEquals(evaluated, applied, 1e-9);
+			locations.put(cell, site);
+			locations.put(other, otherSite);
+			assertEquals(computeHpwl(nets, locations), engine.getTotalCost(), 1e-9);
+		}
+	}
+
+	private static double computeHpwl(List<CellNet> nets, Map<Cell, Site> locations) {
+		double total = 0;
+		for (CellNet net : nets) {
+			int minRow = Integer.MAX_VALUE, maxRow = -1, minCol = Integer.MAX_VALUE, maxCol = -1;
+			for (CellPin pin : net.getPins()) {
+				Site site = locations.get(pin.getCell());
+				if (site == null)
+					continue;
+				Tile tile = site.getTile();
+				minRow = Math.min(minRow, tile.getRow());
+				maxRow = Math.max(maxRow, tile.getRow());
+				minCol = Math.min(minCol, tile.getColumn());
+				maxCol = Math.max(maxCol, tile.getColumn());
+			}
+			if (maxRow >= 0)
+				total += (maxRow - minRow) + (maxCol - minCol);
+		}
+		return total;
+	}
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2016 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * BYU RapidSmith Tools is free software: you may redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * BYU RapidSmith Tools is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * A copy of the GNU General Public License is included with the BYU
+ * RapidSmith Tools. It can be found at doc/LICENSE.GPL3.TXT. You may
+ * also get a copy of the license at <http://www.gnu.org/licenses/>.
+ */
+package design.xdlImport;
+
+import edu.byu.ece.rapidSmith.RSEnvironment;
+import edu.byu.ece.rapidSmith.design.xdl.XdlAttribute;
+import edu.byu.ece.rapidSmith.design.xdl.XdlDesign;
+import edu.byu.ece.rapidSmith.design.xdl.XdlInstance;
+import edu.byu.ece.rapidSmith.design.xdl.XdlModule;
+import edu.byu.ece.rapidSmith.design.xdl.XdlModuleInstance;
+import edu.byu.ece.rapidSmith.design.xdl.XdlNet;
+import edu.byu.ece.rapidSmith.design.xdl.XdlPort;
+import edu.byu.ece.rapidSmith.device.PIP;
+import edu.byu.ece.rapidSmith.interfaces.ise.XDLReader;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests reading a small placed design with the {@link XDLReader}.
+ */
+public class XDLReaderTest {
+	private static final Path xdlFile = RSEnvironment.defaultEnv().getEnvironmentPath()
+			.resolve("src")
+			.resolve("test")
+			.resolve("resources")
+			.resolve("ImportTests")
+			.resolve("XDL")
+			.resolve("artix7")
+			.resolve("small.xdl");
+
+	private static XdlDesign readDesign(int numThreads) throws IOException {
+		XDLReader reader = new XDLReader();
+		reader.setNumThreads(numThreads);
+		return reader.readDesign(xdlFile);
+	}
+
+	@Test
+	@DisplayName("test the instances and nets of the design are read")
+	public void designIsRead() throws IOException {
+		XdlDesign design = readDesign(1);
+		assertEquals("small", design.getName());
+
+		XdlInstance src = design.getInstance("src");
+		assertNotNull(src);
+		assertEquals("SLICE_X0Y69", src.getSite().getName());
+		assertEquals("#FF", src.getAttribute("AFF").getValue());
+		assertNotNull(design.getInstance("sink"));
+
+		XdlNet net = design.getNet("n1");
+		assertNotNull(net);
+		assertEquals(2, net.getPins().size());
+		assertSame(src, net.getSource().getInstance());
+		assertEquals("AQ", net.getSource().getName());
+	}
+
+	@Test
+	@DisplayName("test PIP sink wires are read from the sink wire name")
+	public void pipSinkWire() throws IOException {
+		XdlNet net = readDesign(1).getNet("n1");
+		assertEquals(1, net.getPIPs().size());
+		PIP pip = net.getPIPs().get(0);
+		assertEquals("LIOI3_X0Y77", pip.getTile().getName());
+		assertEquals("LIOI_IBUF0", pip.getStartWire().getWireName());
+		assertEquals("LIOI_I0", pip.getEndWire().getWireName());
+	}
+
+	@Test
+	@DisplayName("test net attributes are added to the net and not the design")
+	public void netAttributes() throws IOException {
+		XdlDesign design = readDesign(1);
+		XdlNet net = design.getNet("n1");
+		assertEquals(1, net.getAttributes().size());
+		XdlAttribute attr = net.getAttributes().get(0);
+		assertEquals("NET_ATTR", attr.getPhysicalName());
+		assertEquals("n1", attr.getLogicalName());
+		assertEquals("value", attr.getValue());
+
+		List<String> designAttrs = new ArrayList<>();
+		for (XdlAttribute designAttr : design.getAttributes())
+			designAttrs.add(designAttr.getPhysicalName());
+		assertEquals(1, designAttrs.size(), designAttrs::toString);
+		assertEquals("DESIGN_ATTR", designAttrs.get(0));
+	}
+
+	@Test
+	@DisplayName("test modules are added to the design and their instances resolve")
+	public void modulesAreAdded() throws IOException {
+		XdlDesign design = readDesign(1);
+		XdlModule module = design.getModule("mod");
+		assertNotNull(module);
+		assertEquals(1, design.getModules().size());
+		assertEquals("FALSE", module.getAttributes().get(0).getValue());
+
+		XdlInstance anchor = module.getInstance("m_lut");
+		assertNotNull(anchor);
+		assertSame(anchor, module.getAnchor());
+		assertNotNull(module.getNet("m_net"));
+
+		XdlPort port = module.getPort("in");
+		assertNotNull(port);
+		assertSame(anchor, port.getInstance());
+		assertEquals("A1", port.getPin().getName());
+
+		XdlModuleInstance mi = design.getModuleInstance("mi");
+		assertNotNull(mi);
+		assertSame(module, mi.getModule());
+		XdlInstance inst = design.getInstance("mi/m_lut");
+		assertSame(inst, mi.getAnchor());
+		assertSame(anchor, inst.getModuleTemplateInstance());
+
+		XdlNet net = design.getNet("mi/m_net");
+		assertSame(mi, net.getModuleInstance());
+		assertSame(module.getNet("m_net"), net.getModuleTemplateNet());
+	}
+
+	@Test
+	@DisplayName("test nets resolved by the workers match nets resolved on the parsing thread")
+	public void parallelMatchesSerial() throws IOException {
+		XdlDesign serial = readDesign(1);
+		XdlDesign parallel = readDesign(4);
+
+		assertEquals(serial.getNets().size(), parallel.getNets().size());
+		for (XdlNet net : serial.getNets()) {
+			XdlNet other = parallel.getNet(net.getName());
+			assertNotNull(other, net.getName());
+			assertEquals(net.getPIPs(), other.getPIPs());
+			assertEquals(net.getPins().size(), other.getPins().size());
+			for (int i = 0; i < net.getPins().size(); i++) {
+				assertEquals(net.getPins().get(i).getName(), other.getPins().get(i).getName());
+				assertEquals(net.getPins().get(i).getInstanceName(), other.getPins().get(i).getInstanceName());
+			}
+		}
+		assertNotNull(parallel.getModuleInstance("mi"));
+	}
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2016 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * BYU RapidSmith Tools is free software: you may redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * BYU RapidSmith Tools is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * A copy of the GNU General Public License is included with the BYU
+ * RapidSmith Tools. It can be found at doc/LICENSE.GPL3.TXT. You may
+ * also get a copy of the license at <http://www.gnu.org/licenses/>.
+ */
+package device;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import edu.byu.ece.rapidSmith.RSEnvironment;
+import edu.byu.ece.rapidSmith.device.Device;
+import edu.byu.ece.rapidSmith.device.Site;
+import edu.byu.ece.rapidSmith.device.Tile;
+import edu.byu.ece.rapidSmith.util.BlockCodec;
+import edu.byu.ece.rapidSmith.util.ChunkedDeviceFile;
+import edu.byu.ece.rapidSmith.util.FileTools;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Tests writing and reading devices in the chunked device file format.
+ */
+public class ChunkedDeviceFileTests {
+
+	private static Device device;
+
+	@BeforeAll
+	public static void initializeTest() {
+		device = RSEnvironment.defaultEnv().getDevice("xc7a100tcsg324");
+	}
+
+	@Test
+	@DisplayName("Deflate Round Trip")
+	public void deflateRoundTrip() throws IOException {
+		checkRoundTrip(BlockCodec.DEFLATE);
+	}
+
+	@Test
+	@DisplayName("Uncompressed Round Trip")
+	public void uncompressedRoundTrip() throws IOException {
+		checkRoundTrip(BlockCodec.NONE);
+	}
+
+	private void checkRoundTrip(BlockCodec codec) throws IOException {
+		Path path = Files.createTempFile("chunked", "_db.dat");
+		try {
+			ChunkedDeviceFile.write(device, path, codec);
+			assertTrue(ChunkedDeviceFile.isChunkedFile(path));
+
+			Device loaded = FileTools.loadDevice(path);
+			assertNotNull(loaded, "Chunked device file failed to load");
+			assertEquals(device.getPartName(), loaded.getPartName());
+			assertEquals(device.getRows(), loaded.getRows());
+			assertEquals(device.getColumns(), loaded.getColumns());
+			assertEquals(device.getPackagePins().size(), loaded.getPackagePins().size());
+			assertEquals(device.getSiteTemplates().keySet(), loaded.getSiteTemplates().keySet());
+
+			for (Tile tile : device.getTiles()) {
+				Tile other = loaded.getTile(tile.getName());
+				assertNotNull(other, "Missing tile " + tile.getName());
+				assertEquals(tile.getRow(), other.getRow());
+				assertEquals(tile.getColumn(), other.getColumn());
+				assertEquals(tile.getWireHashMap(), other.getWireHashMap(), "Wires differ for " + tile.getName());
+				if (tile.getSites() != null) {
+					for (Site site : tile.getSites()) {
+						assertNotNull(loaded.getSite(site.getName()), "Missing site " + site.getName());
+					}
+				}
+			}
+		} finally {
+			Files.deleteIfExists(path);
+		}
+	}
+}
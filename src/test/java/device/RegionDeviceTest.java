@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2016 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * BYU RapidSmith Tools is free software: you may redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * BYU RapidSmith Tools is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * A copy of the GNU General Public License is included with the BYU
+ * RapidSmith Tools. It can be found at doc/LICENSE.GPL3.TXT. You may
+ * also get a copy of the license at <http://www.gnu.org/licenses/>.
+ */
+package device;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+import edu.byu.ece.rapidSmith.RSEnvironment;
+import edu.byu.ece.rapidSmith.device.Connection;
+import edu.byu.ece.rapidSmith.device.Device;
+import edu.byu.ece.rapidSmith.device.RegionDevice;
+import edu.byu.ece.rapidSmith.device.Site;
+import edu.byu.ece.rapidSmith.device.SiteType;
+import edu.byu.ece.rapidSmith.device.Tile;
+import edu.byu.ece.rapidSmith.device.Wire;
+import edu.byu.ece.rapidSmith.device.creation.PartialDeviceGenerator;
+
+/**
+ * This class contains unit tests for {@link RegionDevice}.  The view is compared
+ * against the partial device created by {@link PartialDeviceGenerator} for the same
+ * region.
+ */
+public class RegionDeviceTest {
+
+	private static Device largeDevice;
+	private static RegionDevice view;
+	private static Device partial;
+
+	@BeforeAll
+	public static void createDevices() {
+		largeDevice = RSEnvironment.defaultEnv().getDevice("xc7a100tcsg324-3");
+		view = new RegionDevice(largeDevice, "INT_R_X39Y130", "INT_L_X40Y126");
+		// the generator modifies the wire enumerator of the device it copies
+		Device copySource = RSEnvironment.defaultEnv().getDevice("xc7a100tcsg324-3", true);
+		partial = new PartialDeviceGenerator().generatePartialDevice("xc7a_small", copySource, "INT_R_X39Y130", "INT_L_X40Y126");
+	}
+
+	@Test
+	@DisplayName("Tiles and sites match the partial device")
+	public void tilesTest() {
+		assertEquals(partial.getRows(), view.getRows());
+		assertEquals(partial.getColumns(), view.getColumns());
+		for (int i = 0; i < view.getRows(); i++) {
+			for (int j = 0; j < view.getColumns(); j++) {
+				assertEquals(partial.getTile(i, j).getName(), view.getTile(i, j).getName());
+				assertEquals(partial.getTile(i, j).getType(), view.getTile(i, j).getType());
+			}
+		}
+		assertEquals(partial.getSites().size(), view.getSites().size());
+		Site site = view.getSite("SLICE_X63Y130");
+		assertNotNull(site);
+		assertSame(view, site.getTile().getDevice());
+		assertSame(largeDevice.getSite("SLICE_X63Y130"), view.getParentSite(site));
+	}
+
+	@Test
+	@DisplayName("Wire connections match the partial device")
+	public void connectionsTest() {
+		for (int i = 0; i < view.getRows(); i++) {
+			for (int j = 0; j < view.getColumns(); j++) {
+				Tile viewTile = view.getTile(i, j);
+				Tile partialTile = partial.getTile(i, j);
+				assertEquals(names(partialTile.getWires()), names(viewTile.getWires()), viewTile.getName());
+				for (Wire wire : viewTile.getWires()) {
+					Wire partialWire = partialTile.getWire(wire.getName());
+					assertEquals(sinks(partialWire.getWireConnections()), sinks(wire.getWireConnections()), wire.getFullName());
+					assertEquals(sinks(partialWire.getReverseWireConnections()), sinks(wire.getReverseWireConnections()), wire.getFullName());
+				}
+			}
+		}
+	}
+
+	@Test
+	@DisplayName("Site types set in the view do not modify the parent")
+	public void siteTypeTest() {
+		// a site of the view that can take a type other than its default one
+		Site site = null;
+		SiteType type = null;
+		for (Site candidate : view.getSites().values()) {
+			for (SiteType possible : candidate.getPossibleTypes()) {
+				if (possible != candidate.getDefaultType()) {
+					site = candidate;
+					type = possible;
+					break;
+				}
+			}
+			if (site != null)
+				break;
+		}
+		assertNotNull(site, "No site of the view has an alternate type");
+
+		Site parentSite = view.getParentSite(site);
+		try {
+			site.setType(type);
+			assertEquals(type, site.getType());
+			assertEquals(parentSite.getDefaultType(), parentSite.getType());
+		} finally {
+			site.setType(site.getDefaultType());
+		}
+		assertEquals(site.getDefaultType(), site.getType());
+	}
+
+	private static Set<String> names(Iterable<? extends Wire> wires) {
+		Set<String> names = new TreeSet<>();
+		wires.forEach(w -> names.add(w.getName()));
+		return names;
+	}
+
+	private static Set<String> sinks(Iterable<Connection> connections) {
+		Set<String> names = new TreeSet<>();
+		connections.forEach(c -> names.add(c.getSinkWire().getFullName()));
+		return names;
+	}
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2016 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * BYU RapidSmith Tools is free software: you may redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * BYU RapidSmith Tools is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * A copy of the GNU General Public License is included with the BYU
+ * RapidSmith Tools. It can be found at doc/LICENSE.GPL3.TXT. You may
+ * also get a copy of the license at <http://www.gnu.org/licenses/>.
+ */
+package device;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import edu.byu.ece.rapidSmith.RSEnvironment;
+import edu.byu.ece.rapidSmith.device.Device;
+import edu.byu.ece.rapidSmith.device.Site;
+import edu.byu.ece.rapidSmith.device.SiteType;
+import edu.byu.ece.rapidSmith.device.SiteTypeOverlay;
+
+import java.util.Arrays;
+
+/**
+ * Tests that site types set through a {@link SiteTypeOverlay} do not modify
+ * the shared device.
+ */
+public class SiteTypeOverlayTests {
+
+	private static Device device;
+	private static Site site;
+
+	@BeforeAll
+	public static void initializeTest() {
+		device = RSEnvironment.defaultEnv().getDevice("xc7a100tcsg324");
+		for (Site s : device.getSites().values()) {
+			if (s.getPossibleTypes().length > 1) {
+				site = s;
+				break;
+			}
+		}
+		assertNotNull(site, "No site with multiple possible types found");
+	}
+
+	@Test
+	@DisplayName("Overlay Types Are Isolated")
+	public void overlayTypesAreIsolated() {
+		SiteType defaultType = site.getType();
+		SiteType otherType = site.getPossibleTypes()[1];
+
+		SiteTypeOverlay first = new SiteTypeOverlay();
+		SiteTypeOverlay second = new SiteTypeOverlay();
+		try (SiteTypeOverlay.Binding ignored = first.bind()) {
+			site.setType(otherType);
+			assertEquals(otherType, site.getType());
+			assertTrue(first.isBound());
+
+			try (SiteTypeOverlay.Binding ignored2 = second.bind()) {
+				assertEquals(defaultType, site.getType());
+				assertNull(second.getType(site));
+			}
+			assertEquals(otherType, site.getType());
+		}
+
+		assertNull(SiteTypeOverlay.current());
+		assertEquals(defaultType, site.getType());
+		assertEquals(otherType, first.getType(site));
+	}
+
+	@Test
+	@DisplayName("Overlay Rejects Invalid Types")
+	public void overlayRejectsInvalidTypes() {
+		SiteTypeOverlay overlay = new SiteTypeOverlay();
+		for (Site other : device.getSites().values()) {
+			SiteType type = other.getDefaultType();
+			if (!Arrays.asList(site.getPossibleTypes()).contains(type)) {
+				assertThrows(IllegalArgumentException.class, () -> overlay.setType(site, type));
+				return;
+			}
+		}
+	}
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2016 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * BYU RapidSmith Tools is free software: you may redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * BYU RapidSmith Tools is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * A copy of the GNU General Public License is included with the BYU
+ * RapidSmith Tools. It can be found at doc/LICENSE.GPL3.TXT. You may
+ * also get a copy of the license at <http://www.gnu.org/licenses/>.
+ */
+package device;
+
+import edu.byu.ece.rapidSmith.device.WireConnection;
+import edu.byu.ece.rapidSmith.device.creation.WireCorrectionSpill;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests spilling wire corrections to disk and merging them back in order.
+ */
+public class WireCorrectionSpillTest {
+	private Path directory;
+
+	@BeforeEach
+	public void createDirectory() throws IOException {
+		directory = Files.createTempDirectory("rs2-spill");
+	}
+
+	@AfterEach
+	public void deleteDirectory() throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			for (Path file : (Iterable<Path>) files::iterator)
+				Files.delete(file);
+		}
+		Files.delete(directory);
+	}
+
+	/**
+	 * Returns the entries of the table, checking they are in ascending key order.
+	 */
+	private static List<WireCorrectionSpill.Entry> readAll(WireCorrectionSpill spill) {
+		List<WireCorrectionSpill.Entry> entries = new ArrayList<>();
+		Iterator<WireCorrectionSpill.Entry> it = spill.iterator();
+		while (it.hasNext())
+			entries.add(it.next());
+		assertThrows(NoSuchElementException.class, it::next);
+		for (int i = 1; i < entries.size(); i++)
+			assertTrue(entries.get(i - 1).compareTo(entries.get(i)) < 0);
+		return entries;
+	}
+
+	private static List<WireConnection> connections(int wire, int count) {
+		List<WireConnection> connections = new ArrayList<>();
+		for (int i = 0; i < count; i++)
+			connections.add(new WireConnection(wire + i, i - 1, 1 - i, i % 2 == 0));
+		return connections;
+	}
+
+	private static long countFiles(Path directory) throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.count();
+		}
+	}
+
+	@Test
+	@DisplayName("test entries within the memory budget are never spilled")
+	public void inMemory() throws IOException {
+		try (WireCorrectionSpill spill = new WireCorrectionSpill(directory, Long.MAX_VALUE)) {
+			spill.add(2, 5, connections(10, 2));
+			spill.add(1, 7, connections(20, 1));
+			spill.add(1, 3, Collections.emptyList());
+			assertEquals(0, spill.getNumRuns());
+
+			List<WireCorrectionSpill.Entry> entries = readAll(spill);
+			assertEquals(3, entries.size());
+			assertEquals(1, entries.get(0).getTileAddress());
+			assertEquals(3, entries.get(0).getWire());
+			assertEquals(0, entries.get(0).getConnections().length);
+			assertEquals(7, entries.get(1).getWire());
+			assertEquals(2, entries.get(2).getTileAddress());
+			assertEquals(connections(10, 2), Arrays.asList(entries.get(2).getConnections()));
+		}
+		assertEquals(0, countFiles(directory));
+	}
+
+	@Test
+	@DisplayName("test spilled entries round trip with their connections")
+	public void roundTrip() throws IOException {
+		// the budget holds about two entries, so most entries are spilled
+		try (WireCorrectionSpill spill = new WireCorrectionSpill(directory, 300)) {
+			Random random = new Random(7);
+			List<int[]> keys = new ArrayList<>();
+			for (int i = 0; i < 50; i++)
+				keys.add(new int[] { random.nextInt(10), random.nextInt(100) });
+			for (int[] key : keys)
+				spill.add(key[0], key[1], connections(key[0] * 100 + key[1], 1 + key[1] % 3));
+			assertTrue(spill.getNumRuns() > 1);
+			assertEquals(spill.getNumRuns(), countFiles(directory));
+
+			List<WireCorrectionSpill.Entry> entries = readAll(spill);
+			assertEquals(keys.size(), entries.size());
+			for (WireCorrectionSpill.Entry entry : entries) {
+				List<WireConnection> expected = connections(entry.getTileAddress() * 100 + entry.getWire(), 1 + entry.getWire() % 3);
+				assertEquals(expected, Arrays.asList(entry.getConnections()));
+			}
+		}
+		assertEquals(0, countFiles(directory));
+	}
+
+	@Test
+	@DisplayName("test more runs than the merge fan-in are merged in passes")
+	public void mergePasses() throws IOException {
+		// with no budget, every entry is spilled to its own run
+		int numEntries = 200;
+		try (WireCorrectionSpill spill = new WireCorrectionSpill(directory, 0)) {
+			for (int i = 0; i < numEntries; i++) {
+				// add the entries in descending order with two entries per key
+				int key = (numEntries - 1 - i) / 2;
+				spill.add(key / 16, key % 16, connections(i, 1));
+			}
+			assertEquals(numEntries, spill.getNumRuns());
+
+			List<WireCorrectionSpill.Entry> entries = readAll(spill);
+			assertTrue(spill.getNumRuns() <= 64);
+			assertEquals(spill.getNumRuns(), countFiles(directory));
+			assertEquals(numEntries, entries.size());
+			for (int i = 0; i < numEntries; i += 2) {
+				WireCorrectionSpill.Entry first = entries.get(i);
+				WireCorrectionSpill.Entry second = entries.get(i + 1);
+				assertEquals(i / 2 / 16, first.getTileAddress());
+				assertEquals(i / 2 % 16, first.getWire());
+				assertEquals(first.getTileAddress(), second.getTileAddress());
+				assertEquals(first.getWire(), second.getWire());
+				// entries with the same key are returned in the order they were added
+				int added = numEntries - 2 - i;
+				assertEquals(added, first.getConnections()[0].getWire());
+				assertEquals(added + 1, second.getConnections()[0].getWire());
+			}
+		}
+		assertEquals(0, countFiles(directory));
+	}
+
+	@Test
+	@DisplayName("test spilled runs are merged with the entries still buffered")
+	public void mergeWithBuffer() throws IOException {
+		try (WireCorrectionSpill spill = new WireCorrectionSpill(directory, 250)) {
+			spill.add(3, 1, connections(1, 2));
+			spill.add(1, 1, connections(2, 2));
+			spill.add(2, 1, connections(3, 1));
+			assertEquals(1, spill.getNumRuns());
+			spill.add(1, 1, connections(4, 1));
+			assertEquals(1, spill.getNumRuns());
+
+			List<WireCorrectionSpill.Entry> entries = readAll(spill);
+			assertEquals(4, entries.size());
+			assertEquals(2, entries.get(0).getConnections()[0].getWire());
+			assertEquals(4, entries.get(1).getConnections()[0].getWire());
+			assertEquals(3, entries.get(2).getConnections()[0].getWire());
+			assertEquals(1, entries.get(3).getConnections()[0].getWire());
+		}
+	}
+}
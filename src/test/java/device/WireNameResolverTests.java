@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2016 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * BYU RapidSmith Tools is free software: you may redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * BYU RapidSmith Tools is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * A copy of the GNU General Public License is included with the BYU
+ * RapidSmith Tools. It can be found at doc/LICENSE.GPL3.TXT. You may
+ * also get a copy of the license at <http://www.gnu.org/licenses/>.
+ */
+package device;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import edu.byu.ece.rapidSmith.RSEnvironment;
+import edu.byu.ece.rapidSmith.device.Device;
+import edu.byu.ece.rapidSmith.device.Tile;
+import edu.byu.ece.rapidSmith.device.Wire;
+import edu.byu.ece.rapidSmith.device.WireNameResolver;
+
+/**
+ * Tests the name resolution of tiles and wires through {@link WireNameResolver}.
+ */
+public class WireNameResolverTests {
+
+	private static Device device;
+	private static WireNameResolver resolver;
+
+	@BeforeAll
+	public static void initializeTest() {
+		device = RSEnvironment.defaultEnv().getDevice("xc7a100tcsg324");
+		resolver = device.getNameResolver();
+	}
+
+	/**
+	 * Every tile and every wire of a tile should resolve to the same objects
+	 * as the string map lookups in the device.
+	 */
+	@Test
+	@DisplayName("Resolve Tile and Wire Names")
+	public void resolveNames() {
+		for (Tile tile : device.getTiles()) {
+			assertSame(tile, resolver.getTile(tile.getName()), "Wrong tile resolved for " + tile.getName());
+		}
+
+		Tile tile = device.getTile(0, 0);
+		for (Wire wire : tile.getWires()) {
+			assertEquals(wire, resolver.getWire(wire.getFullName()), "Wrong wire resolved for " + wire.getFullName());
+			assertEquals(wire.getWireEnum(), resolver.getWireEnum(wire.getName()), "Wrong enum resolved for " + wire.getName());
+		}
+	}
+
+	/**
+	 * Names embedded in a larger sequence should resolve without being
+	 * split, and unknown names should not resolve.
+	 */
+	@Test
+	@DisplayName("Resolve Names in a Range")
+	public void resolveRanges() {
+		Tile tile = device.getTile(0, 0);
+		String line = "net " + tile.getName() + " end";
+		int start = line.indexOf(' ') + 1;
+		assertSame(tile, resolver.getTile(line, start, start + tile.getName().length()));
+
+		assertNull(resolver.getTile("NOT_A_TILE_X0Y0"));
+		assertEquals(-1, resolver.getWireEnum("NOT_A_WIRE"));
+		assertNull(resolver.getWire(tile.getName()), "Name without a separator should not resolve");
+		assertNull(resolver.getWire(tile.getName() + "/NOT_A_WIRE"));
+
+		CharSequence[] names = { tile.getName() + "/NOT_A_WIRE", "NOT_A_TILE_X0Y0/NOT_A_WIRE" };
+		Tile[] tiles = new Tile[names.length];
+		int[] wireEnums = new int[names.length];
+		assertEquals(0, resolver.resolveWires(names, tiles, wireEnums), "No names should resolve");
+		assertNull(tiles[0]);
+		assertEquals(-1, wireEnums[1]);
+	}
+
+	/**
+	 * Bulk resolution should produce the same tiles and wires as resolving
+	 * each name on its own, including names that are not strings.
+	 */
+	@Test
+	@DisplayName("Resolve Wires in Bulk")
+	public void resolveWiresInBulk() {
+		Tile tile = device.getTile("INT_L_X0Y0");
+		Wire[] wires = tile.getWires().toArray(new Wire[0]);
+		assertTrue(wires.length > 1);
+
+		// valid names from the tile with an unknown name in between
+		CharSequence[] names = { wires[0].getFullName(), "NOT_A_TILE_X0Y0/NOT_A_WIRE",
+				new StringBuilder(wires[1].getFullName()) };
+		Tile[] tiles = new Tile[names.length];
+		int[] wireEnums = new int[names.length];
+		assertEquals(2, resolver.resolveWires(names, tiles, wireEnums));
+
+		assertSame(tile, tiles[0]);
+		assertEquals(wires[0].getWireEnum(), wireEnums[0]);
+		assertNull(tiles[1]);
+		assertEquals(-1, wireEnums[1]);
+		assertSame(tile, tiles[2]);
+		assertEquals(wires[1].getWireEnum(), wireEnums[2]);
+		assertEquals(wires[1], resolver.getWire(names[2]));
+
+		assertThrows(IllegalArgumentException.class,
+				() -> resolver.resolveWires(names, new Tile[1], new int[1]));
+	}
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2016 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * BYU RapidSmith Tools is free software: you may redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * BYU RapidSmith Tools is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * A copy of the GNU General Public License is included with the BYU
+ * RapidSmith Tools. It can be found at doc/LICENSE.GPL3.TXT. You may
+ * also get a copy of the license at <http://www.gnu.org/licenses/>.
+ */
+package device;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import edu.byu.ece.rapidSmith.device.Device;
+import edu.byu.ece.rapidSmith.device.FamilyType;
+import edu.byu.ece.rapidSmith.device.PIPRouteThrough;
+import edu.byu.ece.rapidSmith.device.SiteType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Tests the wire pair lookup table behind {@link Device#getRouteThrough(int, int)}
+ * through the route through methods of the device.
+ */
+public class WirePairMapTest {
+	private static final SiteType SLICEL = SiteType.valueOf(FamilyType.valueOf("artix7"), "SLICEL");
+
+	private static PIPRouteThrough routeThrough(int index) {
+		return new PIPRouteThrough(SLICEL, "I" + index, "O" + index);
+	}
+
+	@Test
+	@DisplayName("a device without route throughs has none")
+	public void emptyDevice() {
+		Device device = new Device();
+		assertNull(device.getRouteThrough(0, 0));
+		assertNull(device.getRouteThrough(1, 2));
+	}
+
+	@Test
+	@DisplayName("route throughs are found by their wire pair and replaced by later ones")
+	public void putAndGet() {
+		Device device = new Device();
+		device.addRouteThrough(1, 2, routeThrough(0));
+		device.addRouteThrough(2, 1, routeThrough(1));
+		device.addRouteThrough(0, 0, routeThrough(2));
+		device.addRouteThrough(-1, 7, routeThrough(3));
+		device.addRouteThrough(7, -1, routeThrough(4));
+
+		// the lookup table is built by the first query
+		assertEquals(routeThrough(0), device.getRouteThrough(1, 2));
+		assertEquals(routeThrough(1), device.getRouteThrough(2, 1));
+		assertEquals(routeThrough(2), device.getRouteThrough(0, 0));
+		assertEquals(routeThrough(3), device.getRouteThrough(-1, 7));
+		assertEquals(routeThrough(4), device.getRouteThrough(7, -1));
+		assertNull(device.getRouteThrough(1, 1));
+		assertNull(device.getRouteThrough(2, 2));
+
+		// later additions go to the built table
+		device.addRouteThrough(3, 4, routeThrough(5));
+		device.addRouteThrough(1, 2, routeThrough(6));
+		assertEquals(routeThrough(5), device.getRouteThrough(3, 4));
+		assertEquals(routeThrough(6), device.getRouteThrough(1, 2));
+		assertEquals(routeThrough(1), device.getRouteThrough(2, 1));
+	}
+
+	@Test
+	@DisplayName("every route through of the device is found after the table grows or is rebuilt")
+	public void growAndIterate() {
+		List<int[]> pairs = new ArrayList<>();
+		for (int start = -20; start < 80; start++) {
+			for (int end = -10; end < 40; end++)
+				pairs.add(new int[] { start, end });
+		}
+		Collections.shuffle(pairs, new Random(27));
+
+		// build the table while it is empty so the additions make it grow
+		Device device = new Device();
+		assertNull(device.getRouteThrough(0, 0));
+		for (int i = 0; i < pairs.size(); i++)
+			device.addRouteThrough(pairs.get(i)[0], pairs.get(i)[1], routeThrough(i));
+		assertLookupMatchesMap(device, pairs.size());
+
+		// a new map replaces the table, which is then rebuilt at its full size
+		Map<Integer, Map<Integer, PIPRouteThrough>> copy = new HashMap<>();
+		device.getRouteThroughMap().forEach((end, sources) -> copy.put(end, new HashMap<>(sources)));
+		copy.get(0).remove(0);
+		device.setRouteThroughMap(copy);
+		assertNull(device.getRouteThrough(0, 0));
+		assertLookupMatchesMap(device, pairs.size() - 1);
+	}
+
+	private static void assertLookupMatchesMap(Device device, int expectedSize) {
+		int size = 0;
+		for (Map.Entry<Integer, Map<Integer, PIPRouteThrough>> e : device.getRouteThroughMap().entrySet()) {
+			for (Map.Entry<Integer, PIPRouteThrough> source : e.getValue().entrySet()) {
+				assertEquals(source.getValue(), device.getRouteThrough(source.getKey(), e.getKey()));
+				size++;
+			}
+		}
+		assertEquals(expectedSize, size);
+	}
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2016 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * BYU RapidSmith Tools is free software: you may redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * BYU RapidSmith Tools is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * A copy of the GNU General Public License is included with the BYU
+ * RapidSmith Tools. It can be found at doc/LICENSE.GPL3.TXT. You may
+ * also get a copy of the license at <http://www.gnu.org/licenses/>.
+ */
+package examples;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import edu.byu.ece.rapidSmith.RSEnvironment;
+import edu.byu.ece.rapidSmith.design.NetType;
+import edu.byu.ece.rapidSmith.design.subsite.Cell;
+import edu.byu.ece.rapidSmith.design.subsite.CellDesign;
+import edu.byu.ece.rapidSmith.design.subsite.CellLibrary;
+import edu.byu.ece.rapidSmith.design.subsite.CellNet;
+import edu.byu.ece.rapidSmith.design.subsite.CellPin;
+import edu.byu.ece.rapidSmith.device.Device;
+import edu.byu.ece.rapidSmith.device.Site;
+import edu.byu.ece.rapidSmith.examples.placerDemo.ClusterPacker;
+import edu.byu.ece.rapidSmith.examples.placerDemo.PackedCluster;
+
+/**
+ * jUnit test for the ClusterPacker class
+ */
+class ClusterPackerTest {
+
+	private static Device device;
+	private static CellLibrary libCells;
+
+	private CellDesign design;
+	private int netCount;
+
+	@BeforeAll
+	static void initializeTest() {
+		try {
+			device = RSEnvironment.defaultEnv().getDevice("xc7a100tcsg324");
+			libCells = new CellLibrary(RSEnvironment.defaultEnv()
+					.getPartFolderPath("xc7a100tcsg324")
+					.resolve("cellLibrary.xml"));
+		} catch (IOException e) {
+			fail("Cannot find cell library XML in test directory. Setup is incorrect.");
+		}
+	}
+
+	@BeforeEach
+	void createDesign() {
+		design = new CellDesign("packing", device.getPartName());
+		netCount = 0;
+	}
+
+	private Cell addCell(String name, String type) {
+		return design.addCell(new Cell(name, libCells.get(type)));
+	}
+
+	private CellNet connect(CellPin... pins) {
+		CellNet net = new CellNet("net" + netCount++, NetType.WIRE);
+		design.addNet(net);
+		for (CellPin pin : pins)
+			net.connectToPin(pin);
+		return net;
+	}
+
+	/**
+	 * Adds a LUT with each of its inputs on a net of its own.
+	 */
+	private Cell addLut(String name, int inputs) {
+		Cell lut = addCell(name, "LUT" + inputs);
+		for (int i = 0; i < inputs; i++)
+			connect(lut.getPin("I" + i));
+		return lut;
+	}
+
+	private static Set<CellNet> inputNets(Cell cell) {
+		Set<CellNet> nets = new HashSet<>();
+		for (CellPin pin : cell.getInputPins()) {
+			if (pin.getNet() != null)
+				nets.add(pin.getNet());
+		}
+		return nets;
+	}
+
+	@Test
+	@DisplayName("test a LUT and the flip flop it drives are packed together")
+	void testLutDrivingFlipFlop() {
+		Cell lut = addLut("lut", 6);
+		Cell ff = addCell("ff", "FDRE");
+		connect(lut.getPin("O"), ff.getPin("D"));
+		connect(ff.getPin("C"));
+
+		ClusterPacker packer = new ClusterPacker(device, design);
+		List<PackedCluster> clusters = packer.pack();
+		assertEquals(1, clusters.size());
+		assertSame(packer.getCluster(lut), packer.getCluster(ff));
+	}
+
+	@Test
+	@DisplayName("test flip flops with different clocks are packed apart")
+	void testClockSeparation() {
+		Cell ff1 = addCell("ff1", "FDRE");
+		Cell ff2 = addCell("ff2", "FDRE");
+		connect(ff1.getPin("C"));
+		connect(ff2.getPin("C"));
+		connect(ff1.getPin("Q"), ff2.getPin("D"));
+
+		ClusterPacker packer = new ClusterPacker(device, design);
+		packer.pack();
+		assertNotSame(packer.getCluster(ff1), packer.getCluster(ff2));
+	}
+
+	@Test
+	@DisplayName("test LUTs sharing a 5LUT/6LUT pair use at most five inputs together")
+	void testLutPairs() {
+		List<Cell> luts = new ArrayList<>();
+		for (int i = 0; i < 8; i++)
+			luts.add(addLut("lut6_" + i, 6));
+		for (int i = 0; i < 8; i++)
+			luts.add(addLut("lut3_" + i, 3));
+		for (int i = 0; i < 8; i++)
+			luts.add(addLut("lut2_" + i, 2));
+
+		ClusterPacker packer = new ClusterPacker(device, design);
+		List<PackedCluster> clusters = packer.pack();
+		int pairs = 0;
+		for (PackedCluster cluster : clusters) {
+			Map<String, Cell> byBel = new HashMap<>();
+			for (Cell cell : cluster.getCells())
+				byBel.put(cluster.getBelId(cell).getName(), cell);
+			for (char letter = 'A'; letter <= 'D'; letter++) {
+				Cell lut6 = byBel.get(letter + "6LUT");
+				Cell lut5 = byBel.get(letter + "5LUT");
+				if (lut6 == null || lut5 == null)
+					continue;
+				pairs++;
+				Set<CellNet> inputs = inputNets(lut6);
+				inputs.addAll(inputNets(lut5));
+				assertTrue(inputs.size() <= 5, cluster + " " + letter);
+			}
+		}
+		// the two input LUTs fit in pairs with each other
+		assertTrue(pairs > 0);
+		for (Cell lut : luts)
+			assertNotNull(packer.getCluster(lut));
+	}
+
+	@Test
+	@DisplayName("test carry chains are placed in vertically adjacent sites")
+	void testChainPlacement() {
+		List<List<Cell>> chains = new ArrayList<>();
+		for (int c = 0; c < 2; c++) {
+			List<Cell> chain = new ArrayList<>();
+			for (int i = 0; i < 3; i++) {
+				Cell carry = addCell("carry" + c + "_" + i, "CARRY4");
+				if (!chain.isEmpty())
+					connect(chain.get(chain.size() - 1).getPin("CO[3]"), carry.getPin("CI"));
+				chain.add(carry);
+			}
+			chains.add(chain);
+		}
+
+		ClusterPacker packer = new ClusterPacker(device, design);
+		packer.pack();
+		for (List<Cell> chain : chains) {
+			PackedCluster head = packer.getCluster(chain.get(0));
+			assertTrue(head.isChainHead());
+			assertSame(packer.getCluster(chain.get(1)), head.getChainNext());
+			assertSame(packer.getCluster(chain.get(2)), head.getChainNext().getChainNext());
+		}
+
+		packer.placeClusters();
+		Set<Site> used = new HashSet<>();
+		for (List<Cell> chain : chains) {
+			for (int i = 0; i < chain.size(); i++) {
+				Site site = chain.get(i).getSite();
+				assertNotNull(site);
+				assertTrue(used.add(site));
+				if (i > 0) {
+					Site below = chain.get(i - 1).getSite();
+					assertEquals(below.getInstanceX(), site.getInstanceX());
+					assertEquals(below.getInstanceY() + 1, site.getInstanceY());
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2016 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * BYU RapidSmith Tools is free software: you may redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * BYU RapidSmith Tools is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * A copy of the GNU General Public License is included with the BYU
+ * RapidSmith Tools. It can be found at doc/LICENSE.GPL3.TXT. You may
+ * also get a copy of the license at <http://www.gnu.org/licenses/>.
+ */
+package examples;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import edu.byu.ece.rapidSmith.RSEnvironment;
+import edu.byu.ece.rapidSmith.design.subsite.Cell;
+import edu.byu.ece.rapidSmith.design.subsite.CellDesign;
+import edu.byu.ece.rapidSmith.design.subsite.CellNet;
+import edu.byu.ece.rapidSmith.design.subsite.CellPin;
+import edu.byu.ece.rapidSmith.design.subsite.RouteTree;
+import edu.byu.ece.rapidSmith.device.Bel;
+import edu.byu.ece.rapidSmith.device.BelPin;
+import edu.byu.ece.rapidSmith.device.Connection;
+import edu.byu.ece.rapidSmith.examples.aStarRouter.EcoRouter;
+import edu.byu.ece.rapidSmith.examples.aStarRouter.EcoRouter.Report;
+import edu.byu.ece.rapidSmith.interfaces.vivado.VivadoEdifInterface;
+import edu.byu.ece.rapidSmith.interfaces.vivado.VivadoInterface;
+
+/**
+ * jUnit test for the EcoRouter class
+ */
+class EcoRouterTest {
+
+	private static final Path checkpoint = RSEnvironment.defaultEnv().getEnvironmentPath()
+			.resolve("src")
+			.resolve("test")
+			.resolve("resources")
+			.resolve("ImportTests")
+			.resolve("RSCP")
+			.resolve("artix7")
+			.resolve("count16.rscp");
+
+	@BeforeAll
+	static void initializeTest() {
+		VivadoEdifInterface.suppressWarnings(true);
+		VivadoEdifInterface.suppressInfoMessages(true);
+	}
+
+	private static CellDesign loadRoutedDesign() throws IOException {
+		return VivadoInterface.loadRSCP(checkpoint.toString()).getDesign();
+	}
+
+	/**
+	 * Returns a net of the design routed with a single intersite tree that reaches a
+	 * sink in another site through at least two branches.
+	 */
+	private static CellNet findIntersiteNet(CellDesign design) {
+		for (CellNet net : design.getNets()) {
+			if (net.isStaticNet() || net.getSourceRouteTree() == null || !net.getPartitionPins().isEmpty())
+				continue;
+			List<RouteTree> intersite = net.getIntersiteRouteTreeList();
+			if (intersite.size() != 1 || intersite.get(0).isLeaf())
+				continue;
+			if (countIntersiteSinks(net) > 1)
+				return net;
+		}
+		fail("No net with intersite routing in " + design.getName());
+		return null;
+	}
+
+	private static int countIntersiteSinks(CellNet net) {
+		int count = 0;
+		for (CellPin sink : net.getRoutedSinks()) {
+			for (BelPin belPin : sink.getMappedBelPins()) {
+				RouteTree leaf = net.getSinkRouteTree(belPin);
+				if (leaf != null && leaf.getRoot() != net.getSourceRouteTree())
+					count++;
+			}
+		}
+		return count;
+	}
+
+	private static Map<BelPin, RouteTree> copySinkTrees(CellNet net) {
+		Map<BelPin, RouteTree> sinkTrees = new HashMap<>();
+		for (CellPin sink : net.getRoutedSinks()) {
+			for (BelPin belPin : sink.getMappedBelPins())
+				sinkTrees.put(belPin, net.getSinkRouteTree(belPin));
+		}
+		return sinkTrees;
+	}
+
+	private static int countNodes(List<RouteTree> trees) {
+		int count = 0;
+		for (RouteTree tree : trees) {
+			for (RouteTree ignored : tree)
+				count++;
+		}
+		return count;
+	}
+
+	@Test
+	@DisplayName("test re-placing a cell in place keeps the routing of its nets")
+	void testReplaceInPlace() throws IOException {
+		CellDesign design = loadRoutedDesign();
+		CellNet net = findIntersiteNet(design);
+		Cell cell = net.getSourcePin().getCell();
+		Map<BelPin, RouteTree> sinkTrees = copySinkTrees(net);
+		int intersiteWires = countNodes(net.getIntersiteRouteTreeList());
+
+		// move the source of the net off of its BEL and back, restoring the pin mappings
+		design.setTrackInvalidatedNets(true);
+		Bel bel = cell.getBel();
+		Map<CellPin, Set<BelPin>> mappings = new HashMap<>();
+		for (CellPin pin : cell.getPins())
+			mappings.put(pin, new HashSet<>(pin.getMappedBelPins()));
+		design.unplaceCell(cell);
+		design.placeCell(cell, bel);
+		mappings.forEach(CellPin::mapToBelPins);
+		assertTrue(design.getInvalidatedNets().contains(net));
+
+		int invalidated = design.getInvalidatedNets().size();
+		Report report = new EcoRouter(design).reroute();
+		assertTrue(design.getInvalidatedNets().isEmpty());
+		assertEquals(invalidated, report.getNetsRerouted() + report.getSkippedNets().size());
+		assertTrue(report.getUnroutedSinks().isEmpty());
+		assertEquals(0, report.getReroutedSinks());
+		assertTrue(report.getPreservedSinks() > 0);
+
+		// the routing of the net is kept as is
+		assertEquals(1, net.getIntersiteRouteTreeList().size());
+		assertEquals(intersiteWires, countNodes(net.getIntersiteRouteTreeList()));
+		sinkTrees.forEach((belPin, tree) -> assertSame(tree, net.getSinkRouteTree(belPin)));
+	}
+
+	@Test
+	@DisplayName("test intersite trees starting at the same site pin are merged")
+	void testMergeIntersiteTrees() throws IOException {
+		CellDesign design = loadRoutedDesign();
+		CellNet net = findIntersiteNet(design);
+		Map<BelPin, RouteTree> sinkTrees = copySinkTrees(net);
+		int intersiteSinks = countIntersiteSinks(net);
+		RouteTree root = net.getIntersiteRouteTreeList().get(0);
+		int intersiteWires = countNodes(net.getIntersiteRouteTreeList());
+
+		// move the first branch of the intersite tree into a tree of its own
+		RouteTree branch = root.getChildren().iterator().next();
+		Connection connection = branch.getConnection();
+		root.disconnect(branch);
+		RouteTree split = new RouteTree(root.getWire());
+		split.connect(connection, branch);
+		List<RouteTree> trees = new ArrayList<>();
+		trees.add(root);
+		trees.add(split);
+		net.setIntersiteRouteTrees(trees);
+
+		Report report = new EcoRouter(design).reroute(Collections.singletonList(net));
+		assertEquals(1, report.getNetsRerouted());
+		assertTrue(report.getUnroutedSinks().isEmpty());
+		assertEquals(0, report.getReroutedSinks());
+		assertEquals(0, report.getAddedWires());
+
+		// both trees are merged back into one and every sink keeps its routing
+		List<RouteTree> merged = net.getIntersiteRouteTreeList();
+		assertEquals(1, merged.size());
+		assertEquals(root.getWire(), merged.get(0).getWire());
+		assertEquals(intersiteWires, countNodes(merged));
+		assertEquals(intersiteSinks, countIntersiteSinks(net));
+		sinkTrees.forEach((belPin, tree) -> assertSame(tree, net.getSinkRouteTree(belPin)));
+	}
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2016 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * BYU RapidSmith Tools is free software: you may redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * BYU RapidSmith Tools is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * A copy of the GNU General Public License is included with the BYU
+ * RapidSmith Tools. It can be found at doc/LICENSE.GPL3.TXT. You may
+ * also get a copy of the license at <http://www.gnu.org/licenses/>.
+ */
+package gui;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import edu.byu.ece.rapidSmith.gui.QuadTree;
+
+/**
+ * Tests the quad-tree used for hit testing in the tile scenes.
+ */
+public class QuadTreeTest {
+
+	@Test
+	@DisplayName("Query returns exactly the intersecting items")
+	public void queryMatchesBruteForce() {
+		QuadTree<Integer> tree = new QuadTree<>(0, 0, 1000, 1000);
+		Random random = new Random(42);
+		double[][] bounds = new double[2000][];
+		for (int i = 0; i < bounds.length; i++) {
+			double x = random.nextDouble() * 1000;
+			double y = random.nextDouble() * 1000;
+			double w = random.nextDouble() * 50;
+			double h = random.nextDouble() * 50;
+			bounds[i] = new double[] { x, y, x + w, y + h };
+			tree.insert(i, x, y, x + w, y + h);
+		}
+		assertEquals(bounds.length, tree.size());
+
+		for (int q = 0; q < 100; q++) {
+			double x = random.nextDouble() * 1000;
+			double y = random.nextDouble() * 1000;
+			double x2 = x + random.nextDouble() * 200;
+			double y2 = y + random.nextDouble() * 200;
+			Set<Integer> expected = new HashSet<>();
+			for (int i = 0; i < bounds.length; i++) {
+				double[] b = bounds[i];
+				if (b[0] <= x2 && b[2] >= x && b[1] <= y2 && b[3] >= y)
+					expected.add(i);
+			}
+			assertEquals(expected, new HashSet<>(tree.query(x, y, x2, y2)));
+		}
+	}
+
+	@Test
+	@DisplayName("Items outside of the tree bounds are still found")
+	public void itemsOutsideBounds() {
+		QuadTree<String> tree = new QuadTree<>(0, 0, 100, 100);
+		tree.insert("inside", 10, 10, 20, 20);
+		tree.insert("outside", 150, 150, 160, 160);
+		// reversed coordinates, as for a line drawn right to left
+		tree.insert("reversed", 90, 90, 80, 80);
+
+		assertEquals(1, tree.query(155, 155, 156, 156).size());
+		assertTrue(tree.query(85, 85, 85, 85).contains("reversed"));
+		assertTrue(tree.query(30, 30, 40, 40).isEmpty());
+
+		tree.clear();
+		assertTrue(tree.isEmpty());
+		assertTrue(tree.query(0, 0, 200, 200).isEmpty());
+	}
+}
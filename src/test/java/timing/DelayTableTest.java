@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2016 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * BYU RapidSmith Tools is free software: you may redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * BYU RapidSmith Tools is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * A copy of the GNU General Public License is included with the BYU
+ * RapidSmith Tools. It can be found at doc/LICENSE.GPL3.TXT. You may
+ * also get a copy of the license at <http://www.gnu.org/licenses/>.
+ */
+package timing;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import edu.byu.ece.rapidSmith.RSEnvironment;
+import edu.byu.ece.rapidSmith.design.subsite.CellLibrary;
+import edu.byu.ece.rapidSmith.design.subsite.LibraryCell;
+import edu.byu.ece.rapidSmith.device.Device;
+import edu.byu.ece.rapidSmith.device.Site;
+import edu.byu.ece.rapidSmith.device.SiteType;
+import edu.byu.ece.rapidSmith.device.WireType;
+import edu.byu.ece.rapidSmith.timing.DelayTable;
+import edu.byu.ece.rapidSmith.util.Exceptions;
+
+/**
+ * jUnit test for the DelayTable class
+ */
+class DelayTableTest {
+
+	private static Device device;
+	private static LibraryCell lut;
+	private static LibraryCell ff;
+	private static List<Site> slices;
+
+	@BeforeAll
+	static void initializeTest() {
+		try {
+			device = RSEnvironment.defaultEnv().getDevice("xc7a100tcsg324");
+			CellLibrary libCells = new CellLibrary(RSEnvironment.defaultEnv()
+					.getPartFolderPath("xc7a100tcsg324")
+					.resolve("cellLibrary.xml"));
+			lut = libCells.get("LUT6");
+			ff = libCells.get("FDRE");
+			slices = device.getAllSitesOfType(SiteType.valueOf(device.getFamily(), "SLICEL"));
+		} catch (IOException e) {
+			fail("Cannot find cell library XML in test directory. Setup is incorrect.");
+		}
+	}
+
+	private static DelayTable load(String... lines) throws IOException {
+		Path path = Files.createTempFile("delays", ".txt");
+		try {
+			Files.write(path, Arrays.asList(lines));
+			return DelayTable.load(path);
+		} finally {
+			Files.delete(path);
+		}
+	}
+
+	private static int distance(Site s1, Site s2) {
+		return Math.abs(s1.getTile().getRow() - s2.getTile().getRow()) +
+				Math.abs(s1.getTile().getColumn() - s2.getTile().getColumn());
+	}
+
+	@Test
+	@DisplayName("test each kind of entry is loaded")
+	void testLoadEntries() throws IOException {
+		DelayTable table = load(
+				"# delays of the test",
+				"",
+				"arc LUT6 I0 O 120",
+				"clk2q FDRE Q 310.5",
+				"  setup FDRE D 40  ",
+				"wire DOUBLE 75",
+				"default arc 90",
+				"default clk2q 280",
+				"default setup 30",
+				"default wire 60",
+				"default intrasite 20",
+				"default net 150",
+				"default tile 10");
+
+		assertEquals(120.0, table.getArcDelay(lut, "I0", "O"), 1e-9);
+		assertEquals(310.5, table.getClockToOut(ff, "Q"), 1e-9);
+		assertEquals(40.0, table.getSetupTime(ff, "D"), 1e-9);
+		assertEquals(75.0, table.getWireDelay(WireType.DOUBLE), 1e-9);
+		assertEquals(20.0, table.getIntrasiteDelay(), 1e-9);
+
+		// entries not in the table use the loaded defaults
+		assertEquals(90.0, table.getArcDelay(lut, "I1", "O"), 1e-9);
+		assertEquals(90.0, table.getArcDelay(ff, "D", "Q"), 1e-9);
+		assertEquals(280.0, table.getClockToOut(lut, "O"), 1e-9);
+		assertEquals(30.0, table.getSetupTime(ff, "CE"), 1e-9);
+		assertEquals(60.0, table.getWireDelay(WireType.TRIPLE), 1e-9);
+		assertEquals(60.0, table.getWireDelay(null), 1e-9);
+
+		Site source = slices.get(0);
+		Site sink = slices.get(slices.size() - 1);
+		assertEquals(20.0, table.estimateNetDelay(source, source), 1e-9);
+		assertEquals(150.0 + 10.0 * distance(source, sink), table.estimateNetDelay(source, sink), 1e-9);
+	}
+
+	@Test
+	@DisplayName("test a table without entries uses the built-in defaults")
+	void testDefaults() throws IOException {
+		DelayTable table = load("# no entries");
+		assertEquals(100.0, table.getArcDelay(lut, "I0", "O"), 1e-9);
+		assertEquals(300.0, table.getClockToOut(ff, "Q"), 1e-9);
+		assertEquals(50.0, table.getSetupTime(ff, "D"), 1e-9);
+		assertEquals(100.0, table.getWireDelay(WireType.DOUBLE), 1e-9);
+		assertEquals(50.0, table.getIntrasiteDelay(), 1e-9);
+
+		Site source = slices.get(0);
+		Site sink = slices.get(slices.size() - 1);
+		assertEquals(200.0 + 50.0 * distance(source, sink), table.estimateNetDelay(source, sink), 1e-9);
+	}
+
+	@Test
+	@DisplayName("test malformed entries report their line number")
+	void testMalformedEntries() {
+		String[][] files = {
+				{ "arc LUT6 I0 O 120", "# comment", "arc LUT6 I0 120" },
+				{ "arc LUT6 I0 O 120", "", "setup FDRE D fast" },
+				{ "wire DOUBLE 75", "wire NOT_A_TYPE 75", "" },
+				{ "default net 150", "default fanout 10" },
+				{ "# comment", "delay LUT6 I0 O 120" },
+		};
+		int[] lineNumbers = { 3, 3, 2, 2, 2 };
+		for (int i = 0; i < files.length; i++) {
+			String[] lines = files[i];
+			Exceptions.ParseException e = assertThrows(Exceptions.ParseException.class, () -> load(lines));
+			assertTrue(e.getMessage().contains("line " + lineNumbers[i] + " "), e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2016 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * BYU RapidSmith Tools is free software: you may redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * BYU RapidSmith Tools is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * A copy of the GNU General Public License is included with the BYU
+ * RapidSmith Tools. It can be found at doc/LICENSE.GPL3.TXT. You may
+ * also get a copy of the license at <http://www.gnu.org/licenses/>.
+ */
+package timing;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import edu.byu.ece.rapidSmith.RSEnvironment;
+import edu.byu.ece.rapidSmith.design.NetType;
+import edu.byu.ece.rapidSmith.design.subsite.Cell;
+import edu.byu.ece.rapidSmith.design.subsite.CellDesign;
+import edu.byu.ece.rapidSmith.design.subsite.CellLibrary;
+import edu.byu.ece.rapidSmith.design.subsite.CellNet;
+import edu.byu.ece.rapidSmith.design.subsite.CellPin;
+import edu.byu.ece.rapidSmith.device.Device;
+import edu.byu.ece.rapidSmith.device.Site;
+import edu.byu.ece.rapidSmith.device.SiteType;
+import edu.byu.ece.rapidSmith.timing.DelayTable;
+import edu.byu.ece.rapidSmith.timing.TimingGraph;
+
+/**
+ * jUnit test for the TimingGraph class.  The design is a LUT between two flip
+ * flops: ff1.Q -> lut.I0, lut.O -> ff2.D, with the LUT and ff2 in one site.
+ */
+class TimingGraphTest {
+
+	private static final double CLK2Q = 310.0;
+	private static final double LUT_DELAY = 120.0;
+	private static final double SETUP = 40.0;
+	private static final double PERIOD = 2000.0;
+
+	private static Device device;
+	private static CellLibrary libCells;
+	private static List<Site> slices;
+
+	private CellDesign design;
+	private DelayTable delays;
+	private Cell ff1;
+	private Cell lut;
+	private Cell ff2;
+	private Site site1;
+	private Site site2;
+
+	@BeforeAll
+	static void initializeTest() {
+		try {
+			device = RSEnvironment.defaultEnv().getDevice("xc7a100tcsg324");
+			libCells = new CellLibrary(RSEnvironment.defaultEnv()
+					.getPartFolderPath("xc7a100tcsg324")
+					.resolve("cellLibrary.xml"));
+			slices = device.getAllSitesOfType(SiteType.valueOf(device.getFamily(), "SLICEL"));
+		} catch (IOException e) {
+			fail("Cannot find cell library XML in test directory. Setup is incorrect.");
+		}
+	}
+
+	@BeforeEach
+	void createDesign() {
+		delays = new DelayTable();
+		delays.setClockToOut("FDRE", "Q", CLK2Q);
+		delays.setArcDelay("LUT6", "I0", "O", LUT_DELAY);
+		delays.setSetupTime("FDRE", "D", SETUP);
+
+		site1 = slices.get(0);
+		site2 = slices.get(slices.size() / 2);
+		design = new CellDesign("timing", device.getPartName());
+		ff1 = design.addCell(new Cell("ff1", libCells.get("FDRE")));
+		lut = design.addCell(new Cell("lut", libCells.get("LUT6")));
+		ff2 = design.addCell(new Cell("ff2", libCells.get("FDRE")));
+		design.placeCell(ff1, site1.getBel("AFF"));
+		design.placeCell(lut, site2.getBel("A6LUT"));
+		design.placeCell(ff2, site2.getBel("AFF"));
+
+		addNet("clk", ff1.getPin("C"), ff2.getPin("C"));
+		addNet("n1", ff1.getPin("Q"), lut.getPin("I0"));
+		addNet("n2", lut.getPin("O"), ff2.getPin("D"));
+	}
+
+	private void addNet(String name, CellPin... pins) {
+		CellNet net = new CellNet(name, NetType.WIRE);
+		design.addNet(net);
+		for (CellPin pin : pins)
+			net.connectToPin(pin);
+	}
+
+	private double estimate(Site source, Site sink) {
+		return delays.estimateNetDelay(source, sink);
+	}
+
+	@Test
+	@DisplayName("test the arrival, required and slack times of a register to register path")
+	void testPathTimes() {
+		TimingGraph graph = new TimingGraph(device, design, delays, PERIOD);
+		double net1 = estimate(site1, site2);
+		double net2 = delays.getIntrasiteDelay();
+		assertTrue(net1 > net2);
+
+		assertEquals(Collections.singletonList(ff1.getPin("Q")), graph.getStartpoints());
+		assertEquals(Collections.singletonList(ff2.getPin("D")), graph.getEndpoints());
+		assertTrue(Double.isNaN(graph.getArrivalTime(ff1.getPin("C"))));
+
+		assertEquals(CLK2Q, graph.getArrivalTime(ff1.getPin("Q")), 1e-9);
+		assertEquals(CLK2Q + net1, graph.getArrivalTime(lut.getPin("I0")), 1e-9);
+		assertEquals(CLK2Q + net1 + LUT_DELAY, graph.getArrivalTime(lut.getPin("O")), 1e-9);
+		double arrival = CLK2Q + net1 + LUT_DELAY + net2;
+		assertEquals(arrival, graph.getArrivalTime(ff2.getPin("D")), 1e-9);
+
+		assertEquals(PERIOD - SETUP, graph.getRequiredTime(ff2.getPin("D")), 1e-9);
+		assertEquals(PERIOD - SETUP - net2, graph.getRequiredTime(lut.getPin("O")), 1e-9);
+		assertEquals(PERIOD - SETUP - net2 - LUT_DELAY, graph.getRequiredTime(lut.getPin("I0")), 1e-9);
+		assertEquals(PERIOD - SETUP - net2 - LUT_DELAY - net1, graph.getRequiredTime(ff1.getPin("Q")), 1e-9);
+
+		// every pin of the only path has the same slack
+		double slack = PERIOD - SETUP - arrival;
+		for (Cell cell : Arrays.asList(ff1, lut, ff2)) {
+			cell.getPins().stream()
+					.filter(pin -> pin.isConnectedToNet() && !pin.getName().equals("C"))
+					.forEach(pin -> assertEquals(slack, graph.getSlack(pin), 1e-9, pin.getName()));
+		}
+		assertEquals(slack, graph.getWorstSlack(), 1e-9);
+		assertEquals(0.0, graph.getTotalNegativeSlack(), 1e-9);
+		assertEquals(Arrays.asList(ff1.getPin("Q"), lut.getPin("I0"), lut.getPin("O"), ff2.getPin("D")),
+				graph.getCriticalPath(ff2.getPin("D")));
+
+		// a shorter clock period only changes the required times
+		double period = arrival + SETUP - 100.0;
+		graph.setClockPeriod(period);
+		assertEquals(-100.0, graph.getWorstSlack(), 1e-9);
+		assertEquals(-100.0, graph.getTotalNegativeSlack(), 1e-9);
+		assertEquals(arrival, graph.getArrivalTime(ff2.getPin("D")), 1e-9);
+	}
+
+	@Test
+	@DisplayName("test moving a cell updates the times as a new graph would")
+	void testCellMoved() {
+		TimingGraph graph = new TimingGraph(device, design, delays, PERIOD);
+
+		Site site3 = slices.get(slices.size() - 1);
+		design.unplaceCell(lut);
+		design.placeCell(lut, site3.getBel("A6LUT"));
+		graph.cellMoved(lut);
+
+		double arrival = CLK2Q + estimate(site1, site3) + LUT_DELAY + estimate(site3, site2);
+		assertEquals(arrival, graph.getArrivalTime(ff2.getPin("D")), 1e-9);
+		assertEquals(PERIOD - SETUP - arrival, graph.getWorstSlack(), 1e-9);
+
+		TimingGraph rebuilt = new TimingGraph(device, design, delays, PERIOD);
+		for (Cell cell : Arrays.asList(ff1, lut, ff2)) {
+			cell.getPins().stream()
+					.filter(pin -> pin.isConnectedToNet() && !pin.getName().equals("C"))
+					.forEach(pin -> {
+						assertEquals(rebuilt.getArrivalTime(pin), graph.getArrivalTime(pin), 1e-9, pin.getName());
+						assertEquals(rebuilt.getRequiredTime(pin), graph.getRequiredTime(pin), 1e-9, pin.getName());
+					});
+		}
+	}
+}
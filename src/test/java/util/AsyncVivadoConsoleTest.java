@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2016 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * BYU RapidSmith Tools is free software: you may redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * BYU RapidSmith Tools is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * A copy of the GNU General Public License is included with the BYU
+ * RapidSmith Tools. It can be found at doc/LICENSE.GPL3.TXT. You may
+ * also get a copy of the license at <http://www.gnu.org/licenses/>.
+ */
+package util;
+
+import edu.byu.ece.rapidSmith.util.AsyncVivadoConsole;
+import edu.byu.ece.rapidSmith.util.Exceptions;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the request framing of {@link AsyncVivadoConsole} against {@link TclStub}, and
+ * the generated Tcl procedures against a real {@code tclsh} when one is on the PATH.
+ */
+public class AsyncVivadoConsoleTest {
+	private static AsyncVivadoConsole console;
+
+	@BeforeAll
+	public static void startConsole() {
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		List<String> command = Arrays.asList(java, "-cp", System.getProperty("java.class.path"), TclStub.class.getName());
+		console = new AsyncVivadoConsole(command, System.getProperty("user.dir"), 2);
+	}
+
+	@AfterAll
+	public static void closeConsole() {
+		console.close();
+	}
+
+	@Test
+	@DisplayName("pipelined commands complete with their own output")
+	public void pipelinedCommands() {
+		List<String> cmds = new ArrayList<>();
+		for (int i = 0; i < 100; i++)
+			cmds.add("echo value " + i + " [get_sites {SLICE_X0Y" + i + "}]");
+		List<CompletableFuture<List<String>>> futures = console.submitAll(cmds);
+		for (int i = 0; i < cmds.size(); i++)
+			assertEquals(Arrays.asList("value " + i + " [get_sites {SLICE_X0Y" + i + "}]"), futures.get(i).join());
+	}
+
+	@Test
+	@DisplayName("Tcl errors fail only the offending command")
+	public void errors() {
+		CompletableFuture<List<String>> bad = console.submit(0, "fail no such site");
+		CompletableFuture<List<String>> good = console.submit(0, "echo ok");
+		ExecutionException e = assertThrows(ExecutionException.class, bad::get);
+		assertTrue(e.getCause() instanceof AsyncVivadoConsole.TclException);
+		assertEquals(Arrays.asList("ok"), good.join());
+		assertThrows(AsyncVivadoConsole.TclException.class, () -> console.runCommand("fail again"));
+	}
+
+	@Test
+	@DisplayName("batched queries return one result per argument in order")
+	public void batch() {
+		List<String> args = Arrays.asList("a", "b", "c", "d", "e");
+		List<List<String>> results = console.batch("echo pin %ARG%", args).join();
+		assertEquals(args.size(), results.size());
+		for (int i = 0; i < args.size(); i++)
+			assertEquals(Arrays.asList("pin " + args.get(i)), results.get(i));
+
+		List<List<String>> withError = console.batch(1, "fail %ARG%", Arrays.asList("x")).join();
+		assertEquals(Arrays.asList("ERROR: x"), withError.get(0));
+	}
+
+	@Test
+	@DisplayName("lost and repeated replies do not shift later results")
+	public void mismatchedReplies() {
+		CompletableFuture<List<String>> lost = console.submit(1, "lose this");
+		CompletableFuture<List<String>> repeated = console.submit(1, "repeat twice");
+		CompletableFuture<List<String>> after = console.submit(1, "echo after");
+		CompletableFuture<List<String>> last = console.submit(1, "echo last");
+
+		ExecutionException e = assertThrows(ExecutionException.class, lost::get);
+		assertTrue(e.getCause() instanceof Exceptions.EnvironmentException);
+		assertEquals(Arrays.asList("twice"), repeated.join());
+		assertEquals(Arrays.asList("after"), after.join());
+		assertEquals(Arrays.asList("last"), last.join());
+	}
+
+	@Test
+	@DisplayName("the generated procedures run in a real Tcl shell")
+	public void realTclShell() {
+		Optional<Path> tclsh = Arrays.stream(System.getenv("PATH").split(File.pathSeparator))
+				.map(dir -> Paths.get(dir, "tclsh"))
+				.filter(Files::isExecutable)
+				.findFirst();
+		Assumptions.assumeTrue(tclsh.isPresent(), "tclsh is not on the PATH");
+
+		try (AsyncVivadoConsole tcl = new AsyncVivadoConsole(
+				Arrays.asList(tclsh.get().toString()), System.getProperty("user.dir"), 1)) {
+			assertEquals(Arrays.asList("5"), tcl.runCommand("set x 5"));
+			// the command is evaluated once, so its substitutions are not repeated
+			assertEquals(Arrays.asList("[not run] $y"), tcl.runCommand("set s {[not run] $y}"));
+
+			// errors with multi-line messages are reported on a single line
+			AsyncVivadoConsole.TclException e = assertThrows(AsyncVivadoConsole.TclException.class,
+					() -> tcl.runCommand("error \"first\\nsecond\""));
+			assertEquals("ERROR: first second", e.getMessage());
+			assertEquals(Arrays.asList("6"), tcl.runCommand("incr x"));
+
+			List<List<String>> results = tcl.batch("string toupper %ARG%", Arrays.asList("a", "b")).join();
+			assertEquals(Arrays.asList(Arrays.asList("A"), Arrays.asList("B")), results);
+			List<List<String>> withError = tcl.batch("expr {1 / %ARG%}", Arrays.asList("1", "0")).join();
+			assertEquals(Arrays.asList("1"), withError.get(0));
+			assertEquals(Arrays.asList("ERROR: divide by zero"), withError.get(1));
+		}
+	}
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2016 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * BYU RapidSmith Tools is free software: you may redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * BYU RapidSmith Tools is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * A copy of the GNU General Public License is included with the BYU
+ * RapidSmith Tools. It can be found at doc/LICENSE.GPL3.TXT. You may
+ * also get a copy of the license at <http://www.gnu.org/licenses/>.
+ */
+package util;
+
+import edu.byu.ece.rapidSmith.RSEnvironment;
+import edu.byu.ece.rapidSmith.design.subsite.CellDesign;
+import edu.byu.ece.rapidSmith.interfaces.vivado.VivadoCheckpoint;
+import edu.byu.ece.rapidSmith.interfaces.vivado.VivadoEdifInterface;
+import edu.byu.ece.rapidSmith.interfaces.vivado.VivadoInterface;
+import edu.byu.ece.rapidSmith.util.BatchDesignRunner;
+import edu.byu.ece.rapidSmith.util.BatchDesignRunner.JobResult;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests importing and processing checkpoints with the {@link BatchDesignRunner}.
+ */
+public class BatchDesignRunnerTest {
+
+	private static final Path checkpoint = RSEnvironment.defaultEnv().getEnvironmentPath()
+			.resolve("src")
+			.resolve("test")
+			.resolve("resources")
+			.resolve("ImportTests")
+			.resolve("RSCP")
+			.resolve("artix7")
+			.resolve("count16.rscp");
+
+	@BeforeAll
+	public static void initializeTest() {
+		VivadoEdifInterface.suppressWarnings(true);
+		VivadoEdifInterface.suppressInfoMessages(true);
+	}
+
+	@Test
+	@DisplayName("test jobs of the same part share the device and cell library")
+	public void jobsShareDeviceAndLibrary() throws InterruptedException {
+		List<VivadoCheckpoint> checkpoints = Collections.synchronizedList(new ArrayList<>());
+		List<JobResult> results;
+		try (BatchDesignRunner runner = new BatchDesignRunner(RSEnvironment.defaultEnv(), 2)) {
+			results = runner.runAll(Arrays.asList(checkpoint, checkpoint, checkpoint),
+					(vcp, rscp) -> checkpoints.add(vcp));
+		}
+
+		assertEquals(3, results.size());
+		for (JobResult result : results) {
+			assertTrue(result.isSuccess(), () -> String.valueOf(result.getError()));
+			assertEquals(checkpoint, result.getRscp());
+			assertTrue(result.getImportTime() >= 0);
+			assertTrue(result.getProcessTime() >= 0);
+			assertTrue(result.getImportTime() + result.getProcessTime() <= result.getWallTime());
+		}
+
+		assertEquals(3, checkpoints.size());
+		VivadoCheckpoint first = checkpoints.get(0);
+		Set<CellDesign> designs = Collections.newSetFromMap(new IdentityHashMap<>());
+		for (VivadoCheckpoint vcp : checkpoints) {
+			assertSame(first.getDevice(), vcp.getDevice());
+			assertSame(first.getLibCells(), vcp.getLibCells());
+			designs.add(vcp.getDesign());
+		}
+		// each job imports its own design
+		assertEquals(3, designs.size());
+	}
+
+	@Test
+	@DisplayName("test the imported designs match a checkpoint imported on its own")
+	public void importMatchesSingleImport() throws Exception {
+		VivadoCheckpoint expected = VivadoInterface.loadRSCP(checkpoint.toString());
+		CellDesign[] imported = new CellDesign[1];
+		try (BatchDesignRunner runner = new BatchDesignRunner(RSEnvironment.defaultEnv(), 1)) {
+			JobResult result = runner.submit(checkpoint, (vcp, rscp) -> imported[0] = vcp.getDesign()).get();
+			assertTrue(result.isSuccess(), () -> String.valueOf(result.getError()));
+		}
+
+		assertEquals(expected.getDesign().getCells().size(), imported[0].getCells().size());
+		assertEquals(expected.getDesign().getNets().size(), imported[0].getNets().size());
+		assertEquals(expected.getDesign().getUsedSites().size(), imported[0].getUsedSites().size());
+	}
+
+	@Test
+	@DisplayName("test a failing job is reported in its result")
+	public void failuresAreReported() throws InterruptedException {
+		Path missing = checkpoint.resolveSibling("missing.rscp");
+		List<JobResult> results;
+		try (BatchDesignRunner runner = new BatchDesignRunner(RSEnvironment.defaultEnv(), 2)) {
+			results = runner.runAll(Arrays.asList(missing, checkpoint), (vcp, rscp) -> {
+				throw new IllegalStateException("Injected failure");
+			});
+		}
+
+		assertFalse(results.get(0).isSuccess());
+		assertEquals(-1, results.get(0).getImportTime());
+		assertEquals(-1, results.get(0).getProcessTime());
+
+		assertFalse(results.get(1).isSuccess());
+		assertTrue(results.get(1).getError() instanceof IllegalStateException);
+		assertTrue(results.get(1).getImportTime() >= 0);
+		assertEquals(-1, results.get(1).getProcessTime());
+	}
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2016 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * BYU RapidSmith Tools is free software: you may redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * BYU RapidSmith Tools is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * A copy of the GNU General Public License is included with the BYU
+ * RapidSmith Tools. It can be found at doc/LICENSE.GPL3.TXT. You may
+ * also get a copy of the license at <http://www.gnu.org/licenses/>.
+ */
+package util;
+
+import edu.byu.ece.rapidSmith.RSEnvironment;
+import edu.byu.ece.rapidSmith.design.NetType;
+import edu.byu.ece.rapidSmith.design.xdl.XdlDesign;
+import edu.byu.ece.rapidSmith.design.xdl.XdlModule;
+import edu.byu.ece.rapidSmith.design.xdl.XdlNet;
+import edu.byu.ece.rapidSmith.interfaces.ise.XDLReader;
+import edu.byu.ece.rapidSmith.util.DesignDiffer;
+import edu.byu.ece.rapidSmith.util.DesignDiffer.DifferenceTree;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests comparing XDL designs with the {@link DesignDiffer}, with and without
+ * fingerprints.
+ */
+public class DesignDifferTest {
+	private static final Path xdlFile = RSEnvironment.defaultEnv().getEnvironmentPath()
+			.resolve("src")
+			.resolve("test")
+			.resolve("resources")
+			.resolve("ImportTests")
+			.resolve("XDL")
+			.resolve("artix7")
+			.resolve("small.xdl");
+
+	private XdlDesign design1;
+	private XdlDesign design2;
+
+	@BeforeEach
+	public void readDesigns() throws IOException {
+		design1 = new XDLReader().readDesign(xdlFile);
+		design2 = new XDLReader().readDesign(xdlFile);
+	}
+
+	private DifferenceTree diff(boolean useFingerprints) {
+		DesignDiffer differ = new DesignDiffer();
+		differ.setUseFingerprints(useFingerprints);
+		return differ.diffDesigns(design1, design2);
+	}
+
+	@Test
+	@DisplayName("test identical designs have no differences")
+	public void identicalDesigns() {
+		DifferenceTree withPrints = diff(true);
+		assertTrue(withPrints.isEmpty(), withPrints::toString);
+		DifferenceTree withoutPrints = diff(false);
+		assertTrue(withoutPrints.isEmpty(), withoutPrints::toString);
+	}
+
+	@Test
+	@DisplayName("test a changed instance attribute is the only difference")
+	public void changedInstance() {
+		design2.getInstance("src").getAttribute("AFF").setValue("#LATCH");
+
+		String expected = String.join(System.lineSeparator(),
+				"small (design)",
+				"  src (instance)",
+				"    AFF (attribute)",
+				"      * (value) #FF -- #LATCH",
+				"");
+		assertEquals(expected, diff(true).toString());
+		assertEquals(expected, diff(false).toString());
+	}
+
+	@Test
+	@DisplayName("test a changed net attribute is the only difference")
+	public void changedNet() {
+		design2.getNet("n1").getAttributes().get(0).setValue("other");
+
+		String expected = String.join(System.lineSeparator(),
+				"small (design)",
+				"  n1 (net)",
+				"    NET_ATTR (attribute)",
+				"      * (value) value -- other",
+				"");
+		assertEquals(expected, diff(true).toString());
+		assertEquals(expected, diff(false).toString());
+	}
+
+	@Test
+	@DisplayName("test every net added by name is reported")
+	public void addedNets() {
+		design2.addNet(new XdlNet("extra1", NetType.WIRE));
+		design2.addNet(new XdlNet("extra2", NetType.WIRE));
+
+		for (boolean useFingerprints : new boolean[] { true, false }) {
+			DifferenceTree diffs = diff(useFingerprints);
+			String text = diffs.toString();
+			assertTrue(text.contains("+ (net) extra1"), text);
+			assertTrue(text.contains("+ (net) extra2"), text);
+			assertEquals(3, text.split(System.lineSeparator()).length, text);
+		}
+	}
+
+	@Test
+	@DisplayName("test only modules missing from the first design are reported as added")
+	public void addedModule() {
+		XdlModule module = new XdlModule();
+		module.setName("extra");
+		design2.addModule(module);
+
+		String expected = String.join(System.lineSeparator(),
+				"small (design)",
+				"  + (module) extra",
+				"");
+		assertEquals(expected, diff(true).toString());
+		assertEquals(expected, diff(false).toString());
+	}
+
+	@Test
+	@DisplayName("test module instances compare the names of their modules")
+	public void changedModuleOfInstance() {
+		XdlModule module = new XdlModule();
+		module.setName("other");
+		design2.getModuleInstance("mi").setModule(module);
+
+		String expected = String.join(System.lineSeparator(),
+				"small (design)",
+				"  mi (module instance)",
+				"    * (module) mod -- other",
+				"");
+		assertEquals(expected, diff(true).toString());
+		assertEquals(expected, diff(false).toString());
+	}
+
+	@Test
+	@DisplayName("test only net attributes missing from the first design are reported as added")
+	public void addedNetAttribute() {
+		design2.getNet("n1").addAttribute("EXTRA", "", "x");
+
+		String expected = String.join(System.lineSeparator(),
+				"small (design)",
+				"  n1 (net)",
+				"    + (attribute) EXTRA",
+				"");
+		assertEquals(expected, diff(true).toString());
+		assertEquals(expected, diff(false).toString());
+	}
+}
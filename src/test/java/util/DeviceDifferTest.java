@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2016 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * BYU RapidSmith Tools is free software: you may redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * BYU RapidSmith Tools is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * A copy of the GNU General Public License is included with the BYU
+ * RapidSmith Tools. It can be found at doc/LICENSE.GPL3.TXT. You may
+ * also get a copy of the license at <http://www.gnu.org/licenses/>.
+ */
+package util;
+
+import edu.byu.ece.rapidSmith.RSEnvironment;
+import edu.byu.ece.rapidSmith.device.Device;
+import edu.byu.ece.rapidSmith.device.Tile;
+import edu.byu.ece.rapidSmith.device.WireConnection;
+import edu.byu.ece.rapidSmith.device.WireHashMap;
+import edu.byu.ece.rapidSmith.util.DeviceDiffer;
+import edu.byu.ece.rapidSmith.util.FileTools;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests comparing devices with the {@link DeviceDiffer}.  The test device is a
+ * second copy loaded directly from the device file so that changing it does not
+ * affect the device cached by the environment.
+ */
+public class DeviceDifferTest {
+	private static final String PART_NAME = "xc7a100tcsg324";
+	private static final String TILE_NAME = "CLBLL_L_X2Y69";
+
+	private static Device gold;
+	private static Device test;
+
+	@BeforeAll
+	public static void loadDevices() {
+		RSEnvironment env = RSEnvironment.defaultEnv();
+		gold = env.getDevice(PART_NAME);
+		test = FileTools.loadDevice(env.getDeviceFilePath(PART_NAME));
+		assertNotNull(test);
+		assertNotSame(gold, test);
+	}
+
+	private static DeviceDiffer.DifferenceList diff() {
+		DeviceDiffer differ = new DeviceDiffer();
+		differ.setGold(gold);
+		differ.setTest(test);
+		return differ.diff();
+	}
+
+	@Test
+	@DisplayName("test identical devices have no differences")
+	public void identicalDevices() {
+		assertEquals("equivalent", diff().toString());
+	}
+
+	@Test
+	@DisplayName("test a connection removed from one tile is the only difference")
+	public void removedConnection() {
+		Tile tile = test.getTile(TILE_NAME);
+		WireHashMap original = tile.getWireHashMap();
+		int source = -1;
+		for (int key : original.keySet()) {
+			if (original.get(key).length > 1) {
+				source = key;
+				break;
+			}
+		}
+		assertNotEquals(-1, source);
+
+		WireConnection[] connections = original.get(source);
+		WireConnection removed = connections[connections.length - 1];
+		tile.setWireHashMap(WireHashMap.withChanges(original, Collections.singletonMap(
+				source, Arrays.copyOf(connections, connections.length - 1))));
+		try {
+			String diffs = diff().toString();
+			String sourceName = test.getWireEnumerator().getWireName(source);
+			String sinkName = test.getWireEnumerator().getWireName(removed.getWire());
+			assertTrue(diffs.contains("(tile " + TILE_NAME + "\n"), diffs);
+			assertEquals(diffs.indexOf("(tile "), diffs.lastIndexOf("(tile "), diffs);
+			assertTrue(diffs.contains("(sourcewire " + sourceName + "\n"), diffs);
+			assertTrue(diffs.contains(sinkName), diffs);
+		} finally {
+			tile.setWireHashMap(original);
+		}
+		assertEquals("equivalent", diff().toString());
+	}
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2016 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * BYU RapidSmith Tools is free software: you may redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * BYU RapidSmith Tools is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * A copy of the GNU General Public License is included with the BYU
+ * RapidSmith Tools. It can be found at doc/LICENSE.GPL3.TXT. You may
+ * also get a copy of the license at <http://www.gnu.org/licenses/>.
+ */
+package util;
+
+import edu.byu.ece.rapidSmith.util.Fingerprint;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the {@link Fingerprint} helpers.
+ */
+public class FingerprintTest {
+
+	@Test
+	@DisplayName("test strings with the same contents have the same fingerprint")
+	public void stringFingerprints() {
+		assertEquals(0, Fingerprint.of(null));
+		assertEquals(Fingerprint.SEED, Fingerprint.of(""));
+		assertEquals(Fingerprint.of("SLICEL"), Fingerprint.of(new String("SLICEL")));
+		assertNotEquals(Fingerprint.of("SLICEL"), Fingerprint.of("SLICEM"));
+		assertNotEquals(Fingerprint.of(""), Fingerprint.of(null));
+	}
+
+	@Test
+	@DisplayName("test mixed values depend on their order")
+	public void orderedMix() {
+		long ab = Fingerprint.mix(Fingerprint.mix(Fingerprint.SEED, "a"), "b");
+		long ba = Fingerprint.mix(Fingerprint.mix(Fingerprint.SEED, "b"), "a");
+		assertNotEquals(ab, ba);
+		assertEquals(ab, Fingerprint.mix(Fingerprint.mix(Fingerprint.SEED, "a"), "b"));
+
+		assertNotEquals(Fingerprint.mix(Fingerprint.SEED, true), Fingerprint.mix(Fingerprint.SEED, false));
+		assertNotEquals(Fingerprint.mix(Fingerprint.SEED, 1), Fingerprint.mix(Fingerprint.SEED, 2));
+	}
+
+	@Test
+	@DisplayName("test summed finished fingerprints do not depend on iteration order")
+	public void unorderedSum() {
+		List<String> names = Arrays.asList("A6LUT", "B6LUT", "C6LUT", "AFF");
+		long forward = 0;
+		for (String name : names)
+			forward += Fingerprint.finish(Fingerprint.of(name));
+		long backward = 0;
+		for (int i = names.size() - 1; i >= 0; i--)
+			backward += Fingerprint.finish(Fingerprint.of(names.get(i)));
+		assertEquals(forward, backward);
+
+		// a changed element changes the sum
+		long changed = forward - Fingerprint.finish(Fingerprint.of("AFF")) +
+				Fingerprint.finish(Fingerprint.of("BFF"));
+		assertNotEquals(forward, changed);
+	}
+
+	@Test
+	@DisplayName("test the finalizer scrambles nearby values")
+	public void finish() {
+		assertEquals(0, Fingerprint.finish(0));
+		assertNotEquals(Fingerprint.finish(1), Fingerprint.finish(2));
+		assertNotEquals(1, Fingerprint.finish(1));
+	}
+}
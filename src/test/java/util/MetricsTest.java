@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2016 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * BYU RapidSmith Tools is free software: you may redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * BYU RapidSmith Tools is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * A copy of the GNU General Public License is included with the BYU
+ * RapidSmith Tools. It can be found at doc/LICENSE.GPL3.TXT. You may
+ * also get a copy of the license at <http://www.gnu.org/licenses/>.
+ */
+package util;
+
+import edu.byu.ece.rapidSmith.util.Metrics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the recording and export of {@link Metrics}.
+ */
+public class MetricsTest {
+	private boolean wasEnabled;
+
+	@BeforeEach
+	public void enableMetrics() {
+		wasEnabled = Metrics.isEnabled();
+		Metrics.setEnabled(true);
+		Metrics.reset();
+	}
+
+	@AfterEach
+	public void restoreMetrics() {
+		Metrics.reset();
+		Metrics.setEnabled(wasEnabled);
+	}
+
+	@Test
+	@DisplayName("runs of a phase are merged into one entry")
+	public void phasesAreMerged() throws InterruptedException {
+		try (Metrics.Phase ignored = Metrics.phase("test.phase")) {
+			Thread.sleep(2);
+		}
+		try (Metrics.Phase ignored = Metrics.phase("test.phase")) {
+			Thread.sleep(1);
+		}
+
+		Map<String, Metrics.PhaseStats> phases = Metrics.getPhases();
+		assertEquals(1, phases.size());
+		Metrics.PhaseStats stats = phases.get("test.phase");
+		assertEquals(2, stats.getCount());
+		assertTrue(stats.getMaxNanos() >= 2_000_000);
+		assertTrue(stats.getTotalNanos() > stats.getMaxNanos());
+	}
+
+	@Test
+	@DisplayName("counter updates from several threads are summed and ignored while disabled")
+	public void countersAreSummed() {
+		Metrics.Counter counter = Metrics.counter("test.counter");
+		assertSame(counter, Metrics.counter("test.counter"));
+		IntStream.range(0, 1000).parallel().forEach(i -> counter.increment());
+		counter.add(500);
+		assertEquals(1500, counter.get());
+
+		Metrics.setEnabled(false);
+		counter.increment();
+		assertSame(Metrics.phase("test.disabled"), Metrics.phase("test.disabled"));
+		assertEquals(1500, (long) Metrics.getCounters().get("test.counter"));
+		assertFalse(Metrics.getPhases().containsKey("test.disabled"));
+	}
+
+	@Test
+	@DisplayName("the JSON summary does not depend on the default locale")
+	public void jsonIsLocaleIndependent() {
+		Locale locale = Locale.getDefault();
+		try {
+			Locale.setDefault(Locale.GERMANY);
+			try (Metrics.Phase ignored = Metrics.phase("test.\"quoted\"")) {
+				Metrics.counter("test.json").add(3);
+			}
+
+			String json = Metrics.toJson();
+			assertTrue(json.contains("\"test.\\\"quoted\\\"\": {\"count\": 1, \"totalMs\": "));
+			assertTrue(json.matches("(?s).*\"totalMs\": \\d+\\.\\d{3}, \"maxMs\": \\d+\\.\\d{3},.*"));
+			assertTrue(json.contains("\"test.json\": 3"));
+		} finally {
+			Locale.setDefault(locale);
+		}
+	}
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2016 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * BYU RapidSmith Tools is free software: you may redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * BYU RapidSmith Tools is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * A copy of the GNU General Public License is included with the BYU
+ * RapidSmith Tools. It can be found at doc/LICENSE.GPL3.TXT. You may
+ * also get a copy of the license at <http://www.gnu.org/licenses/>.
+ */
+package util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal stand-in for a Vivado Tcl shell that understands the procedures defined by
+ * {@link edu.byu.ece.rapidSmith.util.AsyncVivadoConsole}.  Supports the commands
+ * {@code echo <text>}, {@code fail <text>} and {@code exit}.  To test how the console
+ * recovers from framing errors, the reply to {@code lose <text>} is never written,
+ * and the reply to {@code repeat <text>} is written twice.
+ * <p>
+ * The procedure definitions sent by the console are checked the way a Tcl shell
+ * reads them: each definition must be a complete {@code proc name args body}
+ * command with balanced braces, brackets and quotes, and must declare the
+ * arguments the console calls it with.  The stub exits on a malformed definition
+ * or on a call to a procedure that was not defined, failing the pending requests.
+ */
+public class TclStub {
+	/** The arguments of the procedures the console is expected to define */
+	private static final Map<String, List<String>> EXPECTED_PROCS = new HashMap<>();
+	static {
+		EXPECTED_PROCS.put("::rs_async_run", Arrays.asList("id", "cmd"));
+		EXPECTED_PROCS.put("::rs_async_batch", Arrays.asList("id", "template", "args"));
+	}
+
+	public static void main(String[] args) throws IOException {
+		BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+		System.out.println("****** Tcl stub");
+		List<String> defined = new ArrayList<>();
+		StringBuilder definition = null;
+		String line;
+		while ((line = in.readLine()) != null) {
+			if (definition != null && (line.startsWith("::") || line.equals("exit")))
+				abort("incomplete procedure definition: " + definition);
+			if (definition != null || line.startsWith("proc ")) {
+				definition = definition == null ? new StringBuilder(line) : definition.append('\n').append(line);
+				if (isComplete(definition)) {
+					defined.add(define(definition.toString()));
+					definition = null;
+				}
+				continue;
+			}
+			List<String> words = split(line);
+			if (words.isEmpty())
+				continue;
+			if (words.get(0).startsWith("::") && !defined.contains(words.get(0)))
+				abort("invalid command name \"" + words.get(0) + "\"");
+			switch (words.get(0)) {
+				case "::rs_async_run":
+					if (words.get(2).startsWith("lose "))
+						break;
+					int replies = words.get(2).startsWith("repeat ") ? 2 : 1;
+					for (int i = 0; i < replies; i++) {
+						System.out.println("#rs#begin " + words.get(1));
+						String result = run(words.get(2));
+						if (result.startsWith("!"))
+							System.out.println("#rs#error " + words.get(1) + " " + result.substring(1));
+						else
+							System.out.println(result);
+						System.out.println("#rs#end " + words.get(1));
+					}
+					break;
+				case "::rs_async_batch":
+					System.out.println("#rs#begin " + words.get(1));
+					for (String arg : words.subList(3, words.size())) {
+						System.out.println("#rs#item");
+						String r = run(words.get(2).replace("%ARG%", arg));
+						System.out.println(r.startsWith("!") ? "#rs#itemerror " + r.substring(1) : r);
+					}
+					System.out.println("#rs#end " + words.get(1));
+					break;
+				case "exit":
+					return;
+				default:
+					abort("unexpected command " + line);
+			}
+			System.out.flush();
+		}
+	}
+
+	private static String run(String cmd) {
+		if (cmd.startsWith("echo "))
+			return cmd.substring(5);
+		if (cmd.startsWith("repeat "))
+			return cmd.substring(7);
+		if (cmd.startsWith("fail "))
+			return "!" + cmd.substring(5);
+		return "!invalid command name \"" + cmd + "\"";
+	}
+
+	/**
+	 * Returns true if the text is a complete Tcl command: the braces and brackets
+	 * outside of braces are balanced and no double quoted word is left open.
+	 */
+	private static boolean isComplete(CharSequence text) {
+		int braces = 0;
+		int brackets = 0;
+		boolean quoted = false;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c == '\\') {
+				i++;
+			} else if (c == '{') {
+				braces++;
+			} else if (c == '}') {
+				braces--;
+			} else if (braces == 0 && c == '[') {
+				brackets++;
+			} else if (braces == 0 && c == ']') {
+				brackets--;
+			} else if (braces == 0 && c == '"') {
+				quoted = !quoted;
+			}
+			if (braces < 0 || brackets < 0)
+				abort("unbalanced procedure definition: " + text);
+		}
+		return braces == 0 && brackets == 0 && !quoted;
+	}
+
+	/**
+	 * Checks a procedure definition and returns the name of the procedure.
+	 */
+	private static String define(String text) {
+		// proc name {args} {body}
+		String[] header = text.split(" ", 3);
+		if (header.length < 3 || !header[0].equals("proc") || !header[2].startsWith("{"))
+			abort("malformed procedure definition: " + text);
+		String name = header[1];
+		int argsEnd = header[2].indexOf('}');
+		List<String> procArgs = Arrays.asList(header[2].substring(1, argsEnd).split(" "));
+		String body = header[2].substring(argsEnd + 1).trim();
+		if (!procArgs.equals(EXPECTED_PROCS.get(name)))
+			abort("unexpected procedure " + name + " " + procArgs);
+		if (!body.startsWith("{") || !body.endsWith("}"))
+			abort("malformed body of procedure " + name);
+
+		// each command of the body must itself be balanced
+		StringBuilder command = new StringBuilder();
+		for (String bodyLine : body.substring(1, body.length() - 1).split("\n")) {
+			command.append(bodyLine).append('\n');
+			if (isBodyLineComplete(command)) {
+				checkQuotes(name, command.toString());
+				command.setLength(0);
+			}
+		}
+		if (command.toString().trim().length() > 0)
+			abort("incomplete command in procedure " + name + ": " + command);
+		return name;
+	}
+
+	private static boolean isBodyLineComplete(CharSequence text) {
+		int depth = 0;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c == '\\')
+				i++;
+			else if (c == '{' || c == '[')
+				depth++;
+			else if (c == '}' || c == ']')
+				depth--;
+		}
+		return depth == 0;
+	}
+
+	private static void checkQuotes(String name, String command) {
+		int quotes = 0;
+		for (int i = 0; i < command.length(); i++) {
+			char c = command.charAt(i);
+			if (c == '\\')
+				i++;
+			else if (c == '"')
+				quotes++;
+		}
+		if (quotes % 2 != 0)
+			abort("unbalanced quotes in procedure " + name + ": " + command.trim());
+	}
+
+	private static void abort(String message) {
+		System.out.println("stub: " + message);
+		System.out.flush();
+		System.exit(1);
+	}
+
+	/** Splits a line into words, removing double quotes and backslash escapes. */
+	private static List<String> split(String line) {
+		List<String> words = new ArrayList<>();
+		StringBuilder word = null;
+		boolean quoted = false;
+		for (int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if (c == '\\' && i + 1 < line.length()) {
+				char next = line.charAt(++i);
+				if (word == null) word = new StringBuilder();
+				word.append(next == 'n' ? '\n' : next);
+			} else if (c == '"') {
+				quoted = !quoted;
+				if (word == null) word = new StringBuilder();
+			} else if (c == ' ' && !quoted) {
+				if (word != null) words.add(word.toString());
+				word = null;
+			} else {
+				if (word == null) word = new StringBuilder();
+				word.append(c);
+			}
+		}
+		if (word != null)
+			words.add(word.toString());
+		return words;
+	}
+}